@@ -0,0 +1,74 @@
+package benchmarks;
+
+import model.AllAccounts;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: AccountBenchmark
+ * DESCRIPTION:
+ * Measures logging in and adding and removing accounts in an AllAccounts holding 'size' users.
+ * Names and passwords are built in setUp() so the measured operations only do account work.
+ **************************************************************************************************/
+
+public class AccountBenchmark extends Benchmark {
+
+	private static final int EXTRA_ACCOUNTS = 1024;
+
+	private AllAccounts accounts;
+	private String[] usernames;
+	private String[] passwords;
+	private String[] extraUsernames;
+
+	@Override
+	public String getName() {
+		return "accounts";
+	}//END getName()
+
+	@Override
+	public String[] getOperations() {
+		return new String[] { "verifyAccount", "verifyAccountWrongPassword", "addRemoveAccount" };
+	}//END getOperations()
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 1000, 100000, 1000000 };
+	}//END getSizes()
+
+	@Override
+	public void setUp(int size) {
+		accounts = new AllAccounts(false);
+		usernames = new String[size];
+		passwords = new String[size];
+		for(int i=0; i<size; i++) {
+			usernames[i] = "user" + i;
+			passwords[i] = "pass" + i;
+			accounts.addAccount(usernames[i], passwords[i], false);
+		}
+		extraUsernames = new String[EXTRA_ACCOUNTS];
+		for(int i=0; i<EXTRA_ACCOUNTS; i++) { extraUsernames[i] = "extra" + i; }
+	}//END setUp()
+
+	@Override
+	public Object run(int operation, long invocation) {
+		int user = (int) (invocation % usernames.length);
+		switch(operation) {
+			case 0:
+				return accounts.verifyAccount(usernames[user], passwords[user]);
+			case 1:
+				return accounts.verifyAccount(usernames[user], "wrong");
+			default:
+				String extra = extraUsernames[(int) (invocation % EXTRA_ACCOUNTS)];
+				accounts.addAccount(extra, "pass", false);
+				return accounts.removeAccount(extra);
+		}
+	}//END run()
+
+	@Override
+	public void tearDown() {
+		accounts = null;
+		usernames = null;
+		passwords = null;
+	}//END tearDown()
+
+}//END AccountBenchmark class
@@ -0,0 +1,66 @@
+package benchmarks;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Benchmark
+ * DESCRIPTION:
+ * One group of measured operations, run by the BenchmarkRunner. A benchmark may be run at several
+ * sizes (number of songs, accounts or entries); setUp() builds the state for one size outside the
+ * measurement, and run() performs a single operation against it. Whatever run() returns is fed to
+ * a Blackhole so the JIT cannot remove the work.
+ **************************************************************************************************/
+
+public abstract class Benchmark {
+
+	/**********************************************************************************************
+	 * METHOD: getName()
+	 * PURPOSE: Returns the name the results are reported under.
+	 * @return The String benchmark name.
+	 **********************************************************************************************/
+	public abstract String getName();
+
+	/**********************************************************************************************
+	 * METHOD: getOperations()
+	 * PURPOSE: Returns the names of the operations this benchmark measures, in run() order.
+	 * @return The array of operation names.
+	 **********************************************************************************************/
+	public abstract String[] getOperations();
+
+	/**********************************************************************************************
+	 * METHOD: getSizes()
+	 * PURPOSE: Returns the sizes to run at. The default is a single run without a size.
+	 * @return The array of sizes.
+	 **********************************************************************************************/
+	public int[] getSizes() {
+		return new int[] { 0 };
+	}//END getSizes()
+
+	/**********************************************************************************************
+	 * METHOD: setUp()
+	 * PURPOSE: Builds the state measured at one size. Not timed.
+	 * @param size The number of entries to build, or 0 for unsized benchmarks.
+	 * @throws Exception If the state cannot be built.
+	 **********************************************************************************************/
+	public void setUp(int size) throws Exception {
+	}//END setUp()
+
+	/**********************************************************************************************
+	 * METHOD: run()
+	 * PURPOSE: Performs one operation.
+	 * @param operation The index of the operation in getOperations().
+	 * @param invocation A counter that increases with every call, for picking inputs.
+	 * @return Any result of the operation, which the runner consumes.
+	 * @throws Exception If the operation fails.
+	 **********************************************************************************************/
+	public abstract Object run(int operation, long invocation) throws Exception;
+
+	/**********************************************************************************************
+	 * METHOD: tearDown()
+	 * PURPOSE: Releases the state built by setUp(). Not timed.
+	 * @throws Exception If the state cannot be released.
+	 **********************************************************************************************/
+	public void tearDown() throws Exception {
+	}//END tearDown()
+
+}//END Benchmark class
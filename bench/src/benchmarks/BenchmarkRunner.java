@@ -0,0 +1,220 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: BenchmarkRunner
+ * DESCRIPTION:
+ * Runs the model benchmarks the way JMH does: every operation is warmed up for a few timed
+ * iterations so the JIT has compiled it, then measured for several more. Each result reports the
+ * average time per operation with its 99.9% confidence error, the bytes allocated per operation
+ * by the measuring thread, and the garbage collections that happened while measuring, so both
+ * slowdowns and new allocation show up as numbers.
+ *
+ * Usage: BenchmarkRunner [-f regex] [-wi warmups] [-i iterations] [-t millis] [-sizes 1000,...]
+ * Run it with a large heap (for example -Xmx4g) for the 1,000,000 entry sizes.
+ **************************************************************************************************/
+
+public class BenchmarkRunner {
+
+	private static final long MAX_BATCH = 1 << 20;
+	private static final long BATCH_NANOS = 1000000; //grow batches until one takes 1 ms
+
+	private Pattern filter = Pattern.compile(".*");
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	private long iterationNanos = 1000000000L;
+	private int[] sizes;
+	private Blackhole blackhole = new Blackhole();
+	private ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Runs every benchmark whose "name.operation" matches the filter.
+	 * @param args The command line options.
+	 **********************************************************************************************/
+	public static void main(String[] args) {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		runner.parseArguments(args);
+		runner.runAll(new Benchmark[] { new SelectionBenchmark(), new QuotaBenchmark(),
+				new AccountBenchmark(), new SongBenchmark(), new PersistenceBenchmark() });
+	}//END main()
+
+	/**********************************************************************************************
+	 * METHOD: parseArguments()
+	 * PURPOSE: Reads the command line options.
+	 **********************************************************************************************/
+	private void parseArguments(String[] args) {
+		for(int i=0; i + 1<args.length; i += 2) {
+			if(args[i].equals("-f")) {
+				filter = Pattern.compile(args[i + 1]);
+			} else if(args[i].equals("-wi")) {
+				warmupIterations = Integer.parseInt(args[i + 1]);
+			} else if(args[i].equals("-i")) {
+				iterations = Integer.parseInt(args[i + 1]);
+			} else if(args[i].equals("-t")) {
+				iterationNanos = Long.parseLong(args[i + 1])*1000000L;
+			} else if(args[i].equals("-sizes")) {
+				String[] split = args[i + 1].split(",");
+				sizes = new int[split.length];
+				for(int s=0; s<split.length; s++) { sizes[s] = Integer.parseInt(split[s].trim()); }
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+	}//END parseArguments()
+
+	/**********************************************************************************************
+	 * METHOD: runAll()
+	 * PURPOSE: Runs the matching operations of every benchmark at every size and prints a table.
+	 **********************************************************************************************/
+	private void runAll(Benchmark[] benchmarks) {
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+		}
+		System.out.println(String.format("%-36s %9s %14s %12s %-6s %14s %6s %8s", "Benchmark", "Size",
+				"Score", "Error", "Units", "Alloc B/op", "GCs", "GC ms"));
+		for(Benchmark benchmark : benchmarks) {
+			String[] operations = benchmark.getOperations();
+			int[] benchmarkSizes = benchmark.getSizes();
+			if(sizes != null && benchmarkSizes.length > 1) { benchmarkSizes = sizes; }
+			for(int size : benchmarkSizes) {
+				for(int operation=0; operation<operations.length; operation++) {
+					String name = benchmark.getName() + "." + operations[operation];
+					if(filter.matcher(name).find()) {
+						runOne(benchmark, name, size, operation);
+					}
+				}
+			}
+		}
+		System.out.println("(blackhole " + blackhole.getSink() + ")");
+	}//END runAll()
+
+	/**********************************************************************************************
+	 * METHOD: runOne()
+	 * PURPOSE: Sets up, warms up, measures and reports one operation at one size.
+	 **********************************************************************************************/
+	private void runOne(Benchmark benchmark, String name, int size, int operation) {
+		String sizeLabel = (size == 0) ? "-" : Integer.toString(size);
+		try {
+			benchmark.setUp(size);
+		} catch (Throwable e) {
+			System.out.println(String.format("%-36s %9s   skipped: %s", name, sizeLabel, e));
+			return;
+		}
+		try {
+			long[] invocation = new long[1];
+			long[] batch = new long[] { 1 };
+			for(int i=0; i<warmupIterations; i++) {
+				iterate(benchmark, operation, invocation, batch, null);
+			}
+			System.gc();
+
+			double[] nanosPerOp = new double[iterations];
+			long[] totals = new long[2]; //operations, allocated bytes
+			long gcCount = gcCount();
+			long gcMillis = gcMillis();
+			for(int i=0; i<iterations; i++) {
+				nanosPerOp[i] = iterate(benchmark, operation, invocation, batch, totals);
+			}
+			gcCount = gcCount() - gcCount;
+			gcMillis = gcMillis() - gcMillis;
+
+			double mean = 0;
+			for(double score : nanosPerOp) { mean += score; }
+			mean /= iterations;
+			double variance = 0;
+			for(double score : nanosPerOp) { variance += (score - mean)*(score - mean); }
+			double error = (iterations > 1) ? 3.29*Math.sqrt(variance/(iterations - 1))/Math.sqrt(iterations) : 0;
+			String alloc = (totals[1] < 0) ? "n/a" : String.format("%.1f", totals[1]/(double) totals[0]);
+			System.out.println(String.format("%-36s %9s %14.1f +- %9.1f %-6s %14s %6d %8d", name, sizeLabel,
+					mean, error, "ns/op", alloc, gcCount, gcMillis));
+		} catch (Throwable e) {
+			System.out.println(String.format("%-36s %9s   failed: %s", name, sizeLabel, e));
+		} finally {
+			try {
+				benchmark.tearDown();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}//END runOne()
+
+	/**********************************************************************************************
+	 * METHOD: iterate()
+	 * PURPOSE: Runs the operation in batches for one iteration. Batches double until one takes a
+	 *     millisecond, so the clock is read rarely for fast operations and slow operations still
+	 *     finish the iteration on time.
+	 * @return The average nanoseconds per operation in this iteration.
+	 **********************************************************************************************/
+	private double iterate(Benchmark benchmark, int operation, long[] invocation, long[] batch,
+			long[] totals) throws Exception {
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = allocatedBytes(threadId);
+		long operations = 0;
+		long start = System.nanoTime();
+		long elapsed = 0;
+		while(elapsed < iterationNanos) {
+			long batchStart = System.nanoTime();
+			for(long i=0; i<batch[0]; i++) {
+				blackhole.consume(benchmark.run(operation, invocation[0]++));
+			}
+			long now = System.nanoTime();
+			operations += batch[0];
+			if(now - batchStart < BATCH_NANOS && batch[0] < MAX_BATCH) { batch[0] *= 2; }
+			elapsed = now - start;
+		}
+		if(totals != null) {
+			long allocatedAfter = allocatedBytes(threadId);
+			totals[0] += operations;
+			totals[1] = (allocatedBefore < 0 || totals[1] < 0) ? -1 : totals[1] + allocatedAfter - allocatedBefore;
+		}
+		return elapsed/(double) operations;
+	}//END iterate()
+
+	/**********************************************************************************************
+	 * METHOD: allocatedBytes()
+	 * PURPOSE: Returns the bytes allocated so far by a thread, or -1 if the JVM cannot tell.
+	 **********************************************************************************************/
+	private long allocatedBytes(long threadId) {
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+		}
+		return -1;
+	}//END allocatedBytes()
+
+	/**********************************************************************************************
+	 * METHOD: gcCount()
+	 * PURPOSE: Returns the total number of garbage collections so far.
+	 **********************************************************************************************/
+	private static long gcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean collector : collectors()) { count += Math.max(0, collector.getCollectionCount()); }
+		return count;
+	}//END gcCount()
+
+	/**********************************************************************************************
+	 * METHOD: gcMillis()
+	 * PURPOSE: Returns the total time spent in garbage collection so far.
+	 **********************************************************************************************/
+	private static long gcMillis() {
+		long millis = 0;
+		for(GarbageCollectorMXBean collector : collectors()) { millis += Math.max(0, collector.getCollectionTime()); }
+		return millis;
+	}//END gcMillis()
+
+	/**********************************************************************************************
+	 * METHOD: collectors()
+	 * PURPOSE: Returns the garbage collectors of this JVM.
+	 **********************************************************************************************/
+	private static ArrayList<GarbageCollectorMXBean> collectors() {
+		return new ArrayList<GarbageCollectorMXBean>(ManagementFactory.getGarbageCollectorMXBeans());
+	}//END collectors()
+
+}//END BenchmarkRunner class
@@ -0,0 +1,36 @@
+package benchmarks;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Blackhole
+ * DESCRIPTION:
+ * Consumes benchmark results so the JIT cannot prove them unused and remove the measured work.
+ * Every value is folded into a volatile field that is checked once at the end of the run.
+ **************************************************************************************************/
+
+public class Blackhole {
+
+	private volatile int sink;
+
+	/**********************************************************************************************
+	 * METHOD: consume()
+	 * PURPOSE: Folds a result into the sink.
+	 * @param result The value returned by an operation (may be null).
+	 **********************************************************************************************/
+	public void consume(Object result) {
+		if(result != null) {
+			sink = sink*31 + System.identityHashCode(result);
+		}
+	}//END consume()
+
+	/**********************************************************************************************
+	 * METHOD: getSink()
+	 * PURPOSE: Returns the folded value, printed so the sink itself is used.
+	 * @return The folded value.
+	 **********************************************************************************************/
+	public int getSink() {
+		return sink;
+	}//END getSink()
+
+}//END Blackhole class
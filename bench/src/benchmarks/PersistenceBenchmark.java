@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import model.AllAccounts;
+import model.Jukebox;
+import model.Song;
+import model.User;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: PersistenceBenchmark
+ * DESCRIPTION:
+ * Measures loading and saving the "SongList" and "AccountList" files with 'size' songs and
+ * accounts. The files are written to a temporary folder in setUp(), never to the working
+ * directory, and loads go through the same Jukebox and AllAccounts constructors as the program.
+ **************************************************************************************************/
+
+public class PersistenceBenchmark extends Benchmark {
+
+	private File dataFolder;
+	private Jukebox jukebox;
+	private AllAccounts accounts;
+
+	@Override
+	public String getName() {
+		return "files";
+	}//END getName()
+
+	@Override
+	public String[] getOperations() {
+		return new String[] { "loadSongList", "saveSongList", "loadAccountList", "saveAccountList" };
+	}//END getOperations()
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 1000, 100000, 1000000 };
+	}//END getSizes()
+
+	@Override
+	public void setUp(int size) throws IOException {
+		dataFolder = Files.createTempDirectory("jukebox-bench").toFile();
+		ArrayList<Song> songs = new ArrayList<Song>(size);
+		ArrayList<User> users = new ArrayList<User>(size);
+		for(int i=0; i<size; i++) {
+			songs.add(new Song("Song " + i, Song.formatTime(i % 600), "Artist " + (i % 5000), "Song" + i + ".mp3", "0"));
+			users.add(new User("user" + i, "pass" + i, false, 60*1500, 0));
+		}
+		writeSnapshot("SongList", songs);
+		writeSnapshot("SongQueue", new ArrayList<String>());
+		writeSnapshot("AccountList", users);
+		jukebox = new Jukebox(dataFolder);
+		accounts = new AllAccounts(dataFolder);
+		accounts.writeAccountsToFile(); //Loads measure the current format, not the list of Users
+	}//END setUp()
+
+	/**********************************************************************************************
+	 * METHOD: writeSnapshot()
+	 * PURPOSE: Writes a starting file in the snapshot format: the object, then a journal LSN.
+	 **********************************************************************************************/
+	private void writeSnapshot(String name, Object contents) throws IOException {
+		ObjectOutputStream objectOutput = new ObjectOutputStream(new FileOutputStream(new File(dataFolder, name)));
+		objectOutput.writeObject(contents);
+		objectOutput.writeLong(0);
+		objectOutput.close();
+	}//END writeSnapshot()
+
+	@Override
+	public Object run(int operation, long invocation) {
+		switch(operation) {
+			case 0:
+				return new Jukebox(dataFolder);
+			case 1:
+				jukebox.writeSongsToFile();
+				return jukebox;
+			case 2:
+				return new AllAccounts(dataFolder);
+			default:
+				accounts.writeAccountsToFile();
+				return accounts;
+		}
+	}//END run()
+
+	@Override
+	public void tearDown() {
+		jukebox = null;
+		accounts = null;
+		File[] files = dataFolder.listFiles();
+		if(files != null) {
+			for(File file : files) { file.delete(); }
+		}
+		dataFolder.delete();
+	}//END tearDown()
+
+}//END PersistenceBenchmark class
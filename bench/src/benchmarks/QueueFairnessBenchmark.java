@@ -0,0 +1,197 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import model.FairShareScheduler;
+import model.FifoScheduler;
+import model.PlayQueue;
+import model.QueueScheduler;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: QueueFairnessBenchmark
+ * DESCRIPTION:
+ * Compares how long songs wait to play in a busy room under first come first served and under
+ * the FairShareScheduler. A simulated evening starts with a group of users queueing many songs
+ * each, while other users arrive at random through the evening and queue one song each; songs
+ * are played back to back on a simulated clock through a real PlayQueue. The first table shows
+ * the wait from selection to the start of the song for each kind of user under each policy. The
+ * second times a selection and the end of a song (offer() and removeHead()) with many songs
+ * already waiting from many users, so the scheduler's cost can be seen at queue lengths no room
+ * will reach.
+ *
+ * Usage: QueueFairnessBenchmark [groupUsers] [songsPerGroupUser] [otherUsers] [hours]
+ **************************************************************************************************/
+
+public class QueueFairnessBenchmark {
+
+	private static final int[] PENDING = { 1000, 10000, 50000 };
+	private static final int TIMED_OPERATIONS = 200000;
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Simulates the evening under each policy and prints both tables.
+	 * @param args The optional group size, songs per group user, other users and hours.
+	 **********************************************************************************************/
+	public static void main(String[] args) {
+		int groupUsers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+		int groupSongs = (args.length > 1) ? Integer.parseInt(args[1]) : 25;
+		int otherUsers = (args.length > 2) ? Integer.parseInt(args[2]) : 60;
+		int hours = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+		ArrayList<Request> requests = evening(groupUsers, groupSongs, otherUsers, hours);
+
+		System.out.println(String.format("%d group users x %d songs, %d other users over %d hours",
+				groupUsers, groupSongs, otherUsers, hours));
+		System.out.println(String.format("%-6s %-6s %6s %10s %10s %10s", "Policy", "Users", "Songs",
+				"p50 (min)", "p95 (min)", "max (min)"));
+		printWaits("FIFO", simulate(new FifoScheduler(), requests));
+		printWaits("Fair", simulate(new FairShareScheduler(true), requests));
+
+		System.out.println();
+		System.out.println(String.format("%-6s %10s %18s", "Policy", "Pending", "ns/select+end"));
+		for(int pending : PENDING) {
+			timeOperations(new FifoScheduler(), pending); //First runs warm up the JIT
+			timeOperations(new FairShareScheduler(true), pending);
+		}
+		for(int pending : PENDING) {
+			System.out.println(String.format("%-6s %10d %18.0f", "FIFO", pending,
+					timeOperations(new FifoScheduler(), pending)));
+			System.out.println(String.format("%-6s %10d %18.0f", "Fair", pending,
+					timeOperations(new FairShareScheduler(true), pending)));
+		}
+	}//END main()
+
+	/**********************************************************************************************
+	 * METHOD: evening()
+	 * PURPOSE: Builds the requests of one evening in the order they are made.
+	 **********************************************************************************************/
+	private static ArrayList<Request> evening(int groupUsers, int groupSongs, int otherUsers, int hours) {
+		Random random = new Random(42);
+		ArrayList<Request> requests = new ArrayList<Request>();
+		for(int song=0; song<groupSongs; song++) { //The group queues its songs in the first minute
+			for(int user=0; user<groupUsers; user++) {
+				requests.add(new Request("group" + user, true, random.nextDouble() * 60, 150 + random.nextInt(120)));
+			}
+		}
+		for(int user=0; user<otherUsers; user++) {
+			requests.add(new Request("user" + user, false, random.nextDouble() * hours * 3600,
+					150 + random.nextInt(120)));
+		}
+		Collections.sort(requests, new ArrivalOrder());
+		for(int i=0; i<requests.size(); i++) { requests.get(i).title = "Song " + i; }
+		return requests;
+	}//END evening()
+
+	/**********************************************************************************************
+	 * METHOD: simulate()
+	 * PURPOSE: Plays the evening through a PlayQueue on a simulated clock.
+	 * @return The wait of every request in seconds, group requests first, then the others.
+	 **********************************************************************************************/
+	private static double[][] simulate(QueueScheduler scheduler, ArrayList<Request> requests) {
+		PlayQueue queue = new PlayQueue(scheduler);
+		HashMap<String, Request> byTitle = new HashMap<String, Request>();
+		ArrayList<Double> groupWaits = new ArrayList<Double>();
+		ArrayList<Double> otherWaits = new ArrayList<Double>();
+		double songEnds = 0;
+		int next = 0;
+		while(next < requests.size() || queue.size() > 0) {
+			Request arriving = (next < requests.size()) ? requests.get(next) : null;
+			double now;
+			if(arriving != null && (queue.size() == 0 || arriving.arrival <= songEnds)) {
+				now = arriving.arrival;
+				byTitle.put(arriving.title, arriving);
+				next++;
+				if(queue.offer(arriving.title, arriving.username, false, arriving.seconds) > 0) {
+					continue;
+				}
+			} else {
+				now = songEnds;
+				if(queue.removeHead() == 0) {
+					continue;
+				}
+			}
+			Request playing = byTitle.remove(queue.head(1).get(0)); //A new song starts now
+			(playing.group ? groupWaits : otherWaits).add(now - playing.arrival);
+			songEnds = now + playing.seconds;
+		}
+		return new double[][] { sorted(groupWaits), sorted(otherWaits) };
+	}//END simulate()
+
+	/**********************************************************************************************
+	 * METHOD: timeOperations()
+	 * PURPOSE: Fills a queue with songs from a thousand users, then times selections and song
+	 *     ends in pairs so the queue length stays the same.
+	 * @return The nanoseconds per pair.
+	 **********************************************************************************************/
+	private static double timeOperations(QueueScheduler scheduler, int pending) {
+		PlayQueue queue = new PlayQueue(scheduler);
+		String[] usernames = new String[1000];
+		for(int i=0; i<usernames.length; i++) { usernames[i] = "user" + i; }
+		for(int i=0; i<pending; i++) { queue.offer("Song " + i, usernames[i % usernames.length], false, 180); }
+		long start = System.nanoTime();
+		for(int i=0; i<TIMED_OPERATIONS; i++) {
+			queue.offer("Song " + i, usernames[(i * 7) % usernames.length], false, 120 + i % 180);
+			queue.removeHead();
+		}
+		return (System.nanoTime() - start) / (double) TIMED_OPERATIONS;
+	}//END timeOperations()
+
+	/**********************************************************************************************
+	 * METHOD: printWaits()
+	 * PURPOSE: Prints the wait percentiles of both kinds of user under one policy.
+	 **********************************************************************************************/
+	private static void printWaits(String policy, double[][] waits) {
+		String[] kinds = { "Group", "Others" };
+		for(int i=0; i<kinds.length; i++) {
+			double[] wait = waits[i];
+			System.out.println(String.format("%-6s %-6s %6d %10.1f %10.1f %10.1f", policy, kinds[i], wait.length,
+					percentile(wait, 0.50) / 60, percentile(wait, 0.95) / 60, percentile(wait, 1.0) / 60));
+		}
+	}//END printWaits()
+
+	private static double[] sorted(ArrayList<Double> values) {
+		double[] sorted = new double[values.size()];
+		for(int i=0; i<sorted.length; i++) { sorted[i] = values.get(i); }
+		Arrays.sort(sorted);
+		return sorted;
+	}//END sorted()
+
+	private static double percentile(double[] sorted, double fraction) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}//END percentile()
+
+	/**********************************************************************************************
+	 * CLASS: Request
+	 * PURPOSE: One song selected during the simulated evening.
+	 **********************************************************************************************/
+	private static class Request {
+		private String username;
+		private boolean group;
+		private double arrival; //Seconds into the evening
+		private int seconds;
+		private String title;
+
+		private Request(String username, boolean group, double arrival, int seconds) {
+			this.username = username;
+			this.group = group;
+			this.arrival = arrival;
+			this.seconds = seconds;
+		}//END Request() constructor
+	}//END Request class
+
+	private static class ArrivalOrder implements Comparator<Request> {
+		@Override
+		public int compare(Request first, Request second) {
+			return Double.compare(first.arrival, second.arrival);
+		}//END compare()
+	}//END ArrivalOrder class
+
+}//END QueueFairnessBenchmark class
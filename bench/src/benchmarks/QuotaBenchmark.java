@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.Properties;
+import model.AllAccounts;
+import model.Jukebox;
+import model.QuotaRules;
+import model.SelectionResult;
+import model.Song;
+import model.TimedPlaybackEngine;
+import model.User;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: QuotaBenchmark
+ * DESCRIPTION:
+ * Measures what a venue's QuotaRules add to a selection. "dailyLimits" is Jukebox.selectSong()
+ * with the default rules, which only check the time balance and the two daily limits, the same
+ * as SelectionBenchmark's selectSong. "venueRules" is selectSong() on a second Jukebox with five
+ * window rules besides those: two per user, one per song, one per artist and a song cooldown.
+ * "take" times QuotaRules.take() alone on the five rules with limits no run reaches, so every
+ * call passes every rule. selectSong() reads the clock, so the windows slide during a run as
+ * they would in a venue. Like SelectionBenchmark it plays through a TimedPlaybackEngine.
+ **************************************************************************************************/
+
+public class QuotaBenchmark extends Benchmark {
+
+	private static final int ARTISTS = 100;
+
+	private Jukebox dailyJukebox;
+	private Jukebox venueJukebox;
+	private QuotaRules passingRules;
+	private User[] dailyUsers;
+	private User[] venueUsers;
+	private String[] titles;
+	private Song[] songs;
+	private LocalDate today;
+	private SelectionResult result = new SelectionResult();
+
+	@Override
+	public String getName() {
+		return "quota";
+	}//END getName()
+
+	@Override
+	public String[] getOperations() {
+		return new String[] { "dailyLimits", "venueRules", "take" };
+	}//END getOperations()
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 1000, 100000 };
+	}//END getSizes()
+
+	@Override
+	public void setUp(int size) {
+		AllAccounts dailyAccounts = new AllAccounts(false);
+		AllAccounts venueAccounts = new AllAccounts(false);
+		dailyJukebox = new Jukebox(false, new TimedPlaybackEngine());
+		venueJukebox = new Jukebox(false, new TimedPlaybackEngine());
+		venueJukebox.setQuotaRules(QuotaRules.compile(rules("2/1h, 5/4h", "2/1h", "20/1h", "10m")));
+		passingRules = QuotaRules.compile(rules("1000000000/1h, 1000000000/4h", "1000000000/1h",
+				"1000000000/1h", "1s"));
+		dailyUsers = new User[size];
+		venueUsers = new User[size];
+		titles = new String[size];
+		songs = new Song[size];
+		for(int i=0; i<size; i++) {
+			dailyAccounts.addAccount("user" + i, "pass", false);
+			venueAccounts.addAccount("user" + i, "pass", false);
+			dailyUsers[i] = dailyAccounts.getUser("user" + i);
+			venueUsers[i] = venueAccounts.getUser("user" + i);
+			titles[i] = "Song " + i;
+			songs[i] = new Song(titles[i], "0:05", "Artist " + (i % ARTISTS), "Capture.mp3", "0");
+			dailyJukebox.addSong(songs[i]);
+			venueJukebox.addSong(new Song(titles[i], "0:05", "Artist " + (i % ARTISTS), "Capture.mp3", "0"));
+		}
+		today = LocalDate.now();
+	}//END setUp()
+
+	@Override
+	public Object run(int operation, long invocation) {
+		int user = (int) (invocation % titles.length);
+		int song = (int) ((invocation*7) % titles.length);
+		if(operation == 0) {
+			return dailyJukebox.selectSong(dailyUsers[user], titles[song], today, result);
+		}
+		if(operation == 1) {
+			return venueJukebox.selectSong(venueUsers[user], titles[song], today, result);
+		}
+		//Time moves a second a call, so each song's cooldown is over before it comes round again
+		return passingRules.take(dailyUsers[user].getUsername(), songs[song], invocation * 1000);
+	}//END run()
+
+	@Override
+	public void tearDown() {
+		dailyJukebox = null;
+		venueJukebox = null;
+		passingRules = null;
+		dailyUsers = null;
+		venueUsers = null;
+		titles = null;
+		songs = null;
+	}//END tearDown()
+
+	//The rules of a venue, with the daily limits left at their defaults
+	private static Properties rules(String userWindows, String songWindows, String artistWindows, String cooldown) {
+		Properties config = new Properties();
+		config.setProperty("user.window", userWindows);
+		config.setProperty("song.window", songWindows);
+		config.setProperty("artist.window", artistWindows);
+		config.setProperty("song.cooldown", cooldown);
+		return config;
+	}//END rules()
+
+}//END QuotaBenchmark class
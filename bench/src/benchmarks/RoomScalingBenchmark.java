@@ -0,0 +1,154 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import model.AllAccounts;
+import model.Room;
+import model.RoomRegistry;
+import model.SelectionOutcome;
+import model.Song;
+import model.User;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: RoomScalingBenchmark
+ * DESCRIPTION:
+ * Measures how song selection throughput grows with the number of rooms in a RoomRegistry. For
+ * each room count (1, 2, 4, ... up to the maximum) a fresh registry with one shard per core is
+ * filled with rooms that each have their own songs and patrons, and every room selects songs on
+ * its own shard as fast as it can for a fixed time. The table shows selections per second, the
+ * speedup over one room and the scaling efficiency (speedup per busy shard, 1.00 is linear).
+ * Most selections after the first few thousand are refused by the daily limits, which is still
+ * a full trip through Jukebox.selectSong().
+ *
+ * Usage: RoomScalingBenchmark [maxRooms] [seconds] [songs] [usersPerRoom]
+ **************************************************************************************************/
+
+public class RoomScalingBenchmark {
+
+	private static final int BURST = 256;
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Runs every room count and prints the table.
+	 * @param args The optional maximum room count, seconds per room count, songs and users.
+	 **********************************************************************************************/
+	public static void main(String[] args) throws InterruptedException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int maxRooms = (args.length > 0) ? Integer.parseInt(args[0]) : 2*cores;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		int songs = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+		int users = (args.length > 3) ? Integer.parseInt(args[3]) : 2000;
+
+		measure(maxRooms, 1, songs, users); //warm up the JIT on every shard
+		System.out.println(String.format("%d shards (cores)", cores));
+		System.out.println(String.format("%6s %16s %8s %10s", "Rooms", "Selections/s", "Speedup", "Efficiency"));
+		double single = 0;
+		for(int rooms=1; rooms<=maxRooms; rooms *= 2) {
+			double perSecond = measure(rooms, seconds, songs, users);
+			if(rooms == 1) { single = perSecond; }
+			double speedup = perSecond/single;
+			System.out.println(String.format("%6d %16.0f %8.2f %10.2f", rooms, perSecond, speedup,
+					speedup/Math.min(rooms, cores)));
+		}
+	}//END main()
+
+	/**********************************************************************************************
+	 * METHOD: measure()
+	 * PURPOSE: Runs one room count for the given time.
+	 * @return The selections per second across every room.
+	 **********************************************************************************************/
+	private static double measure(int roomCount, int seconds, int songs, int users) throws InterruptedException {
+		AllAccounts accounts = new AllAccounts(false);
+		RoomRegistry registry = new RoomRegistry(null, accounts);
+		ArrayList<Driver> drivers = new ArrayList<Driver>();
+		for(int r=0; r<roomCount; r++) {
+			Room room = registry.openRoom("room" + r);
+			String[] titles = new String[songs];
+			for(int i=0; i<songs; i++) {
+				titles[i] = "Song " + i;
+				room.getJukebox().addSong(new Song(titles[i], Song.formatTime(5 + i % 300), "Artist " + (i % 100),
+						"Capture.mp3", "0"));
+			}
+			User[] patrons = new User[users];
+			for(int i=0; i<users; i++) {
+				String username = "room" + r + "user" + i;
+				accounts.addAccount(username, "pass", false);
+				patrons[i] = accounts.getUser(username);
+			}
+			drivers.add(new Driver(room, titles, patrons));
+		}
+		//The first two selections in a room open media to play and buffer; keep them out of the timing
+		ArrayList<Future<SelectionOutcome>> firstSelections = new ArrayList<Future<SelectionOutcome>>();
+		for(Driver driver : drivers) {
+			for(int i=0; i<2; i++) {
+				firstSelections.add(driver.room.selectSong(driver.patrons[i], driver.titles[i], driver.today));
+			}
+		}
+		for(Future<SelectionOutcome> selection : firstSelections) {
+			try {
+				selection.get();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+
+		CountDownLatch finished = new CountDownLatch(roomCount);
+		long start = System.nanoTime();
+		long deadline = start + seconds*1000000000L;
+		for(Driver driver : drivers) { driver.start(deadline, finished); }
+		finished.await();
+		long elapsed = System.nanoTime() - start;
+
+		long selections = 0;
+		for(Driver driver : drivers) { selections += driver.selections; }
+		registry.close();
+		return selections/(elapsed/1e9);
+	}//END measure()
+
+	/**********************************************************************************************
+	 * CLASS: Driver
+	 * PURPOSE: Selects songs in one room on the room's shard, a burst at a time, until the
+	 *     deadline. Each burst resubmits itself so other rooms on the same shard get a turn.
+	 **********************************************************************************************/
+	private static class Driver implements Runnable {
+		private Room room;
+		private String[] titles;
+		private User[] patrons;
+		private LocalDate today = LocalDate.now();
+		private long deadline;
+		private CountDownLatch finished;
+		private long selections; //Only changed on the room's shard
+
+		private Driver(Room room, String[] titles, User[] patrons) {
+			this.room = room;
+			this.titles = titles;
+			this.patrons = patrons;
+		}//END Driver() constructor
+
+		private void start(long deadline, CountDownLatch finished) {
+			this.deadline = deadline;
+			this.finished = finished;
+			room.execute(this);
+		}//END start()
+
+		@Override
+		public void run() {
+			for(int i=0; i<BURST; i++) {
+				long n = 2 + selections++; //After the two untimed selections
+				room.getJukebox().selectSong(patrons[(int) (n % patrons.length)],
+						titles[(int) (n*7919 % titles.length)], today, null);
+			}
+			if(System.nanoTime() < deadline) {
+				room.execute(this);
+			} else {
+				finished.countDown();
+			}
+		}//END run()
+	}//END Driver class
+
+}//END RoomScalingBenchmark class
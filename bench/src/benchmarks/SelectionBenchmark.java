@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import model.AllAccounts;
+import model.Jukebox;
+import model.SelectionResult;
+import model.Song;
+import model.TimedPlaybackEngine;
+import model.User;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SelectionBenchmark
+ * DESCRIPTION:
+ * Measures Jukebox.checkSongAvailability(), which returns a message, and Jukebox.selectSong(),
+ * which fills in a reused SelectionResult, with 'size' users choosing among 'size' songs. Users
+ * and songs are picked in different strides, so a run mixes confirmed selections with each of
+ * the daily limit rejections, the same as a busy day. The Jukebox times its songs with a
+ * TimedPlaybackEngine, so no JavaFX media runtime is needed.
+ **************************************************************************************************/
+
+public class SelectionBenchmark extends Benchmark {
+
+	private Jukebox jukebox;
+	private User[] users;
+	private String[] titles;
+	private LocalDate today;
+	private SelectionResult result = new SelectionResult();
+
+	@Override
+	public String getName() {
+		return "jukebox";
+	}//END getName()
+
+	@Override
+	public String[] getOperations() {
+		return new String[] { "checkSongAvailability", "selectSong" };
+	}//END getOperations()
+
+	@Override
+	public int[] getSizes() {
+		return new int[] { 1000, 100000, 1000000 };
+	}//END getSizes()
+
+	@Override
+	public void setUp(int size) {
+		AllAccounts accounts = new AllAccounts(false);
+		jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		users = new User[size];
+		titles = new String[size];
+		for(int i=0; i<size; i++) {
+			accounts.addAccount("user" + i, "pass", false);
+			users[i] = accounts.getUser("user" + i);
+			titles[i] = "Song " + i;
+			jukebox.addSong(new Song(titles[i], "0:05", "Artist", "Capture.mp3", "0"));
+		}
+		today = LocalDate.now();
+	}//END setUp()
+
+	@Override
+	public Object run(int operation, long invocation) {
+		User user = users[(int) (invocation % users.length)];
+		String title = titles[(int) ((invocation*7) % titles.length)];
+		if(operation == 0) {
+			return jukebox.checkSongAvailability(user, title, today);
+		}
+		return jukebox.selectSong(user, title, today, result);
+	}//END run()
+
+	@Override
+	public void tearDown() {
+		jukebox = null;
+		users = null;
+		titles = null;
+	}//END tearDown()
+
+}//END SelectionBenchmark class
@@ -0,0 +1,209 @@
+package benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+import model.AllAccounts;
+import model.Jukebox;
+import model.Song;
+import model.TimedPlaybackEngine;
+import server.JukeboxServer;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: ServerLoadTest
+ * DESCRIPTION:
+ * Starts a JukeboxServer on a free local port and drives it with many kiosk clients at once for
+ * a fixed time. Each client signs in as its own user and then loops over a mix of requests:
+ * searches, queue reads, song list pages and song selections. The test prints requests per
+ * second, latency percentiles and the number of replies with each status code.
+ *
+ * Usage: ServerLoadTest [clients] [seconds] [songs]
+ **************************************************************************************************/
+
+public class ServerLoadTest {
+
+	private static final long WARMUP_NANOS = 2000000000L;
+	private static final String[] SEARCHES = { "song 1", "art", "song 42", "artist 7", "so", "capture" };
+
+	private String baseUrl;
+	private AtomicLongArray statusCounts = new AtomicLongArray(600);
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Runs the load test and prints its results.
+	 * @param args The optional client count, duration in seconds and song count.
+	 **********************************************************************************************/
+	public static void main(String[] args) throws Exception {
+		int clients = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int songs = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+
+		AllAccounts accounts = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		for(int i=0; i<clients; i++) { accounts.addAccount("kiosk" + i, "pass" + i, false); }
+		for(int i=0; i<songs; i++) {
+			jukebox.addSong(new Song("Song " + i, Song.formatTime(5 + i % 300), "Artist " + (i % 100), "Capture.mp3", "0"));
+		}
+		JukeboxServer server = new JukeboxServer(jukebox, accounts, 0);
+		server.start();
+		try {
+			new ServerLoadTest("http://localhost:" + server.getPort()).run(clients, seconds, songs);
+		} finally {
+			server.stop();
+		}
+	}//END main()
+
+	/**********************************************************************************************
+	 * METHOD: ServerLoadTest()
+	 * PURPOSE: Constructs a load test against a running server.
+	 * @param baseUrl The String URL of the server, without a trailing slash.
+	 **********************************************************************************************/
+	public ServerLoadTest(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}//END ServerLoadTest() constructor
+
+	/**********************************************************************************************
+	 * METHOD: run()
+	 * PURPOSE: Runs the clients for the given time and prints the results.
+	 **********************************************************************************************/
+	private void run(int clients, int seconds, int songs) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Client[] workers = new Client[clients];
+		long measureFrom = System.nanoTime() + WARMUP_NANOS;
+		long deadline = measureFrom + seconds*1000000000L;
+		for(int i=0; i<clients; i++) {
+			workers[i] = new Client(i, songs, start, measureFrom, deadline);
+			workers[i].start();
+		}
+		start.countDown();
+		for(Client worker : workers) { worker.join(); }
+
+		int total = 0;
+		for(Client worker : workers) { total += worker.count; }
+		long[] latencies = new long[total];
+		int position = 0;
+		for(Client worker : workers) {
+			System.arraycopy(worker.latencies, 0, latencies, position, worker.count);
+			position += worker.count;
+		}
+		Arrays.sort(latencies);
+
+		System.out.println(String.format("%d clients, %d s: %d requests, %.0f requests/s", clients, seconds,
+				total, total/(double) seconds));
+		if(total > 0) {
+			System.out.println(String.format("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f",
+					percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+					percentile(latencies, 0.999), latencies[total - 1]/1e6));
+		}
+		StringBuilder statuses = new StringBuilder("status codes:");
+		for(int status=0; status<statusCounts.length(); status++) {
+			if(statusCounts.get(status) > 0) { statuses.append(' ').append(status).append('=').append(statusCounts.get(status)); }
+		}
+		System.out.println(statuses);
+	}//END run()
+
+	/**********************************************************************************************
+	 * METHOD: percentile()
+	 * PURPOSE: Returns a percentile of sorted nanosecond latencies in milliseconds.
+	 **********************************************************************************************/
+	private static double percentile(long[] sorted, double fraction) {
+		int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction*sorted.length) - 1);
+		return sorted[Math.max(0, index)]/1e6;
+	}//END percentile()
+
+	/**********************************************************************************************
+	 * METHOD: request()
+	 * PURPOSE: Sends one request and returns its body, counting its status code.
+	 **********************************************************************************************/
+	private String request(String method, String path, String token, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		if(token != null) { connection.setRequestProperty("Authorization", "Bearer " + token); }
+		if(body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			OutputStream out = connection.getOutputStream();
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+			out.close();
+		}
+		int status = connection.getResponseCode();
+		statusCounts.incrementAndGet(Math.min(status, statusCounts.length() - 1));
+		InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream reply = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while(in != null && (read = in.read(buffer)) > 0) { reply.write(buffer, 0, read); }
+		if(in != null) { in.close(); } //Reading to the end lets the connection be reused
+		return new String(reply.toByteArray(), StandardCharsets.UTF_8);
+	}//END request()
+
+	/**********************************************************************************************
+	 * CLASS: Client
+	 * PURPOSE: One kiosk sending requests back to back until the deadline.
+	 **********************************************************************************************/
+	private class Client extends Thread {
+		private int id;
+		private int songs;
+		private CountDownLatch start;
+		private long measureFrom;
+		private long deadline;
+		private long[] latencies = new long[1024];
+		private int count;
+
+		private Client(int id, int songs, CountDownLatch start, long measureFrom, long deadline) {
+			super("Kiosk-" + id);
+			this.id = id;
+			this.songs = songs;
+			this.start = start;
+			this.measureFrom = measureFrom;
+			this.deadline = deadline;
+		}//END Client() constructor
+
+		@Override
+		public void run() {
+			try {
+				start.await();
+				String login = request("POST", "/api/login", null,
+						"{\"username\":\"kiosk" + id + "\",\"password\":\"pass" + id + "\"}");
+				String token = login.substring(login.indexOf("\"token\":\"") + 9, login.indexOf("\",\"username\""));
+				long i = id;
+				while(true) {
+					long begin = System.nanoTime();
+					if(begin >= deadline) {
+						break;
+					}
+					int kind = (int) (i % 10);
+					if(kind < 4) {
+						request("GET", "/api/search?q=" + SEARCHES[(int) (i % SEARCHES.length)].replace(' ', '+'), null, null);
+					} else if(kind < 7) {
+						request("GET", "/api/queue?limit=20", null, null);
+					} else if(kind < 9) {
+						request("GET", "/api/songs?offset=" + (i*37 % songs) + "&limit=50", null, null);
+					} else {
+						request("POST", "/api/queue", token, "{\"title\":\"Song " + (i*7919 % songs) + "\"}");
+					}
+					long end = System.nanoTime();
+					if(begin >= measureFrom) { record(end - begin); } //Requests during warmup are not counted
+					i++;
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}//END run()
+
+		private void record(long nanos) {
+			if(count == latencies.length) { latencies = Arrays.copyOf(latencies, count*2); }
+			latencies[count++] = nanos;
+		}//END record()
+	}//END Client class
+
+}//END ServerLoadTest class
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import model.Song;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SongBenchmark
+ * DESCRIPTION:
+ * Measures building a Song, which parses its "0:00" play time, and formatting a play time back
+ * into that form. The inputs cycle through a fixed set built before measuring.
+ **************************************************************************************************/
+
+public class SongBenchmark extends Benchmark {
+
+	private static final int INPUTS = 1024;
+
+	private String[] titles;
+	private String[] times;
+
+	@Override
+	public String getName() {
+		return "song";
+	}//END getName()
+
+	@Override
+	public String[] getOperations() {
+		return new String[] { "construct", "formatTime" };
+	}//END getOperations()
+
+	@Override
+	public void setUp(int size) {
+		titles = new String[INPUTS];
+		times = new String[INPUTS];
+		for(int i=0; i<INPUTS; i++) {
+			titles[i] = "Song " + i;
+			times[i] = Song.formatTime(i % 600);
+		}
+	}//END setUp()
+
+	@Override
+	public Object run(int operation, long invocation) {
+		int input = (int) (invocation % INPUTS);
+		if(operation == 0) {
+			return new Song(titles[input], times[input], "Artist", "Capture.mp3", "0");
+		}
+		return Song.formatTime(input % 600);
+	}//END run()
+
+}//END SongBenchmark class
@@ -0,0 +1,340 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Random;
+import model.AllAccounts;
+import model.FairShareScheduler;
+import model.Jukebox;
+import model.QueueEntry;
+import model.SelectionOutcome;
+import model.SelectionResult;
+import model.SimulatedClock;
+import model.Song;
+import model.User;
+import model.VirtualPlaybackEngine;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: TrafficSimulator
+ * DESCRIPTION:
+ * Replays days of bar traffic through a real Jukebox and AllAccounts in moments. The Jukebox runs
+ * on a SimulatedClock with a VirtualPlaybackEngine, so songs end when the simulated clock reaches
+ * them and no media runtime is needed. The Jukebox and the accounts keep their counts by the days
+ * of that clock alone, so a simulation never moves the day of anything else in the same JVM. Groups of patrons arrive at random through the day, busiest
+ * in the evening, and each patron in a group chooses one to three songs a few seconds apart, so
+ * selections come in bursts. Songs are chosen with Zipf popularity, so a few songs are asked for
+ * far more than the rest. The same seed always gives the same traffic and results.
+ *
+ * The report shows the events simulated per second of real time (selections and song ends), how
+ * many selections were refused for each reason, and how long queued songs waited in simulated
+ * time from selection until they started playing.
+ *
+ * Usage: TrafficSimulator [users] [songs] [days] [peakGroupsPerHour] [--fair] [--seed n]
+ **************************************************************************************************/
+
+public class TrafficSimulator {
+
+	private static final long HOUR = 60*60*1000L;
+	private static final long DAY = 24*HOUR;
+	private static final double ZIPF_EXPONENT = 1.0;
+	private static final int MAX_GROUP = 8;
+
+	//Share of the peak arrival rate in each hour of the day, busiest late in the evening
+	private static final double[] HOURLY_RATE = {
+		0.60, 0.40, 0.15, 0.02, 0.00, 0.00, 0.00, 0.00, 0.02, 0.02, 0.05, 0.10,
+		0.20, 0.20, 0.10, 0.10, 0.15, 0.30, 0.50, 0.70, 0.85, 1.00, 1.00, 0.85 };
+
+	private final Random random;
+	private final SimulatedClock clock;
+	private final TimingEngine engine;
+	private final Jukebox jukebox;
+	private final User[] users;
+	private final String[] titles;
+	private final double[] aliasChance; //Zipf popularity as an alias table: keep a song with its
+	private final int[] alias;          //chance, otherwise take its alias
+	private final SelectionResult result = new SelectionResult();
+
+	private long[] pendingAt = new long[1024]; //Selections of the hour being simulated
+	private int[] pendingUser = new int[1024];
+	private int[] pendingSong = new int[1024];
+	private int pending;
+
+	private final long[] outcomes = new long[SelectionOutcome.values().length];
+	private long[] selectedAt = new long[1024]; //Simulated time each queue entry was selected
+	private long[] startedIds = new long[1024]; //Queue entry of each song started, in order
+	private long[] startedAt = new long[1024];
+	private int started;
+	private long songEnds;
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Runs the simulation and prints the report.
+	 * @param args The optional users, songs, days and peak group arrivals per hour, then flags.
+	 **********************************************************************************************/
+	public static void main(String[] args) {
+		int[] sizes = { 5000, 20000, 7, 20 };
+		boolean fair = false;
+		long seed = 42;
+		int positional = 0;
+		for(int i=0; i<args.length; i++) {
+			if(args[i].equals("--fair")) {
+				fair = true;
+			} else if(args[i].equals("--seed") && i + 1 < args.length) {
+				seed = Long.parseLong(args[++i]);
+			} else if(positional < sizes.length) {
+				sizes[positional++] = Integer.parseInt(args[i]);
+			}
+		}
+
+		TrafficSimulator simulator = new TrafficSimulator(sizes[0], sizes[1], fair, seed);
+		long start = System.nanoTime();
+		long selections = simulator.run(sizes[2], sizes[3]);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		simulator.report(sizes, fair, selections, seconds);
+	}//END main()
+
+	/**********************************************************************************************
+	 * METHOD: TrafficSimulator()
+	 * PURPOSE: Builds a Jukebox with 'songCount' songs and 'userCount' accounts, both on a clock
+	 *     stopped at midnight (UTC) today.
+	 **********************************************************************************************/
+	private TrafficSimulator(int userCount, int songCount, boolean fair, long seed) {
+		random = new Random(seed);
+		clock = new SimulatedClock(LocalDate.now(ZoneOffset.UTC).toEpochDay() * DAY);
+		engine = new TimingEngine();
+		jukebox = new Jukebox(false, engine);
+		jukebox.setClock(clock);
+		if(fair) {
+			jukebox.setQueueScheduler(new FairShareScheduler(true));
+		}
+
+		titles = new String[songCount];
+		double[] weights = new double[songCount];
+		for(int i=0; i<songCount; i++) {
+			titles[i] = "Song " + i;
+			jukebox.addSong(new Song(titles[i], Song.formatTime(150 + random.nextInt(150)), "Artist " + (i % 500),
+					"Capture.mp3", "0"));
+			weights[i] = 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+		}
+		aliasChance = new double[songCount];
+		alias = new int[songCount];
+		buildAliasTable(weights);
+
+		AllAccounts accounts = new AllAccounts(clock);
+		users = new User[userCount];
+		for(int i=0; i<userCount; i++) {
+			accounts.addAccount("patron" + i, "pass", false);
+			users[i] = accounts.getUser("patron" + i);
+		}
+	}//END TrafficSimulator() constructor
+
+	/**********************************************************************************************
+	 * METHOD: run()
+	 * PURPOSE: Simulates the days an hour at a time. Group arrivals follow a Poisson process whose
+	 *     rate follows HOURLY_RATE (drawn at the peak rate and kept in proportion to the hour's
+	 *     rate). Each hour's selections are sorted by time before they are made, and those that a
+	 *     late group makes after the hour ends are carried into the next one.
+	 * @return The number of selections made.
+	 **********************************************************************************************/
+	private long run(int days, int peakGroupsPerHour) {
+		long end = clock.millis() + days * DAY;
+		double meanGap = HOUR / (double) Math.max(1, peakGroupsPerHour);
+		long arrival = clock.millis() + gap(meanGap);
+		long selections = 0;
+		for(long hour = clock.millis(); hour < end; hour += HOUR) {
+			for(; arrival < hour + HOUR; arrival += gap(meanGap)) {
+				if(random.nextDouble() < HOURLY_RATE[(int) ((arrival % DAY) / HOUR)]) {
+					addGroup(arrival);
+				}
+			}
+
+			long[] order = new long[pending];
+			for(int i=0; i<pending; i++) { order[i] = ((pendingAt[i] - hour) << 32) | i; }
+			Arrays.sort(order);
+			int made = 0;
+			while(made < order.length && (order[made] >>> 32) < HOUR) {
+				int i = (int) order[made++];
+				select(users[pendingUser[i]], titles[pendingSong[i]], pendingAt[i]);
+			}
+			selections += made;
+			carry(order, made);
+		}
+		playUntil(end);
+		return selections;
+	}//END run()
+
+	//The wait until the next group arrives at the peak rate
+	private long gap(double meanGap) {
+		return 1 + (long) (-Math.log(1 - random.nextDouble()) * meanGap);
+	}//END gap()
+
+	/**********************************************************************************************
+	 * METHOD: addGroup()
+	 * PURPOSE: Adds the selections of a group that arrives at a time: one to MAX_GROUP patrons,
+	 *     each choosing one to three songs, five to twenty seconds apart.
+	 **********************************************************************************************/
+	private void addGroup(long arrival) {
+		long turn = arrival;
+		int groupSize = 1;
+		while(groupSize < MAX_GROUP && random.nextBoolean()) { groupSize++; }
+		for(int member=0; member<groupSize; member++) {
+			int user = random.nextInt(users.length);
+			int songs = 1 + random.nextInt(3);
+			for(int i=0; i<songs; i++) {
+				turn += 5000 + random.nextInt(15000);
+				if(pending == pendingAt.length) {
+					pendingAt = Arrays.copyOf(pendingAt, 2*pending);
+					pendingUser = Arrays.copyOf(pendingUser, 2*pending);
+					pendingSong = Arrays.copyOf(pendingSong, 2*pending);
+				}
+				pendingAt[pending] = turn;
+				pendingUser[pending] = user;
+				pendingSong[pending++] = zipf();
+			}
+		}
+	}//END addGroup()
+
+	//Moves the selections after 'made' in 'order' to the front of the pending arrays
+	private void carry(long[] order, int made) {
+		int carried = order.length - made;
+		long[] at = new long[carried];
+		int[] user = new int[carried];
+		int[] song = new int[carried];
+		for(int c=0; c<carried; c++) {
+			int i = (int) order[made + c];
+			at[c] = pendingAt[i];
+			user[c] = pendingUser[i];
+			song[c] = pendingSong[i];
+		}
+		System.arraycopy(at, 0, pendingAt, 0, carried);
+		System.arraycopy(user, 0, pendingUser, 0, carried);
+		System.arraycopy(song, 0, pendingSong, 0, carried);
+		pending = carried;
+	}//END carry()
+
+	/**********************************************************************************************
+	 * METHOD: select()
+	 * PURPOSE: Ends the songs due before a selection, then makes it at its simulated time.
+	 **********************************************************************************************/
+	private void select(User user, String title, long millis) {
+		playUntil(millis);
+		clock.setMillis(millis);
+		SelectionOutcome outcome = jukebox.selectSong(user, title, jukebox.getDayEpoch().today(), result);
+		outcomes[outcome.ordinal()]++;
+		if(outcome.isQueued()) {
+			long id = result.getEntryId();
+			if(id >= selectedAt.length) { selectedAt = Arrays.copyOf(selectedAt, (int) Math.max(id + 1, 2*id)); }
+			selectedAt[(int) id] = millis;
+		}
+	}//END select()
+
+	//Ends every song due to end by 'millis', each at the moment it is due
+	private void playUntil(long millis) {
+		while(engine.getSongEndMillis() <= millis) {
+			clock.setMillis(engine.getSongEndMillis());
+			engine.endSong();
+			songEnds++;
+		}
+	}//END playUntil()
+
+	//Picks a song index with Zipf popularity in constant time
+	private int zipf() {
+		int song = random.nextInt(alias.length);
+		return (random.nextDouble() < aliasChance[song]) ? song : alias[song];
+	}//END zipf()
+
+	/**********************************************************************************************
+	 * METHOD: buildAliasTable()
+	 * PURPOSE: Builds Vose's alias table for the song weights: each slot keeps its own song with
+	 *     some chance and gives the rest of its share to one heavier song.
+	 **********************************************************************************************/
+	private void buildAliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for(double weight : weights) { total += weight; }
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		for(int i=0; i<n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if(scaled[i] < 1) { small[smallCount++] = i; } else { large[largeCount++] = i; }
+		}
+		while(smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			aliasChance[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] -= 1 - scaled[less];
+			if(scaled[more] < 1) { small[smallCount++] = more; } else { large[largeCount++] = more; }
+		}
+		while(largeCount > 0) { aliasChance[large[--largeCount]] = 1; }
+		while(smallCount > 0) { aliasChance[small[--smallCount]] = 1; } //Only left by rounding
+	}//END buildAliasTable()
+
+	/**********************************************************************************************
+	 * METHOD: report()
+	 * PURPOSE: Prints the throughput, the outcomes of the selections and the queue waits.
+	 **********************************************************************************************/
+	private void report(int[] sizes, boolean fair, long selections, double seconds) {
+		System.out.println(String.format("%d users, %d songs, %d days, %d groups/hour at the peak, %s queue",
+				sizes[0], sizes[1], sizes[2], sizes[3], fair ? "fair share" : "first come first served"));
+		long events = selections + songEnds;
+		System.out.println(String.format("%d events (%d selections, %d song ends) in %.2f s: %.0f events/s",
+				events, selections, songEnds, seconds, events / seconds));
+		System.out.println();
+		System.out.println(String.format("%-20s %12s %8s", "Outcome", "Selections", "Share"));
+		for(SelectionOutcome outcome : SelectionOutcome.values()) {
+			long count = outcomes[outcome.ordinal()];
+			if(count > 0) {
+				System.out.println(String.format("%-20s %12d %7.1f%%", outcome.name(), count,
+						100.0 * count / Math.max(1, selections)));
+			}
+		}
+		System.out.println();
+		double[] sorted = new double[started];
+		for(int i=0; i<started; i++) {
+			sorted[i] = (startedAt[i] - selectedAt[(int) startedIds[i]]) / 60000.0;
+		}
+		Arrays.sort(sorted);
+		System.out.println(String.format("%d songs played, %d still queued", started, jukebox.getQueueSize()));
+		System.out.println(String.format("Queue wait (min): p50 %.1f  p90 %.1f  p99 %.1f  max %.1f",
+				percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0)));
+	}//END report()
+
+	private static double percentile(double[] sorted, double fraction) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}//END percentile()
+
+	/**********************************************************************************************
+	 * CLASS: TimingEngine
+	 * PURPOSE: Records which queue entry each song started for and when, in simulated time. A
+	 *     song may start inside the selection that queued it, before its id is known to the
+	 *     simulator, so waits are worked out at the end.
+	 **********************************************************************************************/
+	private class TimingEngine extends VirtualPlaybackEngine {
+		private TimingEngine() {
+			super(clock);
+		}//END TimingEngine() constructor
+
+		@Override
+		public synchronized void play(Song song, long queuedNanos) {
+			super.play(song, queuedNanos);
+			QueueEntry head = jukebox.getQueueEntries(1).get(0);
+			if(started == startedIds.length) {
+				startedIds = Arrays.copyOf(startedIds, 2*started);
+				startedAt = Arrays.copyOf(startedAt, 2*started);
+			}
+			startedIds[started] = head.id;
+			startedAt[started++] = clock.millis();
+		}//END play()
+	}//END TimingEngine class
+
+}//END TrafficSimulator class
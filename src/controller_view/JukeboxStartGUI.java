@@ -51,9 +51,11 @@ public class JukeboxStartGUI extends Application {
 		if (result.get() == ButtonType.OK) { // Set up views
 			loginView = new LoginView(true);
 			jukeboxView = new JukeboxView(true);
+			jukeboxView.openJournal(true);
 		} else { // Set up views and reset
 			loginView = new LoginView(false);
 			jukeboxView = new JukeboxView(false);
+			jukeboxView.openJournal(false);
 		}
 		
 		window.setCenter(loginView);
@@ -100,9 +102,11 @@ public class JukeboxStartGUI extends Application {
 			alert.setContentText("Select 'OK' to save current data.\nSelect 'Cancel' to not save.");
 			Optional<ButtonType> result = alert.showAndWait();
 			if (result.get() == ButtonType.OK) {
+				jukeboxView.writeFiles(); // snapshot everything covered by the journal first
 				loginView.writeFiles();
-				jukeboxView.writeFiles();
 			}
+			jukeboxView.closeJournal(result.get() == ButtonType.OK);
+			jukeboxView.close();
 		}//END handle()
 	}//END WindowCloseHandler class
 	
@@ -0,0 +1,57 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Counter
+ * DESCRIPTION:
+ * A count that only goes up, such as selections made or logins refused. It is striped across
+ * cells (a LongAdder) so threads counting at the same time do not fight over one memory location,
+ * and counting never allocates. Counters are created by a MetricsRegistry.
+ **************************************************************************************************/
+
+public class Counter extends Metric {
+
+	private LongAdder count = new LongAdder();
+
+	/**********************************************************************************************
+	 * METHOD: Counter()
+	 * PURPOSE: Constructs a counter at 0. Only a MetricsRegistry creates counters.
+	 **********************************************************************************************/
+	Counter() {
+	}//END Counter() constructor
+
+	/**********************************************************************************************
+	 * METHOD: increment()
+	 * PURPOSE: Adds one to the count.
+	 **********************************************************************************************/
+	public void increment() {
+		count.increment();
+	}//END increment()
+
+	/**********************************************************************************************
+	 * METHOD: add()
+	 * PURPOSE: Adds an amount to the count.
+	 * @param amount The amount to add, 0 or more.
+	 **********************************************************************************************/
+	public void add(long amount) {
+		count.add(amount);
+	}//END add()
+
+	/**********************************************************************************************
+	 * METHOD: get()
+	 * PURPOSE: Returns the count so far.
+	 * @return The count.
+	 **********************************************************************************************/
+	public long get() {
+		return count.sum();
+	}//END get()
+
+	@Override
+	void write(StringBuilder out, String name, String labels) {
+		sample(out, name, labels, null, get());
+	}//END write()
+
+}//END Counter class
@@ -0,0 +1,57 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Gauge
+ * DESCRIPTION:
+ * A value that goes up and down, such as the number of songs waiting in the queues. Gauges are
+ * created by a MetricsRegistry.
+ **************************************************************************************************/
+
+public class Gauge extends Metric {
+
+	private AtomicLong value = new AtomicLong();
+
+	/**********************************************************************************************
+	 * METHOD: Gauge()
+	 * PURPOSE: Constructs a gauge at 0. Only a MetricsRegistry creates gauges.
+	 **********************************************************************************************/
+	Gauge() {
+	}//END Gauge() constructor
+
+	/**********************************************************************************************
+	 * METHOD: set()
+	 * PURPOSE: Sets the value.
+	 * @param newValue The new value.
+	 **********************************************************************************************/
+	public void set(long newValue) {
+		value.set(newValue);
+	}//END set()
+
+	/**********************************************************************************************
+	 * METHOD: add()
+	 * PURPOSE: Adds to the value; a negative amount lowers it.
+	 * @param amount The amount to add.
+	 **********************************************************************************************/
+	public void add(long amount) {
+		value.addAndGet(amount);
+	}//END add()
+
+	/**********************************************************************************************
+	 * METHOD: get()
+	 * PURPOSE: Returns the current value.
+	 * @return The value.
+	 **********************************************************************************************/
+	public long get() {
+		return value.get();
+	}//END get()
+
+	@Override
+	void write(StringBuilder out, String name, String labels) {
+		sample(out, name, labels, null, get());
+	}//END write()
+
+}//END Gauge class
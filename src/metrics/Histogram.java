@@ -0,0 +1,146 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Histogram
+ * DESCRIPTION:
+ * Records durations in nanoseconds into log-linear buckets, the way HdrHistogram does: every
+ * power of two is split into SUB_BUCKETS equal buckets, so any duration from 1 ns to centuries is
+ * kept to within 1/SUB_BUCKETS (12.5%) of its value in a fixed array of counts. Recording is one
+ * bucket calculation and two atomic adds, with no allocation and no lock. It is written out as a
+ * Prometheus summary in seconds: the 50th, 90th, 99th and 99.9th percentiles, sum and count.
+ **************************************************************************************************/
+
+public class Histogram extends Metric {
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = 64*SUB_BUCKETS;
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private LongAdder sumNanos = new LongAdder();
+
+	/**********************************************************************************************
+	 * METHOD: Histogram()
+	 * PURPOSE: Constructs an empty histogram. Only a MetricsRegistry creates histograms.
+	 **********************************************************************************************/
+	Histogram() {
+	}//END Histogram() constructor
+
+	/**********************************************************************************************
+	 * METHOD: record()
+	 * PURPOSE: Records one duration. Negative durations (a clock step) count as 0.
+	 * @param nanos The duration in nanoseconds.
+	 **********************************************************************************************/
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		sumNanos.add(value);
+	}//END record()
+
+	/**********************************************************************************************
+	 * METHOD: recordSince()
+	 * PURPOSE: Records the time from 'startNanos' (a System.nanoTime() reading) until now.
+	 * @param startNanos The System.nanoTime() when the timed work started.
+	 **********************************************************************************************/
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}//END recordSince()
+
+	/**********************************************************************************************
+	 * METHOD: getCount()
+	 * PURPOSE: Returns how many durations have been recorded.
+	 * @return The number of recorded durations.
+	 **********************************************************************************************/
+	public long getCount() {
+		long count = 0;
+		for(int i=0; i<BUCKETS; i++) { count += counts.get(i); }
+		return count;
+	}//END getCount()
+
+	/**********************************************************************************************
+	 * METHOD: getQuantileNanos()
+	 * PURPOSE: Returns the duration at a quantile, to within the bucket precision.
+	 * @param quantile The quantile from 0 to 1 (0.99 is the 99th percentile).
+	 * @return The duration in nanoseconds, or 0 if nothing was recorded.
+	 **********************************************************************************************/
+	public long getQuantileNanos(double quantile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		return quantile(snapshot, total, quantile);
+	}//END getQuantileNanos()
+
+	@Override
+	void write(StringBuilder out, String name, String labels) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		for(double quantile : QUANTILES) {
+			sample(out, name, labels, "quantile=\"" + quantile + "\"", quantile(snapshot, total, quantile)/1e9);
+		}
+		sample(out, name + "_sum", labels, null, sumNanos.sum()/1e9);
+		sample(out, name + "_count", labels, null, total);
+	}//END write()
+
+	/**********************************************************************************************
+	 * METHOD: quantile()
+	 * PURPOSE: Finds the bucket holding a quantile of a snapshot and returns its midpoint.
+	 **********************************************************************************************/
+	private static long quantile(long[] snapshot, long total, double quantile) {
+		if(total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile*total));
+		long seen = 0;
+		for(int i=0; i<BUCKETS; i++) {
+			seen += snapshot[i];
+			if(seen >= rank) {
+				long low = lowestValue(i);
+				return low + (lowestValue(i + 1) - low)/2;
+			}
+		}
+		return lowestValue(BUCKETS - 1);
+	}//END quantile()
+
+	/**********************************************************************************************
+	 * METHOD: bucket()
+	 * PURPOSE: Returns the bucket of a value: values below SUB_BUCKETS have one bucket each, and
+	 *     above that the power of two picks a group and the next SUB_BITS bits the bucket in it.
+	 **********************************************************************************************/
+	static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1)*SUB_BUCKETS + sub;
+	}//END bucket()
+
+	/**********************************************************************************************
+	 * METHOD: lowestValue()
+	 * PURPOSE: Returns the smallest value that falls in a bucket.
+	 **********************************************************************************************/
+	static long lowestValue(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket/SUB_BUCKETS + SUB_BITS - 1;
+		if(exponent > 62) {
+			return Long.MAX_VALUE;
+		}
+		return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+	}//END lowestValue()
+
+}//END Histogram class
@@ -0,0 +1,40 @@
+package metrics;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Metric
+ * DESCRIPTION:
+ * The part shared by every kind of metric: writing its samples as lines of the Prometheus text
+ * format ("name{label="value"} 42").
+ **************************************************************************************************/
+
+abstract class Metric {
+
+	/**********************************************************************************************
+	 * METHOD: write()
+	 * PURPOSE: Appends every sample line of this metric.
+	 * @param out The StringBuilder to append to.
+	 * @param name The String metric name.
+	 * @param labels The String labels without braces ("file=\"SongList\""), or "" for none.
+	 **********************************************************************************************/
+	abstract void write(StringBuilder out, String name, String labels);
+
+	/**********************************************************************************************
+	 * METHOD: sample()
+	 * PURPOSE: Appends one sample line, adding an extra label (such as a quantile) if given.
+	 **********************************************************************************************/
+	static void sample(StringBuilder out, String name, String labels, String extraLabel, Object value) {
+		out.append(name);
+		if(labels.isEmpty() == false || extraLabel != null) {
+			out.append('{').append(labels);
+			if(extraLabel != null) {
+				if(labels.isEmpty() == false) { out.append(','); }
+				out.append(extraLabel);
+			}
+			out.append('}');
+		}
+		out.append(' ').append(value).append('\n');
+	}//END sample()
+
+}//END Metric class
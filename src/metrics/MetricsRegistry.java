@@ -0,0 +1,165 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: MetricsRegistry
+ * DESCRIPTION:
+ * Holds the program's counters, gauges and histograms by name and labels and writes all of them
+ * in the Prometheus text exposition format. Classes register their metrics once, in static
+ * fields, and asking again for the same name and labels returns the same metric, so two classes
+ * can share one. Registering and exporting lock the registry; recording into a metric never does.
+ **************************************************************************************************/
+
+public class MetricsRegistry {
+
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	private LinkedHashMap<String, Family> families = new LinkedHashMap<String, Family>();
+
+	/**********************************************************************************************
+	 * METHOD: getDefault()
+	 * PURPOSE: Returns the registry the Jukebox model records into.
+	 * @return The default MetricsRegistry.
+	 **********************************************************************************************/
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}//END getDefault()
+
+	/**********************************************************************************************
+	 * METHOD: counter()
+	 * PURPOSE: Returns the counter with this name and labels, creating it the first time.
+	 * @param name The String metric name, for example "jukebox_logins_total".
+	 * @param help The String description shown in the export.
+	 * @param labels Label names and values in pairs, for example "result", "success".
+	 * @return The Counter.
+	 **********************************************************************************************/
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) register(name, help, "counter", labels);
+	}//END counter()
+
+	/**********************************************************************************************
+	 * METHOD: gauge()
+	 * PURPOSE: Returns the gauge with this name and labels, creating it the first time.
+	 * @param name The String metric name.
+	 * @param help The String description shown in the export.
+	 * @param labels Label names and values in pairs.
+	 * @return The Gauge.
+	 **********************************************************************************************/
+	public Gauge gauge(String name, String help, String... labels) {
+		return (Gauge) register(name, help, "gauge", labels);
+	}//END gauge()
+
+	/**********************************************************************************************
+	 * METHOD: histogram()
+	 * PURPOSE: Returns the duration histogram with this name and labels, creating it the first
+	 *     time. Its name should end in "_seconds", the unit it is exported in.
+	 * @param name The String metric name.
+	 * @param help The String description shown in the export.
+	 * @param labels Label names and values in pairs.
+	 * @return The Histogram.
+	 **********************************************************************************************/
+	public Histogram histogram(String name, String help, String... labels) {
+		return (Histogram) register(name, help, "summary", labels);
+	}//END histogram()
+
+	/**********************************************************************************************
+	 * METHOD: register()
+	 * PURPOSE: Finds or creates a metric, checking its name, labels and type.
+	 **********************************************************************************************/
+	private synchronized Metric register(String name, String help, String type, String[] labels) {
+		if(name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*") == false) {
+			throw new IllegalArgumentException("Invalid metric name: " + name);
+		}
+		if(labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must be name and value pairs: " + name);
+		}
+		StringBuilder labelText = new StringBuilder();
+		for(int i=0; i<labels.length; i += 2) {
+			if(labels[i].matches("[a-zA-Z_][a-zA-Z0-9_]*") == false) {
+				throw new IllegalArgumentException("Invalid label name: " + labels[i]);
+			}
+			if(i > 0) { labelText.append(','); }
+			labelText.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+		}
+
+		Family family = families.get(name);
+		if(family == null) {
+			family = new Family(help, type);
+			families.put(name, family);
+		} else if(family.type.equals(type) == false) {
+			throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+		}
+		Metric metric = family.metrics.get(labelText.toString());
+		if(metric == null) {
+			if(type.equals("counter")) {
+				metric = new Counter();
+			} else if(type.equals("gauge")) {
+				metric = new Gauge();
+			} else {
+				metric = new Histogram();
+			}
+			family.metrics.put(labelText.toString(), metric);
+		}
+		return metric;
+	}//END register()
+
+	/**********************************************************************************************
+	 * METHOD: writePrometheus()
+	 * PURPOSE: Appends every metric in the Prometheus text format (version 0.0.4).
+	 * @param out The StringBuilder to append to.
+	 * @return The same StringBuilder.
+	 **********************************************************************************************/
+	public StringBuilder writePrometheus(StringBuilder out) {
+		ArrayList<String> names;
+		ArrayList<Family> snapshot;
+		synchronized(this) {
+			names = new ArrayList<String>(families.keySet());
+			snapshot = new ArrayList<Family>(families.size());
+			for(String name : names) { snapshot.add(families.get(name).copy()); }
+		}
+		for(int i=0; i<names.size(); i++) {
+			Family family = snapshot.get(i);
+			out.append("# HELP ").append(names.get(i)).append(' ').append(family.help.replace("\\", "\\\\")
+					.replace("\n", "\\n")).append('\n');
+			out.append("# TYPE ").append(names.get(i)).append(' ').append(family.type).append('\n');
+			for(String labels : family.metrics.keySet()) {
+				family.metrics.get(labels).write(out, names.get(i), labels);
+			}
+		}
+		return out;
+	}//END writePrometheus()
+
+	/**********************************************************************************************
+	 * METHOD: escape()
+	 * PURPOSE: Escapes a label value for the text format.
+	 **********************************************************************************************/
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}//END escape()
+
+	/**********************************************************************************************
+	 * CLASS: Family
+	 * PURPOSE: Every metric sharing one name, keyed by their label text.
+	 **********************************************************************************************/
+	private static class Family {
+		private String help;
+		private String type;
+		private LinkedHashMap<String, Metric> metrics = new LinkedHashMap<String, Metric>();
+
+		private Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}//END Family() constructor
+
+		private Family copy() {
+			Family copy = new Family(help, type);
+			copy.metrics.putAll(metrics);
+			return copy;
+		}//END copy()
+	}//END Family class
+
+}//END MetricsRegistry class
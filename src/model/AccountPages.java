@@ -0,0 +1,713 @@
+package model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: AccountPages
+ * DESCRIPTION:
+ * An account file organised in fixed-size pages, so an account can be found without reading the
+ * rest of the file. Page 0 is the header and pages 1 to bucketCount are hash buckets holding the
+ * accounts whose username hashes to them; a full bucket chains to overflow pages at the end:
+ *     Header - magic, version, page size, bucket count, page count, account count, journal LSN
+ *     Page   - next overflow page (0 for none), bytes used, then records
+ *     Record - flags (live, admin), username hash, time remaining, songs selected, count day,
+ *              then username and password as length-prefixed UTF-8 (0xffff for no password)
+ * A lookup reads only its username's bucket chain. Pages are kept in an LRU cache of a fixed
+ * number of pages; cold pages are evicted, but a changed page is held until it is flushed.
+ * A changed record is rewritten in place when it still fits, otherwise it is moved.
+ *
+ * Pages are only written at a flush, and first to a double-write file, "<file>.redo":
+ *     Redo   - magic, bucket count, page count, account count, journal LSN, page count written,
+ *              then (page number, page) for each changed page, and a CRC32 of it all
+ * Once the redo file is forced to disk the pages and header are written in place. Opening the
+ * file writes the pages in a whole redo file again, mending a flush a crash stopped part way; a
+ * torn redo file means the crash came before any page was written, and it is ignored. A file made
+ * by create() is not in use until it replaces the live one, so it writes its pages directly.
+ **************************************************************************************************/
+
+public class AccountPages {
+
+	private static final int MAGIC = 0x4A425850; //"JBXP"
+	private static final int VERSION = 1;
+	private static final int PAGE_SIZE = 4096;
+	private static final int PAGE_HEADER = 8;
+	private static final int FIXED_FIELDS = 14; //flags, hash, time, songs selected, count day
+	private static final int ACCOUNTS_PER_BUCKET = 48; //About half a page, leaving room to add
+	private static final int NO_PASSWORD = 0xffff;
+	private static final byte LIVE = 1;
+	private static final byte ADMIN = 2;
+	private static final int REDO_MAGIC = 0x4A425852; //"JBXR"
+	private static final int REDO_HEADER = 28;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private File redoFile;
+	private boolean logged; //False until the file is in use; see create()
+	private int bucketCount;
+	private int pageCount;
+	private int accountCount;
+	private long journalLsn;
+	private PageCache cache;
+	private HashMap<Integer, Page> unflushed = new HashMap<Integer, Page>(); //Changed pages evicted
+	private long pagesRead;
+
+	/**********************************************************************************************
+	 * CLASS: Page
+	 * PURPOSE: One page of the file held in the cache.
+	 **********************************************************************************************/
+	private static class Page {
+		private int number;
+		private ByteBuffer data;
+		private boolean dirty;
+
+		private Page(int number, ByteBuffer data) {
+			this.number = number;
+			this.data = data;
+		}//END Page() constructor
+	}//END Page class
+
+	/**********************************************************************************************
+	 * CLASS: PageCache
+	 * PURPOSE: Pages in least recently used order. A changed page that is evicted is held until
+	 *     the next flush, or written out if the file is not in use yet.
+	 **********************************************************************************************/
+	private class PageCache extends LinkedHashMap<Integer, Page> {
+		private static final long serialVersionUID = 1L;
+		private int capacity;
+
+		private PageCache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}//END PageCache() constructor
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+			if(size() <= capacity) {
+				return false;
+			}
+			if(logged) {
+				if(eldest.getValue().dirty) { unflushed.put(eldest.getKey(), eldest.getValue()); }
+				return true;
+			}
+			try {
+				writePage(eldest.getValue());
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false; //Keep the changes rather than lose them
+			}
+			return true;
+		}//END removeEldestEntry()
+	}//END PageCache class
+
+	/**********************************************************************************************
+	 * METHOD: AccountPages()
+	 * PURPOSE: Opens an existing account file, reading only its header, after writing again the
+	 *     pages of the last flush if they are in a whole redo file.
+	 * @param fileName The String name of the account file.
+	 * @param cachePages The most pages to keep in memory.
+	 * @throws IOException If the file cannot be read or is not an account file of this version.
+	 **********************************************************************************************/
+	public AccountPages(String fileName, int cachePages) throws IOException {
+		file = new RandomAccessFile(fileName, "rw");
+		channel = file.getChannel();
+		redoFile = new File(fileName + ".redo");
+		logged = true;
+		try {
+			redo();
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+		ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER + 24);
+		channel.read(header, 0);
+		if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != PAGE_SIZE) {
+			file.close();
+			throw new IOException("'" + fileName + "' is not a version " + VERSION + " account file.");
+		}
+		bucketCount = header.getInt(12);
+		pageCount = header.getInt(16);
+		accountCount = header.getInt(20);
+		journalLsn = header.getLong(24);
+		cache = new PageCache(Math.max(1, cachePages));
+	}//END AccountPages() constructor
+
+	/**********************************************************************************************
+	 * METHOD: create()
+	 * PURPOSE: Creates an empty account file with enough buckets for the expected accounts, and
+	 *     opens it.
+	 * @param fileName The String name of the account file to create.
+	 * @param expectedAccounts The number of accounts the file is sized for.
+	 * @param cachePages The most pages to keep in memory.
+	 * @return The opened AccountPages.
+	 * @throws IOException If the file cannot be written.
+	 **********************************************************************************************/
+	public static AccountPages create(String fileName, int expectedAccounts, int cachePages) throws IOException {
+		int buckets = Math.max(1, expectedAccounts / ACCOUNTS_PER_BUCKET + 1);
+		new File(fileName + ".redo").delete(); //Left by an earlier file of this name
+		RandomAccessFile out = new RandomAccessFile(fileName, "rw");
+		try {
+			out.setLength(0);
+			out.setLength((long) (buckets + 1) * PAGE_SIZE); //Empty buckets read as zeros
+			ByteBuffer header = ByteBuffer.allocate(32);
+			header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(buckets).putInt(buckets + 1)
+					.putInt(0).putLong(0).flip();
+			out.getChannel().write(header, 0);
+		} finally {
+			out.close();
+		}
+		AccountPages pages = new AccountPages(fileName, cachePages);
+		pages.logged = false;
+		return pages;
+	}//END create()
+
+	/**********************************************************************************************
+	 * METHOD: replace()
+	 * PURPOSE: Moves a closed file made by create() over the live account file, dropping the live
+	 *     file's redo file, whose pages belong to the old layout.
+	 * @param fileName The String name of the live account file.
+	 * @param newFileName The String name of the closed new file, flushed before it was closed.
+	 * @throws IOException If the file cannot be moved.
+	 **********************************************************************************************/
+	static void replace(String fileName, String newFileName) throws IOException {
+		File target = new File(fileName);
+		File source = new File(newFileName);
+		new File(fileName + ".redo").delete(); //The live file is whole, so it is not needed
+		try {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		new File(newFileName + ".redo").delete();
+	}//END replace()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of accounts in the file.
+	 * @return The account count.
+	 **********************************************************************************************/
+	public synchronized int size() {
+		return accountCount;
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: getJournalLsn()
+	 * PURPOSE: Returns the last journal LSN whose selections are included in the accounts.
+	 * @return The journal LSN of the file.
+	 **********************************************************************************************/
+	public synchronized long getJournalLsn() {
+		return journalLsn;
+	}//END getJournalLsn()
+
+	/**********************************************************************************************
+	 * METHOD: getPagesRead()
+	 * PURPOSE: Returns how many pages have been read from the file since it was opened.
+	 * @return The number of page reads.
+	 **********************************************************************************************/
+	public synchronized long getPagesRead() {
+		return pagesRead;
+	}//END getPagesRead()
+
+	/**********************************************************************************************
+	 * METHOD: getCachedPages()
+	 * PURPOSE: Returns how many pages are in memory.
+	 * @return The number of cached pages.
+	 **********************************************************************************************/
+	public synchronized int getCachedPages() {
+		return cache.size();
+	}//END getCachedPages()
+
+	/**********************************************************************************************
+	 * METHOD: load()
+	 * PURPOSE: Copies an account from the file into a store.
+	 * @param username The String username to look up.
+	 * @param store The AccountStore to add the account to.
+	 * @return True if the account was found.
+	 **********************************************************************************************/
+	synchronized boolean load(String username, AccountStore store) throws IOException {
+		long at = find(username);
+		if(at < 0) {
+			return false;
+		}
+		ByteBuffer record = recordAt(at);
+		byte flags = record.get();
+		record.getInt(); //hash
+		int time = record.getInt();
+		int selected = record.get();
+		long day = record.getInt();
+		skipString(record);
+		store.add(username, readString(record), (flags & ADMIN) != 0, time, selected, day);
+		return true;
+	}//END load()
+
+	/**********************************************************************************************
+	 * METHOD: verify()
+	 * PURPOSE: Checks a username and password against the file.
+	 * @return True if the account exists and the password matches.
+	 **********************************************************************************************/
+	synchronized boolean verify(String username, String password) throws IOException {
+		long at = find(username);
+		if(at < 0 || password == null) {
+			return false;
+		}
+		ByteBuffer record = recordAt(at);
+		record.position(record.position() + FIXED_FIELDS);
+		skipString(record);
+		return password.equals(readString(record));
+	}//END verify()
+
+	/**********************************************************************************************
+	 * METHOD: put()
+	 * PURPOSE: Adds an account or replaces the account with the same username.
+	 **********************************************************************************************/
+	synchronized void put(String username, String password, boolean admin, int time, int selected,
+			long day) throws IOException {
+		byte[] name = utf8(username);
+		byte[] secret = (password == null) ? null : utf8(password);
+		int length = FIXED_FIELDS + 2 + name.length + 2 + ((secret == null) ? 0 : secret.length);
+		long at = find(username);
+		if(at >= 0 && recordLength(recordAt(at)) != length) {
+			deleteAt(at); //The new record does not fit where the old one was
+			at = -1;
+		}
+		if(at < 0) {
+			at = allocate(username.hashCode(), length);
+			accountCount++;
+		}
+
+		Page page = page((int) (at / PAGE_SIZE));
+		ByteBuffer record = page.data.duplicate();
+		record.position((int) (at % PAGE_SIZE));
+		record.put((byte) (LIVE | (admin ? ADMIN : 0))).putInt(username.hashCode()).putInt(time)
+				.put((byte) Math.min(selected, Byte.MAX_VALUE)).putInt((int) day);
+		record.putShort((short) name.length).put(name);
+		if(secret == null) {
+			record.putShort((short) NO_PASSWORD);
+		} else {
+			record.putShort((short) secret.length).put(secret);
+		}
+		page.dirty = true;
+	}//END put()
+
+	/**********************************************************************************************
+	 * METHOD: remove()
+	 * PURPOSE: Removes an account. Its space is reused the next time its page fills.
+	 * @return True if the account existed.
+	 **********************************************************************************************/
+	synchronized boolean remove(String username) throws IOException {
+		long at = find(username);
+		if(at < 0) {
+			return false;
+		}
+		deleteAt(at);
+		return true;
+	}//END remove()
+
+	/**********************************************************************************************
+	 * METHOD: needsRebuild()
+	 * PURPOSE: Returns whether there are as many overflow pages as buckets, so lookups read two
+	 *     pages or more on average and the file should be rebuilt with more buckets.
+	 **********************************************************************************************/
+	synchronized boolean needsRebuild() {
+		return pageCount - 1 - bucketCount >= bucketCount;
+	}//END needsRebuild()
+
+	/**********************************************************************************************
+	 * METHOD: copyTo()
+	 * PURPOSE: Adds every account to another account file, reading the pages in file order
+	 *     without caching them.
+	 * @param target The AccountPages to copy the accounts into.
+	 **********************************************************************************************/
+	synchronized void copyTo(AccountPages target) throws IOException {
+		for(int number=1; number<pageCount; number++) {
+			Page cached = cache.get(number);
+			if(cached == null) { cached = unflushed.get(number); }
+			ByteBuffer data = (cached != null) ? cached.data : readPage(number);
+			int used = used(data);
+			for(int position=PAGE_HEADER; position<used; ) {
+				ByteBuffer record = data.duplicate();
+				record.position(position);
+				position += recordLength(record.duplicate());
+				byte flags = record.get();
+				if((flags & LIVE) == 0) {
+					continue;
+				}
+				record.getInt(); //hash
+				int time = record.getInt();
+				int selected = record.get();
+				long day = record.getInt();
+				String username = readString(record);
+				target.put(username, readString(record), (flags & ADMIN) != 0, time, selected, day);
+			}
+		}
+	}//END copyTo()
+
+	/**********************************************************************************************
+	 * METHOD: flush()
+	 * PURPOSE: Writes every changed page and the header, stamped with a journal LSN, to the redo
+	 *     file and forces it to disk, then writes them in place and forces them to disk.
+	 * @param lsn The last journal LSN included in the accounts.
+	 **********************************************************************************************/
+	synchronized void flush(long lsn) throws IOException {
+		ArrayList<Page> changed = new ArrayList<Page>(unflushed.values());
+		for(Page page : cache.values()) {
+			if(page.dirty) { changed.add(page); }
+		}
+		journalLsn = lsn;
+		if(logged) {
+			writeRedo(changed);
+		}
+		for(Page page : changed) {
+			writePage(page);
+		}
+		unflushed.clear();
+		writeHeader();
+		channel.force(false);
+	}//END flush()
+
+	/**********************************************************************************************
+	 * METHOD: writeRedo()
+	 * PURPOSE: Writes the header fields and changed pages to the redo file and forces it to disk.
+	 **********************************************************************************************/
+	private void writeRedo(ArrayList<Page> changed) throws IOException {
+		ByteBuffer redo = ByteBuffer.allocate(REDO_HEADER + changed.size()*(4 + PAGE_SIZE) + 8);
+		redo.putInt(REDO_MAGIC).putInt(bucketCount).putInt(pageCount).putInt(accountCount)
+				.putLong(journalLsn).putInt(changed.size());
+		for(Page page : changed) {
+			ByteBuffer data = page.data.duplicate();
+			data.clear();
+			redo.putInt(page.number).put(data);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(redo.array(), 0, redo.position());
+		redo.putLong(crc.getValue());
+		FileOutputStream output = new FileOutputStream(redoFile);
+		try {
+			output.write(redo.array());
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+	}//END writeRedo()
+
+	/**********************************************************************************************
+	 * METHOD: redo()
+	 * PURPOSE: Writes the pages and header in the redo file in place again if the file is whole,
+	 *     and deletes it if it is torn.
+	 **********************************************************************************************/
+	private void redo() throws IOException {
+		if(redoFile.exists() == false) {
+			return;
+		}
+		byte[] bytes = Files.readAllBytes(redoFile.toPath());
+		ByteBuffer redo = ByteBuffer.wrap(bytes);
+		boolean whole = bytes.length >= REDO_HEADER + 8 && redo.getInt(0) == REDO_MAGIC
+				&& bytes.length == REDO_HEADER + (long) redo.getInt(24)*(4 + PAGE_SIZE) + 8;
+		if(whole) {
+			CRC32 crc = new CRC32();
+			crc.update(bytes, 0, bytes.length - 8);
+			whole = crc.getValue() == redo.getLong(bytes.length - 8);
+		}
+		if(whole == false) {
+			redoFile.delete();
+			return;
+		}
+		bucketCount = redo.getInt(4);
+		pageCount = redo.getInt(8);
+		accountCount = redo.getInt(12);
+		journalLsn = redo.getLong(16);
+		redo.position(REDO_HEADER);
+		for(int i=redo.getInt(24); i>0; i--) {
+			int number = redo.getInt();
+			byte[] data = new byte[PAGE_SIZE];
+			redo.get(data);
+			Page page = new Page(number, ByteBuffer.wrap(data));
+			page.dirty = true;
+			writePage(page);
+		}
+		writeHeader();
+		channel.force(false);
+	}//END redo()
+
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Closes the file. Changes not flushed are lost.
+	 **********************************************************************************************/
+	public synchronized void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END close()
+
+	/**********************************************************************************************
+	 * METHOD: find()
+	 * PURPOSE: Finds a live account in its username's bucket chain.
+	 * @return The file position of the record, or -1 if there is none.
+	 **********************************************************************************************/
+	private long find(String username) throws IOException {
+		int hash = username.hashCode();
+		byte[] name = utf8(username);
+		for(int number = bucket(hash); number != 0; ) {
+			ByteBuffer data = page(number).data;
+			int used = used(data);
+			for(int position=PAGE_HEADER; position<used; ) {
+				ByteBuffer record = data.duplicate();
+				record.position(position);
+				int length = recordLength(record.duplicate());
+				if((record.get() & LIVE) != 0 && record.getInt() == hash && nameEquals(record, name)) {
+					return (long) number * PAGE_SIZE + position;
+				}
+				position += length;
+			}
+			number = data.getInt(0);
+		}
+		return -1;
+	}//END find()
+
+	/**********************************************************************************************
+	 * METHOD: allocate()
+	 * PURPOSE: Makes room for a record in a hash's bucket chain: at the end of a page, in a page
+	 *     packed to drop removed records, or in a new overflow page.
+	 * @return The file position for the record.
+	 **********************************************************************************************/
+	private long allocate(int hash, int length) throws IOException {
+		if(length > PAGE_SIZE - PAGE_HEADER) {
+			throw new IOException("Account is too large for a page.");
+		}
+		int number = bucket(hash);
+		while(true) {
+			Page page = page(number);
+			if(used(page.data) + length > PAGE_SIZE) {
+				pack(page);
+			}
+			int used = used(page.data);
+			if(used + length <= PAGE_SIZE) {
+				page.data.putInt(4, used + length);
+				page.dirty = true;
+				return (long) number * PAGE_SIZE + used;
+			}
+			int next = page.data.getInt(0);
+			if(next == 0) { //Chain a new overflow page
+				next = pageCount++;
+				page.data.putInt(0, next);
+				page.dirty = true;
+				Page overflow = new Page(next, ByteBuffer.allocate(PAGE_SIZE));
+				overflow.dirty = true;
+				cache.put(next, overflow);
+			}
+			number = next;
+		}
+	}//END allocate()
+
+	/**********************************************************************************************
+	 * METHOD: pack()
+	 * PURPOSE: Moves a page's live records together, dropping removed ones.
+	 **********************************************************************************************/
+	private void pack(Page page) {
+		ByteBuffer data = page.data;
+		int used = used(data);
+		int to = PAGE_HEADER;
+		for(int position=PAGE_HEADER; position<used; ) {
+			ByteBuffer record = data.duplicate();
+			record.position(position);
+			int length = recordLength(record);
+			if((data.get(position) & LIVE) != 0) {
+				if(to != position) {
+					ByteBuffer move = data.duplicate();
+					move.position(position).limit(position + length);
+					ByteBuffer target = data.duplicate();
+					target.position(to);
+					target.put(move);
+				}
+				to += length;
+			}
+			position += length;
+		}
+		if(to != used) {
+			data.putInt(4, to);
+			page.dirty = true;
+		}
+	}//END pack()
+
+	private void deleteAt(long at) throws IOException {
+		Page page = page((int) (at / PAGE_SIZE));
+		int position = (int) (at % PAGE_SIZE);
+		page.data.put(position, (byte) (page.data.get(position) & ~LIVE));
+		page.dirty = true;
+		accountCount--;
+	}//END deleteAt()
+
+	/**********************************************************************************************
+	 * METHOD: page()
+	 * PURPOSE: Returns a page from the cache, reading it from the file on a miss.
+	 **********************************************************************************************/
+	private Page page(int number) throws IOException {
+		Page page = cache.get(number);
+		if(page == null) {
+			page = unflushed.remove(number);
+			if(page == null) { page = new Page(number, readPage(number)); }
+			cache.put(number, page);
+		}
+		return page;
+	}//END page()
+
+	private ByteBuffer readPage(int number) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(PAGE_SIZE);
+		long position = (long) number * PAGE_SIZE;
+		while(data.hasRemaining() && channel.read(data, position + data.position()) >= 0) { }
+		data.clear(); //Past the end of the file reads as an empty page
+		pagesRead++;
+		JukeboxMetrics.ACCOUNT_PAGE_READS.increment();
+		return data;
+	}//END readPage()
+
+	private void writePage(Page page) throws IOException {
+		if(page.dirty) {
+			ByteBuffer data = page.data.duplicate();
+			data.clear();
+			long position = (long) page.number * PAGE_SIZE;
+			while(data.hasRemaining()) { channel.write(data, position + data.position()); }
+			page.dirty = false;
+		}
+	}//END writePage()
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(32);
+		header.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(bucketCount).putInt(pageCount)
+				.putInt(accountCount).putLong(journalLsn).flip();
+		channel.write(header, 0);
+	}//END writeHeader()
+
+	private int bucket(int hash) {
+		return 1 + (hash & 0x7fffffff) % bucketCount;
+	}//END bucket()
+
+	private static int used(ByteBuffer data) {
+		return Math.max(PAGE_HEADER, data.getInt(4));
+	}//END used()
+
+	private ByteBuffer recordAt(long at) throws IOException {
+		ByteBuffer record = page((int) (at / PAGE_SIZE)).data.duplicate();
+		record.position((int) (at % PAGE_SIZE));
+		return record;
+	}//END recordAt()
+
+	/**********************************************************************************************
+	 * METHOD: recordLength()
+	 * PURPOSE: Returns the length of the record at a buffer's position (moving the position).
+	 **********************************************************************************************/
+	private static int recordLength(ByteBuffer record) {
+		int start = record.position();
+		record.position(start + FIXED_FIELDS);
+		skipString(record);
+		skipString(record);
+		return record.position() - start;
+	}//END recordLength()
+
+	private static boolean nameEquals(ByteBuffer record, byte[] name) {
+		record.position(record.position() + FIXED_FIELDS - 5);
+		if((record.getShort() & 0xffff) != name.length) {
+			return false;
+		}
+		for(int k=0; k<name.length; k++) {
+			if(record.get() != name[k]) {
+				return false;
+			}
+		}
+		return true;
+	}//END nameEquals()
+
+	/**********************************************************************************************
+	 * METHOD: readString()
+	 * PURPOSE: Reads a [short length][UTF-8 bytes] string and advances past it.
+	 **********************************************************************************************/
+	private static String readString(ByteBuffer record) {
+		int length = record.getShort() & 0xffff;
+		if(length == NO_PASSWORD) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}//END readString()
+
+	private static void skipString(ByteBuffer record) {
+		int length = record.getShort() & 0xffff;
+		if(length != NO_PASSWORD) { record.position(record.position() + length); }
+	}//END skipString()
+
+	/**********************************************************************************************
+	 * METHOD: utf8()
+	 * PURPOSE: Encodes a string as UTF-8, rejecting strings too long for a page.
+	 **********************************************************************************************/
+	private static byte[] utf8(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length >= NO_PASSWORD) {
+			throw new IOException("Username or password is too long for the account file.");
+		}
+		return bytes;
+	}//END utf8()
+
+	/**********************************************************************************************
+	 * METHOD: convert()
+	 * PURPOSE: Writes the accounts in a folder's "AccountList" to "AccountPages", which AllAccounts
+	 *     then opens instead. The file is written as "AccountPages.new" and renamed once it is
+	 *     whole, so a crash part way does not leave a file AllAccounts would open.
+	 * @param dataFolder The folder holding the "AccountList" file.
+	 * @return The number of accounts written.
+	 * @throws IOException If the folder already has "AccountPages" or a file cannot be written.
+	 **********************************************************************************************/
+	public static int convert(File dataFolder) throws IOException {
+		File pagesFile = new File(dataFolder, AllAccounts.PAGES_FILE);
+		if(pagesFile.exists()) {
+			throw new IOException("'" + pagesFile + "' already exists; the accounts are paged.");
+		}
+		AllAccounts accounts = new AllAccounts(dataFolder);
+		String newFile = pagesFile.getPath() + ".new";
+		AccountPages pages = create(newFile, accounts.getAccountCount(), 64);
+		int count;
+		try {
+			accounts.copyTo(pages);
+			pages.flush(accounts.getJournalLsn());
+			count = pages.size();
+		} finally {
+			pages.close();
+		}
+		replace(pagesFile.getPath(), newFile);
+		return count;
+	}//END convert()
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Command line converter: AccountPages [data folder].
+	 * @param args The optional data folder.
+	 **********************************************************************************************/
+	public static void main(String[] args) throws IOException {
+		File dataFolder = new File((args.length > 0) ? args[0] : ".");
+		if(new File(dataFolder, AllAccounts.PAGES_FILE).exists()) {
+			System.out.println(AllAccounts.PAGES_FILE + " already exists; the accounts are paged.");
+			return;
+		}
+		int count = convert(dataFolder);
+		System.out.println("Wrote " + count + " accounts to " + AllAccounts.PAGES_FILE);
+	}//END main()
+
+}//END AccountPages class
@@ -0,0 +1,729 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: AccountStore
+ * DESCRIPTION:
+ * Holds every account in primitive columns indexed by a dense user id: time remaining, today's song
+ * count and its day, and the admin flag, with usernames and passwords kept as chars in a shared
+ * text heap. An account costs tens of bytes instead of a User object, two Strings and a map entry.
+ * An open-addressing table (linear probing, deletes shift entries back so there are no tombstones)
+ * finds a username's id in one probe sequence.
+ *
+ * The columns live in fixed-size chunks that never move once made, so a User, which is only a
+ * handle holding its id, reads and changes its own row without taking the store's lock; as before,
+ * changes to one user are made while holding that User. Finding, adding and removing accounts take
+ * the store's lock. A User is made the first time an account is looked up and the same one is
+ * returned for as long as anything holds it, so a million accounts that never log in have no
+ * User at all. An account no User is held for can be written back to AccountPages and evicted.
+ * Song counts are read as today's by the store's own DayEpoch, which a selection on a later day
+ * moves forward.
+ **************************************************************************************************/
+
+final class AccountStore {
+
+	private static final int CHUNK_BITS = 12; //4096 accounts per chunk
+	private static final int TEXT_BITS = 16; //Text chunks hold 65536 chars
+	private static final int HASH_MULTIPLIER = 0x9E3779B9;
+	private static final byte ADMIN = 1;
+	private static final byte REMOVED = 2;
+
+	private final int chunkBits;
+	private final int chunkMask;
+	private final DayEpoch epoch;
+	private volatile Chunk[] chunks;
+	private int rows; //Ids handed out so far
+	private int live;
+	private int[] freeIds; //Removed ids no User refers to, ready to reuse
+	private int freeCount;
+
+	//Usernames and passwords: a length char followed by the chars, at (chunk << TEXT_BITS | offset)
+	private char[][] text;
+	private int textChunk;
+	private int textFill;
+	private int textUsed;
+	private int textGarbage;
+
+	//Username index: id + 1 of each live account, 0 for an empty slot
+	private int[] slots;
+	private int slotBits;
+
+	private final StampedLock lock = new StampedLock();
+	private final LongAdder changes = new LongAdder(); //Changes to rows through their Users
+
+	/**********************************************************************************************
+	 * CLASS: Chunk
+	 * PURPOSE: The columns of 2^chunkBits consecutive ids.
+	 **********************************************************************************************/
+	private static final class Chunk {
+		final int[] timeRemaining;
+		final int[] countDay; //Epoch day of songsSelected
+		final byte[] songsSelected;
+		final byte[] flags;
+		final int[] nameHash;
+		final int[] nameAt;
+		final int[] passwordAt; //-1 for no password
+		final AtomicReferenceArray<WeakReference<User>> users;
+
+		private Chunk(int size) {
+			timeRemaining = new int[size];
+			countDay = new int[size];
+			songsSelected = new byte[size];
+			flags = new byte[size];
+			nameHash = new int[size];
+			nameAt = new int[size];
+			passwordAt = new int[size];
+			users = new AtomicReferenceArray<WeakReference<User>>(size);
+		}//END Chunk() constructor
+	}//END Chunk class
+
+	/**********************************************************************************************
+	 * METHOD: AccountStore()
+	 * PURPOSE: Constructs an empty store sized for many accounts.
+	 * @param dayEpoch The DayEpoch the accounts' song counts are kept by.
+	 **********************************************************************************************/
+	AccountStore(DayEpoch dayEpoch) {
+		this(CHUNK_BITS, dayEpoch);
+	}//END AccountStore() constructor
+
+	/**********************************************************************************************
+	 * METHOD: AccountStore()
+	 * PURPOSE: Constructs an empty store whose chunks hold 2^chunkBits accounts. A User made on
+	 *     its own uses a store with chunkBits 0, so it costs little more than the old fields did.
+	 * @param chunkBits The log2 of the number of accounts per chunk.
+	 * @param dayEpoch The DayEpoch the accounts' song counts are kept by.
+	 **********************************************************************************************/
+	AccountStore(int chunkBits, DayEpoch dayEpoch) {
+		this.chunkBits = chunkBits;
+		epoch = dayEpoch;
+		chunkMask = (1 << chunkBits) - 1;
+		chunks = new Chunk[1];
+		freeIds = new int[4];
+		text = new char[1][];
+		text[0] = new char[textChunkSize()];
+		slotBits = 2;
+		slots = new int[1 << slotBits];
+	}//END AccountStore() constructor
+
+	/**********************************************************************************************
+	 * METHOD: add()
+	 * PURPOSE: Adds an account. An account with the same username is replaced in place, keeping
+	 *     its id, so a User already held for it sees the new values and its changes are still saved.
+	 * @param username The String username.
+	 * @param password The String password, or null.
+	 * @param admin The boolean admin status.
+	 * @param time The seconds of time remaining.
+	 * @param selected The number of songs selected on 'day'.
+	 * @param day The epoch day of 'selected'.
+	 * @return The id of the account.
+	 **********************************************************************************************/
+	int add(String username, String password, boolean admin, int time, int selected, long day) {
+		long stamp = lock.writeLock();
+		try {
+			int hash = username.hashCode();
+			int slot = slotOf(username, hash);
+			if(slot >= 0) { //Replace the existing row's fields
+				int id = slots[slot] - 1;
+				Chunk chunk = chunk(id);
+				int i = id & chunkMask;
+				textGarbage += textLength(chunk.passwordAt[i]);
+				chunk.passwordAt[i] = putText(password);
+				setRow(chunk, i, admin, time, selected, day);
+				changes.increment();
+				compactTextIfWasteful();
+				return id;
+			}
+			if((live + 1) * 2 > slots.length) {
+				rehash(slotBits + 1);
+			}
+
+			int id = newId();
+			Chunk chunk = chunk(id);
+			int i = id & chunkMask;
+			setRow(chunk, i, admin, time, selected, day);
+			chunk.nameHash[i] = hash;
+			chunk.nameAt[i] = putText(username);
+			chunk.passwordAt[i] = putText(password);
+			insert(id, hash);
+			live++;
+			return id;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}//END add()
+
+	/**********************************************************************************************
+	 * METHOD: setRow()
+	 * PURPOSE: Sets a row's admin flag, time remaining and song count.
+	 **********************************************************************************************/
+	private static void setRow(Chunk chunk, int i, boolean admin, int time, int selected, long day) {
+		chunk.timeRemaining[i] = time;
+		chunk.countDay[i] = (int) day;
+		chunk.songsSelected[i] = (byte) Math.min(selected, Byte.MAX_VALUE);
+		chunk.flags[i] = admin ? ADMIN : 0;
+	}//END setRow()
+
+	/**********************************************************************************************
+	 * METHOD: remove()
+	 * PURPOSE: Removes the account with the given username. A User already handed out for it
+	 *     keeps working, but the account can no longer be found, verified or saved.
+	 * @param username The String username to remove.
+	 * @return True if the account existed.
+	 **********************************************************************************************/
+	boolean remove(String username) {
+		long stamp = lock.writeLock();
+		try {
+			int slot = slotOf(username, username.hashCode());
+			if(slot < 0) {
+				return false;
+			}
+			removeAt(slot);
+			return true;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}//END remove()
+
+	/**********************************************************************************************
+	 * METHOD: getUser()
+	 * PURPOSE: Returns the User for a username, making one if none is held.
+	 * @param username The String username to look up.
+	 * @return The User, or null if there is no such account.
+	 **********************************************************************************************/
+	User getUser(String username) {
+		long stamp = lock.readLock();
+		try {
+			int slot = slotOf(username, username.hashCode());
+			if(slot < 0) {
+				return null;
+			}
+			int id = slots[slot] - 1;
+			Chunk chunk = chunk(id);
+			int i = id & chunkMask;
+			while(true) {
+				WeakReference<User> held = chunk.users.get(i);
+				User user = (held == null) ? null : held.get();
+				if(user != null) {
+					return user;
+				}
+				user = new User(this, id, text(chunk.nameAt[i]));
+				if(chunk.users.compareAndSet(i, held, new WeakReference<User>(user))) {
+					return user;
+				} //Otherwise another thread made one first
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END getUser()
+	
+	/**********************************************************************************************
+	 * METHOD: contains()
+	 * PURPOSE: Returns whether there is an account with the given username.
+	 **********************************************************************************************/
+	boolean contains(String username) {
+		long stamp = lock.readLock();
+		try {
+			return slotOf(username, username.hashCode()) >= 0;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END contains()
+
+	/**********************************************************************************************
+	 * METHOD: verify()
+	 * PURPOSE: Checks a username and password with one probe, comparing the password in place.
+	 * @return True if the account exists and the password matches.
+	 **********************************************************************************************/
+	boolean verify(String username, String password) {
+		long stamp = lock.readLock();
+		try {
+			int slot = slotOf(username, username.hashCode());
+			if(slot < 0 || password == null) {
+				return false;
+			}
+			int id = slots[slot] - 1;
+			int at = chunk(id).passwordAt[id & chunkMask];
+			return at >= 0 && textEquals(at, password);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END verify()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of accounts.
+	 * @return The number of accounts that can be found.
+	 **********************************************************************************************/
+	int size() {
+		long stamp = lock.readLock();
+		try {
+			return live;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: getPassword()
+	 * PURPOSE: Returns an account's password.
+	 * @param id The id of the account.
+	 * @return The String password, or null.
+	 **********************************************************************************************/
+	String getPassword(int id) {
+		long stamp = lock.readLock();
+		try {
+			return text(chunk(id).passwordAt[id & chunkMask]);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END getPassword()
+
+	/**********************************************************************************************
+	 * METHOD: updateInfo()
+	 * PURPOSE: Changes an account's password and admin status.
+	 **********************************************************************************************/
+	void updateInfo(int id, String password, boolean admin) {
+		long stamp = lock.writeLock();
+		try {
+			Chunk chunk = chunk(id);
+			int i = id & chunkMask;
+			textGarbage += textLength(chunk.passwordAt[i]);
+			chunk.passwordAt[i] = putText(password);
+			chunk.flags[i] = (byte) (admin ? (chunk.flags[i] | ADMIN) : (chunk.flags[i] & ~ADMIN));
+			compactTextIfWasteful();
+			changes.increment();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}//END updateInfo()
+
+	/**********************************************************************************************
+	 * METHOD: isAdmin()
+	 * PURPOSE: Returns an account's admin status.
+	 **********************************************************************************************/
+	boolean isAdmin(int id) {
+		return (chunk(id).flags[id & chunkMask] & ADMIN) != 0;
+	}//END isAdmin()
+
+	/**********************************************************************************************
+	 * METHOD: getTimeRemaining()
+	 * PURPOSE: Returns an account's time remaining in seconds.
+	 **********************************************************************************************/
+	int getTimeRemaining(int id) {
+		return chunk(id).timeRemaining[id & chunkMask];
+	}//END getTimeRemaining()
+
+	/**********************************************************************************************
+	 * METHOD: getSongsSelected()
+	 * PURPOSE: Returns the number of songs an account selected on its count day.
+	 **********************************************************************************************/
+	int getSongsSelected(int id) {
+		return chunk(id).songsSelected[id & chunkMask];
+	}//END getSongsSelected()
+
+	/**********************************************************************************************
+	 * METHOD: getCountDay()
+	 * PURPOSE: Returns the epoch day an account's song count was taken on.
+	 **********************************************************************************************/
+	long getCountDay(int id) {
+		return chunk(id).countDay[id & chunkMask];
+	}//END getCountDay()
+
+	/**********************************************************************************************
+	 * METHOD: today()
+	 * PURPOSE: Returns the day song counts are currently kept for.
+	 **********************************************************************************************/
+	long today() {
+		return epoch.current();
+	}//END today()
+
+	/**********************************************************************************************
+	 * METHOD: advanceTo()
+	 * PURPOSE: Moves the day song counts are kept for forward to the day of a selection.
+	 **********************************************************************************************/
+	void advanceTo(long day) {
+		epoch.advanceTo(day);
+	}//END advanceTo()
+
+	/**********************************************************************************************
+	 * METHOD: selectSong()
+	 * PURPOSE: Charges an account for a selection made on the given day. The time is always
+	 *     charged, but only a selection from the day of the current count (or later) is counted.
+	 **********************************************************************************************/
+	void selectSong(int id, int time, long day) {
+		advanceTo(day);
+		Chunk chunk = chunk(id);
+		int i = id & chunkMask;
+		chunk.timeRemaining[i] -= time;
+		changes.increment();
+		if(day < chunk.countDay[i]) {
+			return;
+		}
+		if(day > chunk.countDay[i]) {
+			chunk.songsSelected[i] = 0;
+			chunk.countDay[i] = (int) day;
+		}
+		if(chunk.songsSelected[i] < Byte.MAX_VALUE) {
+			chunk.songsSelected[i]++;
+		}
+	}//END selectSong()
+
+	/**********************************************************************************************
+	 * METHOD: refundSong()
+	 * PURPOSE: Gives back what a cancelled selection made on the given day was charged. The time
+	 *     is always given back, but the count only while it is still the count of that day.
+	 **********************************************************************************************/
+	void refundSong(int id, int time, long day) {
+		Chunk chunk = chunk(id);
+		int i = id & chunkMask;
+		chunk.timeRemaining[i] += time;
+		changes.increment();
+		if(day == chunk.countDay[i] && chunk.songsSelected[i] > 0) {
+			chunk.songsSelected[i]--;
+		}
+	}//END refundSong()
+
+	/**********************************************************************************************
+	 * METHOD: resetCount()
+	 * PURPOSE: Sets an account's song count to 0 for the given day.
+	 **********************************************************************************************/
+	void resetCount(int id, long day) {
+		Chunk chunk = chunk(id);
+		int i = id & chunkMask;
+		chunk.songsSelected[i] = 0;
+		chunk.countDay[i] = (int) day;
+		changes.increment();
+	}//END resetCount()
+
+	/**********************************************************************************************
+	 * METHOD: getChanges()
+	 * PURPOSE: Returns how many times a row has been changed through its User, so a save can tell
+	 *     whether anything changed since the last one.
+	 **********************************************************************************************/
+	long getChanges() {
+		return changes.sum();
+	}//END getChanges()
+
+	/**********************************************************************************************
+	 * METHOD: write()
+	 * PURPOSE: Writes every account: the count, then each account's fields.
+	 * @param out The DataOutput to write to.
+	 **********************************************************************************************/
+	void write(DataOutput out) throws IOException {
+		long stamp = lock.readLock();
+		try {
+			out.writeInt(live);
+			for(int id=0; id<rows; id++) {
+				Chunk chunk = chunk(id);
+				int i = id & chunkMask;
+				if((chunk.flags[i] & REMOVED) != 0) {
+					continue;
+				}
+				writeText(out, chunk.nameAt[i]);
+				writeText(out, chunk.passwordAt[i]);
+				out.writeBoolean((chunk.flags[i] & ADMIN) != 0);
+				out.writeInt(chunk.timeRemaining[i]);
+				out.writeByte(chunk.songsSelected[i]);
+				out.writeInt(chunk.countDay[i]);
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}//END write()
+
+	/**********************************************************************************************
+	 * METHOD: copyTo()
+	 * PURPOSE: Writes every account into an account file, then (if asked) evicts the accounts no
+	 *     User is held for. No User can be made while this runs, so an evicted account cannot
+	 *     change after it was written.
+	 * @param pages The AccountPages to write the accounts to.
+	 * @param evictUnheld True to remove the accounts no User is held for.
+	 * @return The number of accounts evicted.
+	 **********************************************************************************************/
+	int copyTo(AccountPages pages, boolean evictUnheld) throws IOException {
+		long stamp = lock.writeLock();
+		try {
+			int evicted = 0;
+			for(int id=0; id<rows; id++) {
+				Chunk chunk = chunk(id);
+				int i = id & chunkMask;
+				if((chunk.flags[i] & REMOVED) != 0) {
+					continue;
+				}
+				String username = text(chunk.nameAt[i]);
+				pages.put(username, text(chunk.passwordAt[i]), (chunk.flags[i] & ADMIN) != 0,
+						chunk.timeRemaining[i], chunk.songsSelected[i], chunk.countDay[i]);
+				if(evictUnheld && held(chunk, i) == false) {
+					removeAt(slotOf(username, chunk.nameHash[i]));
+					evicted++;
+				}
+			}
+			return evicted;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}//END copyTo()
+	
+	/**********************************************************************************************
+	 * METHOD: read()
+	 * PURPOSE: Adds the accounts written by write().
+	 * @param in The DataInput to read from.
+	 **********************************************************************************************/
+	void read(DataInput in) throws IOException {
+		int count = in.readInt();
+		for(int n=0; n<count; n++) {
+			String username = readText(in);
+			String password = readText(in);
+			boolean admin = in.readBoolean();
+			int time = in.readInt();
+			int selected = in.readByte();
+			add(username, password, admin, time, selected, in.readInt());
+		}
+	}//END read()
+
+	/**********************************************************************************************
+	 * METHOD: chunk()
+	 * PURPOSE: Returns the chunk holding an id's columns.
+	 **********************************************************************************************/
+	private Chunk chunk(int id) {
+		return chunks[id >>> chunkBits];
+	}//END chunk()
+
+	/**********************************************************************************************
+	 * METHOD: newId()
+	 * PURPOSE: Returns a free id, making a new chunk when the last one is full.
+	 **********************************************************************************************/
+	private int newId() {
+		if(freeCount > 0) {
+			return freeIds[--freeCount];
+		}
+		int id = rows++;
+		int c = id >>> chunkBits;
+		if(c >= chunks.length || chunks[c] == null) {
+			Chunk[] grown = Arrays.copyOf(chunks, Math.max(chunks.length, (c + 1) * 2));
+			grown[c] = new Chunk(1 << chunkBits);
+			chunks = grown; //Publish the new chunk to Users reading without the lock
+		}
+		return id;
+	}//END newId()
+
+	/**********************************************************************************************
+	 * METHOD: removeAt()
+	 * PURPOSE: Removes the account in an index slot, shifting back the entries probed past it.
+	 **********************************************************************************************/
+	private void removeAt(int slot) {
+		int id = slots[slot] - 1;
+		Chunk chunk = chunk(id);
+		int i = id & chunkMask;
+		chunk.flags[i] |= REMOVED;
+		textGarbage += textLength(chunk.nameAt[i]) + textLength(chunk.passwordAt[i]);
+		if(held(chunk, i) == false) { //No User refers to the id, so it can be reused
+			if(freeCount == freeIds.length) { freeIds = Arrays.copyOf(freeIds, freeCount * 2); }
+			freeIds[freeCount++] = id;
+		}
+		live--;
+
+		int mask = slots.length - 1;
+		int hole = slot;
+		for(int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+			int home = home(hashOf(slots[next] - 1));
+			if(((next - home) & mask) >= ((next - hole) & mask)) { //The hole is on its probe path
+				slots[hole] = slots[next];
+				hole = next;
+			}
+		}
+		slots[hole] = 0;
+		compactTextIfWasteful();
+	}//END removeAt()
+
+	/**********************************************************************************************
+	 * METHOD: slotOf()
+	 * PURPOSE: Finds a username in the index.
+	 * @return The slot holding the username, or -(empty slot)-1 if it is not there.
+	 **********************************************************************************************/
+	private int slotOf(String username, int hash) {
+		int mask = slots.length - 1;
+		for(int slot = home(hash); ; slot = (slot + 1) & mask) {
+			int entry = slots[slot];
+			if(entry == 0) {
+				return -slot - 1;
+			}
+			Chunk chunk = chunk(entry - 1);
+			int i = (entry - 1) & chunkMask;
+			if(chunk.nameHash[i] == hash && textEquals(chunk.nameAt[i], username)) {
+				return slot;
+			}
+		}
+	}//END slotOf()
+
+	/**********************************************************************************************
+	 * METHOD: insert()
+	 * PURPOSE: Puts an id in the first empty slot on its username's probe path.
+	 **********************************************************************************************/
+	private void insert(int id, int hash) {
+		int mask = slots.length - 1;
+		int slot = home(hash);
+		while(slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = id + 1;
+	}//END insert()
+
+	/**********************************************************************************************
+	 * METHOD: rehash()
+	 * PURPOSE: Moves the index to a table of 2^bits slots.
+	 **********************************************************************************************/
+	private void rehash(int bits) {
+		int[] old = slots;
+		slotBits = bits;
+		slots = new int[1 << bits];
+		for(int entry : old) {
+			if(entry != 0) { insert(entry - 1, hashOf(entry - 1)); }
+		}
+	}//END rehash()
+
+	private static boolean held(Chunk chunk, int i) {
+		WeakReference<User> held = chunk.users.get(i);
+		return held != null && held.get() != null;
+	}//END held()
+
+	private int hashOf(int id) {
+		return chunk(id).nameHash[id & chunkMask];
+	}//END hashOf()
+
+	private int home(int hash) {
+		return (hash * HASH_MULTIPLIER) >>> (32 - slotBits);
+	}//END home()
+
+	/**********************************************************************************************
+	 * METHOD: putText()
+	 * PURPOSE: Appends a String to the text heap.
+	 * @return Where the String was put, or -1 for null.
+	 **********************************************************************************************/
+	private int putText(String value) {
+		if(value == null) {
+			return -1;
+		}
+		int length = value.length();
+		if(length >= 1 << TEXT_BITS) {
+			throw new IllegalArgumentException("Usernames and passwords may be at most 65535 characters.");
+		}
+		if(textFill + length + 1 > text[textChunk].length) {
+			textChunk++;
+			if(textChunk == text.length) { text = Arrays.copyOf(text, text.length * 2); }
+			text[textChunk] = new char[Math.max(length + 1, textChunkSize())];
+			textFill = 0;
+		}
+		int at = (textChunk << TEXT_BITS) | textFill;
+		char[] chars = text[textChunk];
+		chars[textFill] = (char) length;
+		value.getChars(0, length, chars, textFill + 1);
+		textFill += length + 1;
+		textUsed += length + 1;
+		return at;
+	}//END putText()
+
+	/**********************************************************************************************
+	 * METHOD: compactTextIfWasteful()
+	 * PURPOSE: Copies the live accounts' text into a new heap once most of the heap is text of
+	 *     removed accounts and old passwords. Removed accounts lose their text, except those a
+	 *     User is still held for, which keep working.
+	 **********************************************************************************************/
+	private void compactTextIfWasteful() {
+		if(textGarbage * 2 <= textUsed || textUsed < textChunkSize()) {
+			return;
+		}
+		char[][] old = text;
+		text = new char[old.length][];
+		text[0] = new char[textChunkSize()];
+		textChunk = 0;
+		textFill = 0;
+		textUsed = 0;
+		textGarbage = 0;
+		for(int id=0; id<rows; id++) {
+			Chunk chunk = chunk(id);
+			int i = id & chunkMask;
+			if((chunk.flags[i] & REMOVED) != 0 && held(chunk, i) == false) {
+				chunk.nameAt[i] = -1;
+				chunk.passwordAt[i] = -1;
+			} else {
+				chunk.nameAt[i] = putText(text(old, chunk.nameAt[i]));
+				chunk.passwordAt[i] = putText(text(old, chunk.passwordAt[i]));
+			}
+		}
+	}//END compactTextIfWasteful()
+
+	private int textChunkSize() {
+		return Math.min(1 << TEXT_BITS, 16 << chunkBits);
+	}//END textChunkSize()
+
+	private int textLength(int at) {
+		return (at < 0) ? 0 : text[at >>> TEXT_BITS][at & ((1 << TEXT_BITS) - 1)] + 1;
+	}//END textLength()
+
+	private String text(int at) {
+		return text(text, at);
+	}//END text()
+
+	private static String text(char[][] heap, int at) {
+		if(at < 0) {
+			return null;
+		}
+		char[] chars = heap[at >>> TEXT_BITS];
+		int offset = at & ((1 << TEXT_BITS) - 1);
+		return new String(chars, offset + 1, chars[offset]);
+	}//END text()
+
+	/**********************************************************************************************
+	 * METHOD: textEquals()
+	 * PURPOSE: Compares the text at a heap position to a String without copying either.
+	 **********************************************************************************************/
+	private boolean textEquals(int at, String value) {
+		if(at < 0) {
+			return false;
+		}
+		char[] chars = text[at >>> TEXT_BITS];
+		int offset = at & ((1 << TEXT_BITS) - 1);
+		int length = chars[offset];
+		if(length != value.length()) {
+			return false;
+		}
+		for(int k=0; k<length; k++) {
+			if(chars[offset + 1 + k] != value.charAt(k)) {
+				return false;
+			}
+		}
+		return true;
+	}//END textEquals()
+
+	private void writeText(DataOutput out, int at) throws IOException {
+		String value = text(at);
+		if(value == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(value.length());
+			out.writeChars(value);
+		}
+	}//END writeText()
+
+	private static String readText(DataInput in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		char[] chars = new char[length];
+		for(int k=0; k<length; k++) { chars[k] = in.readChar(); }
+		return new String(chars);
+	}//END readText()
+
+}//END AccountStore class
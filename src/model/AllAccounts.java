@@ -1,48 +1,115 @@
 package model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.time.Clock;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**************************************************************************************************
  * @author Ashley Mains and Victor Gomes
  * 
  * CLASS: AllAccounts
  * DESCRIPTION:
- * AllAccounts keeps track of all valid user information in a map of all User obejcts accessed by
- * the String username.
+ * AllAccounts keeps track of all valid user information in an AccountStore, looked up by the
+ * String username. The store keeps each account in primitive columns rather than as objects, so
+ * millions of accounts fit in memory, and logins from many kiosks can be checked at once.
+ * "AccountList" holds the accounts column by column after a format marker; a file holding a
+ * list of Users (the format before the store) is still read.
+ * 
+ * When the folder has an "AccountPages" file (see AccountPages.convert()) it is used instead and
+ * nothing is read up front: an account is loaded into the store from its page the first time it
+ * is looked up, and a login is checked against the page without loading the account. Saving
+ * writes the loaded accounts back to their pages, and evicts those no User is held for once more
+ * than HOT_ACCOUNTS are loaded.
+ * 
+ * Saves made through snapshot() are skipped while no account has changed since the last one.
+ * Song counts are kept by the days of a DayEpoch of the accounts' own, started from the system
+ * clock (or a given one, such as a simulation's) and moved on by the selections charged to them.
  **************************************************************************************************/
 
 public class AllAccounts {
 	
-	private ArrayList<User> userData;
-	private Map<String, User> allUsers;
+	private static final String FORMAT = "AccountStore"; //Marks the column format of "AccountList"
+	static final String PAGES_FILE = "AccountPages";
+	private static final int CACHE_PAGES = 1024; //4 MB of account pages
+	private static final int HOT_ACCOUNTS = 100000;
+	
+	private final DayEpoch dayEpoch;
+	private AccountStore store;
+	private long journalLsn;
+	private File accountFile;
+	private File pagesFile;
+	private AccountPages pages; //null unless the accounts are paged
+	private final LongAdder accountChanges = new LongAdder(); //Accounts added or removed
+	private final AtomicLong savedChanges = new AtomicLong();
 	
 	/**********************************************************************************************
 	 * METHOD: AllAccounts()
 	 * PURPOSE: Constructs and AllAccounts object that keeps track of valid user information.
 	 * @param doReadFiles The boolean flag to determine whether to read files or not.
 	 **********************************************************************************************/
-	@SuppressWarnings("unchecked")
 	public AllAccounts(boolean doReadFiles) {
-		userData = new ArrayList<User>(0);
-		allUsers = new HashMap<String, User>();
+		this(doReadFiles, null, Clock.systemDefaultZone());
+	}//END AllAccounts() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: AllAccounts()
+	 * PURPOSE: Constructs the default accounts, counting their songs by the days of a clock, such
+	 *     as the SimulatedClock of a Jukebox running through days in moments.
+	 * @param clock The Clock whose days the accounts' song counts are kept for.
+	 **********************************************************************************************/
+	public AllAccounts(Clock clock) {
+		this(false, null, clock);
+	}//END AllAccounts() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: AllAccounts()
+	 * PURPOSE: Constructs an AllAccounts object that reads and writes "AccountList" in the given
+	 *     folder instead of the working directory.
+	 * @param dataFolder The folder holding the "AccountList" file.
+	 **********************************************************************************************/
+	public AllAccounts(File dataFolder) {
+		this(true, dataFolder, Clock.systemDefaultZone());
+	}//END AllAccounts() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: AllAccounts()
+	 * PURPOSE: Constructs an AllAccounts object, opening "AccountPages" or reading "AccountList" from
+	 *     'dataFolder' (the working directory if null), or resetting to default values, with song
+	 *     counts kept by the days of 'clock'.
+	 **********************************************************************************************/
+	@SuppressWarnings("unchecked")
+	private AllAccounts(boolean doReadFiles, File dataFolder, Clock clock) {
+		dayEpoch = new DayEpoch(clock);
+		accountFile = new File(dataFolder, "AccountList");
+		pagesFile = new File(dataFolder, PAGES_FILE);
+		store = new AccountStore(dayEpoch);
 		
 		if(doReadFiles) {
-			try { //Read file of all current valid users
-				FileInputStream fileStream = new FileInputStream("AccountList");
-				ObjectInputStream objectStream = new ObjectInputStream(fileStream);
-				userData = (ArrayList<User>) objectStream.readObject();
-				objectStream.close();
-				
-				for(int i=0; i<userData.size(); i++) {
-					allUsers.put(userData.get(i).getUsername(), userData.get(i));
+			try {
+				if(pagesFile.exists()) {
+					//Open the paged file; accounts are loaded as they are looked up
+					pages = new AccountPages(pagesFile.getPath(), CACHE_PAGES);
+					journalLsn = pages.getJournalLsn();
+				} else { //Read file of all current valid users
+					FileInputStream fileStream = new FileInputStream(accountFile);
+					ObjectInputStream objectStream = new ObjectInputStream(fileStream);
+					Object contents = objectStream.readObject();
+					if(FORMAT.equals(contents)) {
+						store.read(objectStream);
+					} else { //A list of Users from before the store
+						for(User user : (ArrayList<User>) contents) {
+							user.addTo(store);
+						}
+					}
+					journalLsn = Jukebox.readSnapshotLsn(objectStream);
+					objectStream.close();
 				}
 			} catch (IOException e) {
 				e.printStackTrace();
@@ -61,9 +128,29 @@ public class AllAccounts {
 	 * @return The User under the given 'username'.
 	 **********************************************************************************************/
 	public User getUser(String username) {
-		return allUsers.get(username);
+		User user = store.getUser(username);
+		if(user == null && pages != null) {
+			user = loadUser(username);
+		}
+		return user;
 	}//END getUser()
 	
+	/**********************************************************************************************
+	 * METHOD: loadUser()
+	 * PURPOSE: Loads an account from its page into the store.
+	 * @return The User, or null if there is no such account.
+	 **********************************************************************************************/
+	private synchronized User loadUser(String username) {
+		if(store.contains(username) == false) { //Another thread may have loaded it
+			try {
+				pages.load(username, store);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		return store.getUser(username);
+	}//END loadUser()
+	
 	/**********************************************************************************************
 	 * METHOD: verifyAccount()
 	 * PURPOSE: Checks the given a user's login information (username, password) if they are a
@@ -73,15 +160,28 @@ public class AllAccounts {
 	 * @return True is the account has been verified; false if not valid.
 	 **********************************************************************************************/
 	public boolean verifyAccount(String username, String password) {
-		User user = allUsers.get(username);
-		if(user != null) {
-			if(user.getPassword() != null && password.equals(user.getPassword())) {
-				return true;
-			}
+		if(store.verify(username, password) || (pages != null && verifyOnPage(username, password))) {
+			JukeboxMetrics.LOGIN_SUCCESS.increment();
+			return true;
 		}
+		JukeboxMetrics.LOGIN_FAILURE.increment();
 		return false;
 	}//END verifyAccount()
 	
+	/**********************************************************************************************
+	 * METHOD: verifyOnPage()
+	 * PURPOSE: Checks a login against the account's page, unless the account is loaded (then the
+	 *     store, which has any newer password, has already answered).
+	 **********************************************************************************************/
+	private synchronized boolean verifyOnPage(String username, String password) {
+		try {
+			return store.contains(username) == false && pages.verify(username, password);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}//END verifyOnPage()
+	
 	/**********************************************************************************************
 	 * METHOD: isAdmin()
 	 * PURPOSE: Checks if the User under the given username is an admin or not.
@@ -89,78 +189,207 @@ public class AllAccounts {
 	 * @return True if the account is an admin, otherwise false.
 	 **********************************************************************************************/
 	public boolean isAdmin(String username) {
-		return allUsers.get(username).isAdmin();
+		return getUser(username).isAdmin();
 	}//END isAdmin()
 	
 	/**********************************************************************************************
 	 * METHOD: addAccount()
-	 * PURPOSE: Adds a new user account to the map of all accounts.
+	 * PURPOSE: Adds a new user account to the store of all accounts, replacing any account with
+	 *     the same username in place, so a User already held for it keeps being saved.
 	 * @param username The String username of the account to add.
 	 * @param password The String password to the matching account.
 	 * @param isAdmin The boolean flag whether the account is an admin or not.
 	 **********************************************************************************************/
 	public void addAccount(String username, String password, boolean isAdmin) {
-		User newUser = new User(username, password, isAdmin, 60*1500, 0);
-		userData.add(newUser);
-		allUsers.put(username, newUser);
+		accountChanges.increment();
+		if(pages == null) {
+			store.add(username, password, isAdmin, 60*1500, 0, dayEpoch.current());
+			return;
+		}
+		synchronized(this) { //Add it to its page; it is loaded when it is looked up
+			try {
+				pages.put(username, password, isAdmin, 60*1500, 0, dayEpoch.current());
+				if(store.contains(username)) { //Already loaded, so replace the loaded row too
+					store.add(username, password, isAdmin, 60*1500, 0, dayEpoch.current());
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}//END addAccount()
 	
 	/**********************************************************************************************
 	 * METHOD: removeAccount()
-	 * PURPOSE: Removes any valid user from the maps of users stored. The system admin "Merlin" is
-	 *     not allowed to be deleted.
+	 * PURPOSE: Removes any valid user from the store of users, so it is no longer saved either. The
+	 *     system admin "Merlin" is not allowed to be deleted.
 	 * @param username The String username of the account to remove.
 	 * @return True if the account can be / has been removed, false if the account does not exist.
 	 **********************************************************************************************/
 	public boolean removeAccount(String username) {
 		if(username.equals("Merlin") == false) {
-			User u1 = allUsers.remove(username);
-			return (u1 != null);
+			accountChanges.increment();
+			if(pages == null) {
+				return store.remove(username);
+			}
+			synchronized(this) {
+				boolean removed = store.remove(username);
+				try {
+					removed |= pages.remove(username);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				return removed;
+			}
 		}
 		return false;
 	}//END removeAccount()
 	
-	/**********************************************************************************************
-	 * METHOD: resetCounts()
-	 * PURPOSE: On a new day, reset all User's song selection counts to 0.
-	 **********************************************************************************************/
-	public void resetCounts() {
-		Set<String> keySet = allUsers.keySet();
-		for(String key : keySet) { allUsers.get(key).resetCount(); }
-	}//END resetCounts()
-	
 	/**********************************************************************************************
 	 * METHOD: resetToDefault()
 	 * PURPOSE: Completely resets to system to starting default values.
 	 **********************************************************************************************/
 	private void resetToDefault() {
-		allUsers.clear();
-		User chris = new User("Chris", "1", false, 60*1500, 0);
-		User devon = new User("Devon", "22", false, 60*1500, 0);
-		User river = new User("River", "333", false, 60*1500, 0);
-		User ryan = new User("Ryan", "4444", false, 60*1500, 0);
-		User merlin = new User("Merlin", "7777777", true, 60*1500, 0);
-		userData.add(chris); userData.add(devon); userData.add(river); userData.add(ryan); userData.add(merlin);
-		allUsers.put(chris.getUsername(), chris);
-		allUsers.put(devon.getUsername(), devon);
-		allUsers.put(river.getUsername(), river);
-		allUsers.put(ryan.getUsername(), ryan);
-		allUsers.put(merlin.getUsername(), merlin);
+		store = new AccountStore(dayEpoch);
+		addAccount("Chris", "1", false);
+		addAccount("Devon", "22", false);
+		addAccount("River", "333", false);
+		addAccount("Ryan", "4444", false);
+		addAccount("Merlin", "7777777", true);
 	}//END resetToDefault()
 	
+	/**********************************************************************************************
+	 * METHOD: getAccountCount()
+	 * PURPOSE: Returns the number of user accounts.
+	 * @return The number of accounts on file.
+	 **********************************************************************************************/
+	public int getAccountCount() {
+		return (pages == null) ? store.size() : pages.size();
+	}//END getAccountCount()
+	
+	/**********************************************************************************************
+	 * METHOD: getJournalLsn()
+	 * PURPOSE: Returns the last journal LSN contained in the account snapshot that was read.
+	 * @return The journal LSN of the "AccountList" snapshot.
+	 **********************************************************************************************/
+	public long getJournalLsn() {
+		return journalLsn;
+	}//END getJournalLsn()
+	
 	/**********************************************************************************************
 	 * METHOD: writeAccountsToFile()
 	 * PURPOSE: Writes out the current list of users to the file "AccountList".
 	 **********************************************************************************************/
 	public void writeAccountsToFile() {
+		writeAccountsToFile(journalLsn);
+	}//END writeAccountsToFile()
+	
+	/**********************************************************************************************
+	 * METHOD: writeAccountsToFile()
+	 * PURPOSE: Writes out the current list of users to the file "AccountList" (or the loaded users
+	 *     to "AccountPages"), stamped with the last journal LSN the users include.
+	 * @param lsn The last journal LSN applied to the users being written.
+	 **********************************************************************************************/
+	public void writeAccountsToFile(long lsn) {
 		try {
-			FileOutputStream fileOutput = new FileOutputStream("AccountList");
-			ObjectOutputStream objectOutput = new ObjectOutputStream(fileOutput);
-			objectOutput.writeObject(userData);
-			objectOutput.close();
+			copy(lsn, getChanges()).write();
 		} catch (IOException e) {
+			JukeboxMetrics.ACCOUNT_FAILED.increment();
 			e.printStackTrace();
 		}
-	}//END writeQueueToFile()
+	}//END writeAccountsToFile()
+	
+	/**********************************************************************************************
+	 * METHOD: snapshot()
+	 * PURPOSE: Copies the accounts for a save stamped with the given LSN, unless nothing has
+	 *     changed since the last save. The copy is written later by SnapshotFile.write().
+	 * @param lsn The last journal LSN applied to the users being copied.
+	 * @return The SnapshotFile to write, or null if the saved accounts are up to date.
+	 * @throws IOException If the accounts cannot be copied.
+	 **********************************************************************************************/
+	SnapshotFile snapshot(long lsn) throws IOException {
+		long changes = getChanges();
+		return (changes == savedChanges.get()) ? null : copy(lsn, changes);
+	}//END snapshot()
+	
+	/**********************************************************************************************
+	 * METHOD: hasUnsavedChanges()
+	 * PURPOSE: Returns whether any account changed since the accounts were last saved.
+	 **********************************************************************************************/
+	boolean hasUnsavedChanges() {
+		return getChanges() != savedChanges.get();
+	}//END hasUnsavedChanges()
+	
+	/**********************************************************************************************
+	 * METHOD: getChanges()
+	 * PURPOSE: Returns how many changes have been made to the accounts since they were opened.
+	 **********************************************************************************************/
+	private long getChanges() {
+		return store.getChanges() + accountChanges.sum();
+	}//END getChanges()
+	
+	/**********************************************************************************************
+	 * METHOD: copy()
+	 * PURPOSE: Copies the accounts into memory (or the loaded users onto their pages) for a save.
+	 **********************************************************************************************/
+	private SnapshotFile copy(long lsn, long changes) throws IOException {
+		journalLsn = lsn;
+		if(pages != null) {
+			synchronized(this) {
+				store.copyTo(pages, store.size() > HOT_ACCOUNTS);
+			}
+			return new PagesSnapshot(lsn, changes);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + store.size() * 64);
+		ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+		objectOutput.writeObject(FORMAT);
+		store.write(objectOutput);
+		objectOutput.writeLong(lsn);
+		objectOutput.close();
+		return new SnapshotFile(accountFile, bytes.toByteArray(), savedChanges, changes,
+				JukeboxMetrics.ACCOUNT_WRITE, JukeboxMetrics.ACCOUNT_FAILED);
+	}//END copy()
+	
+	/**********************************************************************************************
+	 * CLASS: PagesSnapshot
+	 * PURPOSE: Forces the pages the loaded users were copied onto to disk. Rebuilds the file with
+	 *     more buckets once half its pages are overflow pages.
+	 **********************************************************************************************/
+	private class PagesSnapshot extends SnapshotFile {
+		private long lsn;
+		
+		private PagesSnapshot(long lsn, long changes) {
+			super(pagesFile, null, savedChanges, changes, JukeboxMetrics.ACCOUNT_WRITE, JukeboxMetrics.ACCOUNT_FAILED);
+			this.lsn = lsn;
+		}//END PagesSnapshot() constructor
+		
+		@Override
+		protected void writeFile() throws IOException {
+			synchronized(AllAccounts.this) {
+				if(pages.needsRebuild()) {
+					File newPages = new File(pagesFile.getPath() + ".new");
+					AccountPages rebuilt = AccountPages.create(newPages.getPath(), pages.size() * 2, CACHE_PAGES);
+					pages.copyTo(rebuilt);
+					rebuilt.flush(lsn);
+					rebuilt.close();
+					pages.close();
+					AccountPages.replace(pagesFile.getPath(), newPages.getPath());
+					pages = new AccountPages(pagesFile.getPath(), CACHE_PAGES);
+				}
+				pages.flush(lsn);
+			}
+		}//END writeFile()
+	}//END PagesSnapshot class
+	
+	/**********************************************************************************************
+	 * METHOD: copyTo()
+	 * PURPOSE: Adds every account to an account file.
+	 * @param target The AccountPages to copy the accounts into.
+	 **********************************************************************************************/
+	synchronized void copyTo(AccountPages target) throws IOException {
+		if(pages != null) {
+			pages.copyTo(target);
+		}
+		store.copyTo(target, false);
+	}//END copyTo()
 	
 }//END AllAccounts class
\ No newline at end of file
@@ -0,0 +1,47 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: CancelOutcome
+ * DESCRIPTION:
+ * What happened to a request to cancel a queued song: it was cancelled and refunded, or the
+ * reason it was refused.
+ **************************************************************************************************/
+
+public enum CancelOutcome {
+
+	CANCELLED("The song has been removed from the queue."),
+	NOT_FOUND("The song is no longer in the queue."),
+	PLAYING("The song is already playing."),
+	NOT_ALLOWED("Only the user who selected a song or an admin may cancel it.");
+
+	private final String message;
+
+	/**********************************************************************************************
+	 * METHOD: CancelOutcome()
+	 * PURPOSE: Constructs an outcome with its message.
+	 **********************************************************************************************/
+	private CancelOutcome(String message) {
+		this.message = message;
+	}//END CancelOutcome() constructor
+
+	/**********************************************************************************************
+	 * METHOD: getMessage()
+	 * PURPOSE: Returns the message to show a person for this outcome.
+	 * @return The String message.
+	 **********************************************************************************************/
+	public String getMessage() {
+		return message;
+	}//END getMessage()
+
+	/**********************************************************************************************
+	 * METHOD: isCancelled()
+	 * PURPOSE: Returns whether the song was cancelled.
+	 * @return True for CANCELLED, false for every refusal.
+	 **********************************************************************************************/
+	public boolean isCancelled() {
+		return this == CANCELLED;
+	}//END isCancelled()
+
+}//END CancelOutcome enum
@@ -0,0 +1,221 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: CatalogSongList
+ * DESCRIPTION:
+ * The songs of a SongCatalog as an ObservableList for the song table, without building a Song for
+ * every row. A table only asks for the rows it shows, so rows are built a page of PAGE_SIZE at a
+ * time as they are asked for, and the next page is built once a row in the last quarter of a page
+ * is shown, ready for scrolling. Only CACHED_PAGES pages are kept; songs on other pages are built
+ * again if they are scrolled back to. Songs added since the catalog was written follow its songs.
+ *
+ * The list can be ordered by any SortKey through the catalog's sort orders, so sorting a column
+ * never compares Song objects; the order is reported to the table as one permutation. Like any
+ * list shown in a table, it should only be changed on the JavaFX thread.
+ **************************************************************************************************/
+
+public class CatalogSongList extends ObservableListBase<Song> {
+
+	private static final int PAGE_SIZE = 256;
+	private static final int CACHED_PAGES = 64;
+
+	private SongCatalog catalog;
+	private ArrayList<Song> added;
+	private int[] order; //ordinal shown at each position, or null for catalog order
+	private boolean descending;
+	private PageCache pages;
+
+	/**********************************************************************************************
+	 * METHOD: CatalogSongList()
+	 * PURPOSE: Constructs a list of a catalog's songs in catalog order.
+	 * @param catalog The SongCatalog to show.
+	 **********************************************************************************************/
+	public CatalogSongList(SongCatalog catalog) {
+		this.catalog = catalog;
+		added = new ArrayList<Song>();
+		pages = new PageCache();
+	}//END CatalogSongList() constructor
+
+	/**********************************************************************************************
+	 * METHOD: get()
+	 * PURPOSE: Returns the song shown at a position, building its page if it is not cached.
+	 * @param index The position in the list.
+	 * @return The Song at 'index'.
+	 **********************************************************************************************/
+	@Override
+	public Song get(int index) {
+		int catalogSize = catalog.size();
+		if(index >= catalogSize) {
+			return added.get(index - catalogSize);
+		}
+		if(index < 0) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		int page = index / PAGE_SIZE;
+		if(index % PAGE_SIZE >= PAGE_SIZE * 3 / 4 && (page + 1) * PAGE_SIZE < catalogSize) {
+			page(page + 1); //Prefetch the page scrolling is heading into
+		}
+		return page(page)[index % PAGE_SIZE];
+	}//END get()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of songs in the list.
+	 * @return The catalog songs plus the songs added since.
+	 **********************************************************************************************/
+	@Override
+	public int size() {
+		return catalog.size() + added.size();
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: computeOrder()
+	 * PURPOSE: Returns the catalog's order by a field. Safe to call off the JavaFX thread, where
+	 *     the first order by a text field should be built.
+	 * @param key The SortKey field to order by.
+	 * @return The int array of ordinals in ascending order.
+	 **********************************************************************************************/
+	public int[] computeOrder(SongCatalog.SortKey key) {
+		return catalog.sortOrder(key);
+	}//END computeOrder()
+
+	/**********************************************************************************************
+	 * METHOD: applyOrder()
+	 * PURPOSE: Shows the catalog songs in a new order, reported as one permutation. Songs added
+	 *     since the catalog was written stay at the end.
+	 * @param newOrder The int array from computeOrder(), or null for catalog order.
+	 * @param reverse The boolean flag to show the order from the last song to the first.
+	 **********************************************************************************************/
+	public void applyOrder(int[] newOrder, boolean reverse) {
+		int catalogSize = catalog.size();
+		int[] newPosition = new int[catalogSize];
+		for(int i=0; i<catalogSize; i++) {
+			newPosition[ordinalAt(newOrder, reverse, i)] = i;
+		}
+		int[] permutation = new int[catalogSize];
+		for(int i=0; i<catalogSize; i++) {
+			permutation[i] = newPosition[ordinalAt(order, descending, i)];
+		}
+		order = newOrder;
+		descending = reverse;
+		pages.clear();
+		beginChange();
+		nextPermutation(0, catalogSize, permutation);
+		endChange();
+	}//END applyOrder()
+
+	/**********************************************************************************************
+	 * METHOD: sortBy()
+	 * PURPOSE: Orders the catalog songs by a field.
+	 * @param key The SortKey field to order by.
+	 * @param reverse The boolean flag to order from the largest value to the smallest.
+	 **********************************************************************************************/
+	public void sortBy(SongCatalog.SortKey key, boolean reverse) {
+		applyOrder(computeOrder(key), reverse);
+	}//END sortBy()
+
+	/**********************************************************************************************
+	 * METHOD: addSong()
+	 * PURPOSE: Adds a song that is not in the catalog to the end of the list.
+	 * @param song The Song to add.
+	 **********************************************************************************************/
+	void addSong(Song song) {
+		added.add(song);
+		beginChange();
+		nextAdd(size() - 1, size());
+		endChange();
+	}//END addSong()
+
+	/**********************************************************************************************
+	 * METHOD: setCatalog()
+	 * PURPOSE: Shows a new catalog (one rewritten with the added songs) in catalog order. May be
+	 *     called on any thread; the change is made on the JavaFX thread.
+	 * @param newCatalog The SongCatalog to show.
+	 **********************************************************************************************/
+	void setCatalog(SongCatalog newCatalog) {
+		if(Platform.isFxApplicationThread()) {
+			new CatalogSwitch(newCatalog).run();
+		} else {
+			Platform.runLater(new CatalogSwitch(newCatalog));
+		}
+	}//END setCatalog()
+
+	/**********************************************************************************************
+	 * METHOD: ordinalAt()
+	 * PURPOSE: Returns the catalog ordinal shown at a position in an order.
+	 **********************************************************************************************/
+	private int ordinalAt(int[] byOrder, boolean reverse, int index) {
+		int position = reverse ? catalog.size() - 1 - index : index;
+		return (byOrder == null) ? position : byOrder[position];
+	}//END ordinalAt()
+
+	/**********************************************************************************************
+	 * METHOD: page()
+	 * PURPOSE: Returns the songs of one page of positions, building them if the page is not cached.
+	 **********************************************************************************************/
+	private Song[] page(int page) {
+		Song[] songs = pages.get(page);
+		if(songs == null) {
+			int start = page * PAGE_SIZE;
+			songs = new Song[Math.min(PAGE_SIZE, catalog.size() - start)];
+			for(int i=0; i<songs.length; i++) {
+				songs[i] = catalog.getSong(ordinalAt(order, descending, start + i));
+			}
+			pages.put(page, songs);
+		}
+		return songs;
+	}//END page()
+
+	/**********************************************************************************************
+	 * CLASS: CatalogSwitch
+	 * PURPOSE: Replaces the catalog, reporting every old row removed and every new row added.
+	 **********************************************************************************************/
+	private class CatalogSwitch implements Runnable {
+		private SongCatalog newCatalog;
+
+		private CatalogSwitch(SongCatalog newCatalog) {
+			this.newCatalog = newCatalog;
+		}//END CatalogSwitch() constructor
+
+		@Override
+		public void run() {
+			int oldSize = size();
+			catalog = newCatalog;
+			added.clear();
+			order = null;
+			descending = false;
+			pages.clear();
+			beginChange();
+			nextRemove(0, Collections.<Song>nCopies(oldSize, null));
+			nextAdd(0, size());
+			endChange();
+		}//END run()
+	}//END CatalogSwitch class
+
+	/**********************************************************************************************
+	 * CLASS: PageCache
+	 * PURPOSE: The most recently shown pages, dropping the least recently shown one when full.
+	 **********************************************************************************************/
+	private static class PageCache extends LinkedHashMap<Integer, Song[]> {
+		private static final long serialVersionUID = 1L;
+
+		private PageCache() {
+			super(CACHED_PAGES * 2, 0.75f, true);
+		}//END PageCache() constructor
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Song[]> eldest) {
+			return size() > CACHED_PAGES;
+		}//END removeEldestEntry()
+	}//END PageCache class
+
+}//END CatalogSongList class
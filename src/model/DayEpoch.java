@@ -0,0 +1,169 @@
+package model;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: DayEpoch
+ * DESCRIPTION:
+ * The day that the daily selection limits currently count towards, as an epoch day number. Songs
+ * and Users stamp their counts with the day they were taken on, so a count from an earlier day
+ * reads as 0 without anything having to reset it. Moving to a new day is a single atomic update
+ * instead of a pass over every song and account. Anything showing counts, such as a view, is told
+ * through a ResetListener when the day moves on, so it can show them again.
+ *
+ * Each Jukebox has its own DayEpoch, started from the day on its Clock, and hands it to the songs,
+ * queue and leaderboard it keeps; each AccountStore has one for its accounts. Two jukeboxes on
+ * different clocks, such as a simulated one in a test, never move each other's day.
+ **************************************************************************************************/
+
+public final class DayEpoch {
+
+	private volatile Clock clock;
+	private final AtomicLong currentDay;
+	private final CopyOnWriteArrayList<ResetListener> listeners = new CopyOnWriteArrayList<ResetListener>();
+	//Songs that have a property, told when the day moves on; the keys are weak so rows can go
+	private final Map<Song, Boolean> shownSongs = Collections.synchronizedMap(new WeakHashMap<Song, Boolean>());
+
+	/**********************************************************************************************
+	 * CLASS: ResetListener
+	 * PURPOSE: Is told each time the day moves on and every earlier count reads as 0. Called on
+	 *     the thread of the selection that moved the day, so it should only hand the news off.
+	 **********************************************************************************************/
+	public interface ResetListener {
+		void countsReset(long day);
+	}//END ResetListener interface
+
+	/**********************************************************************************************
+	 * METHOD: DayEpoch()
+	 * PURPOSE: Constructs an epoch that starts on the current day of a clock.
+	 * @param clock The Clock to read the day and time from.
+	 **********************************************************************************************/
+	public DayEpoch(Clock clock) {
+		this.clock = clock;
+		currentDay = new AtomicLong(LocalDate.now(clock).toEpochDay());
+	}//END DayEpoch() constructor
+
+	/**********************************************************************************************
+	 * METHOD: current()
+	 * PURPOSE: Returns the day that selection counts are currently kept for.
+	 * @return The current epoch day.
+	 **********************************************************************************************/
+	public long current() {
+		return currentDay.get();
+	}//END current()
+
+	/**********************************************************************************************
+	 * METHOD: today()
+	 * PURPOSE: Returns the date on this epoch's clock.
+	 * @return The LocalDate of the clock.
+	 **********************************************************************************************/
+	public LocalDate today() {
+		return LocalDate.now(clock);
+	}//END today()
+
+	/**********************************************************************************************
+	 * METHOD: millis()
+	 * PURPOSE: Returns the time on this epoch's clock.
+	 * @return The clock time in milliseconds.
+	 **********************************************************************************************/
+	public long millis() {
+		return clock.millis();
+	}//END millis()
+
+	/**********************************************************************************************
+	 * METHOD: setClock()
+	 * PURPOSE: Reads the time from another clock from now on, and moves to the day on it, even an
+	 *     earlier one, since the new clock is the one the counts are kept by.
+	 * @param newClock The Clock to read the day and time from.
+	 **********************************************************************************************/
+	void setClock(Clock newClock) {
+		clock = newClock;
+		long day = LocalDate.now(newClock).toEpochDay();
+		if(currentDay.getAndSet(day) != day) {
+			countsReset(day);
+		}
+	}//END setClock()
+
+	/**********************************************************************************************
+	 * METHOD: advanceTo()
+	 * PURPOSE: Moves the current day forward to 'date'. Earlier dates are ignored, so the day
+	 *     never goes backwards when requests race across midnight.
+	 * @param date The LocalDate of a selection.
+	 * @return True if the current day changed.
+	 **********************************************************************************************/
+	public boolean advanceTo(LocalDate date) {
+		return advanceTo(date.toEpochDay());
+	}//END advanceTo()
+
+	/**********************************************************************************************
+	 * METHOD: advanceTo()
+	 * PURPOSE: Moves the current day forward to an epoch day, like the method above.
+	 * @param day The epoch day of a selection.
+	 * @return True if the current day changed.
+	 **********************************************************************************************/
+	boolean advanceTo(long day) {
+		while(true) {
+			long current = currentDay.get();
+			if(day <= current) {
+				return false;
+			}
+			if(currentDay.compareAndSet(current, day)) {
+				countsReset(day);
+				return true;
+			}
+		}
+	}//END advanceTo()
+
+	/**********************************************************************************************
+	 * METHOD: countsReset()
+	 * PURPOSE: Pushes the count of every shown song, since the counts of the day before now read
+	 *     as 0, and tells every listener.
+	 **********************************************************************************************/
+	private void countsReset(long day) {
+		ArrayList<Song> songs;
+		synchronized(shownSongs) {
+			songs = new ArrayList<Song>(shownSongs.keySet());
+		}
+		for(Song song : songs) { song.countChanged(); }
+		for(ResetListener listener : listeners) {
+			listener.countsReset(day);
+		}
+	}//END countsReset()
+
+	/**********************************************************************************************
+	 * METHOD: show()
+	 * PURPOSE: Starts pushing a song's count into its property when the day moves on.
+	 * @param song The Song whose timesSelectedProperty() was built.
+	 **********************************************************************************************/
+	void show(Song song) {
+		shownSongs.put(song, Boolean.TRUE);
+	}//END show()
+
+	/**********************************************************************************************
+	 * METHOD: addResetListener()
+	 * PURPOSE: Starts telling a listener each time the day moves on.
+	 * @param listener The ResetListener to add.
+	 **********************************************************************************************/
+	public void addResetListener(ResetListener listener) {
+		listeners.add(listener);
+	}//END addResetListener()
+
+	/**********************************************************************************************
+	 * METHOD: removeResetListener()
+	 * PURPOSE: Stops telling a listener when the day moves on.
+	 * @param listener The ResetListener to remove.
+	 **********************************************************************************************/
+	public void removeResetListener(ResetListener listener) {
+		listeners.remove(listener);
+	}//END removeResetListener()
+
+}//END DayEpoch class
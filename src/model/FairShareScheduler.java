@@ -0,0 +1,113 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: FairShareScheduler
+ * DESCRIPTION:
+ * The QueueScheduler that shares play time fairly between users (self-clocked weighted fair
+ * queuing). Each user's songs are tagged with the virtual time they would finish if every user
+ * with songs waiting took turns: a song starts at the later of the current virtual time and the
+ * finish of the user's last song, and takes its length divided by the user's weight. The virtual
+ * time moves to a song's tag when it reaches the head. So a user who queues a dozen songs gets
+ * every other slot against a user who queues one, instead of the next hour, and a user whose
+ * songs have all played starts again from now rather than paying for earlier songs.
+ *
+ * With the admin lane on, songs selected by admins are tagged below every user's song and play
+ * next, in the order they were selected (after the song already playing).
+ **************************************************************************************************/
+
+public class FairShareScheduler implements QueueScheduler {
+
+	private static final long USER_LANE = 1L << 62; //Added to every user tag; admin tags are below it
+	private static final long UNITS_PER_SECOND = 1000;
+
+	private boolean adminLane;
+	private long virtualTime;
+	private long lastFinish;
+	private long nextAdmin;
+	private HashMap<String, Long> finishes; //Finish of each user's last song, while it is ahead of virtualTime
+	private int prunedSize;
+	private ConcurrentHashMap<String, Integer> weights;
+
+	/**********************************************************************************************
+	 * METHOD: FairShareScheduler()
+	 * PURPOSE: Constructs a fair share policy where every user has weight 1.
+	 * @param adminLane The boolean flag to play songs selected by admins before users' songs.
+	 **********************************************************************************************/
+	public FairShareScheduler(boolean adminLane) {
+		this.adminLane = adminLane;
+		finishes = new HashMap<String, Long>();
+		weights = new ConcurrentHashMap<String, Integer>();
+	}//END FairShareScheduler() constructor
+
+	/**********************************************************************************************
+	 * METHOD: setWeight()
+	 * PURPOSE: Gives a user a larger (or smaller) share of play time from their next song on. A
+	 *     user with weight 2 gets twice the play time of a user with weight 1 while both wait.
+	 * @param username The String username.
+	 * @param weight The user's share, at least 1.
+	 **********************************************************************************************/
+	public void setWeight(String username, int weight) {
+		if(weight < 1) {
+			throw new IllegalArgumentException("A weight must be at least 1.");
+		}
+		weights.put(username, weight);
+	}//END setWeight()
+
+	@Override
+	public long schedule(String username, boolean admin, int seconds) {
+		if(admin && adminLane) {
+			return nextAdmin++;
+		}
+		Long previous = finishes.get(username);
+		long start = (previous == null) ? virtualTime : Math.max(virtualTime, previous);
+		Integer weight = weights.get(username);
+		long finish = start + Math.max(1, seconds) * UNITS_PER_SECOND / ((weight == null) ? 1 : weight);
+		finishes.put(username, finish);
+		lastFinish = Math.max(lastFinish, finish);
+		return USER_LANE + finish;
+	}//END schedule()
+
+	@Override
+	public long append() {
+		return USER_LANE + Math.max(lastFinish, virtualTime);
+	}//END append()
+
+	@Override
+	public void started(long tag) {
+		if(tag < USER_LANE) {
+			return; //Admin songs do not move the users' clock
+		}
+		virtualTime = Math.max(virtualTime, tag - USER_LANE);
+		if(finishes.size() > 2*prunedSize + 64) {
+			prune();
+		}
+	}//END started()
+
+	@Override
+	public void reset() {
+		virtualTime = 0;
+		lastFinish = 0;
+		finishes.clear();
+		prunedSize = 0;
+	}//END reset()
+
+	/**********************************************************************************************
+	 * METHOD: prune()
+	 * PURPOSE: Forgets users whose last song the virtual time has passed, since their next song
+	 *     starts from the virtual time anyway. Run once the map doubles, so it costs O(1) a song.
+	 **********************************************************************************************/
+	private void prune() {
+		Iterator<Long> finish = finishes.values().iterator();
+		while(finish.hasNext()) {
+			if(finish.next() <= virtualTime) { finish.remove(); }
+		}
+		prunedSize = finishes.size();
+	}//END prune()
+
+}//END FairShareScheduler class
@@ -0,0 +1,34 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: FifoScheduler
+ * DESCRIPTION:
+ * The QueueScheduler that plays songs in the order they were selected, whoever selected them.
+ * Every song is tagged with the next number, so each one goes to the back of the queue.
+ **************************************************************************************************/
+
+public class FifoScheduler implements QueueScheduler {
+
+	private long next;
+
+	@Override
+	public long schedule(String username, boolean admin, int seconds) {
+		return next++;
+	}//END schedule()
+
+	@Override
+	public long append() {
+		return next++;
+	}//END append()
+
+	@Override
+	public void started(long tag) {
+	}//END started()
+
+	@Override
+	public void reset() {
+	}//END reset()
+
+}//END FifoScheduler class
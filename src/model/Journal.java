@@ -0,0 +1,448 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Journal
+ * DESCRIPTION:
+ * An append-only write-ahead journal of every change made to the Jukebox between snapshots. Each
+ * successful song selection, each end-of-song dequeue and each cancelled song is written as one
+ * small record stamped with a sequence number (LSN); selections and cancels also name the queue
+ * entry, so a cancel is replayed on the entry it removed. Records reach the operating system
+ * immediately and are forced to disk in batches by a background committer thread (group
+ * commit). The snapshot files remember the last LSN they contain, so on startup only the journal
+ * tail newer than each snapshot is replayed, and a crash between writing a snapshot and
+ * truncating the journal is harmless.
+ * A checkpoint moves the records so far aside into an old segment, so the snapshot files can be
+ * written while new records keep arriving; the old segment is deleted once they are on disk.
+ **************************************************************************************************/
+
+public class Journal {
+
+	public static final byte SELECT = 1;
+	public static final byte DEQUEUE = 2;
+	public static final byte CANCEL = 3;
+
+	private static final int COMMIT_BATCH = 32;          //records before a forced commit
+	private static final long COMMIT_INTERVAL_MS = 20;   //longest a record waits for fsync
+	private static final int COMPACT_THRESHOLD = 4096;   //records before a snapshot is taken
+
+	private File journalFile;
+	private File oldSegment;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteArrayOutputStream recordBytes;
+	private DataOutputStream recordData;
+	private CRC32 checksum;
+	private long nextLsn;
+	private int uncommitted;
+	private int recordCount;
+	private boolean open;
+	private Thread committer;
+
+	/**********************************************************************************************
+	 * CLASS: Entry
+	 * PURPOSE: One record read back from the journal during replay.
+	 **********************************************************************************************/
+	public static class Entry {
+		public final long lsn;
+		public final byte type;
+		public final LocalDate date;
+		public final String username;
+		public final String songTitle;
+		public final long entryId; //-1 for a dequeue, or a record written before entries had ids
+
+		private Entry(long lsn, byte type, LocalDate date, String username, String songTitle, long entryId) {
+			this.lsn = lsn;
+			this.type = type;
+			this.date = date;
+			this.username = username;
+			this.songTitle = songTitle;
+			this.entryId = entryId;
+		}//END Entry() constructor
+	}//END Entry class
+
+	/**********************************************************************************************
+	 * METHOD: Journal()
+	 * PURPOSE: Opens (or creates) the journal file, validates every record and cuts off a torn
+	 *     record left behind by a crash, then starts the group-commit thread.
+	 * @param fileName The String name of the journal file. The old segment is fileName + ".old".
+	 * @param snapshotLsn The highest LSN already stored in any snapshot file.
+	 * @throws IOException If the journal file cannot be opened.
+	 **********************************************************************************************/
+	public Journal(String fileName, long snapshotLsn) throws IOException {
+		journalFile = new File(fileName);
+		oldSegment = new File(fileName + ".old");
+		file = new RandomAccessFile(journalFile, "rw");
+		channel = file.getChannel();
+		recordBytes = new ByteArrayOutputStream(128);
+		recordData = new DataOutputStream(recordBytes);
+		checksum = new CRC32();
+		nextLsn = snapshotLsn + 1;
+		open = true;
+
+		//Find the end of the last complete record and continue numbering after it
+		ArrayList<Entry> entries = getEntries();
+		recordCount = entries.size();
+		if(entries.isEmpty() == false) {
+			nextLsn = Math.max(nextLsn, entries.get(entries.size() - 1).lsn + 1);
+		}
+		channel.position(channel.size());
+
+		committer = new Thread(new Committer(), "JournalCommitter");
+		committer.setDaemon(true);
+		committer.start();
+	}//END Journal() constructor
+
+	/**********************************************************************************************
+	 * METHOD: getEntries()
+	 * PURPOSE: Reads every valid record in the old segment (if a checkpoint did not finish) and
+	 *     then the journal. Reading stops at the first short or corrupt record, and the journal is
+	 *     truncated there so new records follow valid ones.
+	 * @return The ArrayList of journal entries in the order they were written.
+	 * @throws IOException If the journal cannot be read.
+	 **********************************************************************************************/
+	public synchronized ArrayList<Entry> getEntries() throws IOException {
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		if(oldSegment.exists()) {
+			RandomAccessFile old = new RandomAccessFile(oldSegment, "r");
+			try {
+				readEntries(old.getChannel(), entries);
+			} finally {
+				old.close();
+			}
+		}
+
+		long validEnd = readEntries(channel, entries);
+		if(validEnd < channel.size()) {
+			channel.truncate(validEnd);
+		}
+		return entries;
+	}//END getEntries()
+
+	/**********************************************************************************************
+	 * METHOD: readEntries()
+	 * PURPOSE: Reads the valid records of one journal file into entries.
+	 * @return The position just after the last valid record.
+	 **********************************************************************************************/
+	private long readEntries(FileChannel segment, ArrayList<Entry> entries) throws IOException {
+		ByteBuffer contents = ByteBuffer.allocate((int) segment.size());
+		segment.read(contents, 0);
+		contents.flip();
+
+		long validEnd = 0;
+		while(contents.remaining() >= 4) {
+			int length = contents.getInt();
+			if(length <= 0 || contents.remaining() < length + 8) {
+				break; //torn write at the tail
+			}
+			byte[] payload = new byte[length];
+			contents.get(payload);
+			long storedCrc = contents.getLong();
+			checksum.reset();
+			checksum.update(payload, 0, length);
+			if(checksum.getValue() != storedCrc) {
+				break;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			try {
+				long lsn = in.readLong();
+				byte type = in.readByte();
+				LocalDate date = LocalDate.ofEpochDay(in.readLong());
+				String username = in.readUTF();
+				String songTitle = in.readUTF();
+				long entryId = (in.available() >= 8) ? in.readLong() : -1; //Older records end here
+				entries.add(new Entry(lsn, type, date, username, songTitle, entryId));
+			} catch (EOFException e) {
+				break;
+			}
+			validEnd = contents.position();
+		}
+		return validEnd;
+	}//END readEntries()
+
+	/**********************************************************************************************
+	 * METHOD: logSelection()
+	 * PURPOSE: Appends a record that a user selected a song and it was added to the queue.
+	 * @param username The String username of the User who selected the song.
+	 * @param songTitle The String title of the selected song.
+	 * @param date The LocalDate the selection was made on.
+	 * @param entryId The id of the song's QueueEntry.
+	 **********************************************************************************************/
+	public void logSelection(String username, String songTitle, LocalDate date, long entryId) {
+		append(SELECT, date, username, songTitle, entryId);
+	}//END logSelection()
+
+	/**********************************************************************************************
+	 * METHOD: logDequeue()
+	 * PURPOSE: Appends a record that the song at the head of the queue finished playing.
+	 * @param date The LocalDate on the jukebox's clock when it finished.
+	 **********************************************************************************************/
+	public void logDequeue(LocalDate date) {
+		append(DEQUEUE, date, "", "", -1);
+	}//END logDequeue()
+
+	/**********************************************************************************************
+	 * METHOD: logCancel()
+	 * PURPOSE: Appends a record that a user's queued song was cancelled and refunded.
+	 * @param username The String username of the User who selected the song ("" if not known).
+	 * @param songTitle The String title of the cancelled song.
+	 * @param date The LocalDate the song was selected on.
+	 * @param entryId The id of the cancelled QueueEntry.
+	 **********************************************************************************************/
+	public void logCancel(String username, String songTitle, LocalDate date, long entryId) {
+		append(CANCEL, date, username, songTitle, entryId);
+	}//END logCancel()
+
+	/**********************************************************************************************
+	 * METHOD: logSelections()
+	 * PURPOSE: Appends one selection record per song with a single write, for songs a user
+	 *     selected together.
+	 * @param username The String username of the User who selected the songs.
+	 * @param songTitles The List of String titles, in the order they were queued.
+	 * @param date The LocalDate the selections were made on.
+	 * @param entryIds The ids of the songs' QueueEntries, in the same order as songTitles.
+	 **********************************************************************************************/
+	public synchronized void logSelections(String username, List<String> songTitles, LocalDate date, long[] entryIds) {
+		if(open == false || songTitles.isEmpty()) {
+			return;
+		}
+		try {
+			ByteBuffer[] records = new ByteBuffer[songTitles.size()];
+			for(int i=0; i<records.length; i++) {
+				records[i] = frame(nextLsn + i, SELECT, date, username, songTitles.get(i), entryIds[i]);
+			}
+			while(records[records.length - 1].hasRemaining()) { channel.write(records); }
+			appended(records.length);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END logSelections()
+
+	/**********************************************************************************************
+	 * METHOD: append()
+	 * PURPOSE: Writes one record at the end of the file. The write goes straight to the operating
+	 *     system; the fsync is left to the committer.
+	 **********************************************************************************************/
+	private synchronized void append(byte type, LocalDate date, String username, String songTitle, long entryId) {
+		if(open == false) {
+			return;
+		}
+		try {
+			ByteBuffer record = frame(nextLsn, type, date, username, songTitle, entryId);
+			while(record.hasRemaining()) { channel.write(record); }
+			appended(1);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END append()
+
+	/**********************************************************************************************
+	 * METHOD: frame()
+	 * PURPOSE: Frames one record as [length][payload][crc], ready to be written.
+	 **********************************************************************************************/
+	private ByteBuffer frame(long lsn, byte type, LocalDate date, String username, String songTitle,
+			long entryId) throws IOException {
+		recordBytes.reset();
+		recordData.writeLong(lsn);
+		recordData.writeByte(type);
+		recordData.writeLong(date.toEpochDay());
+		recordData.writeUTF(username);
+		recordData.writeUTF(songTitle);
+		recordData.writeLong(entryId);
+		byte[] payload = recordBytes.toByteArray();
+		checksum.reset();
+		checksum.update(payload, 0, payload.length);
+
+		ByteBuffer record = ByteBuffer.allocate(payload.length + 12);
+		record.putInt(payload.length).put(payload).putLong(checksum.getValue());
+		record.flip();
+		return record;
+	}//END frame()
+
+	/**********************************************************************************************
+	 * METHOD: appended()
+	 * PURPOSE: Counts records that were written, waking the committer early for a full batch.
+	 **********************************************************************************************/
+	private void appended(int records) {
+		nextLsn += records;
+		recordCount += records;
+		uncommitted += records;
+		if(uncommitted >= COMMIT_BATCH) {
+			notifyAll(); //wake the committer early for a full batch
+		}
+	}//END appended()
+
+	/**********************************************************************************************
+	 * METHOD: commit()
+	 * PURPOSE: Forces every record written so far to disk. The force happens outside the lock so
+	 *     appends can continue while the disk catches up.
+	 **********************************************************************************************/
+	public void commit() {
+		FileChannel records;
+		synchronized(this) {
+			if(open == false || uncommitted == 0) {
+				return;
+			}
+			uncommitted = 0;
+			records = channel;
+		}
+		long start = System.nanoTime();
+		try {
+			records.force(false);
+			JukeboxMetrics.JOURNAL_COMMIT.recordSince(start);
+		} catch (ClosedChannelException e) {
+			//A checkpoint forced and closed this segment first
+		} catch (IOException e) {
+			JukeboxMetrics.JOURNAL_FAILED.increment();
+			e.printStackTrace();
+		}
+	}//END commit()
+
+	/**********************************************************************************************
+	 * METHOD: getLastLsn()
+	 * PURPOSE: Returns the LSN of the most recent record, which a snapshot taken now contains.
+	 * @return The last LSN handed out.
+	 **********************************************************************************************/
+	public synchronized long getLastLsn() {
+		return nextLsn - 1;
+	}//END getLastLsn()
+
+	/**********************************************************************************************
+	 * METHOD: needsCompaction()
+	 * PURPOSE: Returns whether enough records have built up that a new snapshot should be taken.
+	 * @return True if the journal should be compacted.
+	 **********************************************************************************************/
+	public synchronized boolean needsCompaction() {
+		return recordCount >= COMPACT_THRESHOLD;
+	}//END needsCompaction()
+
+	/**********************************************************************************************
+	 * METHOD: compact()
+	 * PURPOSE: Writes a snapshot while no records can be appended, then empties the journal.
+	 * @param snapshotWriter The Runnable that writes every snapshot file stamped with getLastLsn().
+	 **********************************************************************************************/
+	public synchronized void compact(Runnable snapshotWriter) {
+		snapshotWriter.run();
+		try {
+			channel.truncate(0);
+			channel.force(true);
+			uncommitted = 0;
+			recordCount = 0;
+			Files.deleteIfExists(oldSegment.toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END compact()
+
+	/**********************************************************************************************
+	 * METHOD: checkpoint()
+	 * PURPOSE: Copies the state for a snapshot while no records can be appended, then moves the
+	 *     records so far aside into the old segment and starts an empty journal. The snapshot can
+	 *     then be written without holding up appends; dropCheckpoint() deletes the old segment
+	 *     once it is on disk. If an earlier checkpoint was never dropped, its old segment is kept
+	 *     and the records stay in the journal, where replay skips the ones the snapshot holds.
+	 * @param snapshotCopier The Runnable that copies every changed file stamped with getLastLsn().
+	 **********************************************************************************************/
+	public synchronized void checkpoint(Runnable snapshotCopier) {
+		snapshotCopier.run();
+		if(open == false || oldSegment.exists()) {
+			return;
+		}
+		try {
+			channel.force(false);
+			file.close();
+			Files.move(journalFile.toPath(), oldSegment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		try {
+			file = new RandomAccessFile(journalFile, "rw");
+			channel = file.getChannel();
+			channel.position(channel.size());
+			uncommitted = 0;
+			recordCount = 0;
+		} catch (IOException e) {
+			open = false; //nowhere left to append; the snapshots still hold every change so far
+			e.printStackTrace();
+		}
+	}//END checkpoint()
+
+	/**********************************************************************************************
+	 * METHOD: dropCheckpoint()
+	 * PURPOSE: Deletes the old segment once every snapshot taken at the checkpoint is on disk.
+	 **********************************************************************************************/
+	public synchronized void dropCheckpoint() {
+		try {
+			Files.deleteIfExists(oldSegment.toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END dropCheckpoint()
+
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Commits outstanding records, stops the committer and closes the journal file.
+	 **********************************************************************************************/
+	public void close() {
+		commit();
+		synchronized(this) {
+			open = false;
+			notifyAll();
+		}
+		try {
+			committer.join();
+			file.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END close()
+
+	/**********************************************************************************************
+	 * CLASS: Committer
+	 * PURPOSE: Forces batches of records to disk every COMMIT_INTERVAL_MS, or sooner when a full
+	 *     batch is waiting.
+	 **********************************************************************************************/
+	private class Committer implements Runnable {
+		@Override
+		public void run() {
+			while(true) {
+				synchronized(Journal.this) {
+					if(open == false) {
+						return;
+					}
+					if(uncommitted < COMMIT_BATCH) {
+						try {
+							Journal.this.wait(COMMIT_INTERVAL_MS);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				commit();
+			}
+		}//END run()
+	}//END Committer class
+
+}//END Journal class
@@ -1,21 +1,24 @@
 package model;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
-import views.LoginView;
-import views.JukeboxView;
 
 /**************************************************************************************************
  * @author Ashley Mains and Victor Gomes
@@ -30,10 +33,43 @@ public class Jukebox {
 	
 	private ObservableList<Song> observeSongs;
 	private ArrayList<Song> songData;
-	private Map<String, Song> songList;
-	private ArrayList<String> songQueue;
-	private LocalDate startDate;
-	private MediaPlayer mediaPlayer;
+	private ConcurrentHashMap<String, Song> songList;
+	private PlayQueue songQueue;
+	private PlaybackEngine playbackEngine;
+	private File dataFolder;
+	private final DayEpoch dayEpoch = new DayEpoch(Clock.systemDefaultZone()); //This jukebox's day and clock
+	
+	//Binary catalog used instead of "SongList" when present
+	private static final String CATALOG_FILE = "SongCatalog";
+	private volatile SongCatalog songCatalog;
+	private File catalogFile; //The generation of the catalog that is mapped
+	private CatalogSongList catalogSongs; //The table's rows, built a page at a time
+	private SongSearchIndex searchIndex;
+	private final Leaderboard leaderboard = new Leaderboard(dayEpoch);
+	
+	//The venue's selection limits, read from "QuotaRules" in the data folder when it has one
+	private static final String QUOTA_FILE = "QuotaRules";
+	private volatile QuotaRules quotaRules = new QuotaRules();
+	
+	//What the last scan of a song folder read from each file
+	private static final String SCAN_CACHE_FILE = "ScanCache";
+	
+	//Write-ahead journal fields
+	private static final String JOURNAL_FILE = "JukeboxJournal";
+	private Journal journal;
+	private AllAccounts accounts;
+	private long songsLsn;
+	private long queueLsn;
+	
+	//Change counts at the last save, so unchanged files are not written again
+	private final LongAdder songChanges = new LongAdder();
+	private final AtomicLong songsSaved = new AtomicLong(-1);
+	private final AtomicLong queueSaved = new AtomicLong(-1);
+	private final Object snapshotLock = new Object(); //One save at a time
+	
+	//Read-locked while a change is made and journaled, write-locked while a snapshot is copied, so
+	//a snapshot never holds a change whose journal record comes after its LSN
+	private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
 	
 	/**********************************************************************************************
 	 * METHOD: Jukebox()
@@ -41,33 +77,101 @@ public class Jukebox {
 	 * Resets all values to default if 'false' is passed as a parameter.
 	 * @param doReadFiles The boolean flaf to determine whether to read files or not.
 	 **********************************************************************************************/
-	@SuppressWarnings("unchecked")
 	public Jukebox(boolean doReadFiles) {
+		this(doReadFiles, (File) null);
+	}//END Jukebox() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: Jukebox()
+	 * PURPOSE: Constructs a Jukebox object that reads and writes its files in the given folder
+	 *     instead of the working directory.
+	 * @param dataFolder The folder holding "SongList" (or "SongCatalog") and "SongQueue".
+	 **********************************************************************************************/
+	public Jukebox(File dataFolder) {
+		this(true, dataFolder);
+	}//END Jukebox() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: Jukebox()
+	 * PURPOSE: Constructs a Jukebox object that plays its queue through the given engine instead
+	 *     of the song files, such as a VirtualPlaybackEngine for a simulation.
+	 * @param doReadFiles The boolean flag to determine whether to read files or not.
+	 * @param engine The PlaybackEngine to play the queue with.
+	 **********************************************************************************************/
+	public Jukebox(boolean doReadFiles, PlaybackEngine engine) {
+		this(doReadFiles, null, engine);
+	}//END Jukebox() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: Jukebox()
+	 * PURPOSE: Constructs a Jukebox object, reading its files from 'dataFolder' (the working
+	 *     directory if null) or resetting to default values that are saved to 'dataFolder'.
+	 **********************************************************************************************/
+	Jukebox(boolean doReadFiles, File dataFolder) {
+		this(doReadFiles, dataFolder, new MediaPlaybackEngine());
+	}//END Jukebox() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: Jukebox()
+	 * PURPOSE: Constructs a Jukebox object like the one above that plays through 'engine'.
+	 **********************************************************************************************/
+	@SuppressWarnings("unchecked")
+	Jukebox(boolean doReadFiles, File dataFolder, PlaybackEngine engine) {
+		this.dataFolder = dataFolder;
 		observeSongs = FXCollections.observableArrayList();
 		songData = new ArrayList<Song>(0);
-		songList = new HashMap<String, Song>();
-		songQueue = new ArrayList<String>(0);
-		startDate = LocalDate.now();
+		songList = new ConcurrentHashMap<String, Song>();
+		songQueue = new PlayQueue();
+		playbackEngine = engine;
+		playbackEngine.setEndOfSongHandler(new EndOfSongHandler());
+		if(dataFile(QUOTA_FILE).exists()) {
+			try {
+				quotaRules = QuotaRules.load(dataFile(QUOTA_FILE));
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (IllegalArgumentException e) {
+				e.printStackTrace();
+			}
+		}
 		
 		if(doReadFiles) {
 			try {
-				//Read all song data
-				FileInputStream fileStream = new FileInputStream("SongList");
-				ObjectInputStream objectStream1 = new ObjectInputStream(fileStream);
-				songData = (ArrayList<Song>) objectStream1.readObject();
-				objectStream1.close();
-				
-				//Map song data
-				for(int i=0; i<songData.size(); i++) {
-					songList.put(songData.get(i).getSongTitle(), songData.get(i));
-					observeSongs.add(songData.get(i));
+				catalogFile = SongCatalog.newest(dataFile(CATALOG_FILE));
+				if(catalogFile != null) {
+					//Map the binary catalog; songs are loaded as they are looked up
+					songCatalog = new SongCatalog(catalogFile.getPath(), dayEpoch);
+					songsLsn = songCatalog.getJournalLsn();
+					SongCatalog.deleteOlder(dataFile(CATALOG_FILE), catalogFile);
+				} else {
+					//Read all song data
+					FileInputStream fileStream = new FileInputStream(dataFile("SongList"));
+					ObjectInputStream objectStream1 = new ObjectInputStream(fileStream);
+					songData = (ArrayList<Song>) objectStream1.readObject();
+					songsLsn = readSnapshotLsn(objectStream1);
+					objectStream1.close();
+					
+					//Map song data
+					for(int i=0; i<songData.size(); i++) {
+						songData.get(i).setEpoch(dayEpoch);
+						songList.put(songData.get(i).getSongTitle(), songData.get(i));
+						observeSongs.add(songData.get(i));
+					}
 				}
 				
 				//Read current queue
-				fileStream = new FileInputStream("SongQueue");
+				FileInputStream fileStream = new FileInputStream(dataFile("SongQueue"));
 				ObjectInputStream objectStream2 = new ObjectInputStream(fileStream);
-				songQueue = (ArrayList<String>) objectStream2.readObject();
+				for(Object queued : (ArrayList<Object>) objectStream2.readObject()) {
+					if(queued instanceof QueueEntry) {
+						songQueue.restore((QueueEntry) queued);
+					} else {
+						songQueue.offer((String) queued); //Saved before entries were
+					}
+				}
+				queueLsn = readSnapshotLsn(objectStream2);
 				objectStream2.close();
+				songsSaved.set(0);
+				queueSaved.set(songQueue.getChanges());
 			} catch (IOException e) {
 				e.printStackTrace();
 			} catch (ClassNotFoundException e) {
@@ -80,100 +184,947 @@ public class Jukebox {
 		playNextSong();
 	}//END Jukebox() constructor
 	
+	/**********************************************************************************************
+	 * METHOD: readSnapshotLsn()
+	 * PURPOSE: Reads the journal LSN stored after the object in a snapshot file. Files written
+	 *     before the journal existed end after the object and count as LSN 0.
+	 * @param objectStream The ObjectInputStream positioned after the snapshot object.
+	 * @return The last journal LSN contained in the snapshot.
+	 * @throws IOException If the file cannot be read.
+	 **********************************************************************************************/
+	static long readSnapshotLsn(ObjectInputStream objectStream) throws IOException {
+		try {
+			return objectStream.readLong();
+		} catch (EOFException e) {
+			return 0;
+		}
+	}//END readSnapshotLsn()
+	
+	/**********************************************************************************************
+	 * METHOD: openJournal()
+	 * PURPOSE: Starts recording every selection and dequeue to the write-ahead journal. When
+	 *     recovering, the journal tail newer than the snapshot files is replayed first; when
+	 *     starting from defaults, a fresh snapshot is taken so the old journal is discarded.
+	 * @param accountList The AllAccounts whose users are charged for selections.
+	 * @param recover The boolean flag to replay the journal on top of the snapshot files.
+	 **********************************************************************************************/
+	public void openJournal(AllAccounts accountList, boolean recover) {
+		accounts = accountList;
+		long snapshotLsn = Math.max(Math.max(songsLsn, queueLsn), accounts.getJournalLsn());
+		try {
+			Journal opened = new Journal(dataFile(JOURNAL_FILE).getPath(), snapshotLsn);
+			if(recover) {
+				replayJournal(opened.getEntries());
+			}
+			journal = opened;
+			if(recover == false) {
+				compactJournal();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END openJournal()
+	
+	/**********************************************************************************************
+	 * METHOD: replayJournal()
+	 * PURPOSE: Re-applies journal records that are newer than the snapshot each one affects. The
+	 *     selections were already validated when they were made, so only their effects are redone.
+	 * @param entries The ArrayList of journal entries in the order they were written.
+	 **********************************************************************************************/
+	private void replayJournal(ArrayList<Journal.Entry> entries) {
+		if(entries.isEmpty()) {
+			return;
+		}
+		playbackEngine.stop(); //Restart playback once the real queue head is known
+		
+		for(Journal.Entry entry : entries) {
+			if(entry.type == Journal.SELECT) {
+				dayEpoch.advanceTo(entry.date);
+				long day = entry.date.toEpochDay();
+				Song song = findSong(entry.songTitle);
+				if(song == null) {
+					continue;
+				}
+				if(entry.lsn > songsLsn) {
+					song.selectSong(day);
+					songChanges.increment();
+				}
+				User user = accounts.getUser(entry.username);
+				if(user != null && entry.lsn > accounts.getJournalLsn()) { user.selectSong(song.getSeconds(), day); }
+				if(entry.lsn > queueLsn) { offerReplayed(entry, user, song.getSeconds()); }
+			} else if(entry.type == Journal.DEQUEUE) {
+				if(entry.lsn > queueLsn) { songQueue.removeHead(); }
+			} else if(entry.type == Journal.CANCEL) {
+				replayCancel(entry);
+			}
+		}
+		playNextSong();
+	}//END replayJournal()
+	
+	/**********************************************************************************************
+	 * METHOD: replayCancel()
+	 * PURPOSE: Re-applies a cancelled song, removing the queue entry the record names. A record
+	 *     written before records named their entry removes the user's last queued copy of the song.
+	 **********************************************************************************************/
+	private void replayCancel(Journal.Entry entry) {
+		long day = entry.date.toEpochDay();
+		Song song = findSong(entry.songTitle);
+		if(song == null) {
+			return;
+		}
+		if(entry.lsn > songsLsn) {
+			song.unselectSong(day);
+			songChanges.increment();
+		}
+		User user = accounts.getUser(entry.username);
+		if(user != null && entry.lsn > accounts.getJournalLsn()) { user.refundSong(song.getSeconds(), day); }
+		if(entry.lsn > queueLsn) {
+			if(entry.entryId >= 0) {
+				songQueue.cancel(entry.entryId);
+			} else {
+				QueueEntry cancelled = songQueue.lastEntry(entry.username, entry.songTitle);
+				if(cancelled != null) { songQueue.cancel(cancelled.id); }
+			}
+		}
+	}//END replayCancel()
+	
+	/**********************************************************************************************
+	 * METHOD: offerReplayed()
+	 * PURPOSE: Queues a replayed selection under the entry id it was given, where the scheduler
+	 *     places it, or at the back if its user no longer has an account.
+	 **********************************************************************************************/
+	private void offerReplayed(Journal.Entry entry, User user, int seconds) {
+		String username = (user == null) ? null : user.getUsername();
+		long day = entry.date.toEpochDay();
+		QueueEntry queued = (entry.entryId >= 0)
+				? songQueue.replayedEntry(entry.entryId, entry.songTitle, username, seconds, day)
+				: songQueue.newEntry(entry.songTitle, username, seconds, day, 0);
+		if(user == null) {
+			songQueue.restore(queued);
+		} else {
+			songQueue.offer(queued, user.isAdmin());
+		}
+	}//END offerReplayed()
+	
+	/**********************************************************************************************
+	 * METHOD: compactJournal()
+	 * PURPOSE: Saves the song, queue and account files that changed since their last save, stamped
+	 *     with the last journal LSN, and then drops the journal records they contain. The changed
+	 *     files are copied while no change can be made or journaled and written after, so
+	 *     selections only wait for the copy. Without a journal only the song and queue files are
+	 *     saved. PersistenceWriter calls this off the selection path.
+	 **********************************************************************************************/
+	public void compactJournal() {
+		synchronized(snapshotLock) {
+			if(hasUnsavedChanges() == false) {
+				return;
+			}
+			SnapshotCopier copier = new SnapshotCopier();
+			Journal current = journal;
+			changeLock.writeLock().lock();
+			try {
+				if(current != null) {
+					current.checkpoint(copier);
+				} else {
+					copier.run();
+				}
+			} finally {
+				changeLock.writeLock().unlock();
+			}
+			boolean saved = copier.copied;
+			for(SnapshotFile file : copier.files) {
+				saved &= file.write();
+			}
+			if(current != null && saved) {
+				current.dropCheckpoint();
+			}
+		}
+	}//END compactJournal()
+	
+	/**********************************************************************************************
+	 * METHOD: hasUnsavedChanges()
+	 * PURPOSE: Returns whether the songs, the queue or (with a journal) the accounts changed since
+	 *     they were last saved.
+	 * @return True if compactJournal() has anything to write.
+	 **********************************************************************************************/
+	public boolean hasUnsavedChanges() {
+		return songChanges.sum() != songsSaved.get() || songQueue.getChanges() != queueSaved.get()
+				|| (journal != null && accounts.hasUnsavedChanges());
+	}//END hasUnsavedChanges()
+	
+	/**********************************************************************************************
+	 * METHOD: needsCompaction()
+	 * PURPOSE: Returns whether enough journal records have built up that a save is due.
+	 * @return True if the journal should be compacted.
+	 **********************************************************************************************/
+	public boolean needsCompaction() {
+		Journal current = journal;
+		return current != null && current.needsCompaction();
+	}//END needsCompaction()
+	
+	/**********************************************************************************************
+	 * METHOD: closeJournal()
+	 * PURPOSE: Commits and closes the journal. When 'discard' is true the journal is emptied
+	 *     first so changes since the last snapshot are not replayed on the next start.
+	 * @param discard The boolean flag to throw away unsaved changes.
+	 **********************************************************************************************/
+	public void closeJournal(boolean discard) {
+		if(journal != null) {
+			if(discard) { journal.compact(new NoSnapshot()); }
+			journal.close();
+			journal = null;
+		}
+	}//END closeJournal()
+	
 	/**********************************************************************************************
 	 * METHOD: getAllSongInfo()
 	 * PURPOSE: Returns the Observable list of all Songs to be displayed in the Jukebox of the GUI.
+	 *     With a catalog it is a CatalogSongList, which only builds the rows that are shown.
 	 * @return The ObservableList of all song data.
 	 **********************************************************************************************/
-	public ObservableList<Song> getAllSongInfo() { 
-		return observeSongs;
+	public synchronized ObservableList<Song> getAllSongInfo() { 
+		if(songCatalog == null) {
+			return observeSongs;
+		}
+		if(catalogSongs == null) {
+			catalogSongs = new CatalogSongList(songCatalog);
+			for(Song song : songData) { catalogSongs.addSong(song); }
+		}
+		return catalogSongs;
 	}//END getSongInfo()
 	
+	/**********************************************************************************************
+	 * METHOD: getSongTotal()
+	 * PURPOSE: Returns the number of songs in the Jukebox.
+	 * @return The song count.
+	 **********************************************************************************************/
+	public synchronized int getSongTotal() {
+		return ((songCatalog == null) ? 0 : songCatalog.size()) + songData.size();
+	}//END getSongTotal()
+	
+	/**********************************************************************************************
+	 * METHOD: getSongs()
+	 * PURPOSE: Returns one page of the songs in catalog order, without building the JavaFX list.
+	 *     Safe to call from any thread.
+	 * @param offset The position of the first song to return.
+	 * @param limit The maximum number of songs to return.
+	 * @return The List of Songs on the page.
+	 **********************************************************************************************/
+	public synchronized List<Song> getSongs(int offset, int limit) {
+		int catalogSize = (songCatalog == null) ? 0 : songCatalog.size();
+		int end = Math.min(getSongTotal(), offset + Math.max(0, limit));
+		ArrayList<Song> page = new ArrayList<Song>(Math.max(0, end - offset));
+		for(int i=Math.max(0, offset); i<end; i++) {
+			page.add((i < catalogSize) ? songCatalog.getSong(i) : songData.get(i - catalogSize));
+		}
+		return page;
+	}//END getSongs()
+	
+	/**********************************************************************************************
+	 * METHOD: findSong()
+	 * PURPOSE: Returns the Song with the given title, loading it from the catalog on first use.
+	 *     A song already loaded is found without a lock; loading one waits for rewriteCatalog().
+	 * @param title The String title of the song.
+	 * @return The Song with the given title, or null if there is no such song.
+	 **********************************************************************************************/
+	private Song findSong(String title) {
+		Song song = songList.get(title);
+		if(song == null && songCatalog != null) {
+			synchronized(this) {
+				song = songList.get(title);
+				if(song == null) {
+					song = songCatalog.getSong(title);
+					if(song != null) { songList.put(title, song); }
+				}
+			}
+		}
+		return song;
+	}//END findSong()
+	
+	/**********************************************************************************************
+	 * METHOD: addSong()
+	 * PURPOSE: Adds a new song to the Jukebox unless a song with the same title already exists.
+	 * @param song The Song to add.
+	 * @return True if the song was added, false if the title is already taken.
+	 **********************************************************************************************/
+	public synchronized boolean addSong(Song song) {
+		if(findSong(song.getSongTitle()) != null) {
+			return false;
+		}
+		song.setEpoch(dayEpoch);
+		songData.add(song);
+		songList.put(song.getSongTitle(), song);
+		songChanges.increment();
+		if(songCatalog == null) {
+			observeSongs.add(song);
+		} else if(catalogSongs != null) {
+			catalogSongs.addSong(song);
+		}
+		if(searchIndex != null) { searchIndex.add(song); }
+		return true;
+	}//END addSong()
+	
+	/**********************************************************************************************
+	 * METHOD: getLeaderboard()
+	 * PURPOSE: Returns the ranking of the songs selected most today and over the last hour and day.
+	 * @return The Leaderboard of this Jukebox.
+	 **********************************************************************************************/
+	public Leaderboard getLeaderboard() {
+		return leaderboard;
+	}//END getLeaderboard()
+	
+	/**********************************************************************************************
+	 * METHOD: searchSongs()
+	 * PURPOSE: Returns the songs whose title or artist words start with the words of a query. The
+	 *     index is built by the first search, so this should be called off the UI thread.
+	 * @param query The String typed into the search bar.
+	 * @param limit The maximum number of songs to return.
+	 * @return The List of matching Songs, best match first.
+	 **********************************************************************************************/
+	public List<Song> searchSongs(String query, int limit) {
+		return getSearchIndex().search(query, limit);
+	}//END searchSongs()
+	
+	/**********************************************************************************************
+	 * METHOD: getSearchIndex()
+	 * PURPOSE: Returns the search index, building it the first time from the catalog's titles and
+	 *     artists, which loads none of its songs, followed by the added songs.
+	 **********************************************************************************************/
+	private synchronized SongSearchIndex getSearchIndex() {
+		if(searchIndex == null) {
+			SongSearchIndex index = (songCatalog == null) ? new SongSearchIndex() : new SongSearchIndex(songCatalog);
+			for(Song song : songData) { index.add(song); }
+			searchIndex = index;
+		}
+		return searchIndex;
+	}//END getSearchIndex()
+	
+	/**********************************************************************************************
+	 * METHOD: importSongFiles()
+	 * PURPOSE: Scans a folder of song files (normally "songfiles") and adds every song whose file
+	 *     is not already used by a song in the Jukebox. What was read from each file is cached in
+	 *     the data folder, so the next scan only reads the files that changed.
+	 * @param folder The folder to scan.
+	 * @return The number of songs added.
+	 **********************************************************************************************/
+	public int importSongFiles(File folder) {
+		Set<String> pathsInUse = new HashSet<String>();
+		for(Song song : songList.values()) { pathsInUse.add(song.getSongPath()); }
+		if(songCatalog != null) {
+			for(int i=0; i<songCatalog.size(); i++) { pathsInUse.add(songCatalog.getSong(i).getSongPath()); }
+		}
+		
+		int added = 0;
+		for(Song song : new SongScanner(dataFile(SCAN_CACHE_FILE)).scan(folder)) {
+			if(pathsInUse.contains(song.getSongPath()) == false && addSong(song)) { added++; }
+		}
+		return added;
+	}//END importSongFiles()
+	
 	/**********************************************************************************************
 	 * METHOD: getSongQueue()
-	 * PURPOSE: Returns the ArrayList of all Songs in the queue.
+	 * PURPOSE: Returns a copy of the queue of song titles, head first.
 	 * @return The ArrayList of all songs in the queue.
 	 **********************************************************************************************/
 	public ArrayList<String> getSongQueue(){
-		return songQueue;
+		return songQueue.toList();
 	}//END getSongQueue()
 	
+	/**********************************************************************************************
+	 * METHOD: getQueueHead()
+	 * PURPOSE: Returns the first songs in the queue without copying the rest of it.
+	 * @param count The maximum number of song titles to return.
+	 * @return The ArrayList of song titles from the head of the queue.
+	 **********************************************************************************************/
+	public ArrayList<String> getQueueHead(int count) {
+		return songQueue.head(count);
+	}//END getQueueHead()
+	
+	/**********************************************************************************************
+	 * METHOD: getQueueEntries()
+	 * PURPOSE: Returns the first songs in the queue with each song's entry id.
+	 * @param count The maximum number of entries to return.
+	 * @return The ArrayList of QueueEntries from the head of the queue.
+	 **********************************************************************************************/
+	public ArrayList<QueueEntry> getQueueEntries(int count) {
+		return songQueue.entries(count);
+	}//END getQueueEntries()
+	
+	/**********************************************************************************************
+	 * METHOD: cancelSong()
+	 * PURPOSE: Removes a queued song and refunds the user who selected it: the song's time, and
+	 *     the user's and the song's daily counts if it was selected today. A user may cancel their
+	 *     own songs and an admin any song, but not the song that is playing. The selection is also
+	 *     taken off the leaderboard and out of the venue's windows and cooldowns. The song is
+	 *     found by its id, so cancelling costs the same wherever it is in the queue.
+	 * @param requester The User asking to cancel the song.
+	 * @param entryId The id of the song's QueueEntry.
+	 * @return The CancelOutcome: CANCELLED or the reason the song was not cancelled.
+	 **********************************************************************************************/
+	public CancelOutcome cancelSong(User requester, long entryId) {
+		QueueEntry entry = songQueue.getEntry(entryId);
+		if(entry == null) {
+			return CancelOutcome.NOT_FOUND;
+		}
+		boolean own = requester.getUsername().equals(entry.username);
+		if(own == false && requester.isAdmin() == false) {
+			return CancelOutcome.NOT_ALLOWED;
+		}
+		User owner = own ? requester : findOwner(entry);
+		int index;
+		changeLock.readLock().lock();
+		try {
+			index = songQueue.cancel(entryId);
+			if(index < 0) {
+				return songQueue.isPlaying(entryId) ? CancelOutcome.PLAYING : CancelOutcome.NOT_FOUND;
+			}
+			
+			//Refund the user before the song, the order selections lock them in
+			if(owner != null) {
+				synchronized(owner) { owner.refundSong(entry.seconds, entry.day); }
+			}
+			Song song = findSong(entry.title);
+			if(song != null) {
+				synchronized(song) { song.unselectSong(entry.day); }
+				songChanges.increment();
+			}
+			if(entry.millis != 0) {
+				leaderboard.unrecord(entry.title, entry.day, entry.millis);
+				if(song != null) { quotaRules.giveBack(entry.username, song, entry.millis); }
+			}
+			if(journal != null) {
+				journal.logCancel((entry.username == null) ? "" : entry.username, entry.title,
+						LocalDate.ofEpochDay(entry.day), entry.id);
+			}
+		} finally {
+			changeLock.readLock().unlock();
+		}
+		startQueued(index); //It may have been buffered to play next
+		return CancelOutcome.CANCELLED;
+	}//END cancelSong()
+	
+	/**********************************************************************************************
+	 * METHOD: findOwner()
+	 * PURPOSE: Returns the User who queued an entry, if the accounts are known to this Jukebox.
+	 **********************************************************************************************/
+	private User findOwner(QueueEntry entry) {
+		if(accounts == null || entry.username == null) {
+			return null;
+		}
+		return accounts.getUser(entry.username);
+	}//END findOwner()
+	
+	/**********************************************************************************************
+	 * METHOD: getQueueSize()
+	 * PURPOSE: Returns the number of songs waiting in the queue, including the one playing.
+	 * @return The queue length.
+	 **********************************************************************************************/
+	public int getQueueSize() {
+		return songQueue.size();
+	}//END getQueueSize()
+	
+	/**********************************************************************************************
+	 * METHOD: setQueueScheduler()
+	 * PURPOSE: Chooses the order selected songs are played in from now on, such as a
+	 *     FairShareScheduler for a busy room. Songs already queued keep their order.
+	 * @param scheduler The QueueScheduler that places each selected song.
+	 **********************************************************************************************/
+	public void setQueueScheduler(QueueScheduler scheduler) {
+		songQueue.setScheduler(scheduler);
+	}//END setQueueScheduler()
+	
+	/**********************************************************************************************
+	 * METHOD: addQueueListener()
+	 * PURPOSE: Reports every song added to or removed from the queue to a listener, starting from
+	 *     the queue returned here.
+	 * @param listener The PlayQueue.Listener to notify of each change.
+	 * @return The ArrayList of QueueEntries in the queue when the listener was added.
+	 **********************************************************************************************/
+	public ArrayList<QueueEntry> addQueueListener(PlayQueue.Listener listener) {
+		return songQueue.addListener(listener);
+	}//END addQueueListener()
+	
+	/**********************************************************************************************
+	 * METHOD: setClock()
+	 * PURPOSE: Sets the clock selections are timed by, for the venue's window rules and the
+	 *     leaderboard, such as a SimulatedClock to run through days in moments. This jukebox's
+	 *     counts are kept for the day on the new clock from then on.
+	 * @param newClock The Clock to read the time from.
+	 **********************************************************************************************/
+	public void setClock(Clock newClock) {
+		dayEpoch.setClock(newClock);
+	}//END setClock()
+	
+	/**********************************************************************************************
+	 * METHOD: getDayEpoch()
+	 * PURPOSE: Returns the day this jukebox's selection counts are kept for, and its clock.
+	 * @return The DayEpoch of this Jukebox.
+	 **********************************************************************************************/
+	public DayEpoch getDayEpoch() {
+		return dayEpoch;
+	}//END getDayEpoch()
+	
+	/**********************************************************************************************
+	 * METHOD: setQuotaRules()
+	 * PURPOSE: Replaces the venue's selection limits. Selections already made keep counting
+	 *     toward the daily limits, but the new rules' windows start empty.
+	 * @param rules The QuotaRules to check each selection against.
+	 **********************************************************************************************/
+	public void setQuotaRules(QuotaRules rules) {
+		quotaRules = rules;
+	}//END setQuotaRules()
+	
+	/**********************************************************************************************
+	 * METHOD: getQuotaRules()
+	 * PURPOSE: Returns the venue's selection limits.
+	 * @return The QuotaRules each selection is checked against.
+	 **********************************************************************************************/
+	public QuotaRules getQuotaRules() {
+		return quotaRules;
+	}//END getQuotaRules()
+	
 	/**********************************************************************************************
 	 * METHOD: checkSongAvailability()
-	 * PURPOSE: Determines if the song selected is allowed to be played based on the current date,
-	 *     user selection total, and particular song selection total.
+	 * PURPOSE: Selects a song like selectSong() and returns the outcome as a message: "Confirm"
+	 *     if the song was queued, otherwise the reason it was refused.
 	 * @param user The User who requested a song.
 	 * @param song The Srtring name of the song being requested.
 	 * @param checkDate The LocalDate of the current date to be checked.
 	 * @return The return message String.
 	 **********************************************************************************************/
 	public String checkSongAvailability(User user, String song, LocalDate checkDate) {
-		//Reset jukebox counts based on date if valid
-		if(checkDate.isAfter(startDate)) {
-			startDate = checkDate;
-			Set<String> keySet = songList.keySet();
-			for(String key : keySet) { songList.get(key).resetCount(); }
-			LoginView.resetCounts();
+		SelectionOutcome outcome = selectSong(user, song, checkDate, null);
+		return outcome.isQueued() ? "Confirm" : quotaRules.message(outcome);
+	}//END checkSongAvailability()
+	
+	/**********************************************************************************************
+	 * METHOD: selectSong()
+	 * PURPOSE: Determines if the song selected is allowed to be played based on the current date,
+	 *     user selection total, particular song selection total and any other QuotaRules of the
+	 *     venue, and queues it if so. Safe to
+	 *     call from many threads at once: the user and then the song are locked while their counts
+	 *     are checked and taken, so requests for different users and songs never wait on each
+	 *     other. Nothing is allocated for a refused selection.
+	 * @param user The User who requested a song.
+	 * @param song The String name of the song being requested.
+	 * @param checkDate The LocalDate of the current date to be checked.
+	 * @param result The SelectionResult to fill in with the user's and song's counts, or null.
+	 * @return The SelectionOutcome: QUEUED or the reason the song was refused.
+	 **********************************************************************************************/
+	public SelectionOutcome selectSong(User user, String song, LocalDate checkDate, SelectionResult result) {
+		//Counts from earlier days read as 0 once the day moves on, so nothing has to be reset
+		dayEpoch.advanceTo(checkDate);
+		user.advanceTo(checkDate);
+		
+		SelectionOutcome outcome;
+		int position = -1;
+		changeLock.readLock().lock();
+		try {
+			//Must input a valid song name
+			Song selected = findSong(song);
+			if(selected == null) {
+				JukeboxMetrics.countSelection(SelectionOutcome.NOT_FOUND);
+				if(result != null) {
+					result.set(SelectionOutcome.NOT_FOUND, user.getTimeRemaining(), user.getSongCount(), 0);
+				}
+				return SelectionOutcome.NOT_FOUND;
+			}
+			
+			QuotaRules rules = quotaRules;
+			long now = dayEpoch.millis();
+			//Always lock the user before the song so two requests can never deadlock
+			synchronized(user) {
+				synchronized(selected) {
+					outcome = takeSelection(rules, user, selected, now);
+					if(result != null) {
+						result.set(outcome, user.getTimeRemaining(), user.getSongCount(), selected.getTimesSelected());
+					}
+				}
+			}
+			
+			JukeboxMetrics.countSelection(outcome);
+			if(outcome.isQueued()) {
+				position = enqueue(user, selected, checkDate, now, result);
+			}
+		} finally {
+			changeLock.readLock().unlock();
 		}
+		startQueued(position);
+		return outcome;
+	}//END selectSong()
+	
+	/**********************************************************************************************
+	 * METHOD: selectSongs()
+	 * PURPOSE: Evaluates a list of song requests for one user in a single pass, in order, while
+	 *     the user stays locked: each request sees the time and daily count taken by the ones
+	 *     before it, exactly as if they were selected one after another. Allowed songs are queued
+	 *     in request order.
+	 * @param user The User who requested the songs.
+	 * @param songs The List of String song names, in the order they were requested.
+	 * @param checkDate The LocalDate of the current date to be checked.
+	 * @param outcomes The array to receive each request's SelectionOutcome, at least songs.size()
+	 *     long (reuse it to select without allocating).
+	 * @return The number of songs queued.
+	 **********************************************************************************************/
+	public int selectSongs(User user, List<String> songs, LocalDate checkDate, SelectionOutcome[] outcomes) {
+		if(outcomes.length < songs.size()) {
+			throw new IllegalArgumentException("The outcomes array is shorter than the list of songs.");
+		}
+		dayEpoch.advanceTo(checkDate);
+		user.advanceTo(checkDate);
 		
-		//Must input a valid song name
-		if(songList.get(song) == null) {
-			return "The song selected was not found in this Jukebox.";
+		int queued = 0;
+		int position = Integer.MAX_VALUE; //Closest to the head of the songs queued
+		QuotaRules rules = quotaRules;
+		long now = dayEpoch.millis();
+		changeLock.readLock().lock();
+		try {
+			synchronized(user) {
+				for(int i=0; i<songs.size(); i++) {
+					Song selected = findSong(songs.get(i));
+					if(selected == null) {
+						outcomes[i] = SelectionOutcome.NOT_FOUND;
+					} else {
+						synchronized(selected) {
+							outcomes[i] = takeSelection(rules, user, selected, now);
+						}
+					}
+					JukeboxMetrics.countSelection(outcomes[i]);
+					if(outcomes[i].isQueued()) { queued++; }
+				}
+			}
+			
+			for(int i=0; i<songs.size(); i++) {
+				if(outcomes[i].isQueued()) {
+					position = Math.min(position, enqueue(user, findSong(songs.get(i)), checkDate, now, null));
+				}
+			}
+		} finally {
+			changeLock.readLock().unlock();
 		}
+		startQueued(position);
+		return queued;
+	}//END selectSongs()
+	
+	/**********************************************************************************************
+	 * METHOD: selectBatch()
+	 * PURPOSE: Selects several songs for one user all or nothing. The songs are checked together
+	 *     against the user's time remaining, the user's daily limit, each song's daily limit and
+	 *     the venue's other QuotaRules (counting repeats within the request); only if every one
+	 *     passes are they all taken and
+	 *     added to the queue as one change, with one journal write. Otherwise nothing changes.
+	 * @param user The User who requested the songs.
+	 * @param songs The List of String song names, in the order they should play.
+	 * @param checkDate The LocalDate of the current date to be checked.
+	 * @param outcomes The array to receive each request's SelectionOutcome, at least songs.size()
+	 *     long. When the batch is refused, the requests that would have passed read QUEUED and
+	 *     the others give the reason.
+	 * @return True if every song was queued, false if none were.
+	 **********************************************************************************************/
+	public boolean selectBatch(User user, List<String> songs, LocalDate checkDate, SelectionOutcome[] outcomes) {
+		if(outcomes.length < songs.size()) {
+			throw new IllegalArgumentException("The outcomes array is shorter than the list of songs.");
+		}
+		dayEpoch.advanceTo(checkDate);
+		user.advanceTo(checkDate);
+		QuotaRules rules = quotaRules;
 		
+		//More songs than a user may select in a day can never pass
+		if(songs.size() > rules.getUserDailyLimit()) {
+			for(int i=0; i<songs.size(); i++) {
+				outcomes[i] = SelectionOutcome.USER_DAILY_LIMIT;
+				JukeboxMetrics.countSelection(outcomes[i]);
+			}
+			return false;
+		}
+		
+		int queuedBefore;
+		changeLock.readLock().lock();
+		try {
+			Song[] selected = new Song[songs.size()];
+			ArrayList<Song> locks = new ArrayList<Song>(selected.length);
+			for(int i=0; i<selected.length; i++) {
+				selected[i] = findSong(songs.get(i));
+				if(selected[i] != null && locks.contains(selected[i]) == false) { locks.add(selected[i]); }
+			}
+			Collections.sort(locks, new TitleOrder()); //One lock order for every batch, so none deadlock
+			
+			boolean taken;
+			long now = dayEpoch.millis();
+			synchronized(user) {
+				taken = lockAndTake(rules, now, user, selected, locks, 0, outcomes);
+			}
+			for(int i=0; i<selected.length; i++) {
+				if(taken || outcomes[i].isQueued() == false) { JukeboxMetrics.countSelection(outcomes[i]); }
+			}
+			if(taken == false) {
+				return false;
+			}
+			
+			songChanges.add(selected.length);
+			ArrayList<String> titles = new ArrayList<String>(selected.length);
+			ArrayList<QueueEntry> entries = new ArrayList<QueueEntry>(selected.length);
+			long[] entryIds = new long[selected.length];
+			for(int i=0; i<selected.length; i++) {
+				titles.add(selected[i].getSongTitle());
+				entries.add(songQueue.newEntry(selected[i].getSongTitle(), user.getUsername(), selected[i].getSeconds(),
+						checkDate.toEpochDay(), now));
+				entryIds[i] = entries.get(i).id;
+				leaderboard.record(selected[i].getSongTitle(), checkDate.toEpochDay(), now);
+			}
+			queuedBefore = songQueue.offerAll(entries, user.isAdmin());
+			if(journal != null) {
+				journal.logSelections(user.getUsername(), titles, checkDate, entryIds);
+			}
+		} finally {
+			changeLock.readLock().unlock();
+		}
+		startQueued(queuedBefore);
+		return true;
+	}//END selectBatch()
+	
+	/**********************************************************************************************
+	 * METHOD: lockAndTake()
+	 * PURPOSE: Locks the batch's songs one at a time from 'next' on, then checks the whole batch
+	 *     and takes every selection if all of them pass. The window rules count each song as it
+	 *     passes, so later songs see it, and are given the counts back if the batch is refused.
+	 * @return True if the selections were taken.
+	 **********************************************************************************************/
+	private static boolean lockAndTake(QuotaRules rules, long now, User user, Song[] selected, List<Song> locks,
+			int next, SelectionOutcome[] outcomes) {
+		if(next < locks.size()) {
+			synchronized(locks.get(next)) {
+				return lockAndTake(rules, now, user, selected, locks, next + 1, outcomes);
+			}
+		}
+		
+		//Check each request as if the ones before it had been taken
+		boolean allPass = true;
+		int timeLeft = user.getTimeRemaining();
+		int songsToday = user.getSongCount();
+		for(int i=0; i<selected.length; i++) {
+			if(selected[i] == null) {
+				outcomes[i] = SelectionOutcome.NOT_FOUND;
+			} else if(timeLeft < selected[i].getSeconds()) {
+				outcomes[i] = SelectionOutcome.NO_TIME_REMAINING;
+			} else if(songsToday >= rules.getUserDailyLimit()) {
+				outcomes[i] = SelectionOutcome.USER_DAILY_LIMIT;
+			} else if(selected[i].getTimesSelected() + takenBefore(selected, outcomes, i) >= rules.getSongDailyLimit()) {
+				outcomes[i] = SelectionOutcome.SONG_DAILY_LIMIT;
+			} else {
+				SelectionOutcome refused = rules.take(user.getUsername(), selected[i], now);
+				outcomes[i] = (refused == null) ? SelectionOutcome.QUEUED : refused;
+				if(refused == null) {
+					timeLeft -= selected[i].getSeconds();
+					songsToday++;
+				}
+			}
+			allPass &= outcomes[i].isQueued();
+		}
+		
+		if(allPass) {
+			for(Song song : selected) {
+				song.selectSong();
+				user.selectSong(song.getSeconds());
+			}
+		} else {
+			for(int i=0; i<selected.length; i++) {
+				if(outcomes[i].isQueued()) { rules.giveBack(user.getUsername(), selected[i], now); }
+			}
+		}
+		return allPass;
+	}//END lockAndTake()
+	
+	/**********************************************************************************************
+	 * METHOD: takenBefore()
+	 * PURPOSE: Counts the earlier requests in a batch that passed for the same song as request i.
+	 **********************************************************************************************/
+	private static int takenBefore(Song[] selected, SelectionOutcome[] outcomes, int i) {
+		int taken = 0;
+		for(int j=0; j<i; j++) {
+			if(selected[j] == selected[i] && outcomes[j].isQueued()) { taken++; }
+		}
+		return taken;
+	}//END takenBefore()
+	
+	/**********************************************************************************************
+	 * CLASS: TitleOrder()
+	 * PURPOSE: Orders songs by title, the order a batch locks its songs in.
+	 **********************************************************************************************/
+	private static class TitleOrder implements Comparator<Song> {
+		@Override
+		public int compare(Song first, Song second) {
+			return first.getSongTitle().compareTo(second.getSongTitle());
+		}//END compare()
+	}//END TitleOrder class
+	
+	/**********************************************************************************************
+	 * METHOD: takeSelection()
+	 * PURPOSE: Checks the selection rules for a user and song (both locked by the caller) and, if
+	 *     they allow it, counts the selection and charges the user.
+	 * @return The SelectionOutcome: QUEUED or the first rule that refused the song.
+	 **********************************************************************************************/
+	private static SelectionOutcome takeSelection(QuotaRules rules, User user, Song selected, long now) {
 		//User must have enough time remaining
-		if(user.getTimeRemaining() < songList.get(song).getSeconds()) {
-			return "Not enough time remaining in account.";
+		if(user.getTimeRemaining() < selected.getSeconds()) {
+			return SelectionOutcome.NO_TIME_REMAINING;
 		}
 		
-		//User can only select three songs per day
-		if(user.getSongCount() >= 3) {
-			return "You may only play a total of 3 songs per day.";
+		//User can only select so many songs per day (three by default)
+		if(user.getSongCount() >= rules.getUserDailyLimit()) {
+			return SelectionOutcome.USER_DAILY_LIMIT;
 		}
 		
-		//A song may only be selected 3 times per day
-		if(songList.get(song).getTimesSelected() >= 3) {
-			return "This song may not be selected more than 3 times per day.";
+		//A song may only be selected so many times per day (three by default)
+		if(selected.getTimesSelected() >= rules.getSongDailyLimit()) {
+			return SelectionOutcome.SONG_DAILY_LIMIT;
+		}
+		
+		//The venue's windows and cooldowns, counted only if every one allows the song
+		SelectionOutcome refused = rules.take(user.getUsername(), selected, now);
+		if(refused != null) {
+			return refused;
 		}
 		
 		//The song is able to be selected
-		boolean queueWasEmpty = songQueue.isEmpty();
-		songList.get(song).selectSong();
-		user.selectSong(songList.get(song).getSeconds());
-		songQueue.add(song);
-		if(queueWasEmpty) { playNextSong(); } 
-		return "Confirm";
-	}//END checkSongAvailability()
+		selected.selectSong();
+		user.selectSong(selected.getSeconds());
+		return SelectionOutcome.QUEUED;
+	}//END takeSelection()
+	
+	/**********************************************************************************************
+	 * METHOD: enqueue()
+	 * PURPOSE: Adds a selected song to the queue and the journal. The caller holds the change
+	 *     lock, and starts or buffers the song with startQueued() once it lets go. The result, if
+	 *     given, is told the song's queue position and entry id.
+	 * @param now The clock time the selection was counted at, kept so a cancel can give it back.
+	 * @return The number of songs queued ahead of the new one.
+	 **********************************************************************************************/
+	private int enqueue(User user, Song selected, LocalDate checkDate, long now, SelectionResult result) {
+		songChanges.increment();
+		leaderboard.record(selected.getSongTitle(), checkDate.toEpochDay(), now);
+		QueueEntry entry = songQueue.newEntry(selected.getSongTitle(), user.getUsername(), selected.getSeconds(),
+				checkDate.toEpochDay(), now);
+		int queuedBefore = songQueue.offer(entry, user.isAdmin());
+		if(result != null) { result.setQueued(queuedBefore, entry.id); }
+		if(journal != null) {
+			journal.logSelection(user.getUsername(), selected.getSongTitle(), checkDate, entry.id);
+		}
+		return queuedBefore;
+	}//END enqueue()
+	
+	/**********************************************************************************************
+	 * METHOD: startQueued()
+	 * PURPOSE: Plays the head if a song was queued into an empty queue, or buffers the song after
+	 *     the head if the one at position 1 changed. Called without the change lock, since the end
+	 *     of song handler takes it while holding the engine.
+	 * @param position The queue position that changed, or any other value to do nothing.
+	 **********************************************************************************************/
+	private void startQueued(int position) {
+		if(position == 0) {
+			playNextSong();
+		} else if(position == 1) {
+			ArrayList<String> head = songQueue.head(2);
+			playbackEngine.prepareNext((head.size() > 1) ? findSong(head.get(1)) : null);
+		}
+	}//END startQueued()
 	
 	/**********************************************************************************************
 	 * METHOD: playNextSong()
-	 * PURPOSE: Plays the next song in the song queue if the queue is not empty (FIFO order).
+	 * PURPOSE: Plays the song at the head of the queue if the queue is not empty, and
+	 *     prepares the song after it so it can start without a gap.
 	 **********************************************************************************************/
 	public void playNextSong() {
-		if(songQueue.isEmpty() == false) {
-			Media media = songList.get(songQueue.get(0)).getSongMedia();
-			mediaPlayer = new MediaPlayer(media);
-			mediaPlayer.setAutoPlay(true);
-			mediaPlayer.play();
-			mediaPlayer.setOnEndOfMedia(new EndOfSongHandler());
+		ArrayList<String> head = songQueue.head(2);
+		if(head.isEmpty() == false) {
+			playbackEngine.play(findSong(head.get(0)), songQueue.headOfferedNanos());
+			playbackEngine.prepareNext((head.size() > 1) ? findSong(head.get(1)) : null);
 		}
 	}//END playNextSong()
 	
+	/**********************************************************************************************
+	 * METHOD: getLastTransitionGapNanos()
+	 * PURPOSE: Returns the silence between the end of the last song and the start of the next.
+	 * @return The last gap in nanoseconds, or -1 if no song has followed another yet.
+	 **********************************************************************************************/
+	public long getLastTransitionGapNanos() {
+		return playbackEngine.getLastGapNanos();
+	}//END getLastTransitionGapNanos()
+	
 	/**********************************************************************************************
 	 * CLASS: EndOfSongHandler()
 	 * PURPOSE: After a song plays, it is removed from the queue and any other songs remaining
-	 *     are played.
+	 *     are played. The next song is started before the bookkeeping to keep the gap short.
 	 **********************************************************************************************/
 	private class EndOfSongHandler implements Runnable {
 		@Override
 		public void run() {
-			mediaPlayer.dispose();
-			songQueue.remove(0);
-			JukeboxView.refreshQueueView();
-			playNextSong();
+			long start = System.nanoTime();
+			changeLock.readLock().lock();
+			try {
+				if(songQueue.removeHead() > 0) { playNextSong(); }
+				if(journal != null) { journal.logDequeue(dayEpoch.today()); }
+			} finally {
+				changeLock.readLock().unlock();
+			}
+			JukeboxMetrics.END_OF_SONG.recordSince(start);
 		}//END run()
 	}//END EndOfSongHandler class
 	
+	/**********************************************************************************************
+	 * CLASS: SnapshotCopier()
+	 * PURPOSE: Copies every changed file, stamped with the last LSN, while the change lock and
+	 *     the journal hold off new changes and records.
+	 **********************************************************************************************/
+	private class SnapshotCopier implements Runnable {
+		private ArrayList<SnapshotFile> files = new ArrayList<SnapshotFile>(3);
+		private boolean copied;
+		
+		@Override
+		public void run() {
+			long lsn = currentLsn();
+			try {
+				long changes = songChanges.sum(); //Counted before copying, so a change made during the copy is saved again
+				if(changes != songsSaved.get()) { files.add(copySongs(lsn, changes)); }
+				changes = songQueue.getChanges();
+				if(changes != queueSaved.get()) { files.add(copyQueue(lsn, changes)); }
+				if(journal != null) {
+					SnapshotFile accountFile = accounts.snapshot(lsn);
+					if(accountFile != null) { files.add(accountFile); }
+				}
+				copied = true;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}//END run()
+	}//END SnapshotCopier class
+	
+	/**********************************************************************************************
+	 * CLASS: CatalogSnapshot()
+	 * PURPOSE: Saves the counts copied from the catalog's songs to its counts file.
+	 **********************************************************************************************/
+	private class CatalogSnapshot extends SnapshotFile {
+		private CatalogSnapshot(long changes) {
+			super(catalogFile, null, songsSaved, changes, JukeboxMetrics.CATALOG_WRITE,
+					JukeboxMetrics.CATALOG_FAILED);
+		}//END CatalogSnapshot() constructor
+		
+		@Override
+		protected void writeFile() throws IOException {
+			songCatalog.force();
+		}//END writeFile()
+	}//END CatalogSnapshot class
+	
+	/**********************************************************************************************
+	 * CLASS: NoSnapshot()
+	 * PURPOSE: Empties the journal without saving, keeping the last snapshot files as they are.
+	 **********************************************************************************************/
+	private static class NoSnapshot implements Runnable {
+		@Override
+		public void run() {
+		}//END run()
+	}//END NoSnapshot class
+	
 	/**********************************************************************************************
 	 * METHOD: resetToDefault()
 	 * PURPOSE: Completely resets to system to starting default values.
@@ -190,6 +1141,7 @@ public class Jukebox {
 		songData.add(song5); songData.add(song6); songData.add(song7);
 		
 		for(int i=0; i<songData.size(); i++) {
+			songData.get(i).setEpoch(dayEpoch);
 			songList.put(songData.get(i).getSongTitle(), songData.get(i));
 			observeSongs.add(songData.get(i));
 		}
@@ -202,14 +1154,18 @@ public class Jukebox {
 	 * PURPOSE: Writes out the current queue of songs to the file "SongQueue".
 	 **********************************************************************************************/
 	public void writeQueueToFile() {
+		SnapshotFile file;
+		changeLock.writeLock().lock();
 		try {
-			FileOutputStream fileOutput = new FileOutputStream("SongQueue");
-			ObjectOutputStream objectOutput = new ObjectOutputStream(fileOutput);
-			objectOutput.writeObject(songQueue);
-			objectOutput.close();
+			file = copyQueue(currentLsn(), songQueue.getChanges());
 		} catch (IOException e) {
+			JukeboxMetrics.QUEUE_FAILED.increment();
 			e.printStackTrace();
+			return;
+		} finally {
+			changeLock.writeLock().unlock();
 		}
+		file.write();
 	}//END writeQueueToFile()
 	
 	/**********************************************************************************************
@@ -217,14 +1173,95 @@ public class Jukebox {
 	 * PURPOSE: Writes out the all of song data to the file "SongList".
 	 **********************************************************************************************/
 	public void writeSongsToFile() {
+		SnapshotFile file;
+		changeLock.writeLock().lock();
 		try {
-			FileOutputStream fileOutput = new FileOutputStream("SongList");
-			ObjectOutputStream objectOutput = new ObjectOutputStream(fileOutput);
-			objectOutput.writeObject(songData);
-			objectOutput.close();
+			file = copySongs(currentLsn(), songChanges.sum());
 		} catch (IOException e) {
+			JukeboxMetrics.SONG_LIST_FAILED.increment();
 			e.printStackTrace();
+			return;
+		} finally {
+			changeLock.writeLock().unlock();
 		}
+		file.write();
 	}//END writeSongsToFile()
 	
+	/**********************************************************************************************
+	 * METHOD: copyQueue()
+	 * PURPOSE: Copies the queue into memory for a save stamped with the given LSN.
+	 **********************************************************************************************/
+	private SnapshotFile copyQueue(long lsn, long changes) throws IOException {
+		return new SnapshotFile(dataFile("SongQueue"), SnapshotFile.serialize(songQueue.entries(), lsn), queueSaved,
+				changes, JukeboxMetrics.QUEUE_WRITE, JukeboxMetrics.QUEUE_FAILED);
+	}//END copyQueue()
+	
+	/**********************************************************************************************
+	 * METHOD: copySongs()
+	 * PURPOSE: Copies the song data into memory for a save stamped with the given LSN. Catalog
+	 *     counts are copied by the catalog, and only written to its counts file by the save. The
+	 *     caller holds the change lock; the list is copied under this Jukebox's lock since songs
+	 *     can still be added, and each Song writes its count under its own lock.
+	 **********************************************************************************************/
+	private SnapshotFile copySongs(long lsn, long changes) throws IOException {
+		ArrayList<Song> songs;
+		synchronized(this) {
+			if(songCatalog != null) {
+				if(songData.isEmpty() == false) {
+					rewriteCatalog(); //Imported songs need a new catalog file
+				}
+				songCatalog.copyCounts(lsn);
+				return new CatalogSnapshot(changes);
+			}
+			songs = new ArrayList<Song>(songData);
+		}
+		return new SnapshotFile(dataFile("SongList"), SnapshotFile.serialize(songs, lsn), songsSaved,
+				changes, JukeboxMetrics.SONG_LIST_WRITE, JukeboxMetrics.SONG_LIST_FAILED);
+	}//END copySongs()
+	
+	/**********************************************************************************************
+	 * METHOD: rewriteCatalog()
+	 * PURPOSE: Writes the catalog songs followed by songs added since it was mapped as the next
+	 *     generation of the catalog and maps that instead, leaving the old file alone while it is
+	 *     mapped. Every Song already built keeps its place in the new catalog, so the rows, queue
+	 *     and users holding one go on tracking its count. The caller holds the change lock and
+	 *     this Jukebox's lock, so findSong() cannot load a song from the old catalog meanwhile.
+	 **********************************************************************************************/
+	private synchronized void rewriteCatalog() {
+		try {
+			File next = songCatalog.writeWith(songData, catalogFile);
+			SongCatalog rewritten = new SongCatalog(next.getPath(), dayEpoch);
+			rewritten.adoptSongs(songCatalog, songData);
+			if(searchIndex != null) { searchIndex.setCatalog(rewritten); } //Its ids are the new ordinals
+			songCatalog.close();
+			songCatalog = rewritten;
+			catalogFile = next;
+			SongCatalog.deleteOlder(dataFile(CATALOG_FILE), catalogFile);
+			songData.clear();
+			if(catalogSongs != null) { catalogSongs.setCatalog(songCatalog); }
+		} catch (IOException e) {
+			JukeboxMetrics.CATALOG_FAILED.increment();
+			e.printStackTrace();
+		}
+	}//END rewriteCatalog()
+	
+	/**********************************************************************************************
+	 * METHOD: dataFile()
+	 * PURPOSE: Returns a file of this Jukebox, inside its data folder if it has one.
+	 * @param name The String name of the file.
+	 * @return The File to read or write.
+	 **********************************************************************************************/
+	private File dataFile(String name) {
+		return new File(dataFolder, name);
+	}//END dataFile()
+	
+	/**********************************************************************************************
+	 * METHOD: currentLsn()
+	 * PURPOSE: Returns the journal LSN that a snapshot written now contains (0 without a journal).
+	 * @return The last journal LSN.
+	 **********************************************************************************************/
+	private long currentLsn() {
+		return (journal == null) ? 0 : journal.getLastLsn();
+	}//END currentLsn()
+	
 }//END Jukebox class
\ No newline at end of file
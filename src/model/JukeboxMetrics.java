@@ -0,0 +1,79 @@
+package model;
+
+import java.util.Locale;
+import metrics.Counter;
+import metrics.Gauge;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: JukeboxMetrics
+ * DESCRIPTION:
+ * Every metric the model records, registered once in the default MetricsRegistry so the names and
+ * descriptions live in one place. The totals cover every Jukebox (room) in the program.
+ **************************************************************************************************/
+
+final class JukeboxMetrics {
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+
+	//Song selections by outcome, indexed by SelectionOutcome.ordinal()
+	private static final Counter[] SELECTIONS = new Counter[SelectionOutcome.values().length];
+	static {
+		for(SelectionOutcome outcome : SelectionOutcome.values()) {
+			SELECTIONS[outcome.ordinal()] = METRICS.counter("jukebox_selections_total", "Song selections by outcome.",
+					"outcome", outcome.name().toLowerCase(Locale.ROOT));
+		}
+	}
+
+	//Queue and playback
+	static final Gauge QUEUE_DEPTH = METRICS.gauge("jukebox_queue_depth",
+			"Songs waiting or playing in every queue.");
+	static final Histogram QUEUE_WAIT = METRICS.histogram("jukebox_queue_wait_seconds",
+			"Time from a song being queued to its MediaPlayer starting.");
+	static final Histogram END_OF_SONG = METRICS.histogram("jukebox_end_of_song_seconds",
+			"Time to dequeue a finished song and start the next one.");
+
+	//Logins
+	private static final String LOGINS = "jukebox_logins_total";
+	private static final String LOGINS_HELP = "Username and password checks by result.";
+	static final Counter LOGIN_SUCCESS = METRICS.counter(LOGINS, LOGINS_HELP, "result", "success");
+	static final Counter LOGIN_FAILURE = METRICS.counter(LOGINS, LOGINS_HELP, "result", "failure");
+
+	//Persistence
+	private static final String WRITES = "jukebox_file_write_seconds";
+	private static final String WRITES_HELP = "Time to write (or force to disk) each data file.";
+	private static final String FAILURES = "jukebox_file_write_failures_total";
+	private static final String FAILURES_HELP = "Data file writes that failed.";
+	static final Histogram SONG_LIST_WRITE = METRICS.histogram(WRITES, WRITES_HELP, "file", "SongList");
+	static final Histogram CATALOG_WRITE = METRICS.histogram(WRITES, WRITES_HELP, "file", "SongCatalog");
+	static final Histogram QUEUE_WRITE = METRICS.histogram(WRITES, WRITES_HELP, "file", "SongQueue");
+	static final Histogram ACCOUNT_WRITE = METRICS.histogram(WRITES, WRITES_HELP, "file", "AccountList");
+	static final Histogram JOURNAL_COMMIT = METRICS.histogram(WRITES, WRITES_HELP, "file", "JukeboxJournal");
+	static final Counter SONG_LIST_FAILED = METRICS.counter(FAILURES, FAILURES_HELP, "file", "SongList");
+	static final Counter CATALOG_FAILED = METRICS.counter(FAILURES, FAILURES_HELP, "file", "SongCatalog");
+	static final Counter QUEUE_FAILED = METRICS.counter(FAILURES, FAILURES_HELP, "file", "SongQueue");
+	static final Counter ACCOUNT_FAILED = METRICS.counter(FAILURES, FAILURES_HELP, "file", "AccountList");
+	static final Counter JOURNAL_FAILED = METRICS.counter(FAILURES, FAILURES_HELP, "file", "JukeboxJournal");
+	static final Counter ACCOUNT_PAGE_READS = METRICS.counter("jukebox_account_page_reads_total",
+			"Pages of the AccountPages file read on a cache miss.");
+
+	/**********************************************************************************************
+	 * METHOD: countSelection()
+	 * PURPOSE: Counts one song selection under its outcome.
+	 * @param outcome The SelectionOutcome of the selection.
+	 **********************************************************************************************/
+	static void countSelection(SelectionOutcome outcome) {
+		SELECTIONS[outcome.ordinal()].increment();
+	}//END countSelection()
+
+	/**********************************************************************************************
+	 * METHOD: JukeboxMetrics()
+	 * PURPOSE: Not used; JukeboxMetrics only has static members.
+	 **********************************************************************************************/
+	private JukeboxMetrics() {
+	}//END JukeboxMetrics() constructor
+
+}//END JukeboxMetrics class
@@ -0,0 +1,323 @@
+package model;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Leaderboard
+ * DESCRIPTION:
+ * The most selected songs today and over the last hour and day, kept up to date as each selection
+ * is made so no query has to look at the whole catalog. Each window keeps a Ranking: the songs it
+ * has counted sit in buckets of equal count, and the buckets are linked in count order. A count
+ * only ever moves by one, so a song moves to the neighbouring bucket in constant time, and the
+ * top k songs are read by walking down from the highest bucket. The sliding windows remember
+ * their selections in time order and take each one back out once it is older than the window.
+ * Only selections made since the Jukebox started are counted.
+ **************************************************************************************************/
+
+public class Leaderboard {
+
+	/**********************************************************************************************
+	 * ENUM: Window
+	 * PURPOSE: The stretches of time a leaderboard can rank songs over.
+	 **********************************************************************************************/
+	public enum Window {
+		TODAY("Today", 0),
+		HOUR("Last hour", 60L*60*1000),
+		DAY("Last 24 hours", 24L*60*60*1000);
+
+		private final String label;
+		private final long millis; //0 for the calendar day
+
+		private Window(String label, long millis) {
+			this.label = label;
+			this.millis = millis;
+		}//END Window() constructor
+
+		/******************************************************************************************
+		 * METHOD: getLabel()
+		 * PURPOSE: Returns the name of the window shown to users.
+		 * @return The String label.
+		 ******************************************************************************************/
+		public String getLabel() {
+			return label;
+		}//END getLabel()
+	}//END Window enum
+
+	/**********************************************************************************************
+	 * CLASS: Entry
+	 * PURPOSE: One song on the leaderboard and the number of times it was selected in the window.
+	 **********************************************************************************************/
+	public static class Entry {
+		public final String title;
+		public final long count;
+
+		private Entry(String title, long count) {
+			this.title = title;
+			this.count = count;
+		}//END Entry() constructor
+	}//END Entry class
+
+	private final DayEpoch epoch;
+	private long today = Long.MIN_VALUE;
+	private Ranking todayRanking = new Ranking();
+	private Ranking hourRanking = new Ranking();
+	private Ranking dayRanking = new Ranking();
+	private ArrayDeque<Selection> hourSelections = new ArrayDeque<Selection>();
+	private ArrayDeque<Selection> daySelections = new ArrayDeque<Selection>();
+
+	/**********************************************************************************************
+	 * METHOD: Leaderboard()
+	 * PURPOSE: Constructs an empty leaderboard that top() ranks as of the system clock.
+	 **********************************************************************************************/
+	public Leaderboard() {
+		this(new DayEpoch(Clock.systemDefaultZone()));
+	}//END Leaderboard() constructor
+
+	/**********************************************************************************************
+	 * METHOD: Leaderboard()
+	 * PURPOSE: Constructs an empty leaderboard that top() ranks as of the day and time of a Jukebox.
+	 * @param dayEpoch The DayEpoch of the Jukebox, read for the current day and time.
+	 **********************************************************************************************/
+	Leaderboard(DayEpoch dayEpoch) {
+		epoch = dayEpoch;
+	}//END Leaderboard() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: record()
+	 * PURPOSE: Counts a selection of a song in every window.
+	 * @param title The String title of the selected song.
+	 * @param day The epoch day the selection counts toward.
+	 * @param millis The time in milliseconds the selection was made at.
+	 **********************************************************************************************/
+	public synchronized void record(String title, long day, long millis) {
+		if(day > today) {
+			today = day;
+			todayRanking = new Ranking();
+		}
+		if(day == today) {
+			todayRanking.increment(title);
+		}
+		expire(millis);
+		Selection selection = new Selection(title, millis);
+		hourRanking.increment(title);
+		hourSelections.addLast(selection);
+		dayRanking.increment(title);
+		daySelections.addLast(selection);
+	}//END record()
+
+	/**********************************************************************************************
+	 * METHOD: unrecord()
+	 * PURPOSE: Takes a cancelled selection back out of every window that still counts it.
+	 * @param title The String title of the cancelled song.
+	 * @param day The epoch day the selection counted toward.
+	 * @param millis The time in milliseconds the selection was made at, as given to record().
+	 **********************************************************************************************/
+	public synchronized void unrecord(String title, long day, long millis) {
+		if(day == today) {
+			todayRanking.decrement(title);
+		}
+		if(forget(hourSelections, title, millis)) { hourRanking.decrement(title); }
+		if(forget(daySelections, title, millis)) { dayRanking.decrement(title); }
+	}//END unrecord()
+
+	/**********************************************************************************************
+	 * METHOD: forget()
+	 * PURPOSE: Removes a selection from a sliding window, searching back from the newest since a
+	 *     cancelled song was usually selected recently.
+	 * @return True if the window still held the selection.
+	 **********************************************************************************************/
+	private static boolean forget(ArrayDeque<Selection> selections, String title, long millis) {
+		if(selections.isEmpty() || selections.peekFirst().millis > millis) {
+			return false; //Already expired
+		}
+		Iterator<Selection> newestFirst = selections.descendingIterator();
+		while(newestFirst.hasNext()) {
+			Selection selection = newestFirst.next();
+			if(selection.millis == millis && selection.title.equals(title)) {
+				newestFirst.remove();
+				return true;
+			}
+		}
+		return false;
+	}//END forget()
+
+	/**********************************************************************************************
+	 * METHOD: top()
+	 * PURPOSE: Returns the most selected songs in a window as of now.
+	 * @param window The Window to rank songs over.
+	 * @param k The largest number of songs to return.
+	 * @return The List of Entries, most selected first.
+	 **********************************************************************************************/
+	public List<Entry> top(Window window, int k) {
+		return top(window, k, epoch.current(), epoch.millis());
+	}//END top()
+
+	/**********************************************************************************************
+	 * METHOD: top()
+	 * PURPOSE: Returns the most selected songs in a window as of the given day and time. Songs
+	 *     selected the same number of times are listed in the order they reached that count.
+	 * @param window The Window to rank songs over.
+	 * @param k The largest number of songs to return.
+	 * @param day The current epoch day.
+	 * @param millis The current time in milliseconds.
+	 * @return The List of Entries, most selected first.
+	 **********************************************************************************************/
+	public synchronized List<Entry> top(Window window, int k, long day, long millis) {
+		expire(millis);
+		switch(window) {
+			case TODAY: return (day == today) ? todayRanking.top(k) : new ArrayList<Entry>(0);
+			case HOUR: return hourRanking.top(k);
+			default: return dayRanking.top(k);
+		}
+	}//END top()
+
+	/**********************************************************************************************
+	 * METHOD: expire()
+	 * PURPOSE: Takes selections that are now older than each sliding window back out of it.
+	 **********************************************************************************************/
+	private void expire(long millis) {
+		expire(hourSelections, hourRanking, millis - Window.HOUR.millis);
+		expire(daySelections, dayRanking, millis - Window.DAY.millis);
+	}//END expire()
+
+	private static void expire(ArrayDeque<Selection> selections, Ranking ranking, long oldest) {
+		while(selections.isEmpty() == false && selections.peekFirst().millis <= oldest) {
+			ranking.decrement(selections.pollFirst().title);
+		}
+	}//END expire()
+
+	/**********************************************************************************************
+	 * CLASS: Selection
+	 * PURPOSE: One selection remembered until it leaves the sliding windows.
+	 **********************************************************************************************/
+	private static final class Selection {
+		private final String title;
+		private final long millis;
+
+		private Selection(String title, long millis) {
+			this.title = title;
+			this.millis = millis;
+		}//END Selection() constructor
+	}//END Selection class
+
+	/**********************************************************************************************
+	 * CLASS: Ranking
+	 * PURPOSE: Counts per song in buckets of equal count, linked from the lowest count to the
+	 *     highest. Adding or taking away one selection moves a song to the next bucket up or down.
+	 **********************************************************************************************/
+	private static final class Ranking {
+		private HashMap<String, Node> nodes = new HashMap<String, Node>();
+		private Bucket lowest;
+		private Bucket highest;
+
+		private void increment(String title) {
+			Node node = nodes.get(title);
+			if(node == null) {
+				node = new Node(title);
+				nodes.put(title, node);
+			}
+			Bucket from = node.bucket;
+			long count = (from == null) ? 1 : from.count + 1;
+			Bucket to = (from == null) ? lowest : from.higher;
+			if(to == null || to.count != count) {
+				to = insertBucket(count, from, to);
+			}
+			move(node, to);
+		}//END increment()
+
+		private void decrement(String title) {
+			Node node = nodes.get(title);
+			if(node == null) {
+				return;
+			}
+			Bucket from = node.bucket;
+			if(from.count == 1) {
+				unlink(node);
+				nodes.remove(title);
+				return;
+			}
+			Bucket to = from.lower;
+			if(to == null || to.count != from.count - 1) {
+				to = insertBucket(from.count - 1, to, from);
+			}
+			move(node, to);
+		}//END decrement()
+
+		private List<Entry> top(int k) {
+			ArrayList<Entry> top = new ArrayList<Entry>(Math.min(k, nodes.size()));
+			for(Bucket bucket = highest; bucket != null && top.size() < k; bucket = bucket.lower) {
+				for(Node node = bucket.first; node != null && top.size() < k; node = node.next) {
+					top.add(new Entry(node.title, bucket.count));
+				}
+			}
+			return top;
+		}//END top()
+
+		//Links a new bucket between 'lower' and 'higher' (either may be null at an end)
+		private Bucket insertBucket(long count, Bucket lower, Bucket higher) {
+			Bucket bucket = new Bucket(count);
+			bucket.lower = lower;
+			bucket.higher = higher;
+			if(lower == null) { lowest = bucket; } else { lower.higher = bucket; }
+			if(higher == null) { highest = bucket; } else { higher.lower = bucket; }
+			return bucket;
+		}//END insertBucket()
+
+		//Moves a node to the end of a bucket, so ties keep the order they reached the count in
+		private void move(Node node, Bucket to) {
+			unlink(node);
+			node.bucket = to;
+			node.prev = to.last;
+			if(to.last == null) { to.first = node; } else { to.last.next = node; }
+			to.last = node;
+		}//END move()
+
+		//Takes a node out of its bucket, and the bucket out of the list once it is empty
+		private void unlink(Node node) {
+			Bucket bucket = node.bucket;
+			if(bucket == null) {
+				return;
+			}
+			if(node.prev == null) { bucket.first = node.next; } else { node.prev.next = node.next; }
+			if(node.next == null) { bucket.last = node.prev; } else { node.next.prev = node.prev; }
+			node.prev = null;
+			node.next = null;
+			node.bucket = null;
+			if(bucket.first == null) {
+				if(bucket.lower == null) { lowest = bucket.higher; } else { bucket.lower.higher = bucket.higher; }
+				if(bucket.higher == null) { highest = bucket.lower; } else { bucket.higher.lower = bucket.lower; }
+			}
+		}//END unlink()
+	}//END Ranking class
+
+	private static final class Bucket {
+		private final long count;
+		private Bucket lower;
+		private Bucket higher;
+		private Node first;
+		private Node last;
+
+		private Bucket(long count) {
+			this.count = count;
+		}//END Bucket() constructor
+	}//END Bucket class
+
+	private static final class Node {
+		private final String title;
+		private Bucket bucket;
+		private Node prev;
+		private Node next;
+
+		private Node(String title) {
+			this.title = title;
+		}//END Node() constructor
+	}//END Node class
+
+}//END Leaderboard class
@@ -0,0 +1,74 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.scene.media.Media;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ * 
+ * CLASS: MediaCache
+ * DESCRIPTION:
+ * A bounded least-recently-used cache of Media objects keyed by song file. Building a Media parses
+ * the file's headers, so popular songs keep their Media between plays instead of rebuilding it.
+ **************************************************************************************************/
+
+public class MediaCache {
+	
+	private LinkedHashMap<String, Media> cache;
+	private int hits;
+	private int misses;
+	
+	/**********************************************************************************************
+	 * METHOD: MediaCache()
+	 * PURPOSE: Constructs an empty cache that holds at most 'capacity' Media objects.
+	 * @param capacity The maximum number of Media objects kept.
+	 **********************************************************************************************/
+	public MediaCache(final int capacity) {
+		cache = new LinkedHashMap<String, Media>(capacity*2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Media> eldest) {
+				return size() > capacity;
+			}//END removeEldestEntry()
+		};
+	}//END MediaCache() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: getMedia()
+	 * PURPOSE: Returns the Media for a song, building it only if it is not cached.
+	 * @param song The Song to play.
+	 * @return The Media object of the song's file.
+	 **********************************************************************************************/
+	public synchronized Media getMedia(Song song) {
+		Media media = cache.get(song.getSongPath());
+		if(media == null) {
+			misses++;
+			media = song.getSongMedia();
+			cache.put(song.getSongPath(), media);
+		} else {
+			hits++;
+		}
+		return media;
+	}//END getMedia()
+	
+	/**********************************************************************************************
+	 * METHOD: getHits()
+	 * PURPOSE: Returns how many lookups were served from the cache.
+	 * @return The number of cache hits.
+	 **********************************************************************************************/
+	public synchronized int getHits() {
+		return hits;
+	}//END getHits()
+	
+	/**********************************************************************************************
+	 * METHOD: getMisses()
+	 * PURPOSE: Returns how many lookups had to build a new Media object.
+	 * @return The number of cache misses.
+	 **********************************************************************************************/
+	public synchronized int getMisses() {
+		return misses;
+	}//END getMisses()
+	
+}//END MediaCache class
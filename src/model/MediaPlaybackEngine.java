@@ -0,0 +1,255 @@
+package model;
+
+import javafx.application.Platform;
+import javafx.scene.media.MediaException;
+import javafx.scene.media.MediaPlayer;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ * 
+ * CLASS: MediaPlaybackEngine
+ * DESCRIPTION:
+ * Plays the songs at the head of the Jukebox queue with JavaFX MediaPlayers. While one song plays,
+ * a second MediaPlayer for the next song in the queue is created so its file is opened and
+ * buffered ahead of time; at the end of the song that player is started right away instead of
+ * being built from scratch. The time from the end of one song to the next one playing is
+ * measured for testing. Selections on other threads may start playback, so every method locks
+ * the engine. A song whose player cannot be created, or fails while playing, is finished at once,
+ * so a missing file never leaves the queue stuck on it.
+ **************************************************************************************************/
+
+public class MediaPlaybackEngine implements PlaybackEngine {
+	
+	private static final int CACHE_SIZE = 32;
+	
+	private MediaCache mediaCache;
+	private Runnable endOfSongHandler;
+	private MediaPlayer currentPlayer;
+	private MediaPlayer nextPlayer;
+	private Song nextSong;
+	private Song playingSong;
+	private long generation; //Counts play() and stop(), so a failure from an earlier song is ignored
+	private volatile long endOfSongNanos;
+	private volatile long lastGapNanos;
+	
+	/**********************************************************************************************
+	 * METHOD: MediaPlaybackEngine()
+	 * PURPOSE: Constructs an idle playback engine.
+	 **********************************************************************************************/
+	public MediaPlaybackEngine() {
+		mediaCache = new MediaCache(CACHE_SIZE);
+		lastGapNanos = -1;
+	}//END MediaPlaybackEngine() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: setEndOfSongHandler()
+	 * PURPOSE: Sets what is run each time a song ends.
+	 * @param handler The Runnable called on the JavaFX thread each time a song ends.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void setEndOfSongHandler(Runnable handler) {
+		endOfSongHandler = handler;
+	}//END setEndOfSongHandler()
+	
+	/**********************************************************************************************
+	 * METHOD: play()
+	 * PURPOSE: Starts playing a song, using the prepared player if it was prepared for this song.
+	 *     The wait from the song being queued until its player starts is recorded as a metric.
+	 * @param song The Song at the head of the queue.
+	 * @param queuedNanos The System.nanoTime() the song was queued, or 0 if unknown.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void play(Song song, long queuedNanos) {
+		generation++;
+		playingSong = null;
+		if(currentPlayer != null) {
+			currentPlayer.dispose();
+		}
+		if(nextPlayer != null && nextSong == song) {
+			currentPlayer = nextPlayer;
+			nextPlayer = null;
+			nextSong = null;
+		} else {
+			currentPlayer = createPlayer(song);
+			if(currentPlayer == null) {
+				finishFailed();
+				return;
+			}
+		}
+		playingSong = song;
+		currentPlayer.setOnEndOfMedia(new EndOfMediaHandler());
+		currentPlayer.setOnError(new SongFailed(generation));
+		currentPlayer.setOnPlaying(new PlayingHandler(queuedNanos));
+		currentPlayer.setAutoPlay(true);
+		currentPlayer.play();
+	}//END play()
+	
+	/**********************************************************************************************
+	 * METHOD: prepareNext()
+	 * PURPOSE: Creates (and so starts buffering) the player for the song after the current one.
+	 * @param song The Song second in the queue, or null if there is none.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void prepareNext(Song song) {
+		if(song == nextSong) {
+			return;
+		}
+		if(nextPlayer != null) {
+			nextPlayer.dispose();
+			nextPlayer = null;
+		}
+		nextSong = song;
+		if(song != null) {
+			nextPlayer = createPlayer(song);
+		}
+	}//END prepareNext()
+	
+	/**********************************************************************************************
+	 * METHOD: createPlayer()
+	 * PURPOSE: Creates a MediaPlayer for a song. A song whose file cannot be opened is reported
+	 *     and not played, instead of failing the selection that queued it.
+	 * @return The MediaPlayer, or null if the song cannot be played.
+	 **********************************************************************************************/
+	private MediaPlayer createPlayer(Song song) {
+		try {
+			return new MediaPlayer(mediaCache.getMedia(song));
+		} catch (MediaException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}//END createPlayer()
+	
+	/**********************************************************************************************
+	 * METHOD: finishFailed()
+	 * PURPOSE: Ends the song that could not be played as if it had played to the end. The end of
+	 *     song handler is run later on the JavaFX thread, since the caller may be in the middle of
+	 *     moving the queue; without the JavaFX runtime it is run on a thread of its own.
+	 **********************************************************************************************/
+	private void finishFailed() {
+		SongFailed failed = new SongFailed(generation);
+		try {
+			Platform.runLater(failed);
+		} catch (IllegalStateException e) { //The JavaFX toolkit is not running
+			Thread thread = new Thread(failed, "SongFailed");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}//END finishFailed()
+	
+	/**********************************************************************************************
+	 * METHOD: stop()
+	 * PURPOSE: Stops playback and releases both players.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void stop() {
+		generation++;
+		playingSong = null;
+		if(currentPlayer != null) {
+			currentPlayer.dispose();
+			currentPlayer = null;
+		}
+		prepareNext(null);
+	}//END stop()
+	
+	/**********************************************************************************************
+	 * METHOD: getLastGapNanos()
+	 * PURPOSE: Returns the time between the end of the last song and the next song playing.
+	 * @return The last gap in nanoseconds, or -1 if no song has followed another yet.
+	 **********************************************************************************************/
+	@Override
+	public long getLastGapNanos() {
+		return lastGapNanos;
+	}//END getLastGapNanos()
+	
+	/**********************************************************************************************
+	 * METHOD: getPlayingSong()
+	 * PURPOSE: Returns the song whose player was started last and has not ended or failed.
+	 * @return The Song playing, or null if there is none.
+	 **********************************************************************************************/
+	public synchronized Song getPlayingSong() {
+		return playingSong;
+	}//END getPlayingSong()
+	
+	/**********************************************************************************************
+	 * METHOD: getMediaCache()
+	 * PURPOSE: Returns the cache of Media objects used by this engine.
+	 * @return The MediaCache.
+	 **********************************************************************************************/
+	public MediaCache getMediaCache() {
+		return mediaCache;
+	}//END getMediaCache()
+	
+	/**********************************************************************************************
+	 * CLASS: EndOfMediaHandler()
+	 * PURPOSE: Releases the finished player and lets the Jukebox move on to the next song.
+	 **********************************************************************************************/
+	private class EndOfMediaHandler implements Runnable {
+		@Override
+		public void run() {
+			synchronized(MediaPlaybackEngine.this) {
+				endOfSongNanos = System.nanoTime();
+				currentPlayer.dispose();
+				currentPlayer = null;
+				playingSong = null;
+				endOfSongHandler.run();
+			}
+		}//END run()
+	}//END EndOfMediaHandler class
+	
+	/**********************************************************************************************
+	 * CLASS: SongFailed()
+	 * PURPOSE: Ends a song that could not be played, or whose player failed, so the Jukebox moves
+	 *     on to the next song. Ignored if another song has been played since.
+	 **********************************************************************************************/
+	private class SongFailed implements Runnable {
+		private long songGeneration;
+		
+		public SongFailed(long songGeneration) {
+			this.songGeneration = songGeneration;
+		}//END SongFailed()
+		
+		@Override
+		public void run() {
+			synchronized(MediaPlaybackEngine.this) {
+				if(songGeneration != generation) {
+					return;
+				}
+				if(currentPlayer != null) {
+					if(currentPlayer.getError() != null) {
+						currentPlayer.getError().printStackTrace();
+					}
+					currentPlayer.dispose();
+					currentPlayer = null;
+				}
+				playingSong = null;
+				endOfSongHandler.run();
+			}
+		}//END run()
+	}//END SongFailed class
+	
+	/**********************************************************************************************
+	 * CLASS: PlayingHandler()
+	 * PURPOSE: Records how long the song waited in the queue, and the gap once a song that follows
+	 *     another one starts playing. A paused song that resumes is not recorded again.
+	 **********************************************************************************************/
+	private class PlayingHandler implements Runnable {
+		private long queuedNanos;
+		
+		public PlayingHandler(long queuedNanos) {
+			this.queuedNanos = queuedNanos;
+		}//END PlayingHandler()
+		
+		@Override
+		public void run() {
+			if(queuedNanos != 0) {
+				JukeboxMetrics.QUEUE_WAIT.recordSince(queuedNanos);
+				queuedNanos = 0;
+			}
+			if(endOfSongNanos != 0) {
+				lastGapNanos = System.nanoTime() - endOfSongNanos;
+				endOfSongNanos = 0;
+			}
+		}//END run()
+	}//END PlayingHandler class
+	
+}//END MediaPlaybackEngine class
@@ -0,0 +1,140 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: PersistenceWriter
+ * DESCRIPTION:
+ * Saves a journaled Jukebox (its songs, queue and accounts) on a background thread, so selections
+ * and the UI never wait for a snapshot to reach the disk. The thread checks every CHECK_MILLIS
+ * and saves when the journal has grown enough to compact, when a save was requested, or (if a
+ * save period is set) when the period has passed and something changed. However many changes were
+ * made in between, they are written as one snapshot, and files that did not change are skipped.
+ **************************************************************************************************/
+
+public class PersistenceWriter {
+
+	private static final long CHECK_MILLIS = 250;
+
+	private Jukebox jukebox;
+	private long savePeriodMillis;
+	private long lastSave;
+	private boolean requested;
+	private boolean running;
+	private long saves;
+	private Thread writer;
+
+	/**********************************************************************************************
+	 * METHOD: PersistenceWriter()
+	 * PURPOSE: Constructs a writer for a Jukebox. Call start() to begin saving.
+	 * @param jukebox The Jukebox to save; its journal should already be open.
+	 * @param savePeriodMillis The longest a change waits to be saved, or 0 to save only when the
+	 *     journal needs compacting or a save is requested.
+	 **********************************************************************************************/
+	public PersistenceWriter(Jukebox jukebox, long savePeriodMillis) {
+		this.jukebox = jukebox;
+		this.savePeriodMillis = savePeriodMillis;
+	}//END PersistenceWriter() constructor
+
+	/**********************************************************************************************
+	 * METHOD: start()
+	 * PURPOSE: Starts the background thread.
+	 **********************************************************************************************/
+	public synchronized void start() {
+		if(running) {
+			return;
+		}
+		running = true;
+		lastSave = System.currentTimeMillis();
+		writer = new Thread(new Writer(), "JukeboxPersistence");
+		writer.setDaemon(true);
+		writer.start();
+	}//END start()
+
+	/**********************************************************************************************
+	 * METHOD: requestSave()
+	 * PURPOSE: Asks for a save as soon as possible without waiting for it. Requests made before
+	 *     the save starts are all covered by it.
+	 **********************************************************************************************/
+	public synchronized void requestSave() {
+		requested = true;
+		notifyAll();
+	}//END requestSave()
+
+	/**********************************************************************************************
+	 * METHOD: getSaves()
+	 * PURPOSE: Returns the number of saves the background thread has made.
+	 * @return The save count.
+	 **********************************************************************************************/
+	public synchronized long getSaves() {
+		return saves;
+	}//END getSaves()
+
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Stops the background thread after any save in progress, then saves once more if
+	 *     asked to.
+	 * @param save The boolean flag to save whatever changed since the last save.
+	 **********************************************************************************************/
+	public void close(boolean save) {
+		Thread stopping;
+		synchronized(this) {
+			running = false;
+			notifyAll();
+			stopping = writer;
+		}
+		if(stopping != null) {
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(save) {
+			jukebox.compactJournal();
+		}
+	}//END close()
+
+	/**********************************************************************************************
+	 * METHOD: isDue()
+	 * PURPOSE: Returns whether a save should be made now.
+	 **********************************************************************************************/
+	private boolean isDue() {
+		if(requested || jukebox.needsCompaction()) {
+			return true;
+		}
+		return savePeriodMillis > 0 && System.currentTimeMillis() - lastSave >= savePeriodMillis
+				&& jukebox.hasUnsavedChanges();
+	}//END isDue()
+
+	/**********************************************************************************************
+	 * CLASS: Writer
+	 * PURPOSE: Waits until a save is due and makes it, until the writer is closed.
+	 **********************************************************************************************/
+	private class Writer implements Runnable {
+		@Override
+		public void run() {
+			while(true) {
+				synchronized(PersistenceWriter.this) {
+					while(running && isDue() == false) {
+						try {
+							PersistenceWriter.this.wait(CHECK_MILLIS);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if(running == false) {
+						return;
+					}
+					requested = false;
+					lastSave = System.currentTimeMillis();
+				}
+				jukebox.compactJournal();
+				synchronized(PersistenceWriter.this) {
+					saves++;
+				}
+			}
+		}//END run()
+	}//END Writer class
+
+}//END PersistenceWriter class
@@ -0,0 +1,569 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: PlayQueue
+ * DESCRIPTION:
+ * The queue of songs waiting to be played, head first. The order is chosen by a
+ * QueueScheduler (first come first served unless another one is set), which tags each song as it
+ * is queued; the songs are kept sorted by tag in a treap that also counts the songs under each
+ * node, so adding a song anywhere, removing the song that finished and finding a song's position
+ * all take O(log n) however long the queue is. Each song is a QueueEntry with an id, and the
+ * nodes are also found by id, so a song can be cancelled from anywhere in the queue without
+ * searching for it. The song at the head is playing, so it keeps its place until it is removed
+ * and cannot be cancelled. Each change is reported to the listeners as a single added or
+ * removed entry with its position, so a view can apply just that change instead of copying the
+ * whole queue. Changes are reported while the queue is locked, so listeners see them in exactly
+ * the order they happened and should only hand them off (for example to the JavaFX thread). The
+ * time each song was queued is kept next to it so the wait until it starts playing can be
+ * measured, and every change is counted so a save can tell whether the queue changed since the
+ * last one.
+ **************************************************************************************************/
+
+public class PlayQueue {
+
+	private static final long PLAYING = Long.MIN_VALUE; //Tag of the head, below any tag a scheduler gives
+
+	private QueueScheduler scheduler;
+	private Node root;
+	private long nextSequence;
+	private long nextId;
+	private HashMap<Long, Node> nodesById;
+	private int seed = 0x2545F491;
+	private CopyOnWriteArrayList<Listener> listeners;
+	private long changes;
+
+	/**********************************************************************************************
+	 * CLASS: Listener
+	 * PURPOSE: Receives every change made to a PlayQueue.
+	 **********************************************************************************************/
+	public interface Listener {
+		void entryAdded(int index, QueueEntry entry);
+		void entriesAdded(int index, List<QueueEntry> entries); //Songs queued together by offerAll()
+		void entryRemoved(int index, QueueEntry entry); //Played, cancelled or cleared
+	}//END Listener interface
+
+	/**********************************************************************************************
+	 * METHOD: PlayQueue()
+	 * PURPOSE: Constructs an empty queue that plays songs in the order they are queued.
+	 **********************************************************************************************/
+	public PlayQueue() {
+		this(new FifoScheduler());
+	}//END PlayQueue() constructor
+
+	/**********************************************************************************************
+	 * METHOD: PlayQueue()
+	 * PURPOSE: Constructs an empty queue that plays songs in the order a scheduler chooses.
+	 * @param scheduler The QueueScheduler that places each song.
+	 **********************************************************************************************/
+	public PlayQueue(QueueScheduler scheduler) {
+		this.scheduler = scheduler;
+		nodesById = new HashMap<Long, Node>();
+		listeners = new CopyOnWriteArrayList<Listener>();
+	}//END PlayQueue() constructor
+
+	/**********************************************************************************************
+	 * METHOD: setScheduler()
+	 * PURPOSE: Places songs queued from now on with another scheduler. The songs already queued
+	 *     keep their order, ahead of the songs the new scheduler places.
+	 * @param newScheduler The QueueScheduler to use.
+	 **********************************************************************************************/
+	public synchronized void setScheduler(QueueScheduler newScheduler) {
+		scheduler = newScheduler;
+		for(Node node = first(); node != null; node = successor(node)) {
+			if(node.tag != PLAYING) {
+				node.tag = scheduler.append(); //Never decreasing, and the sequence breaks ties in order
+				node.sequence = nextSequence++;
+			}
+		}
+	}//END setScheduler()
+
+	/**********************************************************************************************
+	 * METHOD: addListener()
+	 * PURPOSE: Starts reporting changes to a listener and returns the queue as it is at that
+	 *     moment, so no change is missed or seen twice.
+	 * @param listener The Listener to add.
+	 * @return The ArrayList of queued entries, head first, when the listener was added.
+	 **********************************************************************************************/
+	public synchronized ArrayList<QueueEntry> addListener(Listener listener) {
+		listeners.add(listener);
+		return entries();
+	}//END addListener()
+
+	/**********************************************************************************************
+	 * METHOD: removeListener()
+	 * PURPOSE: Stops reporting changes to a listener.
+	 * @param listener The Listener to remove.
+	 **********************************************************************************************/
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}//END removeListener()
+
+	/**********************************************************************************************
+	 * METHOD: offer()
+	 * PURPOSE: Adds a song title to the back of the queue, whatever the scheduler, as when the
+	 *     saved queue is read back. The entry has no day, so cancelling it takes back no count.
+	 * @param title The String title of the song.
+	 * @return The position the song was added at, which is the number of songs ahead of it.
+	 **********************************************************************************************/
+	public synchronized int offer(String title) {
+		return added(insert(newEntry(title, null, 0, 0, 0), scheduler.append(), System.nanoTime()));
+	}//END offer()
+
+	/**********************************************************************************************
+	 * METHOD: offer()
+	 * PURPOSE: Adds a song a user selected where the scheduler places it. The entry has no day,
+	 *     like the one above; a Jukebox makes its entries with newEntry().
+	 * @param title The String title of the song.
+	 * @param username The String username of the user who selected it.
+	 * @param admin The boolean flag whether the user is an admin.
+	 * @param seconds How long the song plays for in seconds.
+	 * @return The position the song was added at, which is the number of songs ahead of it.
+	 **********************************************************************************************/
+	public synchronized int offer(String title, String username, boolean admin, int seconds) {
+		return offer(newEntry(title, username, seconds, 0, 0), admin);
+	}//END offer()
+
+	/**********************************************************************************************
+	 * METHOD: offer()
+	 * PURPOSE: Adds an entry made by newEntry() where the scheduler places it.
+	 * @param entry The QueueEntry of the selected song.
+	 * @param admin The boolean flag whether its user is an admin.
+	 * @return The position the song was added at, which is the number of songs ahead of it.
+	 **********************************************************************************************/
+	synchronized int offer(QueueEntry entry, boolean admin) {
+		return added(insert(entry, scheduler.schedule(entry.username, admin, entry.seconds), System.nanoTime()));
+	}//END offer()
+
+	/**********************************************************************************************
+	 * METHOD: restore()
+	 * PURPOSE: Adds a saved entry to the back of the queue, keeping its id.
+	 * @param entry The QueueEntry read back from the saved queue.
+	 **********************************************************************************************/
+	synchronized void restore(QueueEntry entry) {
+		nextId = Math.max(nextId, entry.id + 1);
+		added(insert(entry, scheduler.append(), System.nanoTime()));
+	}//END restore()
+
+	/**********************************************************************************************
+	 * METHOD: newEntry()
+	 * PURPOSE: Makes an entry with the next id, to be offered.
+	 * @return The new QueueEntry.
+	 **********************************************************************************************/
+	synchronized QueueEntry newEntry(String title, String username, int seconds, long day, long millis) {
+		return new QueueEntry(nextId++, title, username, seconds, day, millis);
+	}//END newEntry()
+
+	/**********************************************************************************************
+	 * METHOD: replayedEntry()
+	 * PURPOSE: Makes an entry with the id its journal record gave it, to be offered, so the
+	 *     ids handed out later follow it.
+	 * @return The new QueueEntry.
+	 **********************************************************************************************/
+	synchronized QueueEntry replayedEntry(long id, String title, String username, int seconds, long day) {
+		nextId = Math.max(nextId, id + 1);
+		return new QueueEntry(id, title, username, seconds, day, 0);
+	}//END replayedEntry()
+
+	/**********************************************************************************************
+	 * METHOD: offerAll()
+	 * PURPOSE: Adds entries made by newEntry() for songs one user selected together where the
+	 *     scheduler places them. If they end up next to each other, listeners get a single event
+	 *     for all of them; otherwise (other users' songs fall between them) one event each, front
+	 *     to back.
+	 * @param entries The List of QueueEntries, in the order they should play.
+	 * @param admin The boolean flag whether their user is an admin.
+	 * @return The position the first song was added at.
+	 **********************************************************************************************/
+	synchronized int offerAll(List<QueueEntry> entries, boolean admin) {
+		Node[] nodes = new Node[entries.size()];
+		long now = System.nanoTime();
+		for(int i=0; i<nodes.length; i++) {
+			QueueEntry entry = entries.get(i);
+			nodes[i] = insert(entry, scheduler.schedule(entry.username, admin, entry.seconds), now);
+		}
+		return addedAll(nodes);
+	}//END offerAll()
+
+	/**********************************************************************************************
+	 * METHOD: removeHead()
+	 * PURPOSE: Removes the song at the head of the queue.
+	 * @return The number of songs left in the queue, or -1 if it was already empty.
+	 **********************************************************************************************/
+	public synchronized int removeHead() {
+		Node head = first();
+		if(head == null) {
+			return -1;
+		}
+		unlink(head);
+		JukeboxMetrics.QUEUE_DEPTH.add(-1);
+		changes++;
+		headChanged();
+		for(Listener listener : listeners) { listener.entryRemoved(0, head.entry); }
+		return size(root);
+	}//END removeHead()
+
+	/**********************************************************************************************
+	 * METHOD: cancel()
+	 * PURPOSE: Removes a queued song by its id, reported as a single removed entry. The song at
+	 *     the head is playing and is not removed.
+	 * @param id The id of the QueueEntry.
+	 * @return The position the song was removed from, or -1 if it is not queued or is playing.
+	 **********************************************************************************************/
+	public synchronized int cancel(long id) {
+		Node node = nodesById.get(id);
+		if(node == null || node.tag == PLAYING) {
+			return -1;
+		}
+		int index = indexOf(node);
+		unlink(node);
+		JukeboxMetrics.QUEUE_DEPTH.add(-1);
+		changes++;
+		for(Listener listener : listeners) { listener.entryRemoved(index, node.entry); }
+		return index;
+	}//END cancel()
+
+	/**********************************************************************************************
+	 * METHOD: getEntry()
+	 * PURPOSE: Returns a queued song by its id.
+	 * @param id The id of the QueueEntry.
+	 * @return The QueueEntry, or null if it is no longer queued.
+	 **********************************************************************************************/
+	public synchronized QueueEntry getEntry(long id) {
+		Node node = nodesById.get(id);
+		return (node == null) ? null : node.entry;
+	}//END getEntry()
+
+	/**********************************************************************************************
+	 * METHOD: isPlaying()
+	 * PURPOSE: Returns whether a song is at the head of the queue.
+	 * @param id The id of the QueueEntry.
+	 * @return True if the entry is the head.
+	 **********************************************************************************************/
+	public synchronized boolean isPlaying(long id) {
+		Node node = nodesById.get(id);
+		return node != null && node.tag == PLAYING;
+	}//END isPlaying()
+
+	/**********************************************************************************************
+	 * METHOD: lastEntry()
+	 * PURPOSE: Returns the song a user queued last with a title, as a replayed cancellation
+	 *     names it. Scans the queue, so it is only for replay.
+	 * @return The QueueEntry, or null if the user has no such song queued.
+	 **********************************************************************************************/
+	synchronized QueueEntry lastEntry(String username, String title) {
+		QueueEntry last = null;
+		for(Node node = first(); node != null; node = successor(node)) {
+			if(title.equals(node.entry.title) && username.equals(node.entry.username)
+					&& (last == null || node.entry.id > last.id)) {
+				last = node.entry;
+			}
+		}
+		return last;
+	}//END lastEntry()
+
+	/**********************************************************************************************
+	 * METHOD: head()
+	 * PURPOSE: Returns up to the first 'count' titles in the queue.
+	 * @param count The number of titles wanted.
+	 * @return The ArrayList of titles from the head of the queue.
+	 **********************************************************************************************/
+	public synchronized ArrayList<String> head(int count) {
+		ArrayList<String> head = new ArrayList<String>(Math.min(count, size(root)));
+		for(Node node = first(); node != null && head.size() < count; node = successor(node)) {
+			head.add(node.entry.title);
+		}
+		return head;
+	}//END head()
+
+	/**********************************************************************************************
+	 * METHOD: entries()
+	 * PURPOSE: Returns a copy of the queue's entries.
+	 * @return The ArrayList of QueueEntries, head first.
+	 **********************************************************************************************/
+	public synchronized ArrayList<QueueEntry> entries() {
+		return entries(size(root));
+	}//END entries()
+
+	/**********************************************************************************************
+	 * METHOD: entries()
+	 * PURPOSE: Returns up to the first 'count' entries in the queue.
+	 * @param count The number of entries wanted.
+	 * @return The ArrayList of QueueEntries from the head of the queue.
+	 **********************************************************************************************/
+	public synchronized ArrayList<QueueEntry> entries(int count) {
+		ArrayList<QueueEntry> entries = new ArrayList<QueueEntry>(Math.min(count, size(root)));
+		for(Node node = first(); node != null && entries.size() < count; node = successor(node)) {
+			entries.add(node.entry);
+		}
+		return entries;
+	}//END entries()
+
+	/**********************************************************************************************
+	 * METHOD: headOfferedNanos()
+	 * PURPOSE: Returns when the song at the head of the queue was added to it.
+	 * @return The System.nanoTime() the head was offered, or 0 if the queue is empty.
+	 **********************************************************************************************/
+	public synchronized long headOfferedNanos() {
+		Node head = first();
+		return (head != null) ? head.offeredNanos : 0;
+	}//END headOfferedNanos()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of songs in the queue.
+	 * @return The queue length.
+	 **********************************************************************************************/
+	public synchronized int size() {
+		return size(root);
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: toList()
+	 * PURPOSE: Returns a copy of the queue.
+	 * @return The ArrayList of queued titles, head first.
+	 **********************************************************************************************/
+	public synchronized ArrayList<String> toList() {
+		return head(size(root));
+	}//END toList()
+
+	/**********************************************************************************************
+	 * METHOD: getChanges()
+	 * PURPOSE: Returns how many changes have been made to the queue since it was created.
+	 * @return The change count.
+	 **********************************************************************************************/
+	public synchronized long getChanges() {
+		return changes;
+	}//END getChanges()
+
+	/**********************************************************************************************
+	 * METHOD: clear()
+	 * PURPOSE: Removes every song, reporting each removal from the back so positions stay valid.
+	 **********************************************************************************************/
+	public synchronized void clear() {
+		while(root != null) {
+			Node last = root;
+			while(last.right != null) { last = last.right; }
+			int index = size(root) - 1;
+			unlink(last);
+			JukeboxMetrics.QUEUE_DEPTH.add(-1);
+			changes++;
+			for(Listener listener : listeners) { listener.entryRemoved(index, last.entry); }
+		}
+		scheduler.reset();
+	}//END clear()
+
+	/**********************************************************************************************
+	 * METHOD: added()
+	 * PURPOSE: Counts and reports one song just inserted.
+	 * @return The position it was inserted at.
+	 **********************************************************************************************/
+	private int added(Node node) {
+		JukeboxMetrics.QUEUE_DEPTH.add(1);
+		changes++;
+		int index = indexOf(node);
+		headChanged();
+		for(Listener listener : listeners) { listener.entryAdded(index, node.entry); }
+		return index;
+	}//END added()
+
+	/**********************************************************************************************
+	 * METHOD: addedAll()
+	 * PURPOSE: Counts and reports songs just inserted together, as one event if they are next to
+	 *     each other and otherwise as one event each in position order.
+	 * @return The position the first of them was inserted at.
+	 **********************************************************************************************/
+	private int addedAll(Node[] nodes) {
+		JukeboxMetrics.QUEUE_DEPTH.add(nodes.length);
+		changes++;
+		if(nodes.length == 0) {
+			return size(root);
+		}
+		int[] indexes = new int[nodes.length];
+		boolean together = true;
+		for(int i=0; i<nodes.length; i++) {
+			indexes[i] = indexOf(nodes[i]);
+			together &= indexes[i] == indexes[0] + i;
+		}
+		headChanged();
+		if(together) {
+			ArrayList<QueueEntry> added = new ArrayList<QueueEntry>(nodes.length);
+			for(Node node : nodes) { added.add(node.entry); }
+			for(Listener listener : listeners) { listener.entriesAdded(indexes[0], added); }
+		} else {
+			for(int i=0; i<nodes.length; i++) { //One user's songs keep their order, so positions only grow
+				for(Listener listener : listeners) { listener.entryAdded(indexes[i], nodes[i].entry); }
+			}
+		}
+		return indexes[0];
+	}//END addedAll()
+
+	/**********************************************************************************************
+	 * METHOD: headChanged()
+	 * PURPOSE: Tells the scheduler when a new song reaches the head, and pins it there while it
+	 *     plays. It is already the smallest tag, so lowering its tag keeps the treap sorted.
+	 **********************************************************************************************/
+	private void headChanged() {
+		Node head = first();
+		if(head == null) {
+			scheduler.reset();
+		} else if(head.tag != PLAYING) {
+			scheduler.started(head.tag);
+			head.tag = PLAYING;
+		}
+	}//END headChanged()
+
+	/**********************************************************************************************
+	 * METHOD: insert()
+	 * PURPOSE: Adds a node in tag order (then queue order) and rotates it up to its priority.
+	 **********************************************************************************************/
+	private Node insert(QueueEntry entry, long tag, long offeredNanos) {
+		seed ^= seed << 13; seed ^= seed >>> 17; seed ^= seed << 5;
+		Node node = new Node(entry, tag, nextSequence++, offeredNanos, seed);
+		nodesById.put(entry.id, node);
+		if(root == null) {
+			root = node;
+			return node;
+		}
+		Node parent = root;
+		while(true) {
+			parent.size++;
+			Node next = (node.compareTo(parent) < 0) ? parent.left : parent.right;
+			if(next == null) {
+				break;
+			}
+			parent = next;
+		}
+		node.parent = parent;
+		if(node.compareTo(parent) < 0) { parent.left = node; } else { parent.right = node; }
+		while(node.parent != null && node.parent.priority < node.priority) {
+			rotateUp(node);
+		}
+		return node;
+	}//END insert()
+
+	/**********************************************************************************************
+	 * METHOD: unlink()
+	 * PURPOSE: Rotates a node down until it has at most one child, then splices it out.
+	 **********************************************************************************************/
+	private void unlink(Node node) {
+		while(node.left != null && node.right != null) {
+			rotateUp((node.left.priority > node.right.priority) ? node.left : node.right);
+		}
+		Node child = (node.left != null) ? node.left : node.right;
+		Node parent = node.parent;
+		if(child != null) { child.parent = parent; }
+		if(parent == null) {
+			root = child;
+		} else if(parent.left == node) {
+			parent.left = child;
+		} else {
+			parent.right = child;
+		}
+		for(Node above = parent; above != null; above = above.parent) { above.size--; }
+		nodesById.remove(node.entry.id);
+		node.parent = null;
+		node.left = null;
+		node.right = null;
+	}//END unlink()
+
+	/**********************************************************************************************
+	 * METHOD: rotateUp()
+	 * PURPOSE: Rotates a node above its parent, keeping the order and the subtree sizes.
+	 **********************************************************************************************/
+	private void rotateUp(Node node) {
+		Node parent = node.parent;
+		Node grandparent = parent.parent;
+		if(parent.left == node) {
+			parent.left = node.right;
+			if(node.right != null) { node.right.parent = parent; }
+			node.right = parent;
+		} else {
+			parent.right = node.left;
+			if(node.left != null) { node.left.parent = parent; }
+			node.left = parent;
+		}
+		parent.parent = node;
+		node.parent = grandparent;
+		if(grandparent == null) {
+			root = node;
+		} else if(grandparent.left == parent) {
+			grandparent.left = node;
+		} else {
+			grandparent.right = node;
+		}
+		node.size = parent.size;
+		parent.size = size(parent.left) + size(parent.right) + 1;
+	}//END rotateUp()
+
+	/**********************************************************************************************
+	 * METHOD: indexOf()
+	 * PURPOSE: Returns a node's position, counting the nodes before it on the way to the root.
+	 **********************************************************************************************/
+	private static int indexOf(Node node) {
+		int index = size(node.left);
+		for(; node.parent != null; node = node.parent) {
+			if(node.parent.right == node) { index += size(node.parent.left) + 1; }
+		}
+		return index;
+	}//END indexOf()
+
+	private Node first() {
+		Node node = root;
+		while(node != null && node.left != null) { node = node.left; }
+		return node;
+	}//END first()
+
+	private static Node successor(Node node) {
+		if(node.right != null) {
+			node = node.right;
+			while(node.left != null) { node = node.left; }
+			return node;
+		}
+		while(node.parent != null && node.parent.right == node) { node = node.parent; }
+		return node.parent;
+	}//END successor()
+
+	private static int size(Node node) {
+		return (node == null) ? 0 : node.size;
+	}//END size()
+
+	/**********************************************************************************************
+	 * CLASS: Node
+	 * PURPOSE: One queued entry, ordered by its tag and then by when it was queued.
+	 **********************************************************************************************/
+	private static final class Node implements Comparable<Node> {
+		private final QueueEntry entry;
+		private long sequence;
+		private final long offeredNanos; //System.nanoTime() the entry was offered
+		private final int priority;
+		private long tag;
+		private int size = 1;
+		private Node parent;
+		private Node left;
+		private Node right;
+
+		private Node(QueueEntry entry, long tag, long sequence, long offeredNanos, int priority) {
+			this.entry = entry;
+			this.tag = tag;
+			this.sequence = sequence;
+			this.offeredNanos = offeredNanos;
+			this.priority = priority;
+		}//END Node() constructor
+
+		@Override
+		public int compareTo(Node other) {
+			if(tag != other.tag) {
+				return (tag < other.tag) ? -1 : 1;
+			}
+			return Long.compare(sequence, other.sequence);
+		}//END compareTo()
+	}//END Node class
+
+}//END PlayQueue class
@@ -0,0 +1,53 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: PlaybackEngine
+ * DESCRIPTION:
+ * Plays the songs at the head of a Jukebox queue. The Jukebox asks the engine to play the head
+ * and to get the song after it ready, and the engine runs the end of song handler each time a
+ * song finishes so the Jukebox can move the queue on. MediaPlaybackEngine plays the song files
+ * and needs the JavaFX runtime; TimedPlaybackEngine lets songs run their length in real time
+ * without it; VirtualPlaybackEngine only keeps time on a clock it is told about, for simulations.
+ * Selections on other threads may start playback, so an engine must allow calls from any thread.
+ **************************************************************************************************/
+
+public interface PlaybackEngine {
+
+	/**********************************************************************************************
+	 * METHOD: setEndOfSongHandler()
+	 * PURPOSE: Sets what is run each time a song ends. Called once, before the first song plays.
+	 * @param handler The Runnable the Jukebox moves its queue on with.
+	 **********************************************************************************************/
+	void setEndOfSongHandler(Runnable handler);
+
+	/**********************************************************************************************
+	 * METHOD: play()
+	 * PURPOSE: Starts playing a song, replacing any song playing.
+	 * @param song The Song at the head of the queue.
+	 * @param queuedNanos The System.nanoTime() the song was queued, or 0 if unknown.
+	 **********************************************************************************************/
+	void play(Song song, long queuedNanos);
+
+	/**********************************************************************************************
+	 * METHOD: prepareNext()
+	 * PURPOSE: Gets the song after the one playing ready to start without a gap.
+	 * @param song The Song second in the queue, or null if there is none.
+	 **********************************************************************************************/
+	void prepareNext(Song song);
+
+	/**********************************************************************************************
+	 * METHOD: stop()
+	 * PURPOSE: Stops playback and forgets the prepared song.
+	 **********************************************************************************************/
+	void stop();
+
+	/**********************************************************************************************
+	 * METHOD: getLastGapNanos()
+	 * PURPOSE: Returns the time between the end of the last song and the next song playing.
+	 * @return The last gap in nanoseconds, or -1 if no song has followed another yet.
+	 **********************************************************************************************/
+	long getLastGapNanos();
+
+}//END PlaybackEngine interface
@@ -0,0 +1,45 @@
+package model;
+
+import java.io.Serializable;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: QueueEntry
+ * DESCRIPTION:
+ * One song waiting in a PlayQueue. The id stays the same for as long as the song is queued (and
+ * across saves), so a user or admin can name the entry to cancel it wherever it has moved to. The
+ * user, length, day and time are kept so a cancelled selection can be refunded and taken off
+ * the leaderboard; songs queued before entries were saved have no user.
+ **************************************************************************************************/
+
+public class QueueEntry implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public final long id;
+	public final String title;
+	public final String username; //null if the user is not known
+	public final int seconds;
+	public final long day; //epoch day of the selection
+	public final long millis; //clock time of the selection, 0 if not known
+
+	QueueEntry(long id, String title, String username, int seconds, long day, long millis) {
+		this.id = id;
+		this.title = title;
+		this.username = username;
+		this.seconds = seconds;
+		this.day = day;
+		this.millis = millis;
+	}//END QueueEntry() constructor
+
+	/**********************************************************************************************
+	 * METHOD: toString()
+	 * PURPOSE: Returns the song title, as a queue list shows it.
+	 **********************************************************************************************/
+	@Override
+	public String toString() {
+		return title;
+	}//END toString()
+
+}//END QueueEntry class
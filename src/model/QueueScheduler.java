@@ -0,0 +1,48 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: QueueScheduler
+ * DESCRIPTION:
+ * Decides the order a PlayQueue plays its songs in. Each song is given a tag when it is queued,
+ * and the queue plays songs in increasing tag order (songs with the same tag in the order they
+ * were queued). A tag is never changed once given, so the policy only has to pick where each new
+ * song goes; the PlayQueue keeps the songs sorted and the song at the head in place while it
+ * plays. Calls are made while the queue is locked.
+ **************************************************************************************************/
+
+public interface QueueScheduler {
+
+	/**********************************************************************************************
+	 * METHOD: schedule()
+	 * PURPOSE: Returns the tag of a song a user has just selected.
+	 * @param username The String username of the user who selected the song.
+	 * @param admin The boolean flag whether the user is an admin.
+	 * @param seconds How long the song plays for in seconds.
+	 * @return The long tag that places the song in the queue.
+	 **********************************************************************************************/
+	long schedule(String username, boolean admin, int seconds);
+
+	/**********************************************************************************************
+	 * METHOD: append()
+	 * PURPOSE: Returns a tag after every tag given so far, for a song queued without a user (such
+	 *     as one read back from the saved queue) that should simply go to the back.
+	 * @return The long tag.
+	 **********************************************************************************************/
+	long append();
+
+	/**********************************************************************************************
+	 * METHOD: started()
+	 * PURPOSE: Tells the policy that the song with a tag reached the head of the queue.
+	 * @param tag The long tag the song was given.
+	 **********************************************************************************************/
+	void started(long tag);
+
+	/**********************************************************************************************
+	 * METHOD: reset()
+	 * PURPOSE: Tells the policy that the queue is empty, so nothing it remembers still matters.
+	 **********************************************************************************************/
+	void reset();
+
+}//END QueueScheduler interface
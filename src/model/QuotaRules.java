@@ -0,0 +1,340 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: QuotaRules
+ * DESCRIPTION:
+ * A venue's limits on song selections. The daily limits on a user's songs and a song's selections
+ * use the counts kept by User and Song. Any other rule counts selections over a sliding window:
+ * songs per user, selections per song or per artist, or a cooldown before the same song may be
+ * selected again. Rules are read from a properties file, one key per kind of rule:
+ *     user.songsPerDay     = 3
+ *     song.selectionsPerDay = 3
+ *     user.window          = 2/1h, 5/4h     (at most 2 songs an hour and 5 in four hours)
+ *     song.window          = 2/2h
+ *     artist.window        = 4/1h
+ *     song.cooldown        = 30m            (units s, m, h or d)
+ * The rules are compiled into a fixed chain that each selection is checked against in order. A
+ * window is split into BUCKETS buckets, each keeping a count per user, song or artist with a
+ * running total, so checking a rule is a lookup and at most a few bucket moves, with nothing
+ * allocated once the user, song or artist has been counted. A selection counts for at least the
+ * whole window and at most one bucket longer. Window counts are only kept in memory, so they
+ * start empty when the Jukebox starts, and a cancelled song is not taken back out of them.
+ **************************************************************************************************/
+
+public class QuotaRules {
+
+	public static final int DEFAULT_DAILY_LIMIT = 3;
+	private static final int BUCKETS = 12;
+
+	private final int userDailyLimit;
+	private final int songDailyLimit;
+	private final Rule[] chain;
+
+	/**********************************************************************************************
+	 * METHOD: QuotaRules()
+	 * PURPOSE: Constructs the default rules: 3 songs per user and 3 selections per song each day.
+	 **********************************************************************************************/
+	public QuotaRules() {
+		this(DEFAULT_DAILY_LIMIT, DEFAULT_DAILY_LIMIT, new Rule[0]);
+	}//END QuotaRules() constructor
+
+	private QuotaRules(int userDailyLimit, int songDailyLimit, Rule[] chain) {
+		this.userDailyLimit = userDailyLimit;
+		this.songDailyLimit = songDailyLimit;
+		this.chain = chain;
+	}//END QuotaRules() constructor
+
+	/**********************************************************************************************
+	 * METHOD: load()
+	 * PURPOSE: Reads and compiles a rules file.
+	 * @param file The properties File of rules.
+	 * @return The compiled QuotaRules.
+	 * @throws IOException If the file cannot be read.
+	 * @throws IllegalArgumentException If a rule is not understood.
+	 **********************************************************************************************/
+	public static QuotaRules load(File file) throws IOException {
+		Properties config = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		return compile(config);
+	}//END load()
+
+	/**********************************************************************************************
+	 * METHOD: compile()
+	 * PURPOSE: Compiles rules into the chain checked for each selection: the user's windows, then
+	 *     the song's cooldown and windows, then the artist's windows. Keys that are not given
+	 *     keep their defaults.
+	 * @param config The Properties of rules.
+	 * @return The compiled QuotaRules.
+	 * @throws IllegalArgumentException If a key or a rule is not understood.
+	 **********************************************************************************************/
+	public static QuotaRules compile(Properties config) {
+		int userDaily = DEFAULT_DAILY_LIMIT;
+		int songDaily = DEFAULT_DAILY_LIMIT;
+		ArrayList<Rule> userRules = new ArrayList<Rule>();
+		ArrayList<Rule> songRules = new ArrayList<Rule>();
+		ArrayList<Rule> artistRules = new ArrayList<Rule>();
+		for(String key : config.stringPropertyNames()) {
+			String value = config.getProperty(key).trim();
+			if(key.equals("user.songsPerDay")) {
+				userDaily = parseCount(key, value);
+			} else if(key.equals("song.selectionsPerDay")) {
+				songDaily = parseCount(key, value);
+			} else if(key.equals("user.window")) {
+				parseWindows(key, value, Scope.USER, SelectionOutcome.USER_WINDOW_LIMIT, userRules);
+			} else if(key.equals("song.window")) {
+				parseWindows(key, value, Scope.SONG, SelectionOutcome.SONG_WINDOW_LIMIT, songRules);
+			} else if(key.equals("artist.window")) {
+				parseWindows(key, value, Scope.ARTIST, SelectionOutcome.ARTIST_WINDOW_LIMIT, artistRules);
+			} else if(key.equals("song.cooldown")) {
+				songRules.add(0, new Rule(Scope.SONG, 1, parseDuration(key, value), SelectionOutcome.SONG_COOLDOWN));
+			} else {
+				throw new IllegalArgumentException("Unknown quota rule '" + key + "'.");
+			}
+		}
+
+		ArrayList<Rule> chain = new ArrayList<Rule>(userRules);
+		chain.addAll(songRules);
+		chain.addAll(artistRules);
+		return new QuotaRules(userDaily, songDaily, chain.toArray(new Rule[chain.size()]));
+	}//END compile()
+
+	/**********************************************************************************************
+	 * METHOD: getUserDailyLimit()
+	 * PURPOSE: Returns the number of songs a user may select each day.
+	 * @return The user's daily limit.
+	 **********************************************************************************************/
+	public int getUserDailyLimit() {
+		return userDailyLimit;
+	}//END getUserDailyLimit()
+
+	/**********************************************************************************************
+	 * METHOD: getSongDailyLimit()
+	 * PURPOSE: Returns the number of times a song may be selected each day.
+	 * @return The song's daily limit.
+	 **********************************************************************************************/
+	public int getSongDailyLimit() {
+		return songDailyLimit;
+	}//END getSongDailyLimit()
+
+	/**********************************************************************************************
+	 * METHOD: take()
+	 * PURPOSE: Checks a selection against every window rule in the chain and, if all of them
+	 *     allow it, counts it in each. If a rule refuses it, the rules before it are given their
+	 *     count back, so nothing changes. The caller holds the user's and the song's locks.
+	 * @param username The String name of the user selecting the song.
+	 * @param song The Song selected.
+	 * @param millis The time of the selection in milliseconds.
+	 * @return The SelectionOutcome of the first rule that refused the song, or null if none did.
+	 **********************************************************************************************/
+	public SelectionOutcome take(String username, Song song, long millis) {
+		for(int i=0; i<chain.length; i++) {
+			if(chain[i].take(chain[i].key(username, song), millis) == false) {
+				for(int j=0; j<i; j++) {
+					chain[j].giveBack(chain[j].key(username, song), millis);
+				}
+				return chain[i].outcome;
+			}
+		}
+		return null;
+	}//END take()
+
+	/**********************************************************************************************
+	 * METHOD: giveBack()
+	 * PURPOSE: Takes a selection counted by take() at the same time back out of every window,
+	 *     for a batch of songs that was refused after some of its songs were counted, or a
+	 *     selection that was cancelled.
+	 * @param username The String name of the user who selected the song.
+	 * @param song The Song selected.
+	 * @param millis The time passed to take().
+	 **********************************************************************************************/
+	public void giveBack(String username, Song song, long millis) {
+		for(Rule rule : chain) {
+			rule.giveBack(rule.key(username, song), millis);
+		}
+	}//END giveBack()
+
+	/**********************************************************************************************
+	 * METHOD: message()
+	 * PURPOSE: Returns the message to show a person for an outcome, quoting this venue's daily
+	 *     limits where they are not the defaults.
+	 * @param outcome The SelectionOutcome to describe.
+	 * @return The String message.
+	 **********************************************************************************************/
+	public String message(SelectionOutcome outcome) {
+		if(outcome == SelectionOutcome.USER_DAILY_LIMIT && userDailyLimit != DEFAULT_DAILY_LIMIT) {
+			return "You may only play a total of " + userDailyLimit + " songs per day.";
+		}
+		if(outcome == SelectionOutcome.SONG_DAILY_LIMIT && songDailyLimit != DEFAULT_DAILY_LIMIT) {
+			return "This song may not be selected more than " + songDailyLimit + " times per day.";
+		}
+		return outcome.getMessage();
+	}//END message()
+
+	/**********************************************************************************************
+	 * METHOD: parseWindows()
+	 * PURPOSE: Adds a rule for each "limit/duration" in a comma separated list.
+	 **********************************************************************************************/
+	private static void parseWindows(String key, String value, Scope scope, SelectionOutcome outcome,
+			ArrayList<Rule> rules) {
+		for(String window : value.split(",")) {
+			int slash = window.indexOf('/');
+			if(slash < 0) {
+				throw new IllegalArgumentException("'" + key + "' must be a list of limit/duration, such as 2/1h.");
+			}
+			rules.add(new Rule(scope, parseCount(key, window.substring(0, slash).trim()),
+					parseDuration(key, window.substring(slash + 1).trim()), outcome));
+		}
+	}//END parseWindows()
+
+	private static int parseCount(String key, String value) {
+		try {
+			int count = Integer.parseInt(value);
+			if(count >= 0) {
+				return count;
+			}
+		} catch(NumberFormatException e) {
+			//Reported below
+		}
+		throw new IllegalArgumentException("'" + key + "' must have a whole number limit, not '" + value + "'.");
+	}//END parseCount()
+
+	//Reads a duration such as 90s, 30m, 2h or 1d as milliseconds
+	private static long parseDuration(String key, String value) {
+		long unit;
+		switch(value.isEmpty() ? ' ' : value.charAt(value.length() - 1)) {
+			case 's': unit = 1000L; break;
+			case 'm': unit = 60*1000L; break;
+			case 'h': unit = 60*60*1000L; break;
+			case 'd': unit = 24*60*60*1000L; break;
+			default: throw new IllegalArgumentException("'" + key + "' needs a duration in s, m, h or d, not '" + value + "'.");
+		}
+		long amount = parseCount(key, value.substring(0, value.length() - 1).trim());
+		if(amount == 0) {
+			throw new IllegalArgumentException("'" + key + "' may not have a window of 0.");
+		}
+		return amount * unit;
+	}//END parseDuration()
+
+	/**********************************************************************************************
+	 * ENUM: Scope
+	 * PURPOSE: What a rule counts selections of.
+	 **********************************************************************************************/
+	private enum Scope { USER, SONG, ARTIST }
+
+	/**********************************************************************************************
+	 * CLASS: Rule
+	 * PURPOSE: One limit on the selections of each user, song or artist over a sliding window.
+	 **********************************************************************************************/
+	private static final class Rule {
+		private final Scope scope;
+		private final int limit;
+		private final long bucketMillis;
+		private final SelectionOutcome outcome;
+		private final ConcurrentHashMap<String, WindowCounter> counters = new ConcurrentHashMap<String, WindowCounter>();
+		private final NewCounter newCounter = new NewCounter();
+
+		private Rule(Scope scope, int limit, long windowMillis, SelectionOutcome outcome) {
+			this.scope = scope;
+			this.limit = limit;
+			this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+			this.outcome = outcome;
+		}//END Rule() constructor
+
+		private String key(String username, Song song) {
+			switch(scope) {
+				case USER: return username;
+				case SONG: return song.getSongTitle();
+				default: return song.getSongArtist();
+			}
+		}//END key()
+
+		private boolean take(String key, long millis) {
+			if(limit == 0) {
+				return false;
+			}
+			WindowCounter counter = counters.get(key);
+			if(counter == null) {
+				counter = counters.computeIfAbsent(key, newCounter);
+			}
+			return counter.take(millis / bucketMillis, limit);
+		}//END take()
+
+		private void giveBack(String key, long millis) {
+			WindowCounter counter = counters.get(key);
+			if(counter != null) {
+				counter.giveBack(millis / bucketMillis);
+			}
+		}//END giveBack()
+	}//END Rule class
+
+	private static final class NewCounter implements Function<String, WindowCounter> {
+		@Override
+		public WindowCounter apply(String key) {
+			return new WindowCounter();
+		}//END apply()
+	}//END NewCounter class
+
+	/**********************************************************************************************
+	 * CLASS: WindowCounter
+	 * PURPOSE: The selections of one user, song or artist in the last BUCKETS buckets and the one
+	 *     now filling, in a ring with their total. Moving to a later bucket empties the buckets
+	 *     that left the window. Locked on itself, since songs by one artist share a counter.
+	 **********************************************************************************************/
+	private static final class WindowCounter {
+		private final int[] counts = new int[BUCKETS + 1];
+		private long lastSlot;
+		private int total;
+
+		private synchronized boolean take(long slot, int limit) {
+			advance(slot);
+			if(total >= limit) {
+				return false;
+			}
+			counts[(int) (slot % counts.length)]++;
+			total++;
+			return true;
+		}//END take()
+
+		private synchronized void giveBack(long slot) {
+			int bucket = (int) (slot % counts.length);
+			if(slot > lastSlot - counts.length && counts[bucket] > 0) {
+				counts[bucket]--;
+				total--;
+			}
+		}//END giveBack()
+
+		private void advance(long slot) {
+			if(slot <= lastSlot) {
+				return;
+			}
+			if(slot - lastSlot >= counts.length) {
+				for(int i=0; i<counts.length; i++) { counts[i] = 0; }
+				total = 0;
+			} else {
+				for(long s = lastSlot + 1; s <= slot; s++) {
+					int bucket = (int) (s % counts.length);
+					total -= counts[bucket];
+					counts[bucket] = 0;
+				}
+			}
+			lastSlot = slot;
+		}//END advance()
+	}//END WindowCounter class
+
+}//END QuotaRules class
@@ -0,0 +1,160 @@
+package model;
+
+import java.util.ArrayList;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: RingBuffer
+ * DESCRIPTION:
+ * A growable circular array. Adding at either end and removing from either end take constant
+ * time and any position can be read in constant time. Inserting or removing in the middle is not
+ * constant time: it shifts every element on the shorter side, so it costs up to size()/2 moves.
+ * It is not thread safe; callers lock around it.
+ **************************************************************************************************/
+
+public class RingBuffer<E> {
+
+	private Object[] items;
+	private int head;
+	private int size;
+
+	/**********************************************************************************************
+	 * METHOD: RingBuffer()
+	 * PURPOSE: Constructs an empty ring buffer.
+	 **********************************************************************************************/
+	public RingBuffer() {
+		items = new Object[16];
+	}//END RingBuffer() constructor
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of elements in the buffer.
+	 * @return The element count.
+	 **********************************************************************************************/
+	public int size() {
+		return size;
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: get()
+	 * PURPOSE: Returns the element at a position, counted from the front.
+	 * @param index The position of the element.
+	 * @return The element at 'index'.
+	 **********************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index, size);
+		return (E) items[slot(index)];
+	}//END get()
+
+	/**********************************************************************************************
+	 * METHOD: addLast()
+	 * PURPOSE: Adds an element at the back of the buffer.
+	 * @param element The element to add.
+	 **********************************************************************************************/
+	public void addLast(E element) {
+		add(size, element);
+	}//END addLast()
+
+	/**********************************************************************************************
+	 * METHOD: add()
+	 * PURPOSE: Inserts an element at a position, moving whichever side is shorter to make room.
+	 * @param index The position the new element will have, from 0 to size().
+	 * @param element The element to add.
+	 **********************************************************************************************/
+	public void add(int index, E element) {
+		checkIndex(index, size + 1);
+		if(size == items.length) {
+			grow();
+		}
+		if(index < size/2) { //Move the front one step back
+			head = (head - 1) & (items.length - 1);
+			for(int i=0; i<index; i++) { items[slot(i)] = items[slot(i + 1)]; }
+		} else { //Move the back one step forward
+			for(int i=size; i>index; i--) { items[slot(i)] = items[slot(i - 1)]; }
+		}
+		items[slot(index)] = element;
+		size++;
+	}//END add()
+
+	/**********************************************************************************************
+	 * METHOD: removeFirst()
+	 * PURPOSE: Removes the element at the front of the buffer.
+	 * @return The removed element, or null if the buffer is empty.
+	 **********************************************************************************************/
+	public E removeFirst() {
+		return (size == 0) ? null : remove(0);
+	}//END removeFirst()
+
+	/**********************************************************************************************
+	 * METHOD: remove()
+	 * PURPOSE: Removes the element at a position, closing the gap from whichever side is shorter.
+	 * @param index The position of the element to remove.
+	 * @return The removed element.
+	 **********************************************************************************************/
+	public E remove(int index) {
+		E removed = get(index);
+		if(index < size/2) { //Close the gap from the front
+			for(int i=index; i>0; i--) { items[slot(i)] = items[slot(i - 1)]; }
+			items[head] = null;
+			head = (head + 1) & (items.length - 1);
+		} else { //Close the gap from the back
+			for(int i=index; i<size - 1; i++) { items[slot(i)] = items[slot(i + 1)]; }
+			items[slot(size - 1)] = null;
+		}
+		size--;
+		return removed;
+	}//END remove()
+
+	/**********************************************************************************************
+	 * METHOD: clear()
+	 * PURPOSE: Removes every element.
+	 **********************************************************************************************/
+	public void clear() {
+		for(int i=0; i<size; i++) { items[slot(i)] = null; }
+		head = 0;
+		size = 0;
+	}//END clear()
+
+	/**********************************************************************************************
+	 * METHOD: toList()
+	 * PURPOSE: Copies the elements, front first, into a new list.
+	 * @return The ArrayList of every element.
+	 **********************************************************************************************/
+	public ArrayList<E> toList() {
+		ArrayList<E> list = new ArrayList<E>(size);
+		for(int i=0; i<size; i++) { list.add(get(i)); }
+		return list;
+	}//END toList()
+
+	/**********************************************************************************************
+	 * METHOD: slot()
+	 * PURPOSE: Maps a position in the buffer to an index in the array (the length is a power of 2).
+	 **********************************************************************************************/
+	private int slot(int index) {
+		return (head + index) & (items.length - 1);
+	}//END slot()
+
+	/**********************************************************************************************
+	 * METHOD: grow()
+	 * PURPOSE: Doubles the array, unrolling the elements so the front is at index 0 again.
+	 **********************************************************************************************/
+	private void grow() {
+		Object[] grown = new Object[items.length*2];
+		for(int i=0; i<size; i++) { grown[i] = items[slot(i)]; }
+		items = grown;
+		head = 0;
+	}//END grow()
+
+	/**********************************************************************************************
+	 * METHOD: checkIndex()
+	 * PURPOSE: Rejects a position outside 0 to limit - 1.
+	 **********************************************************************************************/
+	private void checkIndex(int index, int limit) {
+		if(index < 0 || index >= limit) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}//END checkIndex()
+
+}//END RingBuffer class
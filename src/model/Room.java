@@ -0,0 +1,117 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Room
+ * DESCRIPTION:
+ * One bar room hosted by a RoomRegistry: its own Jukebox (songs, queue and playback) and the
+ * single shard thread that all of its changes run on. Because only that thread ever changes the
+ * room, selections in one room never wait on another room, and the locks inside the Jukebox are
+ * never contended except for a user who selects in two rooms at once.
+ **************************************************************************************************/
+
+public class Room {
+
+	private String name;
+	private Jukebox jukebox;
+	private int shard;
+	private ExecutorService executor;
+
+	/**********************************************************************************************
+	 * METHOD: Room()
+	 * PURPOSE: Constructs a room. Only a RoomRegistry creates rooms.
+	 **********************************************************************************************/
+	Room(String name, Jukebox jukebox, int shard, ExecutorService executor) {
+		this.name = name;
+		this.jukebox = jukebox;
+		this.shard = shard;
+		this.executor = executor;
+	}//END Room() constructor
+
+	/**********************************************************************************************
+	 * METHOD: getName()
+	 * PURPOSE: Returns the name of the room.
+	 * @return The String room name.
+	 **********************************************************************************************/
+	public String getName() {
+		return name;
+	}//END getName()
+
+	/**********************************************************************************************
+	 * METHOD: getJukebox()
+	 * PURPOSE: Returns the room's Jukebox. Reading from it is safe on any thread; changes to it
+	 *     should be made through submit() so they run on the room's shard.
+	 * @return The Jukebox of this room.
+	 **********************************************************************************************/
+	public Jukebox getJukebox() {
+		return jukebox;
+	}//END getJukebox()
+
+	/**********************************************************************************************
+	 * METHOD: getShard()
+	 * PURPOSE: Returns the number of the shard thread this room runs on.
+	 * @return The shard number, from 0 to the registry's shard count - 1.
+	 **********************************************************************************************/
+	public int getShard() {
+		return shard;
+	}//END getShard()
+
+	/**********************************************************************************************
+	 * METHOD: submit()
+	 * PURPOSE: Runs a task on the room's shard, after every task submitted to the room before it.
+	 * @param task The Callable to run.
+	 * @return The Future result of the task.
+	 **********************************************************************************************/
+	public <T> Future<T> submit(Callable<T> task) {
+		return executor.submit(task);
+	}//END submit()
+
+	/**********************************************************************************************
+	 * METHOD: execute()
+	 * PURPOSE: Runs a task on the room's shard without waiting for a result.
+	 * @param task The Runnable to run.
+	 **********************************************************************************************/
+	public void execute(Runnable task) {
+		executor.execute(task);
+	}//END execute()
+
+	/**********************************************************************************************
+	 * METHOD: selectSong()
+	 * PURPOSE: Selects a song in this room for a user on the room's shard.
+	 * @param user The User selecting the song.
+	 * @param title The String title of the song.
+	 * @param date The LocalDate of the selection.
+	 * @return The Future SelectionOutcome: QUEUED or the reason the song was refused.
+	 **********************************************************************************************/
+	public Future<SelectionOutcome> selectSong(User user, String title, LocalDate date) {
+		return executor.submit(new Selection(user, title, date));
+	}//END selectSong()
+
+	/**********************************************************************************************
+	 * CLASS: Selection
+	 * PURPOSE: One song selection waiting to run on the room's shard.
+	 **********************************************************************************************/
+	private class Selection implements Callable<SelectionOutcome> {
+		private User user;
+		private String title;
+		private LocalDate date;
+
+		private Selection(User user, String title, LocalDate date) {
+			this.user = user;
+			this.title = title;
+			this.date = date;
+		}//END Selection() constructor
+
+		@Override
+		public SelectionOutcome call() {
+			return jukebox.selectSong(user, title, date, null);
+		}//END call()
+	}//END Selection class
+
+}//END Room class
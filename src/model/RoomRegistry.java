@@ -0,0 +1,245 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: RoomRegistry
+ * DESCRIPTION:
+ * Hosts many independent rooms in one program, all sharing one AllAccounts. Each room has its own
+ * Jukebox in its own folder ("rooms/<name>/SongList", "SongQueue", ...) and is pinned to one of a
+ * fixed number of single-thread shards, one per core by default. Rooms are dealt to the shards in
+ * turn, so with as many shards as cores each room's work runs on its own core and throughput
+ * grows with the number of rooms.
+ *
+ * Rooms save their songs and queue as snapshots in saveAll() and close(); the write-ahead journal
+ * is left to single-room programs, since its account LSN can only follow one journal.
+ **************************************************************************************************/
+
+public class RoomRegistry {
+
+	private File roomsFolder;
+	private AllAccounts accounts;
+	private ExecutorService[] shards;
+	private ConcurrentHashMap<String, Room> rooms;
+	private ArrayList<Room> openOrder;
+
+	/**********************************************************************************************
+	 * METHOD: RoomRegistry()
+	 * PURPOSE: Constructs a registry with one shard per available core.
+	 * @param roomsFolder The folder holding one folder per room, or null to keep rooms in memory.
+	 * @param accounts The AllAccounts shared by every room.
+	 **********************************************************************************************/
+	public RoomRegistry(File roomsFolder, AllAccounts accounts) {
+		this(roomsFolder, accounts, Runtime.getRuntime().availableProcessors());
+	}//END RoomRegistry() constructor
+
+	/**********************************************************************************************
+	 * METHOD: RoomRegistry()
+	 * PURPOSE: Constructs a registry with the given number of shard threads.
+	 * @param roomsFolder The folder holding one folder per room, or null to keep rooms in memory.
+	 * @param accounts The AllAccounts shared by every room.
+	 * @param shardCount The number of single-thread shards rooms are spread across.
+	 **********************************************************************************************/
+	public RoomRegistry(File roomsFolder, AllAccounts accounts, int shardCount) {
+		if(shardCount < 1) {
+			throw new IllegalArgumentException("A registry needs at least one shard.");
+		}
+		this.roomsFolder = roomsFolder;
+		this.accounts = accounts;
+		rooms = new ConcurrentHashMap<String, Room>();
+		openOrder = new ArrayList<Room>();
+		shards = new ExecutorService[shardCount];
+		for(int i=0; i<shardCount; i++) {
+			shards[i] = Executors.newSingleThreadExecutor(new ShardThreadFactory(i));
+		}
+	}//END RoomRegistry() constructor
+
+	/**********************************************************************************************
+	 * METHOD: openRoom()
+	 * PURPOSE: Returns the room with the given name, opening it on the next shard if it is not
+	 *     open yet. A room whose folder has saved songs is loaded from them; a new room starts
+	 *     with the default songs. The Jukebox is built on the room's own shard.
+	 * @param name The String room name (letters, digits, '-' and '_').
+	 * @return The open Room.
+	 **********************************************************************************************/
+	public synchronized Room openRoom(String name) {
+		Room room = rooms.get(name);
+		if(room != null) {
+			return room;
+		}
+		if(name.matches("[A-Za-z0-9_-]+") == false) {
+			throw new IllegalArgumentException("Room names may only use letters, digits, '-' and '_'.");
+		}
+
+		int shard = openOrder.size() % shards.length;
+		Jukebox jukebox = await(shards[shard].submit(new OpenRoomTask(name)));
+		room = new Room(name, jukebox, shard, shards[shard]);
+		openOrder.add(room);
+		rooms.put(name, room);
+		return room;
+	}//END openRoom()
+
+	/**********************************************************************************************
+	 * METHOD: getRoom()
+	 * PURPOSE: Returns an open room.
+	 * @param name The String room name.
+	 * @return The Room, or null if no room with that name is open.
+	 **********************************************************************************************/
+	public Room getRoom(String name) {
+		return rooms.get(name);
+	}//END getRoom()
+
+	/**********************************************************************************************
+	 * METHOD: getRooms()
+	 * PURPOSE: Returns every open room in the order they were opened.
+	 * @return The ArrayList of open rooms.
+	 **********************************************************************************************/
+	public synchronized ArrayList<Room> getRooms() {
+		return new ArrayList<Room>(openOrder);
+	}//END getRooms()
+
+	/**********************************************************************************************
+	 * METHOD: getShardCount()
+	 * PURPOSE: Returns the number of shard threads rooms are spread across.
+	 * @return The shard count.
+	 **********************************************************************************************/
+	public int getShardCount() {
+		return shards.length;
+	}//END getShardCount()
+
+	/**********************************************************************************************
+	 * METHOD: getAccounts()
+	 * PURPOSE: Returns the accounts shared by every room.
+	 * @return The AllAccounts of this registry.
+	 **********************************************************************************************/
+	public AllAccounts getAccounts() {
+		return accounts;
+	}//END getAccounts()
+
+	/**********************************************************************************************
+	 * METHOD: saveAll()
+	 * PURPOSE: Writes the songs and queue of every room, each on its own shard, and then the
+	 *     shared accounts. Does nothing for rooms kept in memory.
+	 **********************************************************************************************/
+	public void saveAll() {
+		if(roomsFolder == null) {
+			return;
+		}
+		ArrayList<Future<Jukebox>> saves = new ArrayList<Future<Jukebox>>();
+		for(Room room : getRooms()) {
+			saves.add(room.submit(new SaveRoomTask(room.getJukebox())));
+		}
+		for(Future<Jukebox> save : saves) {
+			await(save);
+		}
+		accounts.writeAccountsToFile();
+	}//END saveAll()
+
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Saves every room and stops the shard threads.
+	 **********************************************************************************************/
+	public void close() {
+		saveAll();
+		for(ExecutorService shard : shards) {
+			shard.shutdown();
+		}
+		try {
+			for(ExecutorService shard : shards) {
+				shard.awaitTermination(10, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}//END close()
+
+	/**********************************************************************************************
+	 * METHOD: await()
+	 * PURPOSE: Waits for a shard task and returns its result, rethrowing its failure unchecked.
+	 **********************************************************************************************/
+	private static <T> T await(Future<T> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a room.", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}//END await()
+
+	/**********************************************************************************************
+	 * CLASS: OpenRoomTask
+	 * PURPOSE: Builds a room's Jukebox from its folder, or with default songs.
+	 **********************************************************************************************/
+	private class OpenRoomTask implements Callable<Jukebox> {
+		private String name;
+
+		private OpenRoomTask(String name) {
+			this.name = name;
+		}//END OpenRoomTask() constructor
+
+		@Override
+		public Jukebox call() {
+			if(roomsFolder == null) {
+				return new Jukebox(false);
+			}
+			File folder = new File(roomsFolder, name);
+			folder.mkdirs();
+			boolean saved = new File(folder, "SongList").exists() || SongCatalog.newest(new File(folder, "SongCatalog")) != null;
+			return new Jukebox(saved, folder);
+		}//END call()
+	}//END OpenRoomTask class
+
+	/**********************************************************************************************
+	 * CLASS: SaveRoomTask
+	 * PURPOSE: Writes one room's songs and queue.
+	 **********************************************************************************************/
+	private static class SaveRoomTask implements Callable<Jukebox> {
+		private Jukebox jukebox;
+
+		private SaveRoomTask(Jukebox jukebox) {
+			this.jukebox = jukebox;
+		}//END SaveRoomTask() constructor
+
+		@Override
+		public Jukebox call() {
+			jukebox.compactJournal();
+			return jukebox;
+		}//END call()
+	}//END SaveRoomTask class
+
+	/**********************************************************************************************
+	 * CLASS: ShardThreadFactory
+	 * PURPOSE: Creates the daemon thread of one shard.
+	 **********************************************************************************************/
+	private static class ShardThreadFactory implements ThreadFactory {
+		private int shard;
+
+		private ShardThreadFactory(int shard) {
+			this.shard = shard;
+		}//END ShardThreadFactory() constructor
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "RoomShard-" + shard);
+			thread.setDaemon(true);
+			return thread;
+		}//END newThread()
+	}//END ShardThreadFactory class
+
+}//END RoomRegistry class
@@ -0,0 +1,52 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SelectionOutcome
+ * DESCRIPTION:
+ * What happened to one song selection: it was queued, or the reason it was refused. Callers
+ * compare outcomes directly; the message for a person is only looked up where it is shown.
+ **************************************************************************************************/
+
+public enum SelectionOutcome {
+
+	QUEUED("The song has been added to the queue."),
+	NOT_FOUND("The song selected was not found in this Jukebox."),
+	NO_TIME_REMAINING("Not enough time remaining in account."),
+	USER_DAILY_LIMIT("You may only play a total of 3 songs per day."),
+	SONG_DAILY_LIMIT("This song may not be selected more than 3 times per day."),
+	USER_WINDOW_LIMIT("You have selected as many songs as this venue allows for now."),
+	SONG_WINDOW_LIMIT("This song has been selected as many times as this venue allows for now."),
+	ARTIST_WINDOW_LIMIT("This artist has been selected as many times as this venue allows for now."),
+	SONG_COOLDOWN("This song was selected too recently to be selected again yet.");
+
+	private final String message;
+
+	/**********************************************************************************************
+	 * METHOD: SelectionOutcome()
+	 * PURPOSE: Constructs an outcome with its message.
+	 **********************************************************************************************/
+	private SelectionOutcome(String message) {
+		this.message = message;
+	}//END SelectionOutcome() constructor
+
+	/**********************************************************************************************
+	 * METHOD: getMessage()
+	 * PURPOSE: Returns the message to show a person for this outcome.
+	 * @return The String message.
+	 **********************************************************************************************/
+	public String getMessage() {
+		return message;
+	}//END getMessage()
+
+	/**********************************************************************************************
+	 * METHOD: isQueued()
+	 * PURPOSE: Returns whether the song was queued.
+	 * @return True for QUEUED, false for every refusal.
+	 **********************************************************************************************/
+	public boolean isQueued() {
+		return this == QUEUED;
+	}//END isQueued()
+
+}//END SelectionOutcome enum
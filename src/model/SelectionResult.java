@@ -0,0 +1,108 @@
+package model;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SelectionResult
+ * DESCRIPTION:
+ * The outcome of a song selection along with the user's and song's standing right after it. A
+ * caller that wants these numbers keeps one SelectionResult and passes it to every
+ * Jukebox.selectSong() call, which fills it in, so nothing is allocated per selection.
+ **************************************************************************************************/
+
+public class SelectionResult {
+
+	private SelectionOutcome outcome;
+	private int timeRemaining;
+	private int songsToday;
+	private int songPlaysToday;
+	private int queuePosition;
+	private long entryId;
+
+	/**********************************************************************************************
+	 * METHOD: SelectionResult()
+	 * PURPOSE: Constructs an empty result to be filled in by Jukebox.selectSong().
+	 **********************************************************************************************/
+	public SelectionResult() {
+		queuePosition = -1;
+		entryId = -1;
+	}//END SelectionResult() constructor
+
+	/**********************************************************************************************
+	 * METHOD: set()
+	 * PURPOSE: Fills in the result of one selection.
+	 **********************************************************************************************/
+	void set(SelectionOutcome outcome, int timeRemaining, int songsToday, int songPlaysToday) {
+		this.outcome = outcome;
+		this.timeRemaining = timeRemaining;
+		this.songsToday = songsToday;
+		this.songPlaysToday = songPlaysToday;
+		queuePosition = -1;
+		entryId = -1;
+	}//END set()
+
+	/**********************************************************************************************
+	 * METHOD: setQueued()
+	 * PURPOSE: Records where a queued song was added and the id of its entry.
+	 **********************************************************************************************/
+	void setQueued(int queuePosition, long entryId) {
+		this.queuePosition = queuePosition;
+		this.entryId = entryId;
+	}//END setQueued()
+
+	/**********************************************************************************************
+	 * METHOD: getOutcome()
+	 * PURPOSE: Returns whether the song was queued or why it was refused.
+	 * @return The SelectionOutcome, or null before the first selection.
+	 **********************************************************************************************/
+	public SelectionOutcome getOutcome() {
+		return outcome;
+	}//END getOutcome()
+
+	/**********************************************************************************************
+	 * METHOD: getTimeRemaining()
+	 * PURPOSE: Returns the user's remaining time after the selection.
+	 * @return The seconds the user has left.
+	 **********************************************************************************************/
+	public int getTimeRemaining() {
+		return timeRemaining;
+	}//END getTimeRemaining()
+
+	/**********************************************************************************************
+	 * METHOD: getSongsToday()
+	 * PURPOSE: Returns how many songs the user has selected today, including this one if queued.
+	 * @return The user's selections today.
+	 **********************************************************************************************/
+	public int getSongsToday() {
+		return songsToday;
+	}//END getSongsToday()
+
+	/**********************************************************************************************
+	 * METHOD: getSongPlaysToday()
+	 * PURPOSE: Returns how many times the song has been selected today (0 if it was not found).
+	 * @return The song's selections today.
+	 **********************************************************************************************/
+	public int getSongPlaysToday() {
+		return songPlaysToday;
+	}//END getSongPlaysToday()
+
+	/**********************************************************************************************
+	 * METHOD: getQueuePosition()
+	 * PURPOSE: Returns how many songs were ahead of the song when it was queued.
+	 * @return The queue position, or -1 if the song was not queued.
+	 **********************************************************************************************/
+	public int getQueuePosition() {
+		return queuePosition;
+	}//END getQueuePosition()
+
+	/**********************************************************************************************
+	 * METHOD: getEntryId()
+	 * PURPOSE: Returns the id of the queued song's entry, which can be passed to
+	 *     Jukebox.cancelSong().
+	 * @return The QueueEntry id, or -1 if the song was not queued.
+	 **********************************************************************************************/
+	public long getEntryId() {
+		return entryId;
+	}//END getEntryId()
+
+}//END SelectionResult class
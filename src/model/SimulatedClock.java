@@ -0,0 +1,77 @@
+package model;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SimulatedClock
+ * DESCRIPTION:
+ * A Clock that only moves when it is told to, for running a Jukebox through simulated days or
+ * testing time windows. Reading millis() allocates nothing. Time never moves backwards.
+ **************************************************************************************************/
+
+public class SimulatedClock extends Clock {
+
+	private volatile long millis;
+	private final ZoneId zone;
+
+	/**********************************************************************************************
+	 * METHOD: SimulatedClock()
+	 * PURPOSE: Constructs a clock in UTC stopped at a time.
+	 * @param millis The starting time in milliseconds since the epoch.
+	 **********************************************************************************************/
+	public SimulatedClock(long millis) {
+		this(millis, ZoneOffset.UTC);
+	}//END SimulatedClock() constructor
+
+	private SimulatedClock(long millis, ZoneId zone) {
+		this.millis = millis;
+		this.zone = zone;
+	}//END SimulatedClock() constructor
+
+	/**********************************************************************************************
+	 * METHOD: setMillis()
+	 * PURPOSE: Moves the clock forward to a time. An earlier time leaves it where it is.
+	 * @param newMillis The time in milliseconds since the epoch.
+	 **********************************************************************************************/
+	public synchronized void setMillis(long newMillis) {
+		if(newMillis > millis) {
+			millis = newMillis;
+		}
+	}//END setMillis()
+
+	/**********************************************************************************************
+	 * METHOD: advance()
+	 * PURPOSE: Moves the clock forward.
+	 * @param duration The number of milliseconds to move.
+	 **********************************************************************************************/
+	public synchronized void advance(long duration) {
+		setMillis(millis + duration);
+	}//END advance()
+
+	@Override
+	public long millis() {
+		return millis;
+	}//END millis()
+
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(millis);
+	}//END instant()
+
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}//END getZone()
+
+	//A clock in another zone stopped at this clock's current time
+	@Override
+	public Clock withZone(ZoneId newZone) {
+		return new SimulatedClock(millis, newZone);
+	}//END withZone()
+
+}//END SimulatedClock class
@@ -0,0 +1,117 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Counter;
+import metrics.Histogram;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SnapshotFile
+ * DESCRIPTION:
+ * A snapshot of one data file, copied into memory while the journal holds off new records and
+ * written to disk afterwards, so selections never wait for the disk. The copy is written to
+ * "<name>.tmp", forced to disk and renamed over the old file, so a crash leaves either the old
+ * file or the new one and never half of each. Files with their own way of saving safely (the
+ * catalog's counts files, AccountPages) override writeFile() to save that way instead.
+ *
+ * Each owner counts its changes; once the file is written, the count the copy was taken at is
+ * stored in 'saved', and the owner skips the next snapshot if nothing has changed since.
+ **************************************************************************************************/
+
+class SnapshotFile {
+
+	private File file;
+	private byte[] contents;
+	private AtomicLong saved;
+	private long changes;
+	private Histogram writeTime;
+	private Counter failures;
+
+	/**********************************************************************************************
+	 * METHOD: SnapshotFile()
+	 * PURPOSE: Constructs a snapshot of a file that is written from a copy in memory.
+	 * @param file The File to replace.
+	 * @param contents The byte array to write.
+	 * @param saved The AtomicLong that holds the owner's change count at its last save.
+	 * @param changes The owner's change count when the copy was taken.
+	 * @param writeTime The Histogram that times the write.
+	 * @param failures The Counter of failed writes.
+	 **********************************************************************************************/
+	SnapshotFile(File file, byte[] contents, AtomicLong saved, long changes, Histogram writeTime, Counter failures) {
+		this.file = file;
+		this.contents = contents;
+		this.saved = saved;
+		this.changes = changes;
+		this.writeTime = writeTime;
+		this.failures = failures;
+	}//END SnapshotFile() constructor
+
+	/**********************************************************************************************
+	 * METHOD: write()
+	 * PURPOSE: Writes the snapshot to disk and records the change count it holds.
+	 * @return True if the snapshot is on disk.
+	 **********************************************************************************************/
+	final boolean write() {
+		long start = System.nanoTime();
+		try {
+			writeFile();
+			writeTime.recordSince(start);
+			saved.set(changes);
+			return true;
+		} catch (IOException e) {
+			failures.increment();
+			e.printStackTrace();
+			return false;
+		}
+	}//END write()
+
+	/**********************************************************************************************
+	 * METHOD: writeFile()
+	 * PURPOSE: Writes the copy to "<name>.tmp", forces it to disk and renames it over the file.
+	 * @throws IOException If the file cannot be written.
+	 **********************************************************************************************/
+	protected void writeFile() throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream output = new FileOutputStream(temp);
+		try {
+			output.write(contents);
+			output.getFD().sync();
+		} finally {
+			output.close();
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}//END writeFile()
+
+	/**********************************************************************************************
+	 * METHOD: serialize()
+	 * PURPOSE: Serializes a data file's contents followed by the journal LSN they include, the
+	 *     layout every serialized data file shares.
+	 * @param contents The Object to serialize.
+	 * @param lsn The last journal LSN the contents include.
+	 * @return The serialized byte array.
+	 * @throws IOException If the contents cannot be serialized.
+	 **********************************************************************************************/
+	static byte[] serialize(Object contents, long lsn) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+		objectOutput.writeObject(contents);
+		objectOutput.writeLong(lsn);
+		objectOutput.close();
+		return bytes.toByteArray();
+	}//END serialize()
+
+}//END SnapshotFile class
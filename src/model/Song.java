@@ -1,7 +1,12 @@
 package model;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.scene.media.Media;
 
 /**************************************************************************************************
@@ -11,7 +16,15 @@ import javafx.scene.media.Media;
  * DESCRIPTION:
  * Models a Song object that keeps track of how long it plays for in seconds, how many times this
  * song has been selected, and the Media object used to play this song in a MediaPlayer. Currently
- * extraneous information such as song title and artist are not used.
+ * extraneous information such as song title and artist are not used. The selection count belongs
+ * to the day it is stamped with, and reads as 0 once the DayEpoch has moved past that day. A song
+ * is given the DayEpoch of the Jukebox or SongCatalog holding it; until then its count has no day
+ * and is stamped with the epoch's current day when it is given one.
+ *
+ * A table showing the song watches its count through timesSelectedProperty(), which is only built
+ * the first time it is asked for, so songs that are never shown carry no property. Each change to
+ * the count is pushed into the property, and so is the count going back to 0 when the DayEpoch
+ * moves on (the epoch keeps the songs that have one), and only that song's row redraws.
  **************************************************************************************************/
 
 public class Song implements Serializable {
@@ -24,6 +37,9 @@ public class Song implements Serializable {
 	private String songPath;
 	private int songSeconds;
 	private int timesSelected;
+	private long countDay; //epoch day of timesSelected, 0 until the song has an epoch (or saved without one)
+	private transient volatile DayEpoch epoch; //null until a Jukebox or SongCatalog holds the song
+	private transient volatile ReadOnlyObjectWrapper<Integer> timesSelectedProperty; //null until shown
 	
 	/**********************************************************************************************
 	 * METHOD: Song()
@@ -44,6 +60,31 @@ public class Song implements Serializable {
 		timesSelected = Integer.parseInt(selected);
 	}//END Song() constructor
 	
+	/**********************************************************************************************
+	 * METHOD: setEpoch()
+	 * PURPOSE: Counts this song's selections by the days of an epoch, stamping a count that has no
+	 *     day yet with the current one.
+	 * @param dayEpoch The DayEpoch of the Jukebox or SongCatalog holding this song.
+	 **********************************************************************************************/
+	synchronized void setEpoch(DayEpoch dayEpoch) {
+		epoch = dayEpoch;
+		if(countDay == 0) { countDay = dayEpoch.current(); }
+		if(timesSelectedProperty != null) {
+			dayEpoch.show(this);
+			countChanged();
+		}
+	}//END setEpoch()
+	
+	/**********************************************************************************************
+	 * METHOD: today()
+	 * PURPOSE: Returns the current day of this song's epoch, or the day of its count if it has no
+	 *     epoch yet, so the count of a song on its own always reads as today's.
+	 **********************************************************************************************/
+	private long today() {
+		DayEpoch current = epoch;
+		return (current == null) ? countDay : current.current();
+	}//END today()
+	
 	/**********************************************************************************************
 	 * METHOD: getSongTitle()
 	 * PURPOSE: Returns this song title.
@@ -71,6 +112,15 @@ public class Song implements Serializable {
 		return songArtist;
 	}//END getSongArtist()
 	
+	/**********************************************************************************************
+	 * METHOD: getSongPath()
+	 * PURPOSE: Returns this song's file name inside the "songfiles" folder.
+	 * @return This song's file path in "FILE.mp3" format.
+	 **********************************************************************************************/
+	public String getSongPath() {
+		return songPath;
+	}//END getSongPath()
+	
 	/**********************************************************************************************
 	 * METHOD: getSeconds()
 	 * PURPOSE: Returns how long this song plays for in seconds.
@@ -85,35 +135,160 @@ public class Song implements Serializable {
 	 * PURPOSE: This song is "selected" and the selection count is incremented.
 	 **********************************************************************************************/
 	public void selectSong() {
+		selectSong(today());
+	}//END selectSong()
+	
+	/**********************************************************************************************
+	 * METHOD: selectSong()
+	 * PURPOSE: Counts a selection made on the given day. A later day starts a new count, and a
+	 *     selection from a day before the current count no longer matters.
+	 * @param day The epoch day the selection was made on.
+	 **********************************************************************************************/
+	void selectSong(long day) {
+		if(day < countDay) {
+			return;
+		}
+		if(day > countDay) {
+			timesSelected = 0;
+			countDay = day;
+		}
 		timesSelected++;
+		countChanged();
 	}//END selectSong()
 	
+	/**********************************************************************************************
+	 * METHOD: unselectSong()
+	 * PURPOSE: Takes back a cancelled selection made on the given day, if it is still counted.
+	 * @param day The epoch day the selection was made on.
+	 **********************************************************************************************/
+	void unselectSong(long day) {
+		if(day != countDay || timesSelected == 0) {
+			return;
+		}
+		timesSelected--;
+		countChanged();
+	}//END unselectSong()
+	
 	/**********************************************************************************************
 	 * METHOD: getTimesSelected()
-	 * PURPOSE: Returns the number of times this song has be selected.
+	 * PURPOSE: Returns the number of times this song has be selected today.
 	 * @return The number of times this song has been selected.
 	 **********************************************************************************************/
 	public int getTimesSelected() {
-		return timesSelected;
+		return (countDay == today()) ? timesSelected : 0;
 	}//END getTimesSelected()
 	
+	/**********************************************************************************************
+	 * METHOD: timesSelectedProperty()
+	 * PURPOSE: Returns the number of times this song has been selected today as a property that
+	 *     changes with each selection and each new day, for a table cell to watch. Building it is
+	 *     left until the first call; later calls only return it.
+	 * @return The read-only Integer property of today's selection count.
+	 **********************************************************************************************/
+	public ReadOnlyObjectProperty<Integer> timesSelectedProperty() {
+		ReadOnlyObjectWrapper<Integer> property = timesSelectedProperty;
+		if(property == null) {
+			synchronized(this) {
+				if(timesSelectedProperty == null) {
+					ReadOnlyObjectWrapper<Integer> created = new ReadOnlyObjectWrapper<Integer>(this, "timesSelected");
+					created.set(getTimesSelected());
+					timesSelectedProperty = created;
+					if(epoch != null) { epoch.show(this); }
+				}
+				property = timesSelectedProperty;
+			}
+		}
+		return property.getReadOnlyProperty();
+	}//END timesSelectedProperty()
+	
+	/**********************************************************************************************
+	 * METHOD: getCountDay()
+	 * PURPOSE: Returns the epoch day the stored selection count belongs to.
+	 * @return The epoch day of the selection count.
+	 **********************************************************************************************/
+	long getCountDay() {
+		return countDay;
+	}//END getCountDay()
+	
+	/**********************************************************************************************
+	 * METHOD: restoreCount()
+	 * PURPOSE: Sets the selection count and its day as they were saved.
+	 * @param count The number of times this song was selected on 'day'.
+	 * @param day The epoch day of the count, or 0 if it was saved without one (counts as today).
+	 **********************************************************************************************/
+	void restoreCount(int count, long day) {
+		timesSelected = count;
+		countDay = (day == 0) ? today() : day;
+		countChanged();
+	}//END restoreCount()
+	
 	/**********************************************************************************************
 	 * METHOD: resetCount()
 	 * PURPOSE: Resets the number of times this song has been selected to 0.
 	 **********************************************************************************************/
 	public void resetCount() {
 		timesSelected = 0;
+		countDay = today();
+		countChanged();
 	}//END resetCount()
 	
+	/**********************************************************************************************
+	 * METHOD: countChanged()
+	 * PURPOSE: Pushes a new selection count into the property if a table is watching it. A table
+	 *     may only be changed on the JavaFX thread, so counts changed elsewhere are pushed there.
+	 **********************************************************************************************/
+	synchronized void countChanged() {
+		if(timesSelectedProperty == null) {
+			return;
+		}
+		if(Platform.isFxApplicationThread()) {
+			timesSelectedProperty.set(getTimesSelected());
+		} else {
+			Platform.runLater(new CountUpdate());
+		}
+	}//END countChanged()
+	
+	/**********************************************************************************************
+	 * CLASS: CountUpdate
+	 * PURPOSE: Sets the property to the count as it is when the JavaFX thread gets to it.
+	 **********************************************************************************************/
+	private class CountUpdate implements Runnable {
+		@Override
+		public void run() {
+			synchronized(Song.this) {
+				timesSelectedProperty.set(getTimesSelected());
+			}
+		}//END run()
+	}//END CountUpdate class
+	
+	/**********************************************************************************************
+	 * METHOD: formatTime()
+	 * PURPOSE: Formats a play time in seconds as a "0:00" String.
+	 * @param seconds The play time in seconds.
+	 * @return The play time in "0:00" format.
+	 **********************************************************************************************/
+	public static String formatTime(int seconds) {
+		int remainder = seconds % 60;
+		return (seconds / 60) + ((remainder < 10) ? ":0" : ":") + remainder;
+	}//END formatTime()
+	
 	/**********************************************************************************************
 	 * METHOD: getSongMedia()
 	 * PURPOSE: Returns the Media object for this song.
 	 * @return The song Media object to be played.
 	 **********************************************************************************************/
 	public Media getSongMedia() {
-		return new Media(((new File("songfiles\\" + songPath)).toURI()).toString());
+		return new Media(((new File("songfiles", songPath)).toURI()).toString());
 	}//END getSongMedia()
 	
+	/**********************************************************************************************
+	 * METHOD: writeObject()
+	 * PURPOSE: Writes this Song while holding it, so a save never sees a count without its day.
+	 **********************************************************************************************/
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+	}//END writeObject()
+	
 	/**********************************************************************************************
 	 * METHOD: toString()
 	 * PURPOSE: Returns this song as a string in file format for the SongList file.
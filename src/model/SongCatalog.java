@@ -0,0 +1,841 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SongCatalog
+ * DESCRIPTION:
+ * A read-mostly binary song catalog that is memory-mapped instead of deserialized. The file has a
+ * fixed layout so nothing has to be parsed up front:
+ *     Header    - magic, version, song count, index slot count, journal LSN, sort orders offset
+ *     Ordinals  - one int record offset per song, in catalog order
+ *     Index     - open-addressing hash table of (title hash, ordinal + 1) pairs
+ *     Records   - timesSelected, the epoch day of that count, seconds, then title, time, artist
+ *                 and path as length-prefixed UTF-8 strings (version 1 records have no day)
+ *     Sort      - the ordinals in order of title, of artist and of time (version 3 on)
+ * A Song object is only built the first time it is looked up. A built Song is only kept while
+ * something else holds it (the Jukebox holds every song that was selected), so paging through the
+ * catalog does not fill the heap.
+ * The orders of the songs by title, artist and time are worked out when the file is written, so a
+ * table can be sorted without comparing songs; older files work them out the first time they are
+ * asked for. The order by plays is built each time, in one counting pass, since plays change.
+ * Counts are read as today's by the DayEpoch the catalog is opened with, which the Songs it builds
+ * are given too.
+ *
+ * Records keep the counts the file was written with and are never written in place, so a crash
+ * can never leave a file with some counts saved and some not. Counts since then are saved to two
+ * small files, "<catalog>.counts0" and "<catalog>.counts1", taking turns:
+ *     Counts    - magic, save sequence, journal LSN, entry count, then (ordinal, count, day)
+ *                 entries for every song counted on the day of the save, and a CRC32 of it all
+ * Each save overwrites the older of the two and forces it to disk, and opening takes the newest
+ * one whose CRC matches. A save torn by a crash is skipped for the one before it, or for the
+ * records and the LSN in the header if neither is whole.
+ *
+ * A catalog is never replaced while it is mapped, which Windows does not allow: songs added to it
+ * are written with its songs to the next generation, "SongCatalog.1", "SongCatalog.2" and so on,
+ * and the newest generation is the one opened. Older generations are deleted once nothing maps
+ * them, at the latest the next time the catalog is opened.
+ **************************************************************************************************/
+
+public class SongCatalog {
+
+	private static final int MAGIC = 0x4A425843; //"JBXC"
+	private static final int VERSION = 3;
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 8;
+	private static final int COUNTS_MAGIC = 0x4A42584E; //"JBXN"
+	private static final int COUNTS_HEADER = 24;
+	private static final int COUNT_ENTRY = 12;
+
+	private String fileName;
+	private RandomAccessFile file;
+	private MappedByteBuffer buffer;
+	private int songCount;
+	private int indexSlots;
+	private int indexStart;
+	private int countFields; //bytes before the seconds field of a record
+	private int sortStart; //0 if the file has no sort orders
+	private long journalLsn;
+	private final DayEpoch epoch;
+	private WeakReference<Song>[] materialized;
+	private int[][] sortOrders = new int[SortKey.values().length][];
+	private HashMap<Integer, Long> counts = new HashMap<Integer, Long>(); //ordinal -> day << 32 | count
+	private byte[] copiedCounts; //Entries copied by copyCounts() for force() to save
+	private long copiedLsn;
+	private final Object countsLock = new Object(); //Held while saving, so saves take turns in order
+	private long countsSequence; //Of the last save on disk; guarded by countsLock
+
+	/**********************************************************************************************
+	 * ENUM: SortKey
+	 * PURPOSE: The song fields the catalog can be ordered by.
+	 **********************************************************************************************/
+	public enum SortKey { PLAYS, TITLE, ARTIST, TIME }
+
+	/**********************************************************************************************
+	 * METHOD: SongCatalog()
+	 * PURPOSE: Maps an existing catalog file into memory and checks its header. Its counts are kept
+	 *     by the days of the system clock.
+	 * @param fileName The String name of the catalog file.
+	 * @throws IOException If the file cannot be mapped or is not a catalog of a known version.
+	 **********************************************************************************************/
+	public SongCatalog(String fileName) throws IOException {
+		this(fileName, new DayEpoch(Clock.systemDefaultZone()));
+	}//END SongCatalog() constructor
+
+	/**********************************************************************************************
+	 * METHOD: SongCatalog()
+	 * PURPOSE: Maps an existing catalog file into memory and checks its header.
+	 * @param fileName The String name of the catalog file.
+	 * @param dayEpoch The DayEpoch of the Jukebox the catalog's counts are kept for.
+	 * @throws IOException If the file cannot be mapped or is not a catalog of a known version.
+	 **********************************************************************************************/
+	public SongCatalog(String fileName, DayEpoch dayEpoch) throws IOException {
+		epoch = dayEpoch;
+		this.fileName = fileName;
+		file = new RandomAccessFile(fileName, "rw");
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+		int version = buffer.getInt(4);
+		if(buffer.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+			file.close();
+			throw new IOException("'" + fileName + "' is not a version " + VERSION + " song catalog or older.");
+		}
+		countFields = (version == 1) ? 4 : 8;
+		songCount = buffer.getInt(8);
+		indexSlots = buffer.getInt(12);
+		journalLsn = buffer.getLong(16);
+		indexStart = HEADER_SIZE + 4*songCount;
+		sortStart = (version >= 3) ? buffer.getInt(24) : 0;
+		@SuppressWarnings("unchecked")
+		WeakReference<Song>[] references = (WeakReference<Song>[]) new WeakReference<?>[songCount];
+		materialized = references;
+		loadCounts();
+	}//END SongCatalog() constructor
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of songs in the catalog.
+	 * @return The song count.
+	 **********************************************************************************************/
+	public int size() {
+		return songCount;
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: getJournalLsn()
+	 * PURPOSE: Returns the last journal LSN whose play counts are stored in the catalog.
+	 * @return The journal LSN of this catalog.
+	 **********************************************************************************************/
+	public long getJournalLsn() {
+		return journalLsn;
+	}//END getJournalLsn()
+
+	/**********************************************************************************************
+	 * METHOD: getSong()
+	 * PURPOSE: Looks up a song by title with a single probe sequence in the on-disk index.
+	 * @param title The String title of the song.
+	 * @return The Song with the given title, or null if it is not in the catalog.
+	 **********************************************************************************************/
+	public synchronized Song getSong(String title) {
+		int hash = title.hashCode();
+		int slot = (hash & 0x7fffffff) % indexSlots;
+		while(true) {
+			int position = indexStart + slot*SLOT_SIZE;
+			int ordinal = buffer.getInt(position + 4) - 1;
+			if(ordinal < 0) {
+				return null;
+			}
+			if(buffer.getInt(position) == hash && title.equals(readTitle(ordinal))) {
+				return getSong(ordinal);
+			}
+			slot = (slot + 1) % indexSlots;
+		}
+	}//END getSong()
+
+	/**********************************************************************************************
+	 * METHOD: getTitle()
+	 * PURPOSE: Returns the title of the song at a position without building the Song.
+	 * @param ordinal The position of the song in the catalog.
+	 * @return The title of the song at 'ordinal'.
+	 **********************************************************************************************/
+	public String getTitle(int ordinal) {
+		return readTitle(ordinal);
+	}//END getTitle()
+
+	/**********************************************************************************************
+	 * METHOD: getArtist()
+	 * PURPOSE: Returns the artist of the song at a position without building the Song.
+	 * @param ordinal The position of the song in the catalog.
+	 * @return The artist of the song at 'ordinal'.
+	 **********************************************************************************************/
+	public String getArtist(int ordinal) {
+		return readString(stringAt(ordinal, 2));
+	}//END getArtist()
+
+	/**********************************************************************************************
+	 * METHOD: getPlays()
+	 * PURPOSE: Returns today's plays of the song at a position without building the Song.
+	 * @param ordinal The position of the song in the catalog.
+	 * @return The number of times the song was selected today.
+	 **********************************************************************************************/
+	public synchronized int getPlays(int ordinal) {
+		return plays(ordinal, epoch.current());
+	}//END getPlays()
+
+	/**********************************************************************************************
+	 * METHOD: getSong()
+	 * PURPOSE: Returns the song at the given position in the catalog, building it on first use.
+	 * @param ordinal The position of the song in the catalog.
+	 * @return The Song at 'ordinal'.
+	 **********************************************************************************************/
+	public synchronized Song getSong(int ordinal) {
+		Song song = (materialized[ordinal] == null) ? null : materialized[ordinal].get();
+		if(song == null) {
+			ByteBuffer record = recordAt(ordinal);
+			int timesSelected = record.getInt();
+			long countDay = (countFields == 8) ? record.getInt() : 0;
+			Long saved = counts.get(ordinal);
+			if(saved != null) {
+				timesSelected = (int) (long) saved;
+				countDay = saved >>> 32;
+			}
+			record.getInt(); //seconds, recomputed from the time string
+			String title = readString(record);
+			String time = readString(record);
+			String artist = readString(record);
+			String path = readString(record);
+			song = new Song(title, time, artist, path, "0");
+			song.setEpoch(epoch);
+			song.restoreCount(timesSelected, countDay);
+			materialized[ordinal] = new WeakReference<Song>(song);
+		}
+		return song;
+	}//END getSong()
+
+	/**********************************************************************************************
+	 * METHOD: loaded()
+	 * PURPOSE: Returns the song at an ordinal if it has been built and is still held, else null.
+	 **********************************************************************************************/
+	private synchronized Song loaded(int ordinal) {
+		return (materialized[ordinal] == null) ? null : materialized[ordinal].get();
+	}//END loaded()
+
+	/**********************************************************************************************
+	 * METHOD: adoptSongs()
+	 * PURPOSE: Takes over the Songs built from the generation this catalog was written from, and
+	 *     the songs that were added after it, at their ordinals in this catalog. Rows, queues and
+	 *     selections holding those Songs keep them, and their counts are written to this catalog.
+	 * @param older The SongCatalog this one was written from with writeWith().
+	 * @param added The List of Songs that followed the older catalog's songs.
+	 **********************************************************************************************/
+	public synchronized void adoptSongs(SongCatalog older, List<Song> added) {
+		for(int i=0; i<older.songCount; i++) {
+			Song song = older.loaded(i);
+			if(song != null) { materialized[i] = new WeakReference<Song>(song); }
+		}
+		for(int i=0; i<added.size(); i++) {
+			materialized[older.songCount + i] = new WeakReference<Song>(added.get(i));
+		}
+	}//END adoptSongs()
+
+	/**********************************************************************************************
+	 * METHOD: writeBack()
+	 * PURPOSE: Copies the play counts of every loaded song and saves them.
+	 * @param lsn The last journal LSN included in the counts being written.
+	 * @throws IOException If the counts cannot be saved.
+	 **********************************************************************************************/
+	public void writeBack(long lsn) throws IOException {
+		copyCounts(lsn);
+		force();
+	}//END writeBack()
+
+	/**********************************************************************************************
+	 * METHOD: copyCounts()
+	 * PURPOSE: Copies the play counts of every loaded song into memory without waiting for the
+	 *     disk; force() saves them later. Counts from before today are dropped, since they read as
+	 *     0 just as the older counts in the records do.
+	 * @param lsn The last journal LSN included in the counts being copied.
+	 **********************************************************************************************/
+	public synchronized void copyCounts(long lsn) {
+		for(int i=0; i<songCount; i++) {
+			Song song = (materialized[i] == null) ? null : materialized[i].get();
+			if(song != null) {
+				counts.put(i, (song.getCountDay() << 32) | song.getTimesSelected());
+			}
+		}
+		long today = epoch.current();
+		ByteBuffer entries = ByteBuffer.allocate(COUNT_ENTRY*counts.size());
+		for(Iterator<Map.Entry<Integer, Long>> it = counts.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Integer, Long> count = it.next();
+			if((count.getValue() >>> 32) < today) {
+				it.remove();
+			} else {
+				entries.putInt(count.getKey()).putInt((int) (long) count.getValue())
+						.putInt((int) (count.getValue() >>> 32));
+			}
+		}
+		copiedCounts = Arrays.copyOf(entries.array(), entries.position());
+		copiedLsn = lsn;
+		journalLsn = lsn;
+	}//END copyCounts()
+
+	/**********************************************************************************************
+	 * METHOD: force()
+	 * PURPOSE: Saves the counts last copied over the older of the two counts files and forces it
+	 *     to disk, so the newer one is whole whatever happens to this write.
+	 * @throws IOException If the counts file cannot be written.
+	 **********************************************************************************************/
+	public void force() throws IOException {
+		synchronized(countsLock) {
+			byte[] entries;
+			long lsn;
+			synchronized(this) {
+				entries = copiedCounts;
+				lsn = copiedLsn;
+				copiedCounts = null;
+			}
+			if(entries == null) {
+				return;
+			}
+			ByteBuffer saved = ByteBuffer.allocate(COUNTS_HEADER + entries.length + 8);
+			saved.putInt(COUNTS_MAGIC).putLong(countsSequence + 1).putLong(lsn)
+					.putInt(entries.length / COUNT_ENTRY).put(entries);
+			CRC32 crc = new CRC32();
+			crc.update(saved.array(), 0, saved.position());
+			saved.putLong(crc.getValue());
+			FileOutputStream output = new FileOutputStream(countsFile(fileName, countsSequence + 1));
+			try {
+				output.write(saved.array());
+				output.getFD().sync();
+			} finally {
+				output.close();
+			}
+			countsSequence++;
+		}
+	}//END force()
+
+	/**********************************************************************************************
+	 * METHOD: loadCounts()
+	 * PURPOSE: Reads the counts from the newest whole counts file, if there is one, with the
+	 *     journal LSN they include.
+	 **********************************************************************************************/
+	private void loadCounts() {
+		ByteBuffer newest = null;
+		for(int slot=0; slot<2; slot++) {
+			ByteBuffer saved = readCounts(countsFile(fileName, slot));
+			if(saved != null && (newest == null || saved.getLong(4) > newest.getLong(4))) {
+				newest = saved;
+			}
+		}
+		if(newest == null) {
+			return;
+		}
+		countsSequence = newest.getLong(4);
+		journalLsn = newest.getLong(12);
+		newest.position(COUNTS_HEADER);
+		for(int i=newest.getInt(20); i>0; i--) {
+			int ordinal = newest.getInt();
+			int count = newest.getInt();
+			counts.put(ordinal, ((long) newest.getInt() << 32) | count);
+		}
+	}//END loadCounts()
+
+	/**********************************************************************************************
+	 * METHOD: readCounts()
+	 * PURPOSE: Reads a counts file and checks it is whole.
+	 * @return The ByteBuffer of the file, or null if it is missing, torn or not for this catalog.
+	 **********************************************************************************************/
+	private ByteBuffer readCounts(File countsFile) {
+		if(countsFile.exists() == false) {
+			return null;
+		}
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(countsFile.toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		ByteBuffer saved = ByteBuffer.wrap(bytes);
+		if(bytes.length < COUNTS_HEADER + 8 || saved.getInt(0) != COUNTS_MAGIC
+				|| bytes.length != COUNTS_HEADER + (long) COUNT_ENTRY*saved.getInt(20) + 8) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		if(crc.getValue() != saved.getLong(bytes.length - 8)) {
+			return null;
+		}
+		for(int at=COUNTS_HEADER; at<bytes.length - 8; at+=COUNT_ENTRY) {
+			if(saved.getInt(at) < 0 || saved.getInt(at) >= songCount) {
+				return null;
+			}
+		}
+		return saved;
+	}//END readCounts()
+
+	private static File countsFile(String catalogFile, long sequence) {
+		return new File(catalogFile + ".counts" + (sequence % 2));
+	}//END countsFile()
+
+	/**********************************************************************************************
+	 * METHOD: sortOrder()
+	 * PURPOSE: Returns the ordinals of every song in ascending order of a field, ties in catalog
+	 *     order. The first call for a field other than plays reads every record, so it should be
+	 *     made off the UI thread.
+	 * @param key The SortKey field to order by.
+	 * @return The int array of ordinals; it must not be changed.
+	 **********************************************************************************************/
+	public int[] sortOrder(SortKey key) {
+		if(key == SortKey.PLAYS) {
+			return playsOrder();
+		}
+		synchronized(sortOrders) {
+			int[] order = sortOrders[key.ordinal()];
+			if(order == null) {
+				if(sortStart != 0) { //Stored title, artist, time orders
+					order = new int[songCount];
+					ByteBuffer stored = buffer.duplicate();
+					stored.position(sortStart + 4*songCount*(key.ordinal() - 1));
+					stored.asIntBuffer().get(order);
+				} else if(key == SortKey.TIME) {
+					int[] seconds = new int[songCount];
+					for(int i=0; i<songCount; i++) { seconds[i] = buffer.getInt(buffer.getInt(HEADER_SIZE + 4*i) + countFields); }
+					order = orderByNumber(seconds);
+				} else {
+					String[] keys = new String[songCount];
+					for(int i=0; i<songCount; i++) { keys[i] = readString(stringAt(i, key == SortKey.TITLE ? 0 : 2)); }
+					order = orderByText(keys);
+				}
+				sortOrders[key.ordinal()] = order;
+			}
+			return order;
+		}
+	}//END sortOrder()
+
+	/**********************************************************************************************
+	 * METHOD: playsOrder()
+	 * PURPOSE: Orders the songs by today's plays with a counting sort over the few possible counts.
+	 **********************************************************************************************/
+	private synchronized int[] playsOrder() {
+		int[] plays = new int[songCount];
+		int most = 0;
+		long today = epoch.current();
+		for(int i=0; i<songCount; i++) {
+			plays[i] = plays(i, today);
+			most = Math.max(most, plays[i]);
+		}
+		int[] starts = new int[most + 2];
+		for(int count : plays) { starts[count + 1]++; }
+		for(int c=1; c<starts.length; c++) { starts[c] += starts[c - 1]; }
+		int[] order = new int[songCount];
+		for(int i=0; i<songCount; i++) { order[starts[plays[i]]++] = i; }
+		return order;
+	}//END playsOrder()
+
+	/**********************************************************************************************
+	 * METHOD: plays()
+	 * PURPOSE: Returns a song's plays on the given day, from the Song if it is loaded, from the
+	 *     saved counts if it was counted since the file was written, and from its record otherwise.
+	 **********************************************************************************************/
+	private int plays(int ordinal, long today) {
+		Song song = (materialized[ordinal] == null) ? null : materialized[ordinal].get();
+		if(song != null) {
+			return song.getTimesSelected();
+		}
+		Long saved = counts.get(ordinal);
+		if(saved != null) {
+			return ((saved >>> 32) == today) ? (int) (long) saved : 0;
+		}
+		int position = buffer.getInt(HEADER_SIZE + 4*ordinal);
+		boolean counted = countFields == 4 || buffer.getInt(position + 4) == today;
+		return counted ? buffer.getInt(position) : 0;
+	}//END plays()
+
+	/**********************************************************************************************
+	 * METHOD: orderByNumber()
+	 * PURPOSE: Orders positions by a small number, packing each number with its position into one
+	 *     long so no comparator is needed.
+	 **********************************************************************************************/
+	private static int[] orderByNumber(int[] numbers) {
+		long[] keys = new long[numbers.length];
+		for(int i=0; i<numbers.length; i++) { keys[i] = ((long) numbers[i] << 32) | i; }
+		Arrays.sort(keys);
+		int[] order = new int[numbers.length];
+		for(int i=0; i<order.length; i++) { order[i] = (int) keys[i]; }
+		return order;
+	}//END orderByNumber()
+
+	/**********************************************************************************************
+	 * METHOD: orderByText()
+	 * PURPOSE: Orders positions by a string, ignoring case, with ties in position order.
+	 **********************************************************************************************/
+	private static int[] orderByText(String[] text) {
+		String[] keys = new String[text.length];
+		Integer[] positions = new Integer[text.length];
+		for(int i=0; i<text.length; i++) {
+			keys[i] = text[i].toLowerCase(Locale.ROOT);
+			positions[i] = i;
+		}
+		Arrays.sort(positions, new KeyOrder(keys)); //Stable, so ties stay in position order
+		int[] order = new int[text.length];
+		for(int i=0; i<order.length; i++) { order[i] = positions[i]; }
+		return order;
+	}//END orderByText()
+
+	/**********************************************************************************************
+	 * METHOD: stringAt()
+	 * PURPOSE: Returns a view of a record positioned at one of its strings.
+	 * @param field The index of the string: 0 title, 1 time, 2 artist, 3 path.
+	 **********************************************************************************************/
+	private ByteBuffer stringAt(int ordinal, int field) {
+		ByteBuffer record = recordAt(ordinal);
+		record.position(record.position() + countFields + 4);
+		for(int i=0; i<field; i++) {
+			record.position(record.position() + 2 + (record.getShort(record.position()) & 0xffff));
+		}
+		return record;
+	}//END stringAt()
+
+	/**********************************************************************************************
+	 * CLASS: KeyOrder
+	 * PURPOSE: Compares ordinals by their lower case sort keys.
+	 **********************************************************************************************/
+	private static class KeyOrder implements Comparator<Integer> {
+		private String[] keys;
+
+		private KeyOrder(String[] keys) {
+			this.keys = keys;
+		}//END KeyOrder() constructor
+
+		@Override
+		public int compare(Integer a, Integer b) {
+			return keys[a].compareTo(keys[b]);
+		}//END compare()
+	}//END KeyOrder class
+
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Closes the catalog file. The mapping stays valid until it is garbage collected.
+	 **********************************************************************************************/
+	public void close() {
+		try {
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END close()
+
+	/**********************************************************************************************
+	 * METHOD: recordAt()
+	 * PURPOSE: Returns a view of the mapped file positioned at the start of a song record.
+	 **********************************************************************************************/
+	private ByteBuffer recordAt(int ordinal) {
+		ByteBuffer record = buffer.duplicate();
+		record.position(buffer.getInt(HEADER_SIZE + 4*ordinal));
+		return record;
+	}//END recordAt()
+
+	/**********************************************************************************************
+	 * METHOD: readTitle()
+	 * PURPOSE: Reads only the title of a record, without building a Song.
+	 **********************************************************************************************/
+	private String readTitle(int ordinal) {
+		return readString(stringAt(ordinal, 0));
+	}//END readTitle()
+
+	/**********************************************************************************************
+	 * METHOD: readString()
+	 * PURPOSE: Reads a [short length][UTF-8 bytes] string and advances past it.
+	 **********************************************************************************************/
+	private static String readString(ByteBuffer record) {
+		byte[] bytes = new byte[record.getShort() & 0xffff];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}//END readString()
+
+	/**********************************************************************************************
+	 * METHOD: write()
+	 * PURPOSE: Writes a list of songs out as a new catalog file.
+	 * @param songs The List of Songs in catalog order.
+	 * @param fileName The String name of the catalog file to create.
+	 * @throws IOException If the file cannot be written.
+	 **********************************************************************************************/
+	public static void write(List<Song> songs, String fileName) throws IOException {
+		int count = songs.size();
+		int slots = Math.max(1, count*2); //load factor of 0.5 keeps probe sequences short
+		byte[][][] strings = new byte[count][][];
+		long size = HEADER_SIZE + 4L*count + (long) SLOT_SIZE*slots + 12L*count;
+		for(int i=0; i<count; i++) {
+			Song song = songs.get(i);
+			strings[i] = new byte[][] { utf8(song.getSongTitle()), utf8(song.getSongTime()),
+					utf8(song.getSongArtist()), utf8(song.getSongPath()) };
+			size += 12;
+			for(byte[] string : strings[i]) { size += 2 + string.length; }
+		}
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("The catalog is too large to map.");
+		}
+
+		long today = LocalDate.now().toEpochDay();
+		RandomAccessFile out = new RandomAccessFile(fileName, "rw");
+		try {
+			out.setLength(0);
+			MappedByteBuffer map = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, count).putInt(12, slots).putLong(16, 0);
+
+			int indexStart = HEADER_SIZE + 4*count;
+			map.position(indexStart + SLOT_SIZE*slots);
+			for(int i=0; i<count; i++) {
+				Song song = songs.get(i);
+				map.putInt(HEADER_SIZE + 4*i, map.position());
+				long day = (song.getCountDay() == 0) ? today : song.getCountDay(); //A song on its own counts today
+				map.putInt(song.getTimesSelected()).putInt((int) day).putInt(song.getSeconds());
+				for(byte[] string : strings[i]) {
+					map.putShort((short) string.length).put(string);
+				}
+
+				int hash = song.getSongTitle().hashCode();
+				int slot = (hash & 0x7fffffff) % slots;
+				while(map.getInt(indexStart + slot*SLOT_SIZE + 4) != 0) {
+					slot = (slot + 1) % slots;
+				}
+				map.putInt(indexStart + slot*SLOT_SIZE, hash);
+				map.putInt(indexStart + slot*SLOT_SIZE + 4, i + 1);
+			}
+			
+			map.putInt(24, map.position());
+			String[] titles = new String[count];
+			String[] artists = new String[count];
+			int[] seconds = new int[count];
+			for(int i=0; i<count; i++) {
+				titles[i] = songs.get(i).getSongTitle();
+				artists[i] = songs.get(i).getSongArtist();
+				seconds[i] = songs.get(i).getSeconds();
+			}
+			for(int[] order : new int[][] { orderByText(titles), orderByText(artists), orderByNumber(seconds) }) {
+				for(int ordinal : order) { map.putInt(ordinal); }
+			}
+			map.force();
+		} finally {
+			out.close();
+		}
+	}//END write()
+
+	/**********************************************************************************************
+	 * METHOD: writeWith()
+	 * PURPOSE: Writes this catalog's songs followed by songs added since as the next generation
+	 *     of the catalog, through a temporary file renamed into place once it is on disk. Songs
+	 *     that are not loaded are built one at a time as they are written and not kept.
+	 * @param added The List of Songs to follow the catalog's songs.
+	 * @param current The File this catalog was opened from.
+	 * @return The File of the new generation.
+	 * @throws IOException If the file cannot be written.
+	 **********************************************************************************************/
+	public File writeWith(List<Song> added, File current) throws IOException {
+		File next = nextGeneration(current);
+		File temp = new File(next.getPath() + ".tmp");
+		write(new WithAdded(this, added), temp.getPath());
+		try {
+			Files.move(temp.toPath(), next.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), next.toPath());
+		}
+		return next;
+	}//END writeWith()
+
+	/**********************************************************************************************
+	 * CLASS: WithAdded
+	 * PURPOSE: A catalog's songs followed by added songs, as the list write() reads.
+	 **********************************************************************************************/
+	private static class WithAdded extends AbstractList<Song> {
+		private SongCatalog catalog;
+		private List<Song> added;
+
+		private WithAdded(SongCatalog catalog, List<Song> added) {
+			this.catalog = catalog;
+			this.added = added;
+		}//END WithAdded() constructor
+
+		@Override
+		public Song get(int index) {
+			return (index < catalog.songCount) ? catalog.getSong(index) : added.get(index - catalog.songCount);
+		}//END get()
+
+		@Override
+		public int size() {
+			return catalog.songCount + added.size();
+		}//END size()
+	}//END WithAdded class
+
+	/**********************************************************************************************
+	 * METHOD: newest()
+	 * PURPOSE: Finds the newest generation of a catalog: 'base' itself or "<base>.<n>" with the
+	 *     highest n.
+	 * @param base The File of the first generation, such as "SongCatalog" in a data folder.
+	 * @return The File to open, or null if there is no catalog.
+	 **********************************************************************************************/
+	public static File newest(File base) {
+		File newest = base.exists() ? base : null;
+		long newestGeneration = 0;
+		File[] files = folderOf(base).listFiles();
+		for(int i=0; files != null && i<files.length; i++) {
+			long generation = generation(base, files[i]);
+			if(generation > newestGeneration) {
+				newest = files[i];
+				newestGeneration = generation;
+			}
+		}
+		return newest;
+	}//END newest()
+
+	/**********************************************************************************************
+	 * METHOD: deleteOlder()
+	 * PURPOSE: Deletes the generations of a catalog before 'current'. One that is still mapped may
+	 *     not be deleted (on Windows), and is deleted by a later call instead.
+	 * @param base The File of the first generation.
+	 * @param current The File of the generation in use.
+	 **********************************************************************************************/
+	public static void deleteOlder(File base, File current) {
+		long currentGeneration = generation(base, current);
+		if(currentGeneration > 0 && base.exists()) {
+			delete(base);
+		}
+		File[] files = folderOf(base).listFiles();
+		for(int i=0; files != null && i<files.length; i++) {
+			long generation = generation(base, files[i]);
+			if(generation > 0 && generation < currentGeneration) {
+				delete(files[i]);
+			}
+		}
+	}//END deleteOlder()
+
+	/**********************************************************************************************
+	 * METHOD: delete()
+	 * PURPOSE: Deletes a catalog file and the counts saved for it.
+	 * @param catalogFile The File of the catalog.
+	 * @return True if the catalog file was deleted.
+	 **********************************************************************************************/
+	public static boolean delete(File catalogFile) {
+		countsFile(catalogFile.getPath(), 0).delete();
+		countsFile(catalogFile.getPath(), 1).delete();
+		return catalogFile.delete();
+	}//END delete()
+
+	/**********************************************************************************************
+	 * METHOD: generation()
+	 * PURPOSE: Returns the generation number of a file of the catalog 'base': 0 for 'base', n for
+	 *     "<base>.<n>", and -1 for any other file.
+	 **********************************************************************************************/
+	private static long generation(File base, File file) {
+		String name = file.getName();
+		String prefix = base.getName() + ".";
+		if(name.equals(base.getName())) {
+			return 0;
+		}
+		if(name.startsWith(prefix) == false || name.length() == prefix.length() || name.length() > prefix.length() + 18) {
+			return -1;
+		}
+		for(int i=prefix.length(); i<name.length(); i++) {
+			if(Character.isDigit(name.charAt(i)) == false) {
+				return -1;
+			}
+		}
+		return Long.parseLong(name.substring(prefix.length()));
+	}//END generation()
+
+	/**********************************************************************************************
+	 * METHOD: nextGeneration()
+	 * PURPOSE: Returns the File of the generation after 'current'.
+	 **********************************************************************************************/
+	private static File nextGeneration(File current) {
+		String name = current.getName();
+		int dot = name.lastIndexOf('.');
+		long generation = 0;
+		String base = name;
+		if(dot > 0 && generation(new File(name.substring(0, dot)), current) > 0) {
+			base = name.substring(0, dot);
+			generation = Long.parseLong(name.substring(dot + 1));
+		}
+		return new File(current.getParentFile(), base + "." + (generation + 1));
+	}//END nextGeneration()
+
+	private static File folderOf(File file) {
+		File folder = file.getAbsoluteFile().getParentFile();
+		return (folder == null) ? new File(".") : folder;
+	}//END folderOf()
+
+	/**********************************************************************************************
+	 * METHOD: utf8()
+	 * PURPOSE: Encodes a string as UTF-8, rejecting strings too long for a short length prefix.
+	 **********************************************************************************************/
+	private static byte[] utf8(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > 0xffff) {
+			throw new IOException("Song field is too long for the catalog: " + value);
+		}
+		return bytes;
+	}//END utf8()
+
+	/**********************************************************************************************
+	 * METHOD: convert()
+	 * PURPOSE: Converts a serialized "SongList" file into a binary catalog file.
+	 * @param songListFile The String name of the serialized ArrayList<Song> file.
+	 * @param catalogFile The String name of the catalog file to create.
+	 * @throws IOException If either file cannot be read or written.
+	 **********************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public static void convert(String songListFile, String catalogFile) throws IOException {
+		ObjectInputStream objectStream = new ObjectInputStream(new FileInputStream(songListFile));
+		ArrayList<Song> songs;
+		try {
+			songs = (ArrayList<Song>) objectStream.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		} finally {
+			objectStream.close();
+		}
+		write(songs, catalogFile);
+	}//END convert()
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Command line converter: SongCatalog [SongList file] [catalog file].
+	 * @param args The optional input and output file names.
+	 **********************************************************************************************/
+	public static void main(String[] args) throws IOException {
+		String songListFile = (args.length > 0) ? args[0] : "SongList";
+		String catalogFile = (args.length > 1) ? args[1] : "SongCatalog";
+		convert(songListFile, catalogFile);
+		SongCatalog catalog = new SongCatalog(catalogFile);
+		System.out.println("Wrote " + catalog.size() + " songs to " + catalogFile);
+		catalog.close();
+	}//END main()
+
+}//END SongCatalog class
@@ -0,0 +1,412 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SongScanner
+ * DESCRIPTION:
+ * Builds Song entries from the MP3 files in a folder without decoding any audio. Each folder is
+ * scanned as its own fork-join task. For each file the ID3v2 (or ID3v1) tag gives the title and
+ * artist, and the first MPEG frame header gives the play time, using the Xing/Info or VBRI frame
+ * count when there is one and the bit rate otherwise. Results are cached by file size and
+ * modification time in a cache file (the Jukebox keeps "ScanCache" in its data folder), so
+ * rescanning only reads files that changed.
+ **************************************************************************************************/
+
+public class SongScanner {
+
+	private static final int PROBE_SIZE = 64*1024;
+	private static final int DIRECT_FILES = 64; //files per task before splitting
+
+	//Bit rates (kbps) by [MPEG-1 ? 0 : 1][layer - 1][index]
+	private static final int[][][] BIT_RATES = {
+		{ {0,32,64,96,128,160,192,224,256,288,320,352,384,416,448},
+		  {0,32,48,56,64,80,96,112,128,160,192,224,256,320,384},
+		  {0,32,40,48,56,64,80,96,112,128,160,192,224,256,320} },
+		{ {0,32,48,56,64,80,96,112,128,144,160,176,192,224,256},
+		  {0,8,16,24,32,40,48,56,64,80,96,112,128,144,160},
+		  {0,8,16,24,32,40,48,56,64,80,96,112,128,144,160} } };
+	private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+	private File cacheFile;
+	private Map<String, CacheEntry> cache;
+	private Map<String, CacheEntry> scanned;
+	private final AtomicInteger filesRead = new AtomicInteger();
+
+	/**********************************************************************************************
+	 * CLASS: CacheEntry
+	 * PURPOSE: What was read from one file, and the size and modification time it was read at.
+	 **********************************************************************************************/
+	private static class CacheEntry implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private long size;
+		private long modified;
+		private String title;
+		private String artist;
+		private int seconds;
+	}//END CacheEntry class
+
+	/**********************************************************************************************
+	 * METHOD: SongScanner()
+	 * PURPOSE: Constructs a scanner, reading the results of the previous scan if there are any.
+	 * @param cacheFile The File the results of each scan are kept in.
+	 **********************************************************************************************/
+	@SuppressWarnings("unchecked")
+	public SongScanner(File cacheFile) {
+		this.cacheFile = cacheFile;
+		cache = new ConcurrentHashMap<String, CacheEntry>();
+		scanned = new ConcurrentHashMap<String, CacheEntry>();
+		if(cacheFile.exists()) {
+			try {
+				ObjectInputStream objectStream = new ObjectInputStream(new FileInputStream(cacheFile));
+				cache.putAll((Map<String, CacheEntry>) objectStream.readObject());
+				objectStream.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (ClassNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}//END SongScanner() constructor
+
+	/**********************************************************************************************
+	 * METHOD: scan()
+	 * PURPOSE: Scans a folder and all of its subfolders in parallel and saves the scan cache.
+	 *     Files that were not found again are dropped from the cache.
+	 * @param folder The folder of MP3 files, normally "songfiles".
+	 * @return The List of Songs found, with paths relative to 'folder'.
+	 **********************************************************************************************/
+	public List<Song> scan(File folder) {
+		scanned.clear();
+		filesRead.set(0);
+		List<Song> songs = ForkJoinPool.commonPool().invoke(new FolderTask(folder, ""));
+		writeCache();
+		cache.clear();
+		cache.putAll(scanned);
+		return songs;
+	}//END scan()
+	
+	/**********************************************************************************************
+	 * METHOD: getFilesRead()
+	 * PURPOSE: Returns how many files the last scan read, rather than taking from the cache.
+	 * @return The number of files probed.
+	 **********************************************************************************************/
+	public int getFilesRead() {
+		return filesRead.get();
+	}//END getFilesRead()
+
+	/**********************************************************************************************
+	 * CLASS: FolderTask
+	 * PURPOSE: Scans the MP3 files of one folder, forking a task for every subfolder and splitting
+	 *     long lists of files in half.
+	 **********************************************************************************************/
+	private class FolderTask extends RecursiveTask<List<Song>> {
+		private static final long serialVersionUID = 1L;
+		private File folder;
+		private String prefix;
+		private File[] files;
+		private int from;
+		private int to;
+
+		private FolderTask(File folder, String prefix) {
+			this.folder = folder;
+			this.prefix = prefix;
+		}//END FolderTask() constructor
+
+		private FolderTask(File folder, String prefix, File[] files, int from, int to) {
+			this(folder, prefix);
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}//END FolderTask() constructor
+
+		@Override
+		protected List<Song> compute() {
+			ArrayList<Song> songs = new ArrayList<Song>();
+			if(files == null) {
+				files = folder.listFiles();
+				if(files == null) {
+					return songs;
+				}
+				from = 0;
+				to = files.length;
+			}
+
+			if(to - from > DIRECT_FILES) { //Split a large folder in half
+				int middle = (from + to) >>> 1;
+				FolderTask left = new FolderTask(folder, prefix, files, from, middle);
+				left.fork();
+				songs.addAll(new FolderTask(folder, prefix, files, middle, to).compute());
+				songs.addAll(left.join());
+				return songs;
+			}
+
+			ArrayList<FolderTask> subfolders = new ArrayList<FolderTask>();
+			for(int i=from; i<to; i++) {
+				File file = files[i];
+				if(file.isDirectory()) {
+					FolderTask task = new FolderTask(file, prefix + file.getName() + "/");
+					task.fork();
+					subfolders.add(task);
+				} else if(file.getName().toLowerCase().endsWith(".mp3")) {
+					Song song = readSong(file, prefix + file.getName());
+					if(song != null) { songs.add(song); }
+				}
+			}
+			for(FolderTask task : subfolders) { songs.addAll(task.join()); }
+			return songs;
+		}//END compute()
+	}//END FolderTask class
+
+	/**********************************************************************************************
+	 * METHOD: readSong()
+	 * PURPOSE: Returns the Song for one file, from the cache if the file has not changed.
+	 * @param file The MP3 File.
+	 * @param path The String path stored in the Song, relative to the scanned folder.
+	 * @return The Song, or null if the file has no MPEG audio frames.
+	 **********************************************************************************************/
+	private Song readSong(File file, String path) {
+		CacheEntry entry = cache.get(path);
+		if(entry == null || entry.size != file.length() || entry.modified != file.lastModified()) {
+			entry = new CacheEntry();
+			entry.size = file.length();
+			entry.modified = file.lastModified();
+			filesRead.incrementAndGet();
+			try {
+				probe(file.toPath(), entry);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+			if(entry.seconds < 0) {
+				return null;
+			}
+			if(entry.title == null || entry.title.isEmpty()) {
+				String name = file.getName();
+				entry.title = name.substring(0, name.length() - 4);
+			}
+			if(entry.artist == null || entry.artist.isEmpty()) {
+				entry.artist = "Unknown";
+			}
+		}
+		scanned.put(path, entry);
+		return new Song(entry.title, Song.formatTime(entry.seconds), entry.artist, path, "0");
+	}//END readSong()
+
+	/**********************************************************************************************
+	 * METHOD: probe()
+	 * PURPOSE: Reads the tags and first frame header of an MP3 file through NIO. Only the first
+	 *     64 KB (plus the tag if it is longer) and the last 128 bytes are read.
+	 **********************************************************************************************/
+	private static void probe(Path path, CacheEntry entry) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long fileSize = channel.size();
+			ByteBuffer head = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, fileSize));
+			channel.read(head, 0);
+			head.flip();
+
+			//ID3v2 tag at the start of the file
+			long audioStart = 0;
+			if(head.remaining() >= 10 && head.get(0) == 'I' && head.get(1) == 'D' && head.get(2) == '3') {
+				int tagSize = syncSafe(head, 6);
+				audioStart = 10 + tagSize + (((head.get(5) & 0x10) != 0) ? 10 : 0);
+				if(tagSize + 10 > head.capacity()) { //Read the whole tag if it is large
+					head = ByteBuffer.allocate((int) Math.min(tagSize + 10 + PROBE_SIZE, fileSize));
+					channel.read(head, 0);
+					head.flip();
+				}
+				readId3v2(head, head.get(3), Math.min(10 + tagSize, head.limit()), entry);
+			}
+
+			//ID3v1 tag in the last 128 bytes
+			long audioEnd = fileSize;
+			if(fileSize >= 128) {
+				ByteBuffer tail = ByteBuffer.allocate(128);
+				channel.read(tail, fileSize - 128);
+				if(tail.get(0) == 'T' && tail.get(1) == 'A' && tail.get(2) == 'G') {
+					audioEnd -= 128;
+					if(entry.title == null) { entry.title = latin1(tail, 3, 30); }
+					if(entry.artist == null) { entry.artist = latin1(tail, 33, 30); }
+				}
+			}
+
+			//First MPEG frame after the tag
+			ByteBuffer frames = head;
+			int offset = (int) audioStart;
+			if(audioStart + 4 > head.limit()) {
+				frames = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, Math.max(0, fileSize - audioStart)));
+				channel.read(frames, audioStart);
+				frames.flip();
+				offset = 0;
+			}
+			entry.seconds = duration(frames, offset, audioEnd - audioStart);
+		} finally {
+			channel.close();
+		}
+	}//END probe()
+
+	/**********************************************************************************************
+	 * METHOD: duration()
+	 * PURPOSE: Finds the first valid frame header and works out the play time in seconds.
+	 * @return The rounded play time, or -1 if no frame header was found.
+	 **********************************************************************************************/
+	private static int duration(ByteBuffer frames, int offset, long audioBytes) {
+		for(int i=offset; i + 4 <= frames.limit(); i++) {
+			int header = frames.getInt(i);
+			if((header & 0xFFE00000) != 0xFFE00000) {
+				continue;
+			}
+			int version = (header >>> 19) & 3;       //0 = 2.5, 2 = 2, 3 = 1
+			int layer = 4 - ((header >>> 17) & 3);   //1, 2 or 3
+			int rateIndex = (header >>> 12) & 15;
+			int sampleIndex = (header >>> 10) & 3;
+			if(version == 1 || layer == 4 || rateIndex == 0 || rateIndex == 15 || sampleIndex == 3) {
+				continue;
+			}
+			boolean mpeg1 = (version == 3);
+			boolean mono = ((header >>> 6) & 3) == 3;
+			int sampleRate = SAMPLE_RATES[sampleIndex] >> (mpeg1 ? 0 : (version == 2 ? 1 : 2));
+			int samplesPerFrame = (layer == 1) ? 384 : ((layer == 3 && mpeg1 == false) ? 576 : 1152);
+			int bitRate = BIT_RATES[mpeg1 ? 0 : 1][layer - 1][rateIndex] * 1000;
+
+			//Xing/Info header inside the first frame (after the side information)
+			int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+			long frameCount = -1;
+			int xing = i + 4 + sideInfo;
+			if(xing + 12 <= frames.limit()) {
+				int tag = frames.getInt(xing);
+				if((tag == 0x58696E67 || tag == 0x496E666F) && (frames.getInt(xing + 4) & 1) != 0) {
+					frameCount = frames.getInt(xing + 8) & 0xFFFFFFFFL;
+				}
+			}
+			//VBRI header at a fixed offset of 32 bytes after the frame header
+			int vbri = i + 36;
+			if(frameCount < 0 && vbri + 18 <= frames.limit() && frames.getInt(vbri) == 0x56425249) {
+				frameCount = frames.getInt(vbri + 14) & 0xFFFFFFFFL;
+			}
+
+			if(frameCount >= 0) {
+				return (int) Math.round((double) frameCount * samplesPerFrame / sampleRate);
+			}
+			long bytes = audioBytes - (i - offset);
+			return (int) Math.round(bytes * 8.0 / bitRate);
+		}
+		return -1;
+	}//END duration()
+
+	/**********************************************************************************************
+	 * METHOD: readId3v2()
+	 * PURPOSE: Reads the title and artist text frames of an ID3v2.2, 2.3 or 2.4 tag.
+	 **********************************************************************************************/
+	private static void readId3v2(ByteBuffer tag, int major, int end, CacheEntry entry) {
+		boolean v22 = (major == 2);
+		int headerSize = v22 ? 6 : 10;
+		int position = 10;
+		while(position + headerSize <= end) {
+			if(tag.get(position) == 0) {
+				break; //padding
+			}
+			String id = latin1(tag, position, v22 ? 3 : 4);
+			int size;
+			if(v22) {
+				size = ((tag.get(position + 3) & 0xff) << 16) | ((tag.get(position + 4) & 0xff) << 8)
+						| (tag.get(position + 5) & 0xff);
+			} else {
+				size = (major == 4) ? syncSafe(tag, position + 4) : tag.getInt(position + 4);
+			}
+			int data = position + headerSize;
+			if(size <= 0 || data + size > end) {
+				break;
+			}
+			if(id.equals("TIT2") || id.equals("TT2")) {
+				entry.title = text(tag, data, size);
+			} else if(id.equals("TPE1") || id.equals("TP1")) {
+				entry.artist = text(tag, data, size);
+			}
+			position = data + size;
+		}
+	}//END readId3v2()
+
+	/**********************************************************************************************
+	 * METHOD: text()
+	 * PURPOSE: Decodes an ID3v2 text frame using the encoding named in its first byte.
+	 **********************************************************************************************/
+	private static String text(ByteBuffer tag, int start, int size) {
+		Charset charset;
+		switch(tag.get(start)) {
+			case 1:  charset = StandardCharsets.UTF_16; break;
+			case 2:  charset = StandardCharsets.UTF_16BE; break;
+			case 3:  charset = StandardCharsets.UTF_8; break;
+			default: charset = StandardCharsets.ISO_8859_1; break;
+		}
+		byte[] bytes = new byte[size - 1];
+		for(int i=0; i<bytes.length; i++) { bytes[i] = tag.get(start + 1 + i); }
+		return trim(new String(bytes, charset));
+	}//END text()
+
+	/**********************************************************************************************
+	 * METHOD: latin1()
+	 * PURPOSE: Decodes a fixed-width ISO-8859-1 field such as an ID3v1 title.
+	 **********************************************************************************************/
+	private static String latin1(ByteBuffer buffer, int start, int length) {
+		byte[] bytes = new byte[length];
+		for(int i=0; i<length; i++) { bytes[i] = buffer.get(start + i); }
+		return trim(new String(bytes, StandardCharsets.ISO_8859_1));
+	}//END latin1()
+
+	/**********************************************************************************************
+	 * METHOD: trim()
+	 * PURPOSE: Cuts a tag string at its first NUL and trims whitespace.
+	 **********************************************************************************************/
+	private static String trim(String value) {
+		int nul = value.indexOf('\0');
+		return ((nul >= 0) ? value.substring(0, nul) : value).trim();
+	}//END trim()
+
+	/**********************************************************************************************
+	 * METHOD: syncSafe()
+	 * PURPOSE: Reads a 28-bit "sync-safe" integer (7 bits per byte) used by ID3v2.
+	 **********************************************************************************************/
+	private static int syncSafe(ByteBuffer buffer, int start) {
+		return ((buffer.get(start) & 0x7f) << 21) | ((buffer.get(start + 1) & 0x7f) << 14)
+				| ((buffer.get(start + 2) & 0x7f) << 7) | (buffer.get(start + 3) & 0x7f);
+	}//END syncSafe()
+
+	/**********************************************************************************************
+	 * METHOD: writeCache()
+	 * PURPOSE: Writes out what was read from every file in the last scan to the cache file.
+	 **********************************************************************************************/
+	private void writeCache() {
+		try {
+			ObjectOutputStream objectOutput = new ObjectOutputStream(new FileOutputStream(cacheFile));
+			objectOutput.writeObject(new HashMap<String, CacheEntry>(scanned));
+			objectOutput.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}//END writeCache()
+
+}//END SongScanner class
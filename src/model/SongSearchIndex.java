@@ -0,0 +1,380 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SongSearchIndex
+ * DESCRIPTION:
+ * An inverted index over the words of every song's title and artist for search-as-you-type.
+ * Words are kept in a sorted dictionary, so every query word is treated as a prefix of the
+ * dictionary words in its range. The postings of the longest query word give the candidate songs,
+ * the other query words are checked against each candidate, and a bounded heap keeps the top
+ * matches. Songs can be added at any time, and searches may run on
+ * other threads while songs are added.
+ *
+ * The songs of a SongCatalog are indexed by ordinal from their title and artist text, so the index
+ * holds no Song for them and building it does not load the catalog; only the songs a search
+ * returns are built. A query word that starts more than MAX_CANDIDATES songs' words (a letter or
+ * two of a large catalog) ranks only the first MAX_CANDIDATES of them, so every search costs about
+ * the same however large the catalog is.
+ **************************************************************************************************/
+
+public class SongSearchIndex {
+
+	private static final int TITLE_MATCH = 4;
+	private static final int ARTIST_MATCH = 2;
+	private static final int WHOLE_WORD = 1;
+	private static final int TITLE_START = 8;
+	private static final int MAX_CANDIDATES = 2000;
+
+	private SongCatalog catalog; //null if only added songs are indexed
+	private int catalogSize; //ids below this are catalog ordinals
+	private ArrayList<Song> added; //the songs of the ids from catalogSize on
+	private ArrayList<String> titleKeys;
+	private ArrayList<String> artistKeys;
+	private TreeMap<String, Postings> dictionary;
+	private ReentrantReadWriteLock lock;
+
+	/**********************************************************************************************
+	 * CLASS: Postings
+	 * PURPOSE: A growable, sorted int array of the ids of songs that contain one word.
+	 **********************************************************************************************/
+	private static class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		private void add(int id) {
+			if(size > 0 && ids[size - 1] == id) {
+				return; //same word twice in one song
+			}
+			if(size == ids.length) {
+				int[] grown = new int[size*2];
+				System.arraycopy(ids, 0, grown, 0, size);
+				ids = grown;
+			}
+			ids[size++] = id;
+		}//END add()
+	}//END Postings class
+
+	/**********************************************************************************************
+	 * CLASS: Match
+	 * PURPOSE: A scored search result used while picking the top matches.
+	 **********************************************************************************************/
+	private static class Match implements Comparable<Match> {
+		private final int id;
+		private final int score;
+		private final int plays;
+
+		private Match(int id, int score, int plays) {
+			this.id = id;
+			this.score = score;
+			this.plays = plays;
+		}//END Match() constructor
+
+		@Override
+		public int compareTo(Match other) { //Worst match first, for a bounded min-heap
+			if(score != other.score) {
+				return Integer.compare(score, other.score);
+			}
+			if(plays != other.plays) {
+				return Integer.compare(plays, other.plays);
+			}
+			return Integer.compare(other.id, id);
+		}//END compareTo()
+	}//END Match class
+
+	/**********************************************************************************************
+	 * METHOD: SongSearchIndex()
+	 * PURPOSE: Constructs an empty search index.
+	 **********************************************************************************************/
+	public SongSearchIndex() {
+		added = new ArrayList<Song>();
+		titleKeys = new ArrayList<String>();
+		artistKeys = new ArrayList<String>();
+		dictionary = new TreeMap<String, Postings>();
+		lock = new ReentrantReadWriteLock();
+	}//END SongSearchIndex() constructor
+
+	/**********************************************************************************************
+	 * METHOD: SongSearchIndex()
+	 * PURPOSE: Constructs an index of every song in a catalog, reading only their titles and
+	 *     artists. Songs added later follow the catalog's songs.
+	 * @param catalog The SongCatalog to index.
+	 **********************************************************************************************/
+	public SongSearchIndex(SongCatalog catalog) {
+		this();
+		this.catalog = catalog;
+		catalogSize = catalog.size();
+		for(int i=0; i<catalogSize; i++) {
+			index(i, normalize(catalog.getTitle(i)), normalize(catalog.getArtist(i)));
+		}
+	}//END SongSearchIndex() constructor
+
+	/**********************************************************************************************
+	 * METHOD: add()
+	 * PURPOSE: Adds one song to the index. Only the words of the new song are touched.
+	 * @param song The Song to make searchable.
+	 **********************************************************************************************/
+	public void add(Song song) {
+		String title = normalize(song.getSongTitle());
+		String artist = normalize(song.getSongArtist());
+		lock.writeLock().lock();
+		try {
+			added.add(song);
+			index(titleKeys.size(), title, artist);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}//END add()
+
+	/**********************************************************************************************
+	 * METHOD: setCatalog()
+	 * PURPOSE: Moves the index over to a catalog written from its catalog's songs followed by the
+	 *     songs added to it, in that order, so each song's ordinal is the id it already has.
+	 * @param rewritten The SongCatalog holding every indexed song.
+	 **********************************************************************************************/
+	void setCatalog(SongCatalog rewritten) {
+		lock.writeLock().lock();
+		try {
+			catalog = rewritten;
+			catalogSize = rewritten.size();
+			added.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}//END setCatalog()
+
+	/**********************************************************************************************
+	 * METHOD: index()
+	 * PURPOSE: Records the normalized title and artist of the song with the next id.
+	 **********************************************************************************************/
+	private void index(int id, String title, String artist) {
+		titleKeys.add(title);
+		artistKeys.add(artist);
+		for(String word : words(title)) { postingsFor(word).add(id); }
+		for(String word : words(artist)) { postingsFor(word).add(id); }
+	}//END index()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of songs in the index.
+	 * @return The number of indexed songs.
+	 **********************************************************************************************/
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return titleKeys.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: search()
+	 * PURPOSE: Returns the best matching songs for a query. Every query word must be the start of
+	 *     a word in the song's title or artist. Title matches rank above artist matches, whole
+	 *     words above prefixes, and ties go to the most played song. Only the songs returned are
+	 *     built from the catalog.
+	 * @param query The String typed into the search bar.
+	 * @param limit The maximum number of songs to return.
+	 * @return The List of matching Songs, best match first.
+	 **********************************************************************************************/
+	public List<Song> search(String query, int limit) {
+		ArrayList<String> terms = words(normalize(query));
+		if(terms.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		lock.readLock().lock();
+		try {
+			//Candidates come from the longest (most selective) term; the others are checked per song
+			Collections.sort(terms, new LongestFirst());
+			String driver = terms.get(0);
+			SortedMap<String, Postings> range = dictionary.subMap(driver, driver + Character.MAX_VALUE);
+			PriorityQueue<Match> best = new PriorityQueue<Match>(limit + 1);
+			if(range.size() == 1) { //One word: its postings are already sorted and unique
+				Postings postings = range.values().iterator().next();
+				int end = Math.min(postings.size, MAX_CANDIDATES);
+				for(int i=0; i<end; i++) { consider(postings.ids[i], terms, best, limit); }
+			} else if(range.size() > 1) { //Several words may share songs, so de-duplicate first
+				BitSet candidates = new BitSet(titleKeys.size());
+				int count = 0;
+				for(Postings postings : range.values()) { //Shortest words first, the whole word before longer ones
+					for(int i=0; i<postings.size && count < MAX_CANDIDATES; i++) {
+						if(candidates.get(postings.ids[i]) == false) {
+							candidates.set(postings.ids[i]);
+							count++;
+						}
+					}
+				}
+				for(int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+					consider(id, terms, best, limit);
+				}
+			}
+
+			Song[] results = new Song[best.size()];
+			for(int i=results.length - 1; i>=0; i--) { results[i] = song(best.poll().id); }
+			ArrayList<Song> ranked = new ArrayList<Song>(results.length);
+			Collections.addAll(ranked, results);
+			return ranked;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}//END search()
+
+	/**********************************************************************************************
+	 * METHOD: consider()
+	 * PURPOSE: Scores one candidate song and keeps it if it is among the best 'limit' so far.
+	 **********************************************************************************************/
+	private void consider(int id, List<String> terms, PriorityQueue<Match> best, int limit) {
+		int score = score(id, terms);
+		if(score == 0) {
+			return;
+		}
+		int plays = (id < catalogSize) ? catalog.getPlays(id) : added.get(id - catalogSize).getTimesSelected();
+		if(best.size() == limit) {
+			Match worst = best.peek();
+			if(score < worst.score || (score == worst.score && plays <= worst.plays)) {
+				return;
+			}
+			best.poll();
+		}
+		best.add(new Match(id, score, plays));
+	}//END consider()
+	
+	/**********************************************************************************************
+	 * METHOD: song()
+	 * PURPOSE: Returns the Song with an id, building a catalog song if it is not loaded.
+	 **********************************************************************************************/
+	private Song song(int id) {
+		return (id < catalogSize) ? catalog.getSong(id) : added.get(id - catalogSize);
+	}//END song()
+
+	/**********************************************************************************************
+	 * METHOD: score()
+	 * PURPOSE: Scores how well a song matches the query terms (0 if any term does not match).
+	 **********************************************************************************************/
+	private int score(int id, List<String> terms) {
+		String title = titleKeys.get(id);
+		String artist = artistKeys.get(id);
+		int score = 0;
+		for(String term : terms) {
+			int titleScore = wordScore(title, term, TITLE_MATCH);
+			int artistScore = wordScore(artist, term, ARTIST_MATCH);
+			if(titleScore == 0 && artistScore == 0) {
+				return 0;
+			}
+			score += Math.max(titleScore, artistScore);
+		}
+		if(title.startsWith(terms.get(terms.size() - 1)) || title.startsWith(terms.get(0))) {
+			score += TITLE_START;
+		}
+		return score;
+	}//END score()
+
+	/**********************************************************************************************
+	 * METHOD: wordScore()
+	 * PURPOSE: Scores one term against the words of one field (0 if no word starts with it).
+	 **********************************************************************************************/
+	private static int wordScore(String field, String term, int weight) {
+		int best = 0;
+		int from = 0;
+		while((from = field.indexOf(term, from)) >= 0) {
+			if(from == 0 || field.charAt(from - 1) == ' ') {
+				int end = from + term.length();
+				boolean whole = (end == field.length() || field.charAt(end) == ' ');
+				best = Math.max(best, weight + (whole ? WHOLE_WORD : 0));
+			}
+			from++;
+		}
+		return best;
+	}//END wordScore()
+
+	/**********************************************************************************************
+	 * METHOD: postingsFor()
+	 * PURPOSE: Returns the postings list of a word, creating it the first time it is seen.
+	 **********************************************************************************************/
+	private Postings postingsFor(String word) {
+		Postings postings = dictionary.get(word);
+		if(postings == null) {
+			postings = new Postings();
+			dictionary.put(word, postings);
+		}
+		return postings;
+	}//END postingsFor()
+
+	/**********************************************************************************************
+	 * METHOD: normalize()
+	 * PURPOSE: Lower-cases text and turns every run of non-letter, non-digit characters into one
+	 *     space, so "Danse Macabre - Violin Hook" becomes "danse macabre violin hook".
+	 **********************************************************************************************/
+	private static String normalize(String text) {
+		StringBuilder normal = new StringBuilder(text.length());
+		boolean space = true;
+		for(int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			if(Character.isLetterOrDigit(c)) {
+				normal.append(Character.toLowerCase(c));
+				space = false;
+			} else if(space == false) {
+				normal.append(' ');
+				space = true;
+			}
+		}
+		int length = normal.length();
+		if(length > 0 && normal.charAt(length - 1) == ' ') { normal.setLength(length - 1); }
+		return normal.toString();
+	}//END normalize()
+
+	/**********************************************************************************************
+	 * METHOD: words()
+	 * PURPOSE: Splits normalized text into its words.
+	 **********************************************************************************************/
+	private static ArrayList<String> words(String normal) {
+		ArrayList<String> words = new ArrayList<String>();
+		int start = 0;
+		while(start < normal.length()) {
+			int end = normal.indexOf(' ', start);
+			if(end < 0) { end = normal.length(); }
+			words.add(normal.substring(start, end));
+			start = end + 1;
+		}
+		return words;
+	}//END words()
+
+	/**********************************************************************************************
+	 * CLASS: LongestFirst
+	 * PURPOSE: Orders query terms so the most selective (longest) term is intersected first.
+	 **********************************************************************************************/
+	private static class LongestFirst implements Comparator<String> {
+		@Override
+		public int compare(String a, String b) {
+			return Integer.compare(b.length(), a.length());
+		}//END compare()
+	}//END LongestFirst class
+
+	/**********************************************************************************************
+	 * METHOD: dictionarySize()
+	 * PURPOSE: Returns the number of distinct words in the index (used for testing).
+	 * @return The number of distinct indexed words.
+	 **********************************************************************************************/
+	public int dictionarySize() {
+		lock.readLock().lock();
+		try {
+			return dictionary.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}//END dictionarySize()
+
+}//END SongSearchIndex class
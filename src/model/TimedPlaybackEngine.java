@@ -0,0 +1,115 @@
+package model;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: TimedPlaybackEngine
+ * DESCRIPTION:
+ * A PlaybackEngine that plays nothing but lets each song run for its real length, so a Jukebox
+ * moves its queue on in real time without the JavaFX media runtime: a headless server, a
+ * benchmark or a test. Every engine shares one daemon timer thread, which runs the end of song
+ * handler when a song's time is up. The next song starts inside that handler, so the measured
+ * gap is only the Jukebox's own bookkeeping.
+ **************************************************************************************************/
+
+public class TimedPlaybackEngine implements PlaybackEngine {
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new TimerThreadFactory());
+
+	private Runnable endOfSongHandler;
+	private ScheduledFuture<?> songEnd;
+	private long generation; //Counts play() and stop(), so a song end that lost a race is ignored
+	private long endOfSongNanos;
+	private volatile long lastGapNanos = -1;
+
+	@Override
+	public synchronized void setEndOfSongHandler(Runnable handler) {
+		endOfSongHandler = handler;
+	}//END setEndOfSongHandler()
+
+	/**********************************************************************************************
+	 * METHOD: play()
+	 * PURPOSE: Starts a song, ending the one playing, and sets the timer for its end.
+	 * @param song The Song at the head of the queue, or null to play nothing.
+	 * @param queuedNanos The System.nanoTime() the song was queued, or 0 if unknown.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void play(Song song, long queuedNanos) {
+		stop();
+		if(song == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		if(queuedNanos != 0) {
+			JukeboxMetrics.QUEUE_WAIT.recordSince(queuedNanos);
+		}
+		if(endOfSongNanos != 0) {
+			lastGapNanos = now - endOfSongNanos;
+			endOfSongNanos = 0;
+		}
+		songEnd = TIMER.schedule(new SongEnd(generation), song.getSeconds(), TimeUnit.SECONDS);
+	}//END play()
+
+	//Nothing needs to be buffered
+	@Override
+	public void prepareNext(Song song) {
+	}//END prepareNext()
+
+	@Override
+	public synchronized void stop() {
+		generation++;
+		if(songEnd != null) {
+			songEnd.cancel(false);
+			songEnd = null;
+		}
+	}//END stop()
+
+	@Override
+	public long getLastGapNanos() {
+		return lastGapNanos;
+	}//END getLastGapNanos()
+
+	/**********************************************************************************************
+	 * CLASS: SongEnd
+	 * PURPOSE: Ends the song it was set for, unless another song has been played since.
+	 **********************************************************************************************/
+	private class SongEnd implements Runnable {
+		private long songGeneration;
+
+		private SongEnd(long songGeneration) {
+			this.songGeneration = songGeneration;
+		}//END SongEnd() constructor
+
+		@Override
+		public void run() {
+			synchronized(TimedPlaybackEngine.this) {
+				if(songGeneration != generation) {
+					return;
+				}
+				songEnd = null;
+				endOfSongNanos = System.nanoTime();
+				endOfSongHandler.run();
+			}
+		}//END run()
+	}//END SongEnd class
+
+	/**********************************************************************************************
+	 * CLASS: TimerThreadFactory
+	 * PURPOSE: Creates the daemon thread that ends every engine's songs.
+	 **********************************************************************************************/
+	private static class TimerThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "PlaybackTimer");
+			thread.setDaemon(true);
+			return thread;
+		}//END newThread()
+	}//END TimerThreadFactory class
+
+}//END TimedPlaybackEngine class
@@ -1,30 +1,49 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.time.Clock;
+import java.time.LocalDate;
 
 /**************************************************************************************************
  * @author Ashley Mains and Victor Gomes
  * 
  * CLASS: User
  * DESCRIPTION:
- * A User object containing the data fields: username, password, admin status, total time balance
+ * A User account with the data fields: username, password, admin status, total time balance
  * remaining in the account in seconds, and the number of songs selected (current date by day).
+ * The song count is stamped with the day it was taken on and reads as 0 on any later day of its
+ * store's DayEpoch; a User made on its own counts days by the system clock.
+ * The data is kept in an AccountStore; a User only holds its id there, so AllAccounts hands out
+ * the same User for an account every time and selections can lock on it.
  **************************************************************************************************/
 
 public class User implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private String username;
-	private String password;
-	private boolean isAdmin;
-	private int timeRemaining; //seconds
-	private int songsSelected;
+	//The fields a User is saved with, as in files written before the AccountStore
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("username", String.class),
+		new ObjectStreamField("password", String.class),
+		new ObjectStreamField("isAdmin", boolean.class),
+		new ObjectStreamField("timeRemaining", int.class),
+		new ObjectStreamField("songsSelected", int.class),
+		new ObjectStreamField("countDay", long.class)
+	};
+	
+	private transient AccountStore store;
+	private transient int id;
+	private transient String username;
 	
 	/**********************************************************************************************
 	 * METHOD: User()
 	 * PURPOSE: Constructs a new User with the given username, password, admin status, time
-	 *     balance (seconds), and the number of total songs selected.
+	 *     balance (seconds), and the number of total songs selected. The User keeps its data in a
+	 *     store of its own; accounts in AllAccounts are made by AllAccounts instead.
 	 * @param user The String username to be stored.
 	 * @param pass The String of this user's password.
 	 * @param admin The boolean flag of user's admin status.
@@ -32,11 +51,22 @@ public class User implements Serializable {
 	 * @param selected The integer number of song's this user has selected.
 	 **********************************************************************************************/
 	public User(String user, String pass, boolean admin, int time, int selected) {
+		store = new AccountStore(0, new DayEpoch(Clock.systemDefaultZone()));
+		id = store.add(user, pass, admin, time, selected, store.today());
 		username = user;
-		password = pass;
-		isAdmin = admin;
-		timeRemaining = time;
-		songsSelected = selected;
+	}//END User() constructor
+	
+	/**********************************************************************************************
+	 * METHOD: User()
+	 * PURPOSE: Constructs the User for an account already in a store.
+	 * @param store The AccountStore holding the account.
+	 * @param id The id of the account in 'store'.
+	 * @param username The String username of the account.
+	 **********************************************************************************************/
+	User(AccountStore store, int id, String username) {
+		this.store = store;
+		this.id = id;
+		this.username = username;
 	}//END User() constructor
 	
 	/**********************************************************************************************
@@ -54,7 +84,7 @@ public class User implements Serializable {
 	 * @return This user's password.
 	 **********************************************************************************************/
 	public String getPassword() {
-		return password;
+		return store.getPassword(id);
 	}//END getPassword()
 	
 	/**********************************************************************************************
@@ -64,8 +94,7 @@ public class User implements Serializable {
 	 * @param admin The boolean flag of this user's new admin status to store.
 	 **********************************************************************************************/
 	public void updateInfo(String pass, boolean admin) {
-		password = pass;
-		isAdmin = admin;
+		store.updateInfo(id, pass, admin);
 	}//END updateInfo()
 	
 	/**********************************************************************************************
@@ -74,7 +103,7 @@ public class User implements Serializable {
 	 * @return This user's admin status (true = admin).
 	 **********************************************************************************************/
 	public boolean isAdmin() {
-		return isAdmin;
+		return store.isAdmin(id);
 	}//END isAdmin()
 	
 	/**********************************************************************************************
@@ -83,7 +112,7 @@ public class User implements Serializable {
 	 * @return This user's total available time selected in seconds.
 	 **********************************************************************************************/
 	public int getTimeRemaining() {
-		return timeRemaining;
+		return store.getTimeRemaining(id);
 	}//end getTimeRemaining()
 	
 	/**********************************************************************************************
@@ -92,7 +121,7 @@ public class User implements Serializable {
 	 * @return The number of songs this user has selected.
 	 **********************************************************************************************/
 	public int getSongCount() {
-		return songsSelected;
+		return (store.getCountDay(id) == store.today()) ? store.getSongsSelected(id) : 0;
 	}//END getSongCount()
 	
 	/**********************************************************************************************
@@ -102,18 +131,90 @@ public class User implements Serializable {
 	 * @param time The integer song play time in seconds to deduct from this user's time balance.
 	 **********************************************************************************************/
 	public void selectSong(int time) {
-		timeRemaining = timeRemaining - time;
-		songsSelected++;
+		selectSong(time, store.today());
 	}//END incrementSongCount()
 	
+	/**********************************************************************************************
+	 * METHOD: selectSong()
+	 * PURPOSE: Deducts a selection made on the given day. The time is always charged, but only a
+	 *     selection from the day of the current count (or later) is counted.
+	 * @param time The integer song play time in seconds to deduct from this user's time balance.
+	 * @param day The epoch day the selection was made on.
+	 **********************************************************************************************/
+	void selectSong(int time, long day) {
+		store.selectSong(id, time, day);
+	}//END selectSong()
+	
+	/**********************************************************************************************
+	 * METHOD: advanceTo()
+	 * PURPOSE: Moves the day this User's count is read for forward to the day of a selection, so
+	 *     an earlier day's count reads as 0 before the selection is checked.
+	 * @param date The LocalDate of the selection.
+	 **********************************************************************************************/
+	void advanceTo(LocalDate date) {
+		store.advanceTo(date.toEpochDay());
+	}//END advanceTo()
+	
+	/**********************************************************************************************
+	 * METHOD: refundSong()
+	 * PURPOSE: Gives back the time of a cancelled selection, and the song it counted if it was
+	 *     made on the day of the current count.
+	 * @param time The integer song play time in seconds to give back.
+	 * @param day The epoch day the selection was made on.
+	 **********************************************************************************************/
+	void refundSong(int time, long day) {
+		store.refundSong(id, time, day);
+	}//END refundSong()
+	
 	/**********************************************************************************************
 	 * METHOD: resetCount()
 	 * PURPOSE: Resets the number of times this song has been selected to 0.
 	 **********************************************************************************************/
 	public void resetCount() {
-		songsSelected = 0;
+		store.resetCount(id, store.today());
 	}//END resetCount()
 	
+	/**********************************************************************************************
+	 * METHOD: addTo()
+	 * PURPOSE: Copies this User's account into another store.
+	 * @param target The AccountStore to add the account to.
+	 * @return The id of the account in 'target'.
+	 **********************************************************************************************/
+	int addTo(AccountStore target) {
+		return target.add(username, store.getPassword(id), store.isAdmin(id), store.getTimeRemaining(id),
+				store.getSongsSelected(id), store.getCountDay(id));
+	}//END addTo()
+	
+	/**********************************************************************************************
+	 * METHOD: writeObject()
+	 * PURPOSE: Saves this User with the same fields a User has always been saved with.
+	 **********************************************************************************************/
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("username", username);
+		fields.put("password", store.getPassword(id));
+		fields.put("isAdmin", store.isAdmin(id));
+		fields.put("timeRemaining", store.getTimeRemaining(id));
+		fields.put("songsSelected", store.getSongsSelected(id));
+		fields.put("countDay", store.getCountDay(id));
+		out.writeFields();
+	}//END writeObject()
+	
+	/**********************************************************************************************
+	 * METHOD: readObject()
+	 * PURPOSE: Reads a saved User into a store of its own. Users saved before counts were stamped
+	 *     with a day keep their count for today.
+	 **********************************************************************************************/
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		long countDay = fields.get("countDay", 0L);
+		username = (String) fields.get("username", null);
+		store = new AccountStore(0, new DayEpoch(Clock.systemDefaultZone()));
+		if(countDay == 0) { countDay = store.today(); }
+		id = store.add(username, (String) fields.get("password", null), fields.get("isAdmin", false),
+				fields.get("timeRemaining", 0), fields.get("songsSelected", 0), countDay);
+	}//END readObject()
+	
 	/**********************************************************************************************
 	 * METHOD: toString()
 	 * PURPOSE: Returns a String representing this User for file format.
@@ -0,0 +1,124 @@
+package model;
+
+import java.time.Clock;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: VirtualPlaybackEngine
+ * DESCRIPTION:
+ * A PlaybackEngine that plays nothing and only keeps time, so a Jukebox can run without the
+ * JavaFX media runtime. A song started now is due to end its length in seconds later on the
+ * engine's clock. Nothing ends by itself: whoever drives the clock (a simulator or a test) calls
+ * endSong() once the clock reaches getSongEndMillis(), and the Jukebox starts the next song at
+ * that moment, so songs follow each other without a gap.
+ **************************************************************************************************/
+
+public class VirtualPlaybackEngine implements PlaybackEngine {
+
+	private Clock clock;
+	private Runnable endOfSongHandler;
+	private Song playing;
+	private long songEndMillis = Long.MAX_VALUE;
+	private long songsPlayed;
+	private boolean ending; //The end of song handler is running
+	private long lastGapNanos = -1;
+
+	/**********************************************************************************************
+	 * METHOD: VirtualPlaybackEngine()
+	 * PURPOSE: Constructs an idle engine that times songs by a clock.
+	 * @param clock The Clock songs start and end by, usually a SimulatedClock.
+	 **********************************************************************************************/
+	public VirtualPlaybackEngine(Clock clock) {
+		this.clock = clock;
+	}//END VirtualPlaybackEngine() constructor
+
+	@Override
+	public synchronized void setEndOfSongHandler(Runnable handler) {
+		endOfSongHandler = handler;
+	}//END setEndOfSongHandler()
+
+	/**********************************************************************************************
+	 * METHOD: play()
+	 * PURPOSE: Starts timing a song from the clock's current time.
+	 * @param song The Song at the head of the queue, or null to play nothing.
+	 * @param queuedNanos Not used; waits are measured on the clock by the caller.
+	 **********************************************************************************************/
+	@Override
+	public synchronized void play(Song song, long queuedNanos) {
+		if(song == null) {
+			stop();
+			return;
+		}
+		if(ending) {
+			lastGapNanos = 0; //It starts the moment the last one ended
+		}
+		playing = song;
+		songEndMillis = clock.millis() + song.getSeconds() * 1000L;
+		songsPlayed++;
+	}//END play()
+
+	//Nothing needs to be buffered
+	@Override
+	public void prepareNext(Song song) {
+	}//END prepareNext()
+
+	@Override
+	public synchronized void stop() {
+		playing = null;
+		songEndMillis = Long.MAX_VALUE;
+	}//END stop()
+
+	@Override
+	public synchronized long getLastGapNanos() {
+		return lastGapNanos;
+	}//END getLastGapNanos()
+
+	/**********************************************************************************************
+	 * METHOD: endSong()
+	 * PURPOSE: Ends the song playing and runs the end of song handler, which starts the next one.
+	 * @return True if a song was playing.
+	 **********************************************************************************************/
+	public synchronized boolean endSong() {
+		if(playing == null) {
+			return false;
+		}
+		playing = null;
+		songEndMillis = Long.MAX_VALUE;
+		ending = true;
+		try {
+			endOfSongHandler.run();
+		} finally {
+			ending = false;
+		}
+		return true;
+	}//END endSong()
+
+	/**********************************************************************************************
+	 * METHOD: getSongEndMillis()
+	 * PURPOSE: Returns when the song playing is due to end.
+	 * @return The clock time in milliseconds, or Long.MAX_VALUE if nothing is playing.
+	 **********************************************************************************************/
+	public synchronized long getSongEndMillis() {
+		return songEndMillis;
+	}//END getSongEndMillis()
+
+	/**********************************************************************************************
+	 * METHOD: getPlaying()
+	 * PURPOSE: Returns the song playing.
+	 * @return The Song, or null if nothing is playing.
+	 **********************************************************************************************/
+	public synchronized Song getPlaying() {
+		return playing;
+	}//END getPlaying()
+
+	/**********************************************************************************************
+	 * METHOD: getSongsPlayed()
+	 * PURPOSE: Returns the number of songs this engine has started.
+	 * @return The count of play() calls with a song.
+	 **********************************************************************************************/
+	public synchronized long getSongsPlayed() {
+		return songsPlayed;
+	}//END getSongsPlayed()
+
+}//END VirtualPlaybackEngine class
@@ -0,0 +1,208 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Map;
+import model.Song;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: Json
+ * DESCRIPTION:
+ * The small amount of JSON the Jukebox server needs: quoting strings, writing songs, and reading
+ * the flat request objects the API accepts ({"name": "value", ...} with string, number, boolean
+ * or null values). Nested objects and arrays in requests are rejected.
+ **************************************************************************************************/
+
+public class Json {
+
+	/**********************************************************************************************
+	 * METHOD: Json()
+	 * PURPOSE: Not used; Json only has static methods.
+	 **********************************************************************************************/
+	private Json() {
+	}//END Json() constructor
+
+	/**********************************************************************************************
+	 * METHOD: quote()
+	 * PURPOSE: Appends a string as a quoted JSON string, escaping what JSON requires.
+	 * @param out The StringBuilder to append to.
+	 * @param value The String to write (null is written as null).
+	 * @return The same StringBuilder.
+	 **********************************************************************************************/
+	public static StringBuilder quote(StringBuilder out, String value) {
+		if(value == null) {
+			return out.append("null");
+		}
+		out.append('"');
+		for(int i=0; i<value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if(c < 0x20) {
+						out.append(String.format("\\u%04x", (int) c));
+					} else {
+						out.append(c);
+					}
+			}
+		}
+		return out.append('"');
+	}//END quote()
+
+	/**********************************************************************************************
+	 * METHOD: appendSong()
+	 * PURPOSE: Appends a song as a JSON object.
+	 * @param out The StringBuilder to append to.
+	 * @param song The Song to write.
+	 * @return The same StringBuilder.
+	 **********************************************************************************************/
+	public static StringBuilder appendSong(StringBuilder out, Song song) {
+		out.append("{\"title\":");
+		quote(out, song.getSongTitle());
+		out.append(",\"artist\":");
+		quote(out, song.getSongArtist());
+		out.append(",\"time\":");
+		quote(out, song.getSongTime());
+		out.append(",\"seconds\":").append(song.getSeconds());
+		out.append(",\"plays\":").append(song.getTimesSelected());
+		return out.append('}');
+	}//END appendSong()
+
+	/**********************************************************************************************
+	 * METHOD: error()
+	 * PURPOSE: Returns a JSON object holding one error message.
+	 * @param message The String error message.
+	 * @return The String JSON object.
+	 **********************************************************************************************/
+	public static String error(String message) {
+		return quote(new StringBuilder("{\"error\":"), message).append('}').toString();
+	}//END error()
+
+	/**********************************************************************************************
+	 * METHOD: parseObject()
+	 * PURPOSE: Reads a flat JSON object into a map of names to values. Numbers and booleans are
+	 *     kept as their text, and null values are left out.
+	 * @param text The String JSON object.
+	 * @return The Map of names to String values.
+	 * @throws IllegalArgumentException If the text is not a flat JSON object.
+	 **********************************************************************************************/
+	public static Map<String, String> parseObject(String text) {
+		Parser parser = new Parser(text);
+		Map<String, String> values = new HashMap<String, String>();
+		parser.expect('{');
+		if(parser.peek() == '}') {
+			parser.position++;
+		} else {
+			while(true) {
+				String name = parser.readString();
+				parser.expect(':');
+				String value = parser.readValue();
+				if(value != null) { values.put(name, value); }
+				char next = parser.next();
+				if(next == '}') {
+					break;
+				}
+				if(next != ',') {
+					throw new IllegalArgumentException("Expected ',' or '}' at " + (parser.position - 1));
+				}
+			}
+		}
+		if(parser.peek() != 0) {
+			throw new IllegalArgumentException("Unexpected text after the object.");
+		}
+		return values;
+	}//END parseObject()
+
+	/**********************************************************************************************
+	 * CLASS: Parser
+	 * PURPOSE: Reads the tokens of a flat JSON object one at a time.
+	 **********************************************************************************************/
+	private static class Parser {
+		private String text;
+		private int position;
+
+		private Parser(String text) {
+			this.text = text;
+		}//END Parser() constructor
+
+		private char peek() { //The next character that is not white space, or 0 at the end
+			while(position < text.length() && Character.isWhitespace(text.charAt(position))) { position++; }
+			return (position < text.length()) ? text.charAt(position) : 0;
+		}//END peek()
+
+		private char next() {
+			char c = peek();
+			if(c == 0) {
+				throw new IllegalArgumentException("Unexpected end of JSON.");
+			}
+			position++;
+			return c;
+		}//END next()
+
+		private void expect(char expected) {
+			if(next() != expected) {
+				throw new IllegalArgumentException("Expected '" + expected + "' at " + (position - 1));
+			}
+		}//END expect()
+
+		private String readValue() {
+			char c = peek();
+			if(c == '"') {
+				return readString();
+			}
+			int start = position;
+			while(position < text.length() && ",} \t\r\n".indexOf(text.charAt(position)) < 0) { position++; }
+			String literal = text.substring(start, position);
+			if(literal.equals("null")) {
+				return null;
+			}
+			if(literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+				return literal;
+			}
+			throw new IllegalArgumentException("Unsupported JSON value at " + start);
+		}//END readValue()
+
+		private String readString() {
+			expect('"');
+			StringBuilder value = new StringBuilder();
+			while(true) {
+				if(position >= text.length()) {
+					throw new IllegalArgumentException("Unterminated JSON string.");
+				}
+				char c = text.charAt(position++);
+				if(c == '"') {
+					return value.toString();
+				}
+				if(c != '\\') {
+					value.append(c);
+					continue;
+				}
+				if(position >= text.length()) {
+					throw new IllegalArgumentException("Unterminated JSON string.");
+				}
+				char escaped = text.charAt(position++);
+				switch(escaped) {
+					case 'b': value.append('\b'); break;
+					case 'f': value.append('\f'); break;
+					case 'n': value.append('\n'); break;
+					case 'r': value.append('\r'); break;
+					case 't': value.append('\t'); break;
+					case 'u':
+						if(position + 4 > text.length()) {
+							throw new IllegalArgumentException("Bad unicode escape.");
+						}
+						value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						position += 4;
+						break;
+					default: value.append(escaped); //quote, backslash and slash
+				}
+			}
+		}//END readString()
+	}//END Parser class
+
+}//END Json class
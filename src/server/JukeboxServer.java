@@ -0,0 +1,687 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import javafx.application.Platform;
+import javafx.embed.swing.JFXPanel;
+import metrics.MetricsRegistry;
+import model.AllAccounts;
+import model.CancelOutcome;
+import model.FairShareScheduler;
+import model.Jukebox;
+import model.PersistenceWriter;
+import model.QueueEntry;
+import model.SelectionOutcome;
+import model.SelectionResult;
+import model.Song;
+import model.TimedPlaybackEngine;
+import model.User;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: JukeboxServer
+ * DESCRIPTION:
+ * Runs one Jukebox without the GUI and lets any number of phones and kiosks use it through a JSON
+ * HTTP API on the JDK HTTP server:
+ *     POST /api/login    {"username", "password"}  -> {"token", "username", "admin"}
+ *     POST /api/logout   (signed in)
+ *     GET  /api/account  (signed in)               -> time remaining and songs selected today
+ *     GET  /api/songs    ?offset=0&limit=100       -> one page of the song list
+ *     GET  /api/search   ?q=words&limit=20         -> best matching songs
+ *     GET  /api/queue    ?limit=100                -> queue length and the songs at its head
+ *     POST /api/queue    {"title"} (signed in)     -> select a song: outcome, queue position, balance
+ *     DELETE /api/queue  ?id=7 (signed in)         -> cancel a queued song by its id from GET
+ *     GET  /metrics                                -> every metric in the Prometheus text format
+ * Signed-in requests send "Authorization: Bearer <token>" with the token from login; a session
+ * unused for half an hour ends and needs a new login. Each request runs on its own virtual thread
+ * when the JVM has them (Java 21 and later) and on a fixed pool of threads otherwise. The Jukebox and AllAccounts already allow many selections at once.
+ **************************************************************************************************/
+
+public class JukeboxServer {
+
+	private static final int DEFAULT_PORT = 8080;
+	private static final int BACKLOG = 1024;
+	private static final int MAX_BODY = 64*1024;
+	private static final int MAX_PAGE = 500;
+	private static final long SAVE_PERIOD_MILLIS = 5000; //Longest a change waits to be saved
+	private static final long SESSION_IDLE_MILLIS = 30*60*1000; //A session unused this long ends
+	private static final long PURGE_PERIOD_MILLIS = 60*1000; //Most often a login looks for ended sessions
+
+	private HttpServer httpServer;
+	private ExecutorService executor;
+	private Jukebox jukebox;
+	private AllAccounts accounts;
+	private ConcurrentHashMap<String, Session> sessions; //token -> session
+	private AtomicLong lastPurgeMillis;
+	private SecureRandom random;
+
+	/**********************************************************************************************
+	 * METHOD: JukeboxServer()
+	 * PURPOSE: Binds the server to a port and registers every API path. Call start() to serve.
+	 * @param jukebox The Jukebox that songs are selected from.
+	 * @param accounts The AllAccounts that users sign in with.
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @throws IOException If the port cannot be bound.
+	 **********************************************************************************************/
+	public JukeboxServer(Jukebox jukebox, AllAccounts accounts, int port) throws IOException {
+		this.jukebox = jukebox;
+		this.accounts = accounts;
+		sessions = new ConcurrentHashMap<String, Session>();
+		lastPurgeMillis = new AtomicLong(System.currentTimeMillis());
+		random = new SecureRandom();
+		//Replies go out in more than one write, and without TCP_NODELAY the last one waits for
+		//the client's delayed ACK, about 40 ms a request; read once, when the first server is made
+		if(System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		httpServer = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		httpServer.createContext("/api/login", new LoginHandler());
+		httpServer.createContext("/api/logout", new LogoutHandler());
+		httpServer.createContext("/api/account", new AccountHandler());
+		httpServer.createContext("/api/songs", new SongsHandler());
+		httpServer.createContext("/api/search", new SearchHandler());
+		httpServer.createContext("/api/queue", new QueueHandler());
+		httpServer.createContext("/metrics", new MetricsHandler());
+		executor = newRequestExecutor();
+		httpServer.setExecutor(executor);
+	}//END JukeboxServer() constructor
+
+	/**********************************************************************************************
+	 * METHOD: start()
+	 * PURPOSE: Starts accepting requests.
+	 **********************************************************************************************/
+	public void start() {
+		httpServer.start();
+	}//END start()
+
+	/**********************************************************************************************
+	 * METHOD: stop()
+	 * PURPOSE: Stops accepting requests and waits briefly for running requests to finish.
+	 **********************************************************************************************/
+	public void stop() {
+		httpServer.stop(1);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}//END stop()
+
+	/**********************************************************************************************
+	 * METHOD: getPort()
+	 * PURPOSE: Returns the port the server is listening on.
+	 * @return The bound port.
+	 **********************************************************************************************/
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}//END getPort()
+
+	/**********************************************************************************************
+	 * METHOD: newRequestExecutor()
+	 * PURPOSE: Returns an executor that starts a virtual thread per request, or a fixed pool of
+	 *     platform threads on JVMs without virtual threads.
+	 **********************************************************************************************/
+	private static ExecutorService newRequestExecutor() {
+		try {
+			Method virtualThreads = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtualThreads.invoke(null);
+		} catch (NoSuchMethodException e) {
+			//Before Java 21: fall back to platform threads
+		} catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+		}
+		int threads = Math.max(16, 4*Runtime.getRuntime().availableProcessors());
+		return Executors.newFixedThreadPool(threads, new RequestThreadFactory());
+	}//END newRequestExecutor()
+
+	/**********************************************************************************************
+	 * CLASS: RequestThreadFactory()
+	 * PURPOSE: Names the pooled request threads and lets the JVM exit while they are idle.
+	 **********************************************************************************************/
+	private static class RequestThreadFactory implements ThreadFactory {
+		private int count;
+
+		@Override
+		public synchronized Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "JukeboxRequest-" + (++count));
+			thread.setDaemon(true);
+			return thread;
+		}//END newThread()
+	}//END RequestThreadFactory class
+
+	/**********************************************************************************************
+	 * CLASS: Reply
+	 * PURPOSE: The status code and JSON body of one response.
+	 **********************************************************************************************/
+	private static class Reply {
+		private final int status;
+		private final String json;
+
+		private Reply(int status, String json) {
+			this.status = status;
+			this.json = json;
+		}//END Reply() constructor
+	}//END Reply class
+
+	/**********************************************************************************************
+	 * CLASS: ApiHandler()
+	 * PURPOSE: Runs one API request and writes its reply. Bad requests become 400 replies and any
+	 *     other failure a 500 reply, so one broken request never takes the server down.
+	 **********************************************************************************************/
+	private abstract class ApiHandler implements HttpHandler {
+
+		protected abstract Reply respond(HttpExchange exchange) throws IOException;
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			Reply reply;
+			try {
+				reply = respond(exchange);
+			} catch (IllegalArgumentException e) {
+				reply = new Reply(400, Json.error(e.getMessage()));
+			} catch (IOException e) {
+				reply = new Reply(400, Json.error("The request body could not be read."));
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				reply = new Reply(500, Json.error("The request could not be completed."));
+			}
+			byte[] body = reply.json.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(reply.status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}//END handle()
+
+	}//END ApiHandler class
+
+	/**********************************************************************************************
+	 * CLASS: LoginHandler()
+	 * PURPOSE: Checks a username and password and starts a session for them.
+	 **********************************************************************************************/
+	private class LoginHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) throws IOException {
+			if(exchange.getRequestMethod().equals("POST") == false) {
+				return methodNotAllowed();
+			}
+			Map<String, String> request = Json.parseObject(readBody(exchange));
+			String username = request.get("username");
+			String password = request.get("password");
+			if(username == null || password == null || accounts.verifyAccount(username, password) == false) {
+				return new Reply(401, Json.error("Invalid username or password."));
+			}
+
+			byte[] bytes = new byte[16];
+			random.nextBytes(bytes);
+			StringBuilder token = new StringBuilder(32);
+			for(byte b : bytes) { token.append(String.format("%02x", b & 0xff)); }
+			purgeSessions();
+			sessions.put(token.toString(), new Session(username));
+
+			StringBuilder json = new StringBuilder("{\"token\":");
+			Json.quote(json, token.toString()).append(",\"username\":");
+			Json.quote(json, username).append(",\"admin\":").append(accounts.isAdmin(username));
+			return new Reply(200, json.append('}').toString());
+		}//END respond()
+	}//END LoginHandler class
+
+	/**********************************************************************************************
+	 * CLASS: LogoutHandler()
+	 * PURPOSE: Ends the caller's session.
+	 **********************************************************************************************/
+	private class LogoutHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) {
+			if(exchange.getRequestMethod().equals("POST") == false) {
+				return methodNotAllowed();
+			}
+			String token = sessionToken(exchange);
+			if(token == null || sessions.remove(token) == null) {
+				return notSignedIn();
+			}
+			return new Reply(200, "{\"signedOut\":true}");
+		}//END respond()
+	}//END LogoutHandler class
+
+	/**********************************************************************************************
+	 * CLASS: AccountHandler()
+	 * PURPOSE: Returns the signed-in user's time balance and songs selected today.
+	 **********************************************************************************************/
+	private class AccountHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) {
+			if(exchange.getRequestMethod().equals("GET") == false) {
+				return methodNotAllowed();
+			}
+			User user = sessionUser(exchange);
+			if(user == null) {
+				return notSignedIn();
+			}
+			StringBuilder json = new StringBuilder("{\"username\":");
+			Json.quote(json, user.getUsername());
+			json.append(",\"admin\":").append(user.isAdmin());
+			json.append(",\"timeRemaining\":").append(user.getTimeRemaining());
+			json.append(",\"songsToday\":").append(user.getSongCount());
+			return new Reply(200, json.append('}').toString());
+		}//END respond()
+	}//END AccountHandler class
+
+	/**********************************************************************************************
+	 * CLASS: SongsHandler()
+	 * PURPOSE: Returns one page of the song list.
+	 **********************************************************************************************/
+	private class SongsHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) {
+			if(exchange.getRequestMethod().equals("GET") == false) {
+				return methodNotAllowed();
+			}
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			int offset = intParameter(query, "offset", 0, Integer.MAX_VALUE);
+			int limit = intParameter(query, "limit", 100, MAX_PAGE);
+			StringBuilder json = new StringBuilder("{\"total\":").append(jukebox.getSongTotal());
+			json.append(",\"offset\":").append(offset).append(",\"songs\":");
+			appendSongs(json, jukebox.getSongs(offset, limit));
+			return new Reply(200, json.append('}').toString());
+		}//END respond()
+	}//END SongsHandler class
+
+	/**********************************************************************************************
+	 * CLASS: SearchHandler()
+	 * PURPOSE: Returns the songs that best match the words of a query.
+	 **********************************************************************************************/
+	private class SearchHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) {
+			if(exchange.getRequestMethod().equals("GET") == false) {
+				return methodNotAllowed();
+			}
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			String words = query.get("q");
+			if(words == null) {
+				throw new IllegalArgumentException("Missing query parameter 'q'.");
+			}
+			int limit = intParameter(query, "limit", 20, MAX_PAGE);
+			StringBuilder json = new StringBuilder("{\"songs\":");
+			appendSongs(json, jukebox.searchSongs(words, limit));
+			return new Reply(200, json.append('}').toString());
+		}//END respond()
+	}//END SearchHandler class
+
+	/**********************************************************************************************
+	 * CLASS: QueueHandler()
+	 * PURPOSE: GET returns the queue; POST selects a song for the signed-in user and DELETE
+	 *     cancels one of the queued songs.
+	 **********************************************************************************************/
+	private class QueueHandler extends ApiHandler {
+		@Override
+		protected Reply respond(HttpExchange exchange) throws IOException {
+			if(exchange.getRequestMethod().equals("GET")) {
+				Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+				int limit = intParameter(query, "limit", 100, MAX_PAGE);
+				StringBuilder json = new StringBuilder("{\"size\":").append(jukebox.getQueueSize());
+				json.append(",\"songs\":[");
+				List<QueueEntry> head = jukebox.getQueueEntries(limit);
+				for(int i=0; i<head.size(); i++) {
+					if(i > 0) { json.append(','); }
+					Json.quote(json, head.get(i).title);
+				}
+				json.append("],\"ids\":[");
+				for(int i=0; i<head.size(); i++) {
+					if(i > 0) { json.append(','); }
+					json.append(head.get(i).id);
+				}
+				return new Reply(200, json.append("]}").toString());
+			}
+			boolean delete = exchange.getRequestMethod().equals("DELETE");
+			if(delete == false && exchange.getRequestMethod().equals("POST") == false) {
+				return methodNotAllowed();
+			}
+
+			User user = sessionUser(exchange);
+			if(user == null) {
+				return notSignedIn();
+			}
+			if(delete) {
+				return cancel(user, parseQuery(exchange.getRequestURI().getRawQuery()));
+			}
+			String title = Json.parseObject(readBody(exchange)).get("title");
+			if(title == null) {
+				throw new IllegalArgumentException("Missing 'title'.");
+			}
+			SelectionResult result = new SelectionResult();
+			SelectionOutcome outcome = jukebox.selectSong(user, title, jukebox.getDayEpoch().today(), result);
+			int status = outcome.isQueued() ? 200 : ((outcome == SelectionOutcome.NOT_FOUND) ? 404 : 409);
+			StringBuilder json = new StringBuilder("{\"queued\":").append(outcome.isQueued());
+			json.append(",\"outcome\":");
+			Json.quote(json, outcome.name()).append(",\"message\":");
+			Json.quote(json, jukebox.getQuotaRules().message(outcome));
+			json.append(",\"position\":").append(result.getQueuePosition());
+			json.append(",\"id\":").append(result.getEntryId());
+			json.append(",\"timeRemaining\":").append(result.getTimeRemaining());
+			json.append(",\"songsToday\":").append(result.getSongsToday());
+			return new Reply(status, json.append('}').toString());
+		}//END respond()
+
+		//Cancels the queued song with the 'id' parameter and reports the user's refunded balance
+		private Reply cancel(User user, Map<String, String> query) {
+			String id = query.get("id");
+			if(id == null) {
+				throw new IllegalArgumentException("Missing query parameter 'id'.");
+			}
+			CancelOutcome outcome;
+			try {
+				outcome = jukebox.cancelSong(user, Long.parseLong(id));
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("'id' must be a whole number.");
+			}
+			int status;
+			switch(outcome) {
+				case CANCELLED: status = 200; break;
+				case NOT_FOUND: status = 404; break;
+				case NOT_ALLOWED: status = 403; break;
+				default: status = 409; break;
+			}
+			StringBuilder json = new StringBuilder("{\"cancelled\":").append(outcome.isCancelled());
+			json.append(",\"outcome\":");
+			Json.quote(json, outcome.name()).append(",\"message\":");
+			Json.quote(json, outcome.getMessage());
+			json.append(",\"timeRemaining\":").append(user.getTimeRemaining());
+			json.append(",\"songsToday\":").append(user.getSongCount());
+			return new Reply(status, json.append('}').toString());
+		}//END cancel()
+	}//END QueueHandler class
+
+	/**********************************************************************************************
+	 * CLASS: MetricsHandler()
+	 * PURPOSE: Writes the default MetricsRegistry for a Prometheus server to scrape.
+	 **********************************************************************************************/
+	private static class MetricsHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			byte[] body = MetricsRegistry.getDefault().writePrometheus(new StringBuilder(4096)).toString()
+					.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}//END handle()
+	}//END MetricsHandler class
+
+	/**********************************************************************************************
+	 * METHOD: appendSongs()
+	 * PURPOSE: Appends a list of songs as a JSON array.
+	 **********************************************************************************************/
+	private static void appendSongs(StringBuilder json, List<Song> songs) {
+		json.append('[');
+		for(int i=0; i<songs.size(); i++) {
+			if(i > 0) { json.append(','); }
+			Json.appendSong(json, songs.get(i));
+		}
+		json.append(']');
+	}//END appendSongs()
+
+	/**********************************************************************************************
+	 * METHOD: sessionToken()
+	 * PURPOSE: Returns the token from the "Authorization: Bearer" header, or null if there is none.
+	 **********************************************************************************************/
+	private static String sessionToken(HttpExchange exchange) {
+		String header = exchange.getRequestHeaders().getFirst("Authorization");
+		if(header == null || header.startsWith("Bearer ") == false) {
+			return null;
+		}
+		return header.substring(7).trim();
+	}//END sessionToken()
+
+	/**********************************************************************************************
+	 * METHOD: sessionUser()
+	 * PURPOSE: Returns the User signed in with the request's token, or null if it has none.
+	 **********************************************************************************************/
+	private User sessionUser(HttpExchange exchange) {
+		String token = sessionToken(exchange);
+		Session session = (token == null) ? null : sessions.get(token);
+		if(session == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if(now - session.lastUsedMillis > SESSION_IDLE_MILLIS) {
+			sessions.remove(token, session);
+			return null;
+		}
+		session.lastUsedMillis = now;
+		return accounts.getUser(session.username);
+	}//END sessionUser()
+
+	/**********************************************************************************************
+	 * METHOD: purgeSessions()
+	 * PURPOSE: Ends every session that has not been used for SESSION_IDLE_MILLIS, so kiosks that
+	 *     sign in and never sign out do not grow the session map forever. Runs at most once every
+	 *     PURGE_PERIOD_MILLIS, from whichever login comes first after that.
+	 **********************************************************************************************/
+	private void purgeSessions() {
+		long now = System.currentTimeMillis();
+		long last = lastPurgeMillis.get();
+		if(now - last < PURGE_PERIOD_MILLIS || lastPurgeMillis.compareAndSet(last, now) == false) {
+			return;
+		}
+		for(Map.Entry<String, Session> entry : sessions.entrySet()) {
+			if(now - entry.getValue().lastUsedMillis > SESSION_IDLE_MILLIS) {
+				sessions.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}//END purgeSessions()
+
+	/**********************************************************************************************
+	 * CLASS: Session
+	 * PURPOSE: A signed-in user and the last time their token was used.
+	 **********************************************************************************************/
+	private static class Session {
+		private final String username;
+		private volatile long lastUsedMillis;
+
+		private Session(String username) {
+			this.username = username;
+			lastUsedMillis = System.currentTimeMillis();
+		}//END Session() constructor
+	}//END Session class
+
+	/**********************************************************************************************
+	 * METHOD: readBody()
+	 * PURPOSE: Reads the request body as UTF-8 text, refusing bodies over MAX_BODY bytes.
+	 **********************************************************************************************/
+	private static String readBody(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = in.read(buffer)) > 0) {
+			body.write(buffer, 0, read);
+			if(body.size() > MAX_BODY) {
+				throw new IllegalArgumentException("The request body is too large.");
+			}
+		}
+		in.close();
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}//END readBody()
+
+	/**********************************************************************************************
+	 * METHOD: parseQuery()
+	 * PURPOSE: Splits a raw URL query string into decoded parameters.
+	 **********************************************************************************************/
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(rawQuery == null) {
+			return parameters;
+		}
+		try {
+			for(String pair : rawQuery.split("&")) {
+				int equals = pair.indexOf('=');
+				if(equals > 0) {
+					parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+							URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+				}
+			}
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+		}
+		return parameters;
+	}//END parseQuery()
+
+	/**********************************************************************************************
+	 * METHOD: intParameter()
+	 * PURPOSE: Reads a whole-number query parameter between 0 and 'max', or its default.
+	 **********************************************************************************************/
+	private static int intParameter(Map<String, String> query, String name, int defaultValue, int max) {
+		String value = query.get(name);
+		if(value == null) {
+			return defaultValue;
+		}
+		try {
+			int number = Integer.parseInt(value);
+			if(number < 0) {
+				throw new IllegalArgumentException("'" + name + "' may not be negative.");
+			}
+			return Math.min(number, max);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + name + "' must be a whole number.");
+		}
+	}//END intParameter()
+
+	/**********************************************************************************************
+	 * METHOD: methodNotAllowed()
+	 * PURPOSE: Returns the reply for a path called with the wrong HTTP method.
+	 **********************************************************************************************/
+	private static Reply methodNotAllowed() {
+		return new Reply(405, Json.error("Method not allowed."));
+	}//END methodNotAllowed()
+
+	/**********************************************************************************************
+	 * METHOD: notSignedIn()
+	 * PURPOSE: Returns the reply for a request that needs a session but has none.
+	 **********************************************************************************************/
+	private static Reply notSignedIn() {
+		return new Reply(401, Json.error("Sign in first."));
+	}//END notSignedIn()
+
+	/**********************************************************************************************
+	 * METHOD: startMediaRuntime()
+	 * PURPOSE: Starts the JavaFX runtime that the MediaPlayers need, without opening a window.
+	 **********************************************************************************************/
+	private static void startMediaRuntime() {
+		try {
+			Method startup = Platform.class.getMethod("startup", Runnable.class);
+			startup.invoke(null, new NoTask());
+		} catch (NoSuchMethodException e) {
+			new JFXPanel(); //Java 8 has no Platform.startup()
+		} catch (ReflectiveOperationException e) {
+			e.printStackTrace();
+		}
+		Platform.setImplicitExit(false);
+	}//END startMediaRuntime()
+
+	/**********************************************************************************************
+	 * CLASS: NoTask()
+	 * PURPOSE: The empty task run once the JavaFX runtime has started.
+	 **********************************************************************************************/
+	private static class NoTask implements Runnable {
+		@Override
+		public void run() {
+		}//END run()
+	}//END NoTask class
+
+	/**********************************************************************************************
+	 * CLASS: ShutdownHandler()
+	 * PURPOSE: Stops the server and saves the Jukebox when the JVM is shut down.
+	 **********************************************************************************************/
+	private static class ShutdownHandler extends Thread {
+		private JukeboxServer server;
+		private PersistenceWriter persistence;
+
+		private ShutdownHandler(JukeboxServer server, PersistenceWriter persistence) {
+			super("JukeboxServerShutdown");
+			this.server = server;
+			this.persistence = persistence;
+		}//END ShutdownHandler() constructor
+
+		@Override
+		public void run() {
+			server.stop();
+			persistence.close(true);
+			server.jukebox.closeJournal(false);
+		}//END run()
+	}//END ShutdownHandler class
+
+	/**********************************************************************************************
+	 * METHOD: main()
+	 * PURPOSE: Starts a headless Jukebox server: JukeboxServer [port] [--default] [--fair]
+	 *     [--silent]. The last saved state (and journal) is loaded unless "--default" is given;
+	 *     changes are saved in the background every few seconds and on shutdown. "--fair" shares
+	 *     the queue fairly between users, with admins' songs played first, instead of first come
+	 *     first served. "--silent" lets each song run its length without playing it, so the
+	 *     JavaFX runtime is never started. The venue's limits are read from a "QuotaRules" file in
+	 *     the working directory if any.
+	 * @param args The optional port, "--default", "--fair" and "--silent" flags.
+	 **********************************************************************************************/
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		boolean readFiles = true;
+		boolean fair = false;
+		boolean silent = false;
+		for(String arg : args) {
+			if(arg.equals("--default")) {
+				readFiles = false;
+			} else if(arg.equals("--fair")) {
+				fair = true;
+			} else if(arg.equals("--silent")) {
+				silent = true;
+			} else {
+				port = Integer.parseInt(arg);
+			}
+		}
+
+		AllAccounts accounts = new AllAccounts(readFiles);
+		Jukebox jukebox;
+		if(silent) {
+			jukebox = new Jukebox(readFiles, new TimedPlaybackEngine());
+		} else {
+			startMediaRuntime();
+			jukebox = new Jukebox(readFiles);
+		}
+		if(fair) {
+			jukebox.setQueueScheduler(new FairShareScheduler(true));
+		}
+		jukebox.openJournal(accounts, readFiles);
+		PersistenceWriter persistence = new PersistenceWriter(jukebox, SAVE_PERIOD_MILLIS);
+		persistence.start();
+
+		JukeboxServer server = new JukeboxServer(jukebox, accounts, port);
+		Runtime.getRuntime().addShutdownHook(new ShutdownHandler(server, persistence));
+		server.start();
+		System.out.println("Jukebox server listening on port " + server.getPort());
+	}//END main()
+
+}//END JukeboxServer class
@@ -2,14 +2,66 @@ package tests;
 
 // Added to allow package tests to exist on GitHub
 import static org.junit.Assert.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.collections.ListChangeListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Test;
 import javafx.embed.swing.JFXPanel;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import model.AccountPages;
 import model.AllAccounts;
+import model.CancelOutcome;
+import model.CatalogSongList;
+import model.DayEpoch;
+import model.FairShareScheduler;
+import model.FifoScheduler;
+import model.Journal;
+import model.Leaderboard;
+import model.MediaPlaybackEngine;
+import model.PersistenceWriter;
+import model.PlayQueue;
+import model.QueueEntry;
+import model.QuotaRules;
+import model.RingBuffer;
+import model.Room;
+import model.RoomRegistry;
+import model.SelectionOutcome;
+import model.SelectionResult;
+import model.SimulatedClock;
 import model.Jukebox;
+import model.SongCatalog;
+import model.SongScanner;
+import model.SongSearchIndex;
 import model.Song;
+import model.TimedPlaybackEngine;
 import model.User;
+import model.VirtualPlaybackEngine;
+import server.Json;
 import views.LoginView;
+import views.SongQueueList;
 
 /**************************************************************************************************
  * @author Ashley Mains and Victor Gomes
@@ -21,8 +73,6 @@ import views.LoginView;
 
 public class JukeboxTest {
 	
-	final JFXPanel fxPanel = new JFXPanel(); // Fix from stackoverflow says to add this
-	
 	@Test
 	public void testAllAccountsInitialization() {
 		AllAccounts accountList = new AllAccounts(false);
@@ -70,6 +120,107 @@ public class JukeboxTest {
 		assertFalse(merlin.isAdmin());
 	}
 	
+	@Test
+	public void testAccountStoreFile() throws IOException {
+		File folder = Files.createTempDirectory("jukebox-accounts").toFile();
+		ArrayList<User> users = new ArrayList<User>(); //The list of Users saved before the store
+		users.add(new User("Merlin", "7777777", true, 600, 2));
+		users.add(new User("Victor", "hey", false, 1500, 0));
+		ObjectOutputStream objectOutput = new ObjectOutputStream(new FileOutputStream(new File(folder, "AccountList")));
+		objectOutput.writeObject(users);
+		objectOutput.writeLong(7);
+		objectOutput.close();
+		
+		AllAccounts accountList = new AllAccounts(folder);
+		assertEquals(7, accountList.getJournalLsn());
+		assertEquals(2, accountList.getAccountCount());
+		assertTrue(accountList.verifyAccount("Merlin", "7777777"));
+		assertEquals(2, accountList.getUser("Merlin").getSongCount());
+		assertSame(accountList.getUser("Victor"), accountList.getUser("Victor"));
+		for(int i = 0; i < 10000; i++) { accountList.addAccount("user" + i, "pass" + i, false); }
+		User removed = accountList.getUser("user0");
+		for(int i = 0; i < 10000; i += 2) { assertTrue(accountList.removeAccount("user" + i)); }
+		assertTrue(accountList.removeAccount("Victor"));
+		for(int i = 1; i < 100; i += 2) { accountList.getUser("user" + i).updateInfo("new", false); } //Compacts the text
+		assertEquals("pass0", removed.getPassword()); //A held User keeps working
+		accountList.writeAccountsToFile();
+		
+		//Removed accounts are not saved
+		accountList = new AllAccounts(folder);
+		assertEquals(5001, accountList.getAccountCount());
+		assertNull(accountList.getUser("Victor"));
+		assertNull(accountList.getUser("user9998"));
+		assertTrue(accountList.verifyAccount("user9999", "pass9999"));
+		assertEquals(600, accountList.getUser("Merlin").getTimeRemaining());
+		new File(folder, "AccountList").delete();
+		folder.delete();
+	}
+	
+	@Test
+	public void testAccountPages() throws IOException {
+		File folder = Files.createTempDirectory("jukebox-pages").toFile();
+		ArrayList<User> users = new ArrayList<User>();
+		users.add(new User("Merlin", "7777777", true, 600, 0));
+		ObjectOutputStream objectOutput = new ObjectOutputStream(new FileOutputStream(new File(folder, "AccountList")));
+		objectOutput.writeObject(users);
+		objectOutput.writeLong(4);
+		objectOutput.close();
+		AllAccounts accountList = new AllAccounts(folder);
+		for(int i = 0; i < 5000; i++) { accountList.addAccount("user" + i, "pass" + i, false); }
+		accountList.writeAccountsToFile();
+		assertEquals(5001, AccountPages.convert(folder));
+		
+		//Nothing is read until an account is looked up
+		accountList = new AllAccounts(folder);
+		assertEquals(5001, accountList.getAccountCount());
+		assertEquals(4, accountList.getJournalLsn());
+		assertTrue(accountList.verifyAccount("user4321", "pass4321"));
+		assertFalse(accountList.verifyAccount("user4321", "pass1234"));
+		User user = accountList.getUser("user17");
+		assertSame(user, accountList.getUser("user17"));
+		user.selectSong(30);
+		user.updateInfo("a longer password", false);
+		User readded = accountList.getUser("user20");
+		accountList.addAccount("user20", "again", false); //Replaced in place, so changes are saved
+		readded.selectSong(40);
+		assertTrue(accountList.removeAccount("user18"));
+		for(int i = 0; i < 20000; i++) { accountList.addAccount("more" + i, "m", false); } //Overflows and rebuilds
+		accountList.writeAccountsToFile(8);
+		
+		accountList = new AllAccounts(folder);
+		assertEquals(25000, accountList.getAccountCount());
+		assertEquals(8, accountList.getJournalLsn());
+		assertEquals(90000 - 30, accountList.getUser("user17").getTimeRemaining());
+		assertTrue(accountList.verifyAccount("user17", "a longer password"));
+		assertNull(accountList.getUser("user18"));
+		assertTrue(accountList.verifyAccount("user20", "again"));
+		assertEquals(90000 - 40, accountList.getUser("user20").getTimeRemaining());
+		assertTrue(accountList.verifyAccount("more19999", "m"));
+		assertTrue(accountList.isAdmin("Merlin"));
+		
+		//A flush stopped by a crash is finished from the redo file when the file is opened
+		File pagesFile = new File(folder, "AccountPages");
+		File redoFile = new File(folder, "AccountPages.redo");
+		byte[] lastFlush = Files.readAllBytes(pagesFile.toPath());
+		accountList.getUser("user17").selectSong(50);
+		accountList.writeAccountsToFile(9);
+		byte[] redo = Files.readAllBytes(redoFile.toPath());
+		Files.write(pagesFile.toPath(), lastFlush); // simulate a crash before the pages were written
+		accountList = new AllAccounts(folder);
+		assertEquals(9, accountList.getJournalLsn());
+		assertEquals(90000 - 80, accountList.getUser("user17").getTimeRemaining());
+		
+		//A torn redo file means no page was written yet, so the flush before it is kept
+		Files.write(pagesFile.toPath(), lastFlush);
+		Files.write(redoFile.toPath(), Arrays.copyOf(redo, redo.length - 100)); // simulate a crash mid-redo
+		accountList = new AllAccounts(folder);
+		assertEquals(8, accountList.getJournalLsn());
+		assertEquals(90000 - 30, accountList.getUser("user17").getTimeRemaining());
+		assertFalse(redoFile.exists());
+		for(File file : folder.listFiles()) { file.delete(); }
+		folder.delete();
+	}
+	
 	@Test
 	public void testSongSelection() {
 		Song song = new Song("Pokemon Capture", "0:05", "Pikachu", "Capture.mp3", "0");
@@ -82,9 +233,42 @@ public class JukeboxTest {
 		assertNotEquals(null, song.getSongMedia());
 	}
 	
+	@Test
+	public void testSongPlaysProperty() throws InterruptedException {
+		new JFXPanel();
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		Song song = new Song("Pokemon Song", "0:05", "Pikachu", "Capture.mp3", "0");
+		assertTrue(jukebox.addSong(song));
+		ReadOnlyObjectProperty<Integer> plays = song.timesSelectedProperty();
+		assertEquals(Integer.valueOf(0), plays.get());
+		final AtomicInteger changes = new AtomicInteger();
+		plays.addListener(new InvalidationListener() {
+			public void invalidated(Observable observable) { changes.incrementAndGet(); }
+		});
+		song.selectSong(); // Off the JavaFX thread, so pushed there
+		final CountDownLatch pushed = new CountDownLatch(1);
+		Platform.runLater(new Runnable() {
+			public void run() { pushed.countDown(); }
+		});
+		assertTrue(pushed.await(5, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(1), plays.get());
+		assertEquals(1, changes.get());
+		assertSame(plays, song.timesSelectedProperty());
+		assertEquals(1, changes.get()); // Asking again changes nothing
+		
+		jukebox.getDayEpoch().advanceTo(jukebox.getDayEpoch().today().plusDays(1)); // Yesterday's count reads 0
+		final CountDownLatch reset = new CountDownLatch(1);
+		Platform.runLater(new Runnable() {
+			public void run() { reset.countDown(); }
+		});
+		assertTrue(reset.await(5, TimeUnit.SECONDS));
+		assertEquals(Integer.valueOf(0), plays.get());
+		assertEquals(2, changes.get());
+	}
+	
 	@Test
 	public void testUserSongSelection() {
-		Jukebox jukebox = new Jukebox(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
 		User victor = new User("Victor", "hey", false, 1500, 0);
 		String message = jukebox.checkSongAvailability(victor, "Pokemon Capture", LocalDate.now());
 		assertEquals("Confirm", message); // Failing if using persistence
@@ -92,6 +276,7 @@ public class JukeboxTest {
 	
 	@Test
 	public void testTodayTomorrowReset() {
+		new JFXPanel();
 		LoginView login = new LoginView(false);
 		login.setCurrentUser("Chris");
 		Jukebox jukebox = new Jukebox(false);
@@ -108,6 +293,7 @@ public class JukeboxTest {
 	
 	@Test
 	public void testTwoUserSelectSameSong() {
+		new JFXPanel();
 		LoginView login = new LoginView(false);
 		Jukebox jukebox = new Jukebox(false);
 		login.setCurrentUser("Chris");
@@ -125,7 +311,7 @@ public class JukeboxTest {
 	
 	@Test
 	public void testUserOutOfTime() {
-		Jukebox jukebox = new Jukebox(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
 		AllAccounts accountList = new AllAccounts(false);
 		User merlin = accountList.getUser("Merlin");
 		merlin.selectSong(89996);
@@ -135,4 +321,991 @@ public class JukeboxTest {
 		assertEquals("Not enough time remaining in account.", message);
 	}
 	
+	@Test
+	public void testJournalReplayAfterTornWrite() throws IOException {
+		File file = File.createTempFile("JukeboxJournal", null);
+		Journal journal = new Journal(file.getPath(), 10);
+		journal.logSelection("Chris", "Pokemon Capture", LocalDate.now(), 1);
+		journal.logSelection("Ryan", "Swing Cheese", LocalDate.now(), 2);
+		journal.logDequeue(LocalDate.now());
+		journal.close();
+		
+		RandomAccessFile raw = new RandomAccessFile(file, "rw"); // simulate a crash mid-record
+		raw.setLength(raw.length() - 2);
+		raw.close();
+		
+		journal = new Journal(file.getPath(), 0);
+		ArrayList<Journal.Entry> entries = journal.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals(11, entries.get(0).lsn);
+		assertEquals("Ryan", entries.get(1).username);
+		assertEquals(2, entries.get(1).entryId);
+		assertEquals(12, journal.getLastLsn());
+		journal.close();
+		file.delete();
+	}
+	
+	@Test
+	public void testSongCatalogLookup() throws IOException {
+		ArrayList<Song> songs = new ArrayList<Song>();
+		songs.add(new Song("Pokemon Capture", "0:05", "Pikachu", "Capture.mp3", "0"));
+		songs.add(new Song("Swing Cheese", "0:15", "FreePlay Music", "SwingCheese.mp3", "2"));
+		File file = File.createTempFile("SongCatalog", null);
+		SongCatalog.write(songs, file.getPath());
+		
+		SongCatalog catalog = new SongCatalog(file.getPath());
+		assertEquals(2, catalog.size());
+		assertNull(catalog.getSong("Danse Macabre"));
+		Song cheese = catalog.getSong("Swing Cheese");
+		assertEquals(15, cheese.getSeconds());
+		assertEquals(2, cheese.getTimesSelected());
+		cheese.selectSong();
+		catalog.writeBack(3);
+		catalog.close();
+		
+		catalog = new SongCatalog(file.getPath());
+		cheese = catalog.getSong("Swing Cheese");
+		assertEquals(3, cheese.getTimesSelected());
+		assertEquals(3, catalog.getJournalLsn());
+		cheese.selectSong();
+		catalog.writeBack(5); // the second save goes to the other counts file
+		catalog.close();
+		
+		RandomAccessFile raw = new RandomAccessFile(file.getPath() + ".counts0", "rw"); // simulate a crash mid-save
+		raw.setLength(raw.length() - 2);
+		raw.close();
+		catalog = new SongCatalog(file.getPath());
+		assertEquals(3, catalog.getSong("Swing Cheese").getTimesSelected());
+		assertEquals(3, catalog.getJournalLsn());
+		catalog.close();
+		
+		raw = new RandomAccessFile(file.getPath() + ".counts1", "rw"); // and a damaged byte in the other
+		raw.seek(10);
+		raw.write(0xff);
+		raw.close();
+		catalog = new SongCatalog(file.getPath());
+		assertEquals(2, catalog.getSong("Swing Cheese").getTimesSelected());
+		assertEquals(0, catalog.getJournalLsn());
+		catalog.close();
+		assertTrue(SongCatalog.delete(file));
+	}
+	
+	@Test
+	public void testCatalogSongList() throws IOException {
+		ArrayList<Song> songs = new ArrayList<Song>();
+		songs.add(new Song("Swing Cheese", "0:15", "FreePlay Music", "SwingCheese.mp3", "1"));
+		songs.add(new Song("Danse Macabre", "0:34", "Kevin MacLeod", "DanseMacabreViolinHook.mp3", "0"));
+		songs.add(new Song("loping Sting", "0:05", "Kevin MacLeod", "LopingSting.mp3", "3"));
+		File file = File.createTempFile("SongCatalog", null);
+		SongCatalog.write(songs, file.getPath());
+		SongCatalog catalog = new SongCatalog(file.getPath());
+		CatalogSongList list = new CatalogSongList(catalog);
+		final List<Boolean> permutations = new ArrayList<Boolean>();
+		list.addListener(new ListChangeListener<Song>() {
+			public void onChanged(Change<? extends Song> change) {
+				while(change.next()) { permutations.add(change.wasPermutated()); }
+			}
+		});
+		assertEquals(3, list.size());
+		assertSame(catalog.getSong("Danse Macabre"), list.get(1));
+		
+		list.sortBy(SongCatalog.SortKey.TITLE, false); // case is ignored
+		assertEquals("Danse Macabre", list.get(0).getSongTitle());
+		assertEquals("loping Sting", list.get(1).getSongTitle());
+		list.sortBy(SongCatalog.SortKey.TIME, true);
+		assertEquals("Danse Macabre", list.get(0).getSongTitle());
+		assertEquals("loping Sting", list.get(2).getSongTitle());
+		list.sortBy(SongCatalog.SortKey.PLAYS, true);
+		assertEquals("loping Sting", list.get(0).getSongTitle());
+		assertEquals(3, list.get(0).getTimesSelected());
+		list.applyOrder(null, false);
+		assertEquals("Swing Cheese", list.get(0).getSongTitle());
+		assertEquals(Arrays.asList(true, true, true, true), permutations);
+		catalog.close();
+		file.delete();
+	}
+	
+	@Test
+	public void testCatalogRewrite() throws IOException {
+		File folder = Files.createTempDirectory("jukebox-catalog").toFile();
+		ArrayList<Song> songs = new ArrayList<Song>();
+		songs.add(new Song("Swing Cheese", "0:15", "FreePlay Music", "SwingCheese.mp3", "0"));
+		songs.add(new Song("Loping Sting", "0:05", "Kevin MacLeod", "LopingSting.mp3", "0"));
+		SongCatalog.write(songs, new File(folder, "SongCatalog").getPath());
+		ObjectOutputStream queueOutput = new ObjectOutputStream(new FileOutputStream(new File(folder, "SongQueue")));
+		queueOutput.writeObject(new ArrayList<Object>());
+		queueOutput.close();
+		
+		Jukebox jukebox = new Jukebox(folder);
+		Song cheese = jukebox.getSongs(0, 1).get(0);
+		cheese.selectSong();
+		assertEquals("Loping Sting", jukebox.searchSongs("kev", 5).get(0).getSongTitle());
+		assertTrue(jukebox.addSong(new Song("Danse Macabre", "0:34", "Kevin MacLeod", "DanseMacabreViolinHook.mp3", "0")));
+		jukebox.writeSongsToFile();
+		
+		//The added song is written to the next generation, and the Songs already built carry over
+		assertTrue(new File(folder, "SongCatalog.1").exists());
+		assertFalse(new File(folder, "SongCatalog").exists());
+		assertEquals(3, jukebox.getSongTotal());
+		assertSame(cheese, jukebox.getSongs(0, 1).get(0));
+		
+		//The search index keeps its ids, which are now ordinals of the new catalog
+		assertSame(cheese, jukebox.searchSongs("swi", 5).get(0));
+		Song danse = jukebox.getSongs(2, 1).get(0);
+		danse.selectSong();
+		List<Song> kevin = jukebox.searchSongs("kevin", 5);
+		assertEquals(2, kevin.size());
+		assertSame(danse, kevin.get(0));
+		cheese.selectSong();
+		jukebox.writeSongsToFile();
+		
+		Jukebox reopened = new Jukebox(folder);
+		assertEquals(2, reopened.getSongs(0, 1).get(0).getTimesSelected());
+		assertEquals("Danse Macabre", reopened.getSongs(2, 1).get(0).getSongTitle());
+		for(File file : folder.listFiles()) { file.delete(); }
+		folder.delete();
+	}
+	
+	@Test
+	public void testSongScanner() throws IOException {
+		File folder = Files.createTempDirectory("jukebox-scan").toFile();
+		File music = new File(folder, "songfiles");
+		music.mkdir();
+		Files.copy(new File("songfiles/LopingSting.mp3").toPath(), new File(music, "LopingSting.mp3").toPath());
+		Files.copy(new File("songfiles/DanseMacabreViolinHook.mp3").toPath(), new File(music, "DanseMacabreViolinHook.mp3").toPath());
+		File cacheFile = new File(folder, "ScanCache");
+		
+		//The title and artist come from the ID3 tag and the length from the frame headers
+		SongScanner scanner = new SongScanner(cacheFile);
+		Map<String, Song> byPath = new HashMap<String, Song>();
+		for(Song song : scanner.scan(music)) { byPath.put(song.getSongPath(), song); }
+		assertEquals(2, byPath.size());
+		assertEquals(2, scanner.getFilesRead());
+		assertEquals("Danse Macabre - Violin Hook", byPath.get("DanseMacabreViolinHook.mp3").getSongTitle());
+		assertEquals("Kevin MacLeod", byPath.get("DanseMacabreViolinHook.mp3").getSongArtist());
+		assertEquals(34, byPath.get("DanseMacabreViolinHook.mp3").getSeconds());
+		assertEquals("Loping Sting", byPath.get("LopingSting.mp3").getSongTitle());
+		assertEquals(5, byPath.get("LopingSting.mp3").getSeconds());
+		assertTrue(cacheFile.exists());
+		
+		//A new scanner takes unchanged files from the cache
+		scanner = new SongScanner(cacheFile);
+		assertEquals(2, scanner.scan(music).size());
+		assertEquals(0, scanner.getFilesRead());
+		
+		//A changed file and an added file are read again
+		Files.copy(new File("songfiles/SwingCheese.mp3").toPath(), new File(music, "LopingSting.mp3").toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(new File("songfiles/Capture.mp3").toPath(), new File(music, "Capture.mp3").toPath());
+		byPath.clear();
+		for(Song song : scanner.scan(music)) { byPath.put(song.getSongPath(), song); }
+		assertEquals(3, byPath.size());
+		assertEquals(2, scanner.getFilesRead());
+		assertEquals("Swing Cheese 15", byPath.get("LopingSting.mp3").getSongTitle());
+		assertEquals(15, byPath.get("LopingSting.mp3").getSeconds());
+		assertEquals(5, byPath.get("Capture.mp3").getSeconds());
+		
+		//A Jukebox keeps its cache in its data folder and adds the files no song uses yet
+		File data = new File(folder, "data");
+		data.mkdir();
+		ArrayList<Song> songs = new ArrayList<Song>();
+		songs.add(new Song("Loping Sting", "0:05", "Kevin MacLeod", "LopingSting.mp3", "0"));
+		SongCatalog.write(songs, new File(data, "SongCatalog").getPath());
+		ObjectOutputStream queueOutput = new ObjectOutputStream(new FileOutputStream(new File(data, "SongQueue")));
+		queueOutput.writeObject(new ArrayList<Object>());
+		queueOutput.close();
+		Jukebox jukebox = new Jukebox(data);
+		assertEquals(2, jukebox.importSongFiles(music));
+		assertEquals(3, jukebox.getSongTotal());
+		assertTrue(new File(data, "ScanCache").exists());
+		for(File dir : new File[] { data, music, folder }) {
+			for(File file : dir.listFiles()) { file.delete(); }
+			dir.delete();
+		}
+	}
+	
+	@Test
+	public void testSongSearchPrefixRanking() {
+		SongSearchIndex index = new SongSearchIndex();
+		index.add(new Song("Danse Macabre", "0:34", "Kevin MacLeod", "DanseMacabreViolinHook.mp3", "0"));
+		index.add(new Song("Loping Sting", "0:05", "Kevin MacLeod", "LopingSting.mp3", "0"));
+		index.add(new Song("Swing Cheese", "0:15", "FreePlay Music", "SwingCheese.mp3", "0"));
+		
+		List<Song> results = index.search("mac", 10);
+		assertEquals(2, results.size());
+		assertEquals("Danse Macabre", results.get(0).getSongTitle()); // title beats artist
+		assertEquals(1, index.search("kev lop", 10).size());
+		assertEquals(0, index.search("cheese kevin", 10).size());
+		
+		index.add(new Song("Macarena", "4:10", "Los del Rio", "Macarena.mp3", "0"));
+		assertEquals(3, index.search("MAC", 10).size());
+		assertEquals(1, index.search("mac", 1).size());
+	}
+	
+	@Test
+	public void testGaplessQueuePlayback() throws InterruptedException {
+		new JFXPanel();
+		Jukebox jukebox = new Jukebox(false);
+		User victor = new User("Victor", "hey", false, 1500, 0);
+		assertEquals("Confirm", jukebox.checkSongAvailability(victor, "Loping Sting", LocalDate.now()));
+		assertEquals("Confirm", jukebox.checkSongAvailability(victor, "Pokemon Capture", LocalDate.now()));
+		assertEquals(-1, jukebox.getLastTransitionGapNanos());
+		
+		long deadline = System.currentTimeMillis() + 15000; // both songs are 5 seconds long
+		while(jukebox.getLastTransitionGapNanos() < 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		long gapMillis = jukebox.getLastTransitionGapNanos() / 1000000;
+		assertTrue("gap was " + gapMillis + " ms", gapMillis >= 0 && gapMillis < 50);
+	}
+	
+	@Test
+	public void testConcurrentSelectionLimits() throws InterruptedException {
+		final Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		final AllAccounts accountList = new AllAccounts(false);
+		final String[] users = {"Chris", "Devon", "River", "Ryan", "Merlin"};
+		final String[] songs = {"Pokemon Capture", "Loping Sting"}; // 2 songs x 3 plays < 5 users x 3 songs
+		final AtomicInteger confirmed = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] kiosks = new Thread[16];
+		for(int t = 0; t < kiosks.length; t++) {
+			final int kiosk = t;
+			kiosks[t] = new Thread() {
+				public void run() {
+					try { start.await(); } catch (InterruptedException e) { return; }
+					for(int i = 0; i < 200; i++) {
+						User user = accountList.getUser(users[(kiosk + i) % users.length]);
+						String message = jukebox.checkSongAvailability(user, songs[i % songs.length], LocalDate.now());
+						if(message.equals("Confirm")) { confirmed.incrementAndGet(); }
+					}
+				}
+			};
+			kiosks[t].start();
+		}
+		start.countDown();
+		for(Thread kiosk : kiosks) { kiosk.join(); }
+		
+		assertEquals(6, confirmed.get());
+		assertEquals(6, jukebox.getSongQueue().size());
+		int userSongs = 0;
+		for(String name : users) {
+			User user = accountList.getUser(name);
+			assertTrue(user.getSongCount() <= 3);
+			assertEquals(90000 - 5 * user.getSongCount(), user.getTimeRemaining());
+			userSongs += user.getSongCount();
+		}
+		assertEquals(6, userSongs);
+		for(Song song : jukebox.getAllSongInfo()) { assertTrue(song.getTimesSelected() <= 3); }
+	}
+	
+	@Test
+	public void testLazyDailyReset() {
+		AllAccounts accountList = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		User chris = accountList.getUser("Chris");
+		User ryan = accountList.getUser("Ryan");
+		LocalDate today = jukebox.getDayEpoch().today();
+		assertEquals("Confirm", jukebox.checkSongAvailability(chris, "Loping Sting", today));
+		assertEquals("Confirm", jukebox.checkSongAvailability(chris, "Loping Sting", today));
+		assertEquals(2, chris.getSongCount());
+		
+		//Another user's first selection tomorrow moves the day; nobody else is touched
+		assertEquals("Confirm", jukebox.checkSongAvailability(ryan, "Swing Cheese", today.plusDays(1)));
+		assertEquals(0, chris.getSongCount());
+		assertEquals(90000 - 10, chris.getTimeRemaining());
+		Song sting = jukebox.getAllSongInfo().get(3);
+		assertEquals("Loping Sting", sting.getSongTitle());
+		assertEquals(0, sting.getTimesSelected());
+		
+		//A late request from yesterday cannot move the day back
+		assertEquals("Confirm", jukebox.checkSongAvailability(chris, "Loping Sting", today));
+		assertEquals(1, chris.getSongCount());
+		assertEquals(1, sting.getTimesSelected());
+		
+		//Each jukebox keeps its own day, so a new one still counts today's selections
+		Jukebox other = new Jukebox(false, new TimedPlaybackEngine());
+		assertEquals(today.toEpochDay() + 1, jukebox.getDayEpoch().current());
+		assertEquals(today.toEpochDay(), other.getDayEpoch().current());
+		User victor = new User("Victor", "hey", false, 1500, 0);
+		assertEquals("Confirm", other.checkSongAvailability(victor, "Loping Sting", today));
+		assertEquals(1, other.getAllSongInfo().get(3).getTimesSelected());
+		assertEquals(1, victor.getSongCount());
+	}
+	
+	@Test
+	public void testPlayQueueChangeEvents() {
+		PlayQueue queue = new PlayQueue();
+		final List<String> mirror = new ArrayList<String>();
+		queue.offer("Loping Sting");
+		for(QueueEntry entry : queue.addListener(new PlayQueue.Listener() {
+			public void entryAdded(int index, QueueEntry entry) { mirror.add(index, entry.title); }
+			public void entriesAdded(int index, List<QueueEntry> entries) {
+				for(int i = 0; i < entries.size(); i++) { mirror.add(index + i, entries.get(i).title); }
+			}
+			public void entryRemoved(int index, QueueEntry entry) { assertEquals(entry.title, mirror.remove(index)); }
+		})) {
+			mirror.add(entry.title);
+		}
+		for(int i = 0; i < 10000; i++) { assertEquals(i + 1, queue.offer("Song " + i)); }
+		assertEquals(10000, queue.removeHead());
+		for(int i = 0; i < 5000; i++) { queue.removeHead(); }
+		assertEquals(queue.toList(), mirror);
+		assertEquals("Song 5000", queue.head(1).get(0));
+		queue.clear();
+		assertTrue(mirror.isEmpty());
+		assertEquals(-1, queue.removeHead());
+	}
+	
+	@Test
+	public void testFairShareQueue() {
+		PlayQueue queue = new PlayQueue(new FairShareScheduler(true));
+		final List<String> mirror = new ArrayList<String>();
+		queue.addListener(new PlayQueue.Listener() {
+			public void entryAdded(int index, QueueEntry entry) { mirror.add(index, entry.title); }
+			public void entriesAdded(int index, List<QueueEntry> entries) {
+				for(int i = 0; i < entries.size(); i++) { mirror.add(index + i, entries.get(i).title); }
+			}
+			public void entryRemoved(int index, QueueEntry entry) { assertEquals(entry.title, mirror.remove(index)); }
+		});
+		for(int i = 0; i < 4; i++) { queue.offer("Hog " + i, "hog", false, 100); }
+		assertEquals(2, queue.offer("Alice 0", "alice", false, 100)); // Takes turns with the hog
+		assertEquals(4, queue.offer("Alice 1", "alice", false, 100));
+		assertEquals(1, queue.offer("Admin 0", "admin", true, 100)); // Next after the song playing
+		queue.offer("Bob 0", "bob", false, 100);
+		queue.offer("Bob 1", "bob", false, 100);
+		assertEquals(Arrays.asList("Hog 0", "Admin 0", "Hog 1", "Alice 0", "Bob 0", "Hog 2", "Alice 1",
+				"Bob 1", "Hog 3"), queue.toList());
+		assertEquals(queue.toList(), mirror);
+		assertEquals("Bob 0", queue.toList().get(4));
+		
+		// The same songs first come first served
+		queue.removeHead();
+		queue.setScheduler(new FifoScheduler());
+		queue.offer("Alice 2", "alice", false, 100);
+		assertEquals("Alice 2", queue.toList().get(queue.size() - 1));
+		assertEquals(queue.toList(), mirror);
+	}
+	
+	@Test
+	public void testRingBuffer() {
+		//Adding at the front on an empty buffer wraps the head round to the end of the array
+		RingBuffer<Integer> ring = new RingBuffer<Integer>();
+		for(int i = 0; i < 10; i++) { ring.add(0, i); }
+		for(int i = 10; i < 20; i++) { ring.addLast(i); } // Grows while wrapped
+		List<Integer> expected = new ArrayList<Integer>();
+		for(int i = 9; i >= 0; i--) { expected.add(i); }
+		for(int i = 10; i < 20; i++) { expected.add(i); }
+		assertEquals(expected, ring.toList());
+		
+		//Inserts and removes anywhere match a list, whichever side is moved
+		Random random = new Random(7);
+		for(int op = 0; op < 20000; op++) {
+			int choice = random.nextInt(3);
+			if(choice < 2 || expected.isEmpty()) {
+				int index = random.nextInt(expected.size() + 1);
+				ring.add(index, op);
+				expected.add(index, op);
+			} else {
+				int index = random.nextInt(expected.size());
+				assertEquals(expected.remove(index), ring.remove(index));
+			}
+			assertEquals(expected.size(), ring.size());
+		}
+		assertEquals(expected, ring.toList());
+		while(expected.isEmpty() == false) { assertEquals(expected.remove(0), ring.removeFirst()); }
+		assertNull(ring.removeFirst());
+		ring.addLast(1);
+		ring.clear();
+		assertEquals(0, ring.size());
+		try {
+			ring.get(0);
+			fail("An empty buffer has no element 0");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testSongQueueList() {
+		PlayQueue queue = new PlayQueue(new FairShareScheduler(true));
+		for(int i = 0; i < 20; i++) { queue.offer("Hog " + i, "hog", false, 100); }
+		final SongQueueList[] shown = new SongQueueList[1];
+		shown[0] = new SongQueueList(queue.addListener(new PlayQueue.Listener() {
+			public void entryAdded(int index, QueueEntry entry) { shown[0].addEntry(index, entry); }
+			public void entriesAdded(int index, List<QueueEntry> entries) { shown[0].addEntries(index, entries); }
+			public void entryRemoved(int index, QueueEntry entry) { shown[0].removeEntry(index); }
+		}));
+		final List<String> changes = new ArrayList<String>();
+		shown[0].addListener(new ListChangeListener<QueueEntry>() {
+			public void onChanged(Change<? extends QueueEntry> change) {
+				while(change.next()) {
+					if(change.wasAdded()) { changes.add("+" + change.getFrom() + " " + change.getAddedSize()); }
+					if(change.wasRemoved()) { changes.add("-" + change.getFrom() + " " + change.getRemoved().get(0).title); }
+				}
+			}
+		});
+		assertEquals(queue.entries(), shown[0]);
+		
+		//A song placed in the middle, a cancel in the middle and the end of the song playing
+		assertEquals(2, queue.offer("Alice 0", "alice", false, 100));
+		QueueEntry cancelled = queue.entries().get(10);
+		queue.cancel(cancelled.id);
+		queue.removeHead();
+		assertEquals(Arrays.asList("+2 1", "-10 " + cancelled.title, "-0 Hog 0"), changes);
+		assertEquals(queue.entries(), shown[0]);
+		
+		//Songs played off the front and queued at the back wrap round the buffer
+		for(int i = 0; i < 100; i++) {
+			queue.removeHead();
+			queue.offer("Hog " + (20 + i), "hog", false, 100);
+		}
+		assertEquals(queue.entries(), shown[0]);
+		assertEquals(queue.size(), shown[0].size());
+	}
+	
+	@Test
+	public void testRoomRegistry() throws Exception {
+		new JFXPanel();
+		AllAccounts accountList = new AllAccounts(false);
+		RoomRegistry registry = new RoomRegistry(null, accountList, 2);
+		Room bar = registry.openRoom("bar");
+		Room patio = registry.openRoom("patio");
+		assertSame(bar, registry.openRoom("bar"));
+		assertEquals(0, bar.getShard());
+		assertEquals(1, patio.getShard());
+		
+		//Rooms have their own songs and queues but share the accounts
+		User chris = accountList.getUser("Chris");
+		LocalDate today = bar.getJukebox().getDayEpoch().today();
+		assertEquals(SelectionOutcome.QUEUED, bar.selectSong(chris, "Loping Sting", today).get());
+		assertEquals(SelectionOutcome.QUEUED, patio.selectSong(chris, "Danse Macabre", today).get());
+		assertEquals(2, chris.getSongCount());
+		assertEquals(1, bar.getJukebox().getQueueSize());
+		assertEquals("Danse Macabre", patio.getJukebox().getQueueHead(1).get(0));
+		assertEquals(0, patio.getJukebox().getAllSongInfo().get(3).getTimesSelected());
+		try {
+			registry.openRoom("../bar");
+			fail("Accepted a room name with a path in it");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+		registry.close();
+	}
+	
+	@Test
+	public void testTypedSelection() {
+		AllAccounts accountList = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		User chris = accountList.getUser("Chris");
+		User ryan = accountList.getUser("Ryan");
+		LocalDate today = jukebox.getDayEpoch().today();
+		
+		SelectionResult result = new SelectionResult();
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(chris, "Loping Sting", today, result));
+		assertEquals(SelectionOutcome.QUEUED, result.getOutcome());
+		assertEquals(90000 - 5, result.getTimeRemaining());
+		assertEquals(1, result.getSongsToday());
+		assertEquals(1, result.getSongPlaysToday());
+		assertEquals(0, result.getQueuePosition());
+		assertEquals(SelectionOutcome.NOT_FOUND, jukebox.selectSong(chris, "Nope", today, result));
+		assertEquals(-1, result.getQueuePosition());
+		assertEquals("The song selected was not found in this Jukebox.", jukebox.checkSongAvailability(chris, "Nope", today));
+		
+		//One pass for a list: later requests see what earlier ones took
+		List<String> titles = new ArrayList<String>();
+		titles.add("Loping Sting"); titles.add("Nope"); titles.add("Swing Cheese");
+		titles.add("Danse Macabre"); titles.add("Pokemon Capture");
+		SelectionOutcome[] outcomes = new SelectionOutcome[titles.size()];
+		assertEquals(3, jukebox.selectSongs(ryan, titles, today, outcomes));
+		assertArrayEquals(new SelectionOutcome[] { SelectionOutcome.QUEUED, SelectionOutcome.NOT_FOUND,
+				SelectionOutcome.QUEUED, SelectionOutcome.QUEUED, SelectionOutcome.USER_DAILY_LIMIT }, outcomes);
+		assertEquals(90000 - 5 - 15 - 34, ryan.getTimeRemaining());
+		assertEquals(4, jukebox.getQueueSize());
+		assertEquals("Danse Macabre", jukebox.getSongQueue().get(3));
+	}
+	
+	@Test
+	public void testCancelSong() {
+		AllAccounts accountList = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		User chris = accountList.getUser("Chris");
+		User ryan = accountList.getUser("Ryan");
+		User merlin = accountList.getUser("Merlin");
+		LocalDate today = jukebox.getDayEpoch().today();
+		final List<String> removed = new ArrayList<String>();
+		jukebox.addQueueListener(new PlayQueue.Listener() {
+			public void entryAdded(int index, QueueEntry entry) { }
+			public void entriesAdded(int index, List<QueueEntry> entries) { }
+			public void entryRemoved(int index, QueueEntry entry) { removed.add(index + " " + entry.title); }
+		});
+		
+		SelectionResult playing = new SelectionResult();
+		SelectionResult middle = new SelectionResult();
+		SelectionResult last = new SelectionResult();
+		jukebox.selectSong(chris, "Loping Sting", today, playing);
+		jukebox.selectSong(chris, "Swing Cheese", today, middle);
+		jukebox.selectSong(ryan, "Danse Macabre", today, last);
+		assertEquals(2, chris.getSongCount());
+		assertEquals(90000 - 5 - 15, chris.getTimeRemaining());
+		
+		//Only the owner or an admin, and never the song that is playing
+		assertEquals(CancelOutcome.NOT_ALLOWED, jukebox.cancelSong(ryan, middle.getEntryId()));
+		assertEquals(CancelOutcome.PLAYING, jukebox.cancelSong(chris, playing.getEntryId()));
+		assertEquals(CancelOutcome.NOT_FOUND, jukebox.cancelSong(chris, -1));
+		assertTrue(removed.isEmpty());
+		
+		//Cancelling from the middle refunds the user and the song and reports one removal
+		assertEquals(CancelOutcome.CANCELLED, jukebox.cancelSong(chris, middle.getEntryId()));
+		assertEquals(Arrays.asList("1 Swing Cheese"), removed);
+		assertEquals(Arrays.asList("Loping Sting", "Danse Macabre"), jukebox.getSongQueue());
+		assertEquals(1, chris.getSongCount());
+		assertEquals(90000 - 5, chris.getTimeRemaining());
+		for(Song song : jukebox.getAllSongInfo()) {
+			if(song.getSongTitle().equals("Swing Cheese")) { assertEquals(0, song.getTimesSelected()); }
+		}
+		assertEquals(CancelOutcome.NOT_FOUND, jukebox.cancelSong(chris, middle.getEntryId()));
+		
+		//An admin may cancel anyone's song
+		assertEquals(CancelOutcome.CANCELLED, jukebox.cancelSong(merlin, last.getEntryId()));
+		assertEquals(1, jukebox.getQueueSize());
+	}
+	
+	@Test
+	public void testQuotaRules() {
+		Properties config = new Properties();
+		config.setProperty("user.window", "2/1h");
+		config.setProperty("song.cooldown", "30m");
+		config.setProperty("artist.window", "3/1h");
+		QuotaRules rules = QuotaRules.compile(config);
+		Song capture = new Song("Pokemon Capture", "0:05", "Pikachu", "Capture.mp3", "0");
+		Song thunder = new Song("Thunderbolt", "0:05", "Pikachu", "Thunderbolt.mp3", "0");
+		Song cheese = new Song("Swing Cheese", "0:15", "FreePlay Music", "SwingCheese.mp3", "2");
+		long start = 1000000000000L;
+		long minute = 60*1000L;
+		
+		assertNull(rules.take("Chris", capture, start));
+		assertNull(rules.take("Chris", thunder, start));
+		assertEquals(SelectionOutcome.USER_WINDOW_LIMIT, rules.take("Chris", cheese, start + minute));
+		assertEquals(SelectionOutcome.SONG_COOLDOWN, rules.take("Ryan", capture, start + minute));
+		
+		//A refused selection leaves no count behind in the rules before the one that refused it
+		assertNull(rules.take("Ryan", capture, start + 35*minute));
+		assertEquals(SelectionOutcome.ARTIST_WINDOW_LIMIT, rules.take("River", thunder, start + 36*minute));
+		assertNull(rules.take("Ryan", cheese, start + 36*minute));
+		assertEquals(SelectionOutcome.USER_WINDOW_LIMIT, rules.take("Ryan", cheese, start + 37*minute));
+		assertNull(rules.take("Chris", thunder, start + 66*minute));
+		
+		config.setProperty("user.windows", "1/1h");
+		try {
+			QuotaRules.compile(config);
+			fail("An unknown rule should not compile");
+		} catch(IllegalArgumentException e) {
+			assertEquals("Unknown quota rule 'user.windows'.", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testVenueQuotas() {
+		AllAccounts accountList = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		User chris = accountList.getUser("Chris");
+		User ryan = accountList.getUser("Ryan");
+		LocalDate today = jukebox.getDayEpoch().today();
+		Properties config = new Properties();
+		config.setProperty("user.songsPerDay", "2");
+		config.setProperty("song.cooldown", "1h");
+		jukebox.setQuotaRules(QuotaRules.compile(config));
+		
+		assertEquals("Confirm", jukebox.checkSongAvailability(chris, "Loping Sting", today));
+		assertEquals(SelectionOutcome.SONG_COOLDOWN, jukebox.selectSong(ryan, "Loping Sting", today, null));
+		assertEquals(0, ryan.getSongCount());
+		assertEquals(90000, ryan.getTimeRemaining());
+		assertEquals("Confirm", jukebox.checkSongAvailability(chris, "Swing Cheese", today));
+		assertEquals("You may only play a total of 2 songs per day.",
+				jukebox.checkSongAvailability(chris, "Danse Macabre", today));
+		
+		//A refused batch gives back what its earlier songs took from the windows
+		List<String> titles = new ArrayList<String>();
+		titles.add("Danse Macabre"); titles.add("Swing Cheese");
+		SelectionOutcome[] outcomes = new SelectionOutcome[titles.size()];
+		assertFalse(jukebox.selectBatch(ryan, titles, today, outcomes));
+		assertArrayEquals(new SelectionOutcome[] { SelectionOutcome.QUEUED, SelectionOutcome.SONG_COOLDOWN }, outcomes);
+		SelectionResult danse = new SelectionResult();
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(ryan, "Danse Macabre", today, danse));
+		
+		//A cancelled selection is taken back out of the cooldown, so the song may be selected again
+		User river = accountList.getUser("River");
+		assertEquals(SelectionOutcome.SONG_COOLDOWN, jukebox.selectSong(river, "Danse Macabre", today, null));
+		assertEquals(CancelOutcome.CANCELLED, jukebox.cancelSong(ryan, danse.getEntryId()));
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(river, "Danse Macabre", today, null));
+	}
+	
+	@Test
+	public void testVirtualPlayback() {
+		SimulatedClock clock = new SimulatedClock(LocalDate.now().toEpochDay() * 24*60*60*1000L);
+		VirtualPlaybackEngine engine = new VirtualPlaybackEngine(clock);
+		Jukebox jukebox = new Jukebox(false, engine);
+		jukebox.setClock(clock);
+		AllAccounts accountList = new AllAccounts(false);
+		User chris = accountList.getUser("Chris");
+		LocalDate today = jukebox.getDayEpoch().today();
+		long start = clock.millis();
+		
+		assertEquals(Long.MAX_VALUE, engine.getSongEndMillis());
+		jukebox.selectSong(chris, "Danse Macabre", today, null);
+		jukebox.selectSong(chris, "Swing Cheese", today, null);
+		assertEquals("Danse Macabre", engine.getPlaying().getSongTitle());
+		assertEquals(start + 34000, engine.getSongEndMillis());
+		
+		//A song ends only when the clock is driven to it, and the next starts at that moment
+		clock.setMillis(engine.getSongEndMillis());
+		assertTrue(engine.endSong());
+		assertEquals("Swing Cheese", engine.getPlaying().getSongTitle());
+		assertEquals(start + 34000 + 15000, engine.getSongEndMillis());
+		assertEquals(0, jukebox.getLastTransitionGapNanos());
+		assertEquals(1, jukebox.getQueueSize());
+		
+		//The leaderboard's sliding windows follow the same clock
+		assertEquals(1, jukebox.getLeaderboard().top(Leaderboard.Window.HOUR, 10).get(0).count);
+		clock.advance(2*60*60*1000L);
+		assertTrue(jukebox.getLeaderboard().top(Leaderboard.Window.HOUR, 10).isEmpty());
+		clock.setMillis(start);
+		assertEquals(start + 2*60*60*1000L + 34000, clock.millis());
+		assertTrue(engine.endSong());
+		assertNull(engine.getPlaying());
+		assertFalse(engine.endSong());
+		assertEquals(0, jukebox.getQueueSize());
+	}
+	
+	@Test
+	public void testSimulatedDays() {
+		long day = 24*60*60*1000L;
+		SimulatedClock clock = new SimulatedClock(10 * day);
+		Jukebox jukebox = new Jukebox(false, new VirtualPlaybackEngine(clock));
+		jukebox.setClock(clock);
+		AllAccounts accountList = new AllAccounts(clock);
+		User chris = accountList.getUser("Chris");
+		
+		//The jukebox and the accounts count the simulated days, not the real ones
+		assertEquals(10, jukebox.getDayEpoch().current());
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(chris, "Loping Sting", jukebox.getDayEpoch().today(), null));
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(chris, "Swing Cheese", jukebox.getDayEpoch().today(), null));
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(chris, "Pokemon Capture", jukebox.getDayEpoch().today(), null));
+		assertEquals(3, chris.getSongCount());
+		assertEquals(SelectionOutcome.USER_DAILY_LIMIT, jukebox.selectSong(chris, "Danse Macabre", jukebox.getDayEpoch().today(), null));
+		clock.setMillis(11 * day);
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(chris, "Danse Macabre", jukebox.getDayEpoch().today(), null));
+		assertEquals(1, chris.getSongCount());
+		
+		//A jukebox on the real clock is left on the real day
+		assertEquals(LocalDate.now().toEpochDay(), new Jukebox(false, new TimedPlaybackEngine()).getDayEpoch().current());
+	}
+	
+	@Test
+	public void testTimedPlaybackAndDayReset() throws InterruptedException {
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		AllAccounts accountList = new AllAccounts(false);
+		User river = accountList.getUser("River");
+		final AtomicLong resetDay = new AtomicLong();
+		DayEpoch.ResetListener listener = new DayEpoch.ResetListener() {
+			public void countsReset(long day) { resetDay.set(day); }
+		};
+		jukebox.getDayEpoch().addResetListener(listener);
+	
+		//The first selection of a new day tells the listeners once
+		LocalDate tomorrow = jukebox.getDayEpoch().today().plusDays(1);
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(river, "Pokemon Capture", tomorrow, null));
+		assertEquals(tomorrow.toEpochDay(), resetDay.get());
+		resetDay.set(0);
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(river, "Loping Sting", tomorrow, null));
+		assertEquals(0, resetDay.get());
+		jukebox.getDayEpoch().removeResetListener(listener);
+	
+		//Both songs are 5 seconds long and end on the timer without a media runtime
+		long deadline = System.currentTimeMillis() + 15000;
+		while(jukebox.getQueueSize() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, jukebox.getQueueSize());
+		long gapMillis = jukebox.getLastTransitionGapNanos() / 1000000;
+		assertTrue("gap was " + gapMillis + " ms", gapMillis >= 0 && gapMillis < 50);
+	}
+
+	@Test
+	public void testMissingSongFile() throws InterruptedException {
+		new JFXPanel();
+		MediaPlaybackEngine engine = new MediaPlaybackEngine();
+		Jukebox jukebox = new Jukebox(false, engine);
+		User river = new AllAccounts(false).getUser("River");
+		LocalDate today = jukebox.getDayEpoch().today();
+	
+		//UntameableFire.mp3 is not in songfiles, so the song is finished and the next one plays;
+		//JavaFX retries opening a missing file for about two seconds first
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(river, "Untameable Fire", today, null));
+		assertEquals(SelectionOutcome.QUEUED, jukebox.selectSong(river, "Pokemon Capture", today, null));
+		long deadline = System.currentTimeMillis() + 10000;
+		while(engine.getPlayingSong() == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(Arrays.asList("Pokemon Capture"), jukebox.getSongQueue());
+		assertEquals("Pokemon Capture", engine.getPlayingSong().getSongTitle());
+		engine.stop();
+	}
+
+	@Test
+	public void testBatchSelection() throws IOException {
+		AllAccounts accountList = new AllAccounts(false);
+		Jukebox jukebox = new Jukebox(false, new TimedPlaybackEngine());
+		User devon = accountList.getUser("Devon");
+		User river = accountList.getUser("River");
+		LocalDate today = jukebox.getDayEpoch().today();
+		final List<Integer> events = new ArrayList<Integer>();
+		jukebox.addQueueListener(new PlayQueue.Listener() {
+			public void entryAdded(int index, QueueEntry entry) { events.add(1); }
+			public void entriesAdded(int index, List<QueueEntry> entries) { events.add(entries.size()); }
+			public void entryRemoved(int index, QueueEntry entry) { }
+		});
+		
+		//All or nothing: one bad song leaves the user and the songs untouched
+		List<String> titles = new ArrayList<String>();
+		titles.add("Swing Cheese"); titles.add("Nope"); titles.add("Loping Sting");
+		SelectionOutcome[] outcomes = new SelectionOutcome[titles.size()];
+		assertFalse(jukebox.selectBatch(devon, titles, today, outcomes));
+		assertArrayEquals(new SelectionOutcome[] { SelectionOutcome.QUEUED, SelectionOutcome.NOT_FOUND,
+				SelectionOutcome.QUEUED }, outcomes);
+		assertEquals(0, devon.getSongCount());
+		assertEquals(90000, devon.getTimeRemaining());
+		assertEquals(0, jukebox.getQueueSize());
+		assertTrue(events.isEmpty());
+		
+		//Repeats count against the song's limit within the batch
+		titles.set(1, "Swing Cheese");
+		assertTrue(jukebox.selectBatch(devon, titles, today, outcomes));
+		assertEquals(3, devon.getSongCount());
+		assertEquals(90000 - 15 - 15 - 5, devon.getTimeRemaining());
+		assertEquals(titles, jukebox.getSongQueue());
+		assertEquals(Arrays.asList(3), events);
+		titles.remove(2);
+		assertFalse(jukebox.selectBatch(river, titles, today, outcomes));
+		assertEquals(SelectionOutcome.QUEUED, outcomes[0]);
+		assertEquals(SelectionOutcome.SONG_DAILY_LIMIT, outcomes[1]);
+		assertEquals(0, river.getSongCount());
+		
+		//The journal writes a batch as consecutive records
+		File file = File.createTempFile("JukeboxJournal", null);
+		Journal journal = new Journal(file.getPath(), 0);
+		journal.logSelections("River", jukebox.getSongQueue(), today, new long[] { 4, 5, 6 });
+		journal.close();
+		journal = new Journal(file.getPath(), 0);
+		ArrayList<Journal.Entry> entries = journal.getEntries();
+		assertEquals(3, entries.size());
+		assertEquals(3, entries.get(2).lsn);
+		assertEquals("Loping Sting", entries.get(2).songTitle);
+		assertEquals(6, entries.get(2).entryId);
+		journal.close();
+		file.delete();
+	}
+	
+	@Test
+	public void testBackgroundSave() throws Exception {
+		new JFXPanel();
+		File rooms = Files.createTempDirectory("JukeboxRooms").toFile();
+		RoomRegistry registry = new RoomRegistry(rooms, new AllAccounts(false), 1);
+		Room bar = registry.openRoom("bar");
+		Jukebox jukebox = bar.getJukebox();
+		assertTrue(jukebox.hasUnsavedChanges()); // defaults were never saved
+		
+		PersistenceWriter writer = new PersistenceWriter(jukebox, 0);
+		writer.start();
+		writer.requestSave();
+		for(int i=0; i<100 && writer.getSaves() == 0; i++) { Thread.sleep(50); }
+		assertEquals(1, writer.getSaves());
+		assertFalse(jukebox.hasUnsavedChanges());
+		File folder = new File(rooms, "bar");
+		assertTrue(new File(folder, "SongQueue").exists());
+		assertFalse(new File(folder, "SongQueue.tmp").exists());
+		
+		User ryan = new AllAccounts(false).getUser("Ryan");
+		LocalDate today = jukebox.getDayEpoch().today();
+		assertEquals(SelectionOutcome.QUEUED, bar.selectSong(ryan, "Loping Sting", today).get());
+		assertTrue(jukebox.hasUnsavedChanges());
+		writer.close(true);
+		assertFalse(jukebox.hasUnsavedChanges());
+		assertEquals(Arrays.asList("Loping Sting"), new Jukebox(folder).getSongQueue());
+		registry.close();
+		
+		//A checkpoint moves records aside until the snapshot taken at it is dropped
+		File file = File.createTempFile("JukeboxJournal", null);
+		Journal journal = new Journal(file.getPath(), 0);
+		journal.logSelection("Chris", "Pokemon Capture", today, 1);
+		journal.logSelection("Ryan", "Swing Cheese", today, 2);
+		journal.checkpoint(new Runnable() {
+			public void run() { }
+		});
+		journal.logDequeue(LocalDate.now());
+		journal.close();
+		journal = new Journal(file.getPath(), 0);
+		assertEquals(3, journal.getEntries().size());
+		assertEquals(3, journal.getLastLsn());
+		journal.dropCheckpoint();
+		assertEquals(1, journal.getEntries().size());
+		assertEquals(3, journal.getEntries().get(0).lsn);
+		journal.close();
+		file.delete();
+	}
+	
+	@Test
+	public void testSelectionsDuringSnapshot() throws Exception {
+		new JFXPanel();
+		File rooms = Files.createTempDirectory("JukeboxRooms").toFile();
+		RoomRegistry registry = new RoomRegistry(rooms, new AllAccounts(false), 1);
+		registry.openRoom("bar").getJukebox().compactJournal(); // saves the default songs
+		registry.close();
+		File folder = new File(rooms, "bar");
+		final String[] names = {"Chris", "Devon", "River", "Ryan", "Avery", "Jordan", "Sam", "Quinn"};
+		ArrayList<User> users = new ArrayList<User>();
+		for(String name : names) { users.add(new User(name, "1", false, 90000, 0)); }
+		ObjectOutputStream objectOutput = new ObjectOutputStream(new FileOutputStream(new File(folder, "AccountList")));
+		objectOutput.writeObject(users);
+		objectOutput.writeLong(0);
+		objectOutput.close();
+		
+		final AllAccounts accountList = new AllAccounts(folder);
+		final Jukebox jukebox = new Jukebox(folder);
+		jukebox.openJournal(accountList, true);
+		Properties config = new Properties();
+		config.setProperty("user.songsPerDay", "100");
+		config.setProperty("song.selectionsPerDay", "1000");
+		jukebox.setQuotaRules(QuotaRules.compile(config));
+		final List<Song> songs = jukebox.getSongs(0, 7);
+		final LocalDate today = jukebox.getDayEpoch().today();
+		final AtomicInteger refused = new AtomicInteger();
+		Thread[] kiosks = new Thread[names.length];
+		for(int t = 0; t < kiosks.length; t++) {
+			final User user = accountList.getUser(names[t]);
+			kiosks[t] = new Thread() {
+				public void run() {
+					SelectionResult result = new SelectionResult();
+					for(int i = 0; i < 100; i++) {
+						String title = songs.get(i % songs.size()).getSongTitle();
+						if(jukebox.selectSong(user, title, today, result) != SelectionOutcome.QUEUED) { refused.incrementAndGet(); }
+						if(i % 10 == 0) { jukebox.cancelSong(user, result.getEntryId()); }
+					}
+				}
+			};
+			kiosks[t].start();
+		}
+		boolean selecting = true;
+		while(selecting) { // a snapshot taken mid-selection must not hold a selection it replays again
+			jukebox.compactJournal();
+			selecting = false;
+			for(Thread kiosk : kiosks) { selecting |= kiosk.isAlive(); }
+		}
+		jukebox.closeJournal(false);
+		assertEquals(0, refused.get());
+		
+		AllAccounts reopenedAccounts = new AllAccounts(folder);
+		Jukebox reopened = new Jukebox(folder);
+		reopened.openJournal(reopenedAccounts, true);
+		for(String name : names) {
+			assertEquals(accountList.getUser(name).getTimeRemaining(), reopenedAccounts.getUser(name).getTimeRemaining());
+			assertEquals(accountList.getUser(name).getSongCount(), reopenedAccounts.getUser(name).getSongCount());
+		}
+		List<Song> reopenedSongs = reopened.getSongs(0, 7);
+		for(int i = 0; i < songs.size(); i++) {
+			assertEquals(songs.get(i).getTimesSelected(), reopenedSongs.get(i).getTimesSelected());
+		}
+		
+		//A cancel is replayed on the entry it removed, not the user's last copy of the song
+		reopened.setQuotaRules(QuotaRules.compile(config));
+		User chris = reopenedAccounts.getUser("Chris");
+		SelectionResult first = new SelectionResult();
+		assertEquals(SelectionOutcome.QUEUED, reopened.selectSong(chris, "Swing Cheese", today, first));
+		assertEquals(SelectionOutcome.QUEUED, reopened.selectSong(chris, "Loping Sting", today, null));
+		assertEquals(SelectionOutcome.QUEUED, reopened.selectSong(chris, "Swing Cheese", today, null));
+		assertEquals(CancelOutcome.CANCELLED, reopened.cancelSong(chris, first.getEntryId()));
+		reopened.closeJournal(false);
+		List<String> queue = reopened.getSongQueue();
+		assertEquals(Arrays.asList("Loping Sting", "Swing Cheese"), queue.subList(queue.size() - 2, queue.size()));
+		Jukebox replayed = new Jukebox(folder);
+		replayed.openJournal(new AllAccounts(folder), true);
+		assertEquals(queue, replayed.getSongQueue());
+		replayed.closeJournal(false);
+		for(File file : folder.listFiles()) { file.delete(); }
+		folder.delete();
+		rooms.delete();
+	}
+	
+	@Test
+	public void testLeaderboard() {
+		Leaderboard leaderboard = new Leaderboard();
+		long hour = 60*60*1000;
+		leaderboard.record("Swing Cheese", 10, 0);
+		leaderboard.record("Loping Sting", 10, 0);
+		leaderboard.record("Loping Sting", 10, hour / 2);
+		leaderboard.record("Danse Macabre", 11, hour + 1);
+		leaderboard.record("Swing Cheese", 11, hour + 2);
+		
+		//The first selection of each song has left the last hour
+		List<Leaderboard.Entry> top = leaderboard.top(Leaderboard.Window.HOUR, 10, 11, hour + 2);
+		assertEquals(3, top.size());
+		assertEquals("Loping Sting", top.get(0).title);
+		assertEquals(1, top.get(0).count);
+		top = leaderboard.top(Leaderboard.Window.DAY, 2, 11, hour + 2);
+		assertEquals(2, top.size());
+		assertEquals("Loping Sting", top.get(0).title); // reached 2 before Swing Cheese did
+		assertEquals(2, top.get(0).count);
+		assertEquals("Swing Cheese", top.get(1).title);
+		assertEquals(2, top.get(1).count);
+		top = leaderboard.top(Leaderboard.Window.TODAY, 10, 11, hour + 2);
+		assertEquals(2, top.size());
+		assertEquals("Danse Macabre", top.get(0).title);
+		assertTrue(leaderboard.top(Leaderboard.Window.TODAY, 10, 12, hour + 2).isEmpty());
+		assertTrue(leaderboard.top(Leaderboard.Window.DAY, 10, 12, 26 * hour).isEmpty());
+	}
+	
+	@Test
+	public void testMetrics() {
+		MetricsRegistry registry = new MetricsRegistry();
+		Counter queued = registry.counter("selections_total", "Selections.", "outcome", "queued");
+		assertSame(queued, registry.counter("selections_total", "Selections.", "outcome", "queued"));
+		queued.add(41);
+		queued.increment();
+		Histogram writes = registry.histogram("write_seconds", "Writes.");
+		for(long micros = 1; micros <= 10000; micros++) { writes.record(micros*1000); }
+		assertEquals(10000, writes.getCount());
+		assertEquals(5000000, writes.getQuantileNanos(0.5), 5000000*0.125);
+		assertEquals(9900000, writes.getQuantileNanos(0.99), 9900000*0.125);
+		
+		String text = registry.writePrometheus(new StringBuilder()).toString();
+		assertTrue(text.contains("# TYPE selections_total counter\nselections_total{outcome=\"queued\"} 42\n"));
+		assertTrue(text.contains("write_seconds_count 10000\n"));
+		try {
+			registry.gauge("selections_total", "Not a counter.");
+			fail("Registered one name as two types");
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+	
+	@Test
+	public void testJsonRequests() {
+		Map<String, String> values = Json.parseObject(" {\"username\": \"Chr\\\"is\", \"n\": -12.5, \"x\": null, \"ok\":true} ");
+		assertEquals("Chr\"is", values.get("username"));
+		assertEquals("-12.5", values.get("n"));
+		assertEquals("true", values.get("ok"));
+		assertFalse(values.containsKey("x"));
+		assertTrue(Json.parseObject("{}").isEmpty());
+		assertEquals("{\"error\":\"a\\\"b\\n\"}", Json.error("a\"b\n"));
+		String[] bad = { "", "{", "{\"a\":}", "{\"a\":[1]}", "{\"a\":1 \"b\":2}", "{} x", "{\"a\":\"b" };
+		for(String text : bad) {
+			try {
+				Json.parseObject(text);
+				fail("Accepted " + text);
+			} catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+	
 }//END JukeboxTest class
\ No newline at end of file
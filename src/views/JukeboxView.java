@@ -1,9 +1,18 @@
 package views;
 
-import java.time.LocalDate;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import controller_view.JukeboxStartGUI;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -11,16 +20,25 @@ import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.util.Callback;
+import model.CancelOutcome;
+import model.CatalogSongList;
+import model.DayEpoch;
 import model.Jukebox;
+import model.PersistenceWriter;
+import model.PlayQueue;
+import model.QueueEntry;
+import model.SelectionOutcome;
 import model.Song;
+import model.SongCatalog;
 import model.User;
 
 /**************************************************************************************************
@@ -35,10 +53,18 @@ import model.User;
 public class JukeboxView extends BorderPane {
 	
 	//Jukebox data fields
-	private static Jukebox jukebox;
+	private Jukebox jukebox;
+	private PersistenceWriter persistence;
 	private ObservableList<Song> allSongs;
-	private static ObservableList<String> songQueue;
+	private SongQueueList songQueue;
 	private User currentUser;
+	private LeaderboardView leaderboardView;
+	private DayListener dayListener = new DayListener();
+	
+	//Search fields
+	private static final int SEARCH_LIMIT = 200;
+	private ExecutorService searchExecutor;
+	private volatile long searchSequence;
 	
 	//Admin grid view fields
 	private GridPane adminJukeboxGrid;
@@ -48,14 +74,22 @@ public class JukeboxView extends BorderPane {
 	private Button addUserButton;
 	private Button removeUserButton;
 	private Button adminAddSongButton;
+	private Button adminScanButton;
 	private Button adminLogoutButton;
-	private static ListView<String> songQueueView;
+	private Button adminTopSongsButton;
+	private Button adminCancelSongButton;
+	private ListView<QueueEntry> adminSongQueueView;
+	private TextField adminSearchField;
 	private JukeboxViewer adminJukeboxViewer = new JukeboxViewer();
 	
 	//User grid view fields
 	private GridPane userJukeboxGrid;
 	private Button userAddSongButton;
 	private Button userLogoutButton;
+	private Button userTopSongsButton;
+	private Button userCancelSongButton;
+	private ListView<QueueEntry> songQueueView;
+	private TextField userSearchField;
 	private JukeboxViewer jukeboxViewer = new JukeboxViewer();
 	
 	/**********************************************************************************************
@@ -64,17 +98,26 @@ public class JukeboxView extends BorderPane {
 	 * @param doReadFiles The boolean flag to determine whether to read files or not.
 	 **********************************************************************************************/
 	public JukeboxView(boolean doReadFiles) {
-		jukebox = new Jukebox(doReadFiles);
+		this(new Jukebox(doReadFiles));
+	}//END JukeboxView constructor
+	
+	/**********************************************************************************************
+	 * METHOD: JukeboxView()
+	 * PURPOSE: Builds the admin and user interaction grids for an existing Jukebox, such as one
+	 *     room of a RoomRegistry, so several views can show different jukeboxes.
+	 * @param jukebox The Jukebox this view shows and selects songs from.
+	 **********************************************************************************************/
+	public JukeboxView(Jukebox jukebox) {
+		this.jukebox = jukebox;
 		allSongs = jukebox.getAllSongInfo();
-		songQueue = FXCollections.observableArrayList();
-		ArrayList<String> jukeboxSongQueue = jukebox.getSongQueue();
-		for(int i = 0; i < jukeboxSongQueue.size(); i++) {
-			songQueue.add(jukeboxSongQueue.get(i));
-		}
+		songQueue = new SongQueueList(jukebox.addQueueListener(new QueueListener()));
+		jukebox.getDayEpoch().addResetListener(dayListener);
 
+		searchExecutor = Executors.newSingleThreadExecutor(new SearchThreadFactory());
 		ButtonListener buttonListener = new ButtonListener();
 		setUpAdminJukeboxGrid(buttonListener);
 		setUpUserJukeboxGrid(buttonListener);
+		leaderboardView = new LeaderboardView(jukebox.getLeaderboard(), new LeaderboardBackListener());
 	}//END JukeboxView constructor
 	
 	/**********************************************************************************************
@@ -117,9 +160,15 @@ public class JukeboxView extends BorderPane {
 		
 		//User interaction fields / variables
 		adminAddSongButton = new Button("Add Song");
+		adminScanButton = new Button("Scan Files");
 		adminLogoutButton = new Button("Log Out");
+		adminTopSongsButton = new Button("Top Songs");
+		adminCancelSongButton = new Button("Cancel Song");
 		adminAddSongButton.setOnAction(buttonListener);
+		adminScanButton.setOnAction(buttonListener);
 		adminLogoutButton.setOnAction(buttonListener);
+		adminTopSongsButton.setOnAction(buttonListener);
+		adminCancelSongButton.setOnAction(buttonListener);
 		
 		//SETUP Admin interactions grid
 		GridPane adminGrid = new GridPane();
@@ -145,22 +194,29 @@ public class JukeboxView extends BorderPane {
 		
 		userGrid.add(adminAddSongButton, 0, 0);
 		userGrid.add(new Label(" "), 1, 0);
-		userGrid.add(adminLogoutButton, 2, 0);
+		userGrid.add(adminScanButton, 2, 0);
+		userGrid.add(adminLogoutButton, 3, 0);
+		userGrid.add(adminTopSongsButton, 4, 0);
+		userGrid.add(adminCancelSongButton, 5, 0);
 		
 		// Sets up the Song Queue List View
-		songQueueView = new ListView<String>();
-		songQueueView.setItems(songQueue);
-		songQueueView.setPrefSize(100, 100);
+		adminSongQueueView = new ListView<QueueEntry>();
+		adminSongQueueView.setItems(songQueue);
+		adminSongQueueView.setPrefSize(100, 100);
 		
 		//SETUP SongView grid
 		GridPane songGrid = new GridPane();
 		songGrid.setAlignment(Pos.CENTER);
 		songGrid.setHgap(5); songGrid.setVgap(5);;
 		
+		adminSearchField = new TextField();
+		adminSearchField.setPromptText("Search title or artist");
+		adminSearchField.textProperty().addListener(new SearchListener(adminJukeboxViewer));
 		adminJukeboxViewer.setItems(allSongs);
-		songGrid.add(adminJukeboxViewer, 0, 0);
-		songGrid.add(new Label("Song Queue:"), 0, 1);
-		songGrid.add(songQueueView, 0, 2);
+		songGrid.add(adminSearchField, 0, 0);
+		songGrid.add(adminJukeboxViewer, 0, 1);
+		songGrid.add(new Label("Song Queue:"), 0, 2);
+		songGrid.add(adminSongQueueView, 0, 3);
 		
 		//SETUP final Jukebox views
 		adminJukeboxGrid = new GridPane();
@@ -184,8 +240,12 @@ public class JukeboxView extends BorderPane {
 		//User interaction fields / variables
 		userAddSongButton = new Button("Add Song");
 		userLogoutButton = new Button("Log Out");
+		userTopSongsButton = new Button("Top Songs");
+		userCancelSongButton = new Button("Cancel Song");
 		userAddSongButton.setOnAction(buttonListener);
 		userLogoutButton.setOnAction(buttonListener);
+		userTopSongsButton.setOnAction(buttonListener);
+		userCancelSongButton.setOnAction(buttonListener);
 		
 		//SETUP User interactions grid
 		GridPane userGrid = new GridPane();
@@ -195,9 +255,11 @@ public class JukeboxView extends BorderPane {
 		userGrid.add(userAddSongButton, 0, 0);
 		userGrid.add(new Label(" "), 1, 0);
 		userGrid.add(userLogoutButton, 2, 0);
+		userGrid.add(userTopSongsButton, 3, 0);
+		userGrid.add(userCancelSongButton, 4, 0);
 		
 		// Sets up the Song Queue List View
-		songQueueView = new ListView<String>();
+		songQueueView = new ListView<QueueEntry>();
 		songQueueView.setItems(songQueue);
 		songQueueView.setPrefSize(100, 100);
 		
@@ -206,10 +268,14 @@ public class JukeboxView extends BorderPane {
 		songGrid.setAlignment(Pos.CENTER);
 		songGrid.setHgap(5); songGrid.setVgap(5);;
 		
+		userSearchField = new TextField();
+		userSearchField.setPromptText("Search title or artist");
+		userSearchField.textProperty().addListener(new SearchListener(jukeboxViewer));
 		jukeboxViewer.setItems(allSongs);
-		songGrid.add(jukeboxViewer, 0, 0); 
-		songGrid.add(new Label("Song Queue:"), 0, 1);
-		songGrid.add(songQueueView, 0, 2);
+		songGrid.add(userSearchField, 0, 0);
+		songGrid.add(jukeboxViewer, 0, 1); 
+		songGrid.add(new Label("Song Queue:"), 0, 2);
+		songGrid.add(songQueueView, 0, 3);
 		
 		//SETUP final User Jukebox view
 		userJukeboxGrid = new GridPane();
@@ -222,18 +288,17 @@ public class JukeboxView extends BorderPane {
 	}//END setUpUserJukeboxGrid()
 	
 	/**********************************************************************************************
-	 * METHOD: refreshQueueView()
-	 * PURPOSE: refresh the Queue View of Songs on the Queue
+	 * METHOD: openJournal()
+	 * PURPOSE: Starts the Jukebox write-ahead journal, replaying it on top of the last saved
+	 *     state when recovering. Recovered queue changes reach the queue view as they are replayed.
+	 *     The journal is compacted in the background as it fills; the close dialog decides the rest.
+	 * @param recover The boolean flag to replay changes made since the last snapshot.
 	 **********************************************************************************************/
-	public static void refreshQueueView() {
-		songQueue.clear();
-		ArrayList<String> jukeboxSongQueue = jukebox.getSongQueue();
-		for(int i = 0; i < jukeboxSongQueue.size(); i++) {
-			songQueue.add(jukeboxSongQueue.get(i));
-		}
-		songQueueView.setItems(songQueue);
-		songQueueView.refresh();
-	}//END refreshQueueView()
+	public void openJournal(boolean recover) {
+		jukebox.openJournal(LoginView.getAccountList(), recover);
+		persistence = new PersistenceWriter(jukebox, 0);
+		persistence.start();
+	}//END openJournal()
 	
 	/**********************************************************************************************
 	 * METHOD: writeFiles()
@@ -241,10 +306,41 @@ public class JukeboxView extends BorderPane {
 	 *     write out the necessary files.
 	 **********************************************************************************************/
 	public void writeFiles() {
-		jukebox.writeQueueToFile();
-		jukebox.writeSongsToFile();
+		jukebox.compactJournal();
 	}//END writeFiles()
 	
+	/**********************************************************************************************
+	 * METHOD: closeJournal()
+	 * PURPOSE: Closes the journal, discarding changes since the last snapshot if not saved.
+	 * @param saved The boolean flag whether the current data was just saved.
+	 **********************************************************************************************/
+	public void closeJournal(boolean saved) {
+		if(persistence != null) { persistence.close(false); }
+		jukebox.closeJournal(saved == false);
+	}//END closeJournal()
+	
+	/**********************************************************************************************
+	 * METHOD: close()
+	 * PURPOSE: Lets go of what the view holds outside itself once its window closes: the day
+	 *     listener, which would otherwise keep the view and its tables alive, and the search thread.
+	 **********************************************************************************************/
+	public void close() {
+		jukebox.getDayEpoch().removeResetListener(dayListener);
+		searchExecutor.shutdown();
+	}//END close()
+	
+	/**********************************************************************************************
+	 * CLASS: LeaderboardBackListener()
+	 * PURPOSE: Returns from the top songs to the current user's Jukebox view.
+	 **********************************************************************************************/
+	private class LeaderboardBackListener implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent event) {
+			leaderboardView.setShowing(false);
+			setViewer(currentUser);
+		}//END handle()
+	}//END LeaderboardBackListener class
+	
 	/**********************************************************************************************
 	 * CLASS: JukeboxViewer()
 	 * PURPOSE: Handles a TableView that has the times played today, title, artist and length
@@ -259,11 +355,18 @@ public class JukeboxView extends BorderPane {
 			TableColumn<Song, String> artistCol = new TableColumn<>("Artist");
 			TableColumn<Song, String> timeCol = new TableColumn<>("Time");
 			
-			// Add the cell values with the names of the instance variables
-			playsCol.setCellValueFactory(new PropertyValueFactory<Song, Integer>("timesSelected"));
-			titleCol.setCellValueFactory(new PropertyValueFactory<Song, String>("songTitle"));
-			artistCol.setCellValueFactory(new PropertyValueFactory<Song, String>("songArtist"));
-			timeCol.setCellValueFactory(new PropertyValueFactory<Song, String>("songTime"));
+			// Plays are watched so a selection redraws only its own row; the rest never change
+			playsCol.setCellValueFactory(new PlaysValue());
+			titleCol.setCellValueFactory(new TextValue(SongCatalog.SortKey.TITLE));
+			artistCol.setCellValueFactory(new TextValue(SongCatalog.SortKey.ARTIST));
+			timeCol.setCellValueFactory(new TextValue(SongCatalog.SortKey.TIME));
+			
+			// A catalog is sorted through its sort orders instead of by comparing rows
+			playsCol.setUserData(SongCatalog.SortKey.PLAYS);
+			titleCol.setUserData(SongCatalog.SortKey.TITLE);
+			artistCol.setUserData(SongCatalog.SortKey.ARTIST);
+			timeCol.setUserData(SongCatalog.SortKey.TIME);
+			this.setSortPolicy(new CatalogSortPolicy());
 			
 			this.getColumns().addAll(playsCol, titleCol, artistCol, timeCol);
 			playsCol.setPrefWidth(50);
@@ -272,10 +375,259 @@ public class JukeboxView extends BorderPane {
 			timeCol.setPrefWidth(50);
 			this.setMaxWidth(334);
 			this.setMaxHeight(194);
+			this.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE); //Several songs queue together
 		}//END JukeboxViewer()
 		
 	}//END JukeboxViewer class
 	
+	/**********************************************************************************************
+	 * CLASS: PlaysValue()
+	 * PURPOSE: Shows a song's selection count through the property the song updates itself.
+	 **********************************************************************************************/
+	private static class PlaysValue implements Callback<TableColumn.CellDataFeatures<Song, Integer>, ObservableValue<Integer>> {
+		@Override
+		public ObservableValue<Integer> call(TableColumn.CellDataFeatures<Song, Integer> cell) {
+			return cell.getValue().timesSelectedProperty();
+		}//END call()
+	}//END PlaysValue class
+	
+	/**********************************************************************************************
+	 * CLASS: TextValue()
+	 * PURPOSE: Shows one of a song's text fields, read with its getter. These never change, so
+	 *     the value is wrapped once per cell and nothing listens to it.
+	 **********************************************************************************************/
+	private static class TextValue implements Callback<TableColumn.CellDataFeatures<Song, String>, ObservableValue<String>> {
+		private SongCatalog.SortKey field;
+		
+		public TextValue(SongCatalog.SortKey field) {
+			this.field = field;
+		}//END TextValue() constructor
+		
+		@Override
+		public ObservableValue<String> call(TableColumn.CellDataFeatures<Song, String> cell) {
+			Song song = cell.getValue();
+			String text;
+			switch(field) {
+				case TITLE: text = song.getSongTitle(); break;
+				case ARTIST: text = song.getSongArtist(); break;
+				default: text = song.getSongTime(); break;
+			}
+			return new ReadOnlyObjectWrapper<String>(text);
+		}//END call()
+	}//END TextValue class
+	
+	/**********************************************************************************************
+	 * CLASS: CatalogSortPolicy()
+	 * PURPOSE: Sorts a CatalogSongList by the first sorted column on the search thread, since the
+	 *     first sort by a text column reads the whole catalog. Other lists are sorted as usual.
+	 **********************************************************************************************/
+	private class CatalogSortPolicy implements Callback<TableView<Song>, Boolean> {
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public Boolean call(TableView<Song> table) {
+			if(table.getItems() instanceof CatalogSongList == false) {
+				return TableView.DEFAULT_SORT_POLICY.call(table);
+			}
+			CatalogSongList songs = (CatalogSongList) table.getItems();
+			if(table.getSortOrder().isEmpty()) {
+				songs.applyOrder(null, false);
+			} else {
+				TableColumn<Song, ?> column = table.getSortOrder().get(0);
+				boolean descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+				searchExecutor.execute(new SortTask(songs, (SongCatalog.SortKey) column.getUserData(), descending));
+			}
+			return true;
+		}//END call()
+		
+	}//END CatalogSortPolicy class
+	
+	/**********************************************************************************************
+	 * CLASS: SortTask()
+	 * PURPOSE: Gets a catalog sort order off the JavaFX application thread and then shows it.
+	 **********************************************************************************************/
+	private class SortTask extends Task<int[]> {
+		
+		private CatalogSongList songs;
+		private SongCatalog.SortKey key;
+		private boolean descending;
+		
+		public SortTask(CatalogSongList songs, SongCatalog.SortKey key, boolean descending) {
+			this.songs = songs;
+			this.key = key;
+			this.descending = descending;
+		}//END SortTask()
+		
+		@Override
+		protected int[] call() {
+			return songs.computeOrder(key);
+		}//END call()
+		
+		@Override
+		protected void succeeded() {
+			songs.applyOrder(getValue(), descending);
+		}//END succeeded()
+		
+	}//END SortTask class
+	
+	/**********************************************************************************************
+	 * CLASS: QueueListener()
+	 * PURPOSE: Hands each change to the Jukebox queue to the JavaFX thread, where it is applied to
+	 *     the queue view. Changes are posted in the order they happened, so they apply in order.
+	 **********************************************************************************************/
+	private class QueueListener implements PlayQueue.Listener {
+		
+		@Override
+		public void entryAdded(int index, QueueEntry entry) {
+			Platform.runLater(new QueueChange(index, entry));
+		}//END entryAdded()
+		
+		@Override
+		public void entriesAdded(int index, List<QueueEntry> entries) {
+			Platform.runLater(new QueueChange(index, entries));
+		}//END entriesAdded()
+		
+		@Override
+		public void entryRemoved(int index, QueueEntry entry) {
+			Platform.runLater(new QueueChange(index, (QueueEntry) null));
+		}//END entryRemoved()
+		
+	}//END QueueListener class
+	
+	/**********************************************************************************************
+	 * CLASS: QueueChange()
+	 * PURPOSE: Applies one added (entry set) or removed (entry null) queue entry, or a run of
+	 *     entries added together, to the queue view.
+	 **********************************************************************************************/
+	private class QueueChange implements Runnable {
+		
+		private int index;
+		private QueueEntry entry;
+		private List<QueueEntry> entries;
+		
+		public QueueChange(int index, QueueEntry entry) {
+			this.index = index;
+			this.entry = entry;
+		}//END QueueChange()
+		
+		public QueueChange(int index, List<QueueEntry> entries) {
+			this.index = index;
+			this.entries = entries;
+		}//END QueueChange()
+		
+		@Override
+		public void run() {
+			if(entries != null) {
+				songQueue.addEntries(index, entries);
+			} else if(entry != null) {
+				songQueue.addEntry(index, entry);
+			} else {
+				songQueue.removeEntry(index);
+			}
+		}//END run()
+		
+	}//END QueueChange class
+	
+	/**********************************************************************************************
+	 * CLASS: DayListener()
+	 * PURPOSE: Redraws the song tables on the JavaFX thread when the day moves on, since the
+	 *     plays shown are yesterday's until each row reads its song's count again.
+	 **********************************************************************************************/
+	private class DayListener implements DayEpoch.ResetListener {
+		
+		@Override
+		public void countsReset(long day) {
+			Platform.runLater(new CountsRefresh());
+		}//END countsReset()
+		
+	}//END DayListener class
+	
+	/**********************************************************************************************
+	 * CLASS: CountsRefresh()
+	 * PURPOSE: Redraws the visible rows of both song tables with today's plays.
+	 **********************************************************************************************/
+	private class CountsRefresh implements Runnable {
+		
+		@Override
+		public void run() {
+			adminJukeboxViewer.refresh();
+			jukeboxViewer.refresh();
+		}//END run()
+		
+	}//END CountsRefresh class
+	
+	/**********************************************************************************************
+	 * CLASS: SearchListener()
+	 * PURPOSE: Starts a background search each time the search text changes. An empty search
+	 *     shows every song again.
+	 **********************************************************************************************/
+	private class SearchListener implements ChangeListener<String> {
+		
+		private JukeboxViewer viewer;
+		
+		public SearchListener(JukeboxViewer viewer) {
+			this.viewer = viewer;
+		}//END SearchListener()
+		
+		@Override
+		public void changed(ObservableValue<? extends String> text, String oldText, String newText) {
+			long sequence = ++searchSequence;
+			if(newText.trim().isEmpty()) {
+				viewer.setItems(allSongs);
+			} else {
+				searchExecutor.execute(new SearchTask(newText, viewer, sequence));
+			}
+		}//END changed()
+		
+	}//END SearchListener class
+	
+	/**********************************************************************************************
+	 * CLASS: SearchTask()
+	 * PURPOSE: Runs one search off the JavaFX application thread and shows its results in the
+	 *     table, unless the user has typed something newer in the meantime.
+	 **********************************************************************************************/
+	private class SearchTask extends Task<List<Song>> {
+		
+		private String query;
+		private JukeboxViewer viewer;
+		private long sequence;
+		
+		public SearchTask(String query, JukeboxViewer viewer, long sequence) {
+			this.query = query;
+			this.viewer = viewer;
+			this.sequence = sequence;
+		}//END SearchTask()
+		
+		@Override
+		protected List<Song> call() {
+			if(sequence != searchSequence) { //Skip searches that were typed over
+				return null;
+			}
+			return jukebox.searchSongs(query, SEARCH_LIMIT);
+		}//END call()
+		
+		@Override
+		protected void succeeded() {
+			if(sequence == searchSequence && getValue() != null) {
+				viewer.setItems(FXCollections.observableArrayList(getValue()));
+			}
+		}//END succeeded()
+		
+	}//END SearchTask class
+	
+	/**********************************************************************************************
+	 * CLASS: SearchThreadFactory()
+	 * PURPOSE: Creates the single daemon thread that runs searches.
+	 **********************************************************************************************/
+	private static class SearchThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "SongSearch");
+			thread.setDaemon(true);
+			return thread;
+		}//END newThread()
+	}//END SearchThreadFactory class
+	
 	/**********************************************************************************************
 	 * CLASS: ButtonListener()
 	 * PURPOSE: Handles all button interactions in the JukeboxView.
@@ -314,41 +666,34 @@ public class JukeboxView extends BorderPane {
 			
 			//Handle song selection by admin
 			if(event.getSource().equals(adminAddSongButton)) {
-				Song songLine = adminJukeboxViewer.getSelectionModel().getSelectedItem();
-				String songSelected = songLine.getSongTitle();
-				String message = jukebox.checkSongAvailability(currentUser, songSelected, LocalDate.now());
-				
-				if(message.equals("Confirm")) {
-					Alert alert = new Alert(AlertType.CONFIRMATION);
-					alert.setHeaderText("The song '" + songSelected + "' has been added to the queue!");
-					alert.showAndWait();
-					adminJukeboxViewer.refresh(); // refresh the views
-					refreshQueueView();
-				}
-				else {
-					Alert alert = new Alert(AlertType.INFORMATION);
-					alert.setHeaderText(message);
-					alert.showAndWait();
-				}
+				addSelectedSongs(adminJukeboxViewer);
+			}
+			
+			//Handle scanning the songfiles folder for new songs
+			if(event.getSource().equals(adminScanButton)) {
+				int added = jukebox.importSongFiles(new File("songfiles"));
+				Alert alert = new Alert(AlertType.INFORMATION);
+				alert.setHeaderText(added + " new song(s) added from the songfiles folder.");
+				alert.showAndWait();
 			}
 			
 			//Handle song selection by normal user
 			if(event.getSource().equals(userAddSongButton)) {
-				Song songLine = jukeboxViewer.getSelectionModel().getSelectedItem();
-				String songSelected = songLine.getSongTitle();
-				String message = jukebox.checkSongAvailability(currentUser, songSelected, LocalDate.now());
-				
-				if(message.equals("Confirm")) {
-					Alert alert = new Alert(AlertType.CONFIRMATION);
-					alert.setHeaderText("The song '" + songSelected + "' has been added to the queue!");
-					alert.showAndWait();
-					jukeboxViewer.refresh(); // refresh the views
-					refreshQueueView();
-				} else {
-					Alert alert = new Alert(AlertType.INFORMATION);
-					alert.setHeaderText(message);
-					alert.showAndWait();
-				}
+				addSelectedSongs(jukeboxViewer);
+			}
+			
+			//Handle cancelling a queued song
+			if(event.getSource().equals(adminCancelSongButton)) {
+				cancelSelectedSong(adminSongQueueView);
+			}
+			if(event.getSource().equals(userCancelSongButton)) {
+				cancelSelectedSong(songQueueView);
+			}
+			
+			//Show the most selected songs
+			if(event.getSource().equals(adminTopSongsButton) || event.getSource().equals(userTopSongsButton)) {
+				leaderboardView.setShowing(true);
+				JukeboxView.this.setCenter(leaderboardView);
 			}
 			
 			//Handle logouts
@@ -359,6 +704,77 @@ public class JukeboxView extends BorderPane {
 			}
 		}//END handle()
 		
+		/******************************************************************************************
+		 * METHOD: addSelectedSongs()
+		 * PURPOSE: Selects the songs highlighted in a table for the current user. Several songs are
+		 *     queued together or not at all, with one message for the whole group. The selected
+		 *     songs' rows update their plays themselves, so the table is not refreshed.
+		 * @param viewer The JukeboxViewer the songs were highlighted in.
+		 ******************************************************************************************/
+		private void addSelectedSongs(JukeboxViewer viewer) {
+			List<Song> songLines = viewer.getSelectionModel().getSelectedItems();
+			if(songLines.isEmpty()) {
+				return;
+			}
+			ArrayList<String> songsSelected = new ArrayList<String>(songLines.size());
+			for(Song songLine : songLines) {
+				songsSelected.add(songLine.getSongTitle());
+			}
+			
+			Alert alert;
+			if(songsSelected.size() == 1) {
+				SelectionOutcome outcome = jukebox.selectSong(currentUser, songsSelected.get(0), jukebox.getDayEpoch().today(), null);
+				if(outcome.isQueued()) {
+					alert = new Alert(AlertType.CONFIRMATION);
+					alert.setHeaderText("The song '" + songsSelected.get(0) + "' has been added to the queue!");
+				} else {
+					alert = new Alert(AlertType.INFORMATION);
+					alert.setHeaderText(jukebox.getQuotaRules().message(outcome));
+				}
+			} else {
+				SelectionOutcome[] outcomes = new SelectionOutcome[songsSelected.size()];
+				if(jukebox.selectBatch(currentUser, songsSelected, jukebox.getDayEpoch().today(), outcomes)) {
+					alert = new Alert(AlertType.CONFIRMATION);
+					alert.setHeaderText(songsSelected.size() + " songs have been added to the queue!");
+				} else {
+					alert = new Alert(AlertType.INFORMATION);
+					alert.setHeaderText(refusal(songsSelected, outcomes));
+				}
+			}
+			alert.showAndWait();
+		}//END addSelectedSongs()
+		
+		/******************************************************************************************
+		 * METHOD: cancelSelectedSong()
+		 * PURPOSE: Cancels the song highlighted in a queue view for the current user, who is
+		 *     refunded if it was theirs. The queue view drops the row when the queue reports it.
+		 * @param queueView The ListView the song was highlighted in.
+		 ******************************************************************************************/
+		private void cancelSelectedSong(ListView<QueueEntry> queueView) {
+			QueueEntry entry = queueView.getSelectionModel().getSelectedItem();
+			if(entry == null) {
+				return;
+			}
+			CancelOutcome outcome = jukebox.cancelSong(currentUser, entry.id);
+			Alert alert = new Alert(outcome.isCancelled() ? AlertType.CONFIRMATION : AlertType.INFORMATION);
+			alert.setHeaderText(outcome.isCancelled() ? "The song '" + entry.title + "' has been cancelled."
+					: outcome.getMessage());
+			alert.showAndWait();
+		}//END cancelSelectedSong()
+		
+		/******************************************************************************************
+		 * METHOD: refusal()
+		 * PURPOSE: Explains why a group of songs was not queued, naming the first song refused.
+		 ******************************************************************************************/
+		private String refusal(List<String> songsSelected, SelectionOutcome[] outcomes) {
+			for(int i=0; i<songsSelected.size(); i++) {
+				if(outcomes[i].isQueued() == false) {
+					return "No songs were added. '" + songsSelected.get(i) + "': " + jukebox.getQuotaRules().message(outcomes[i]);
+				}
+			}
+			return "No songs were added.";
+		}//END refusal()
+		
 	}//END ButtonListener class
 	
 }//END JukeboxView class
\ No newline at end of file
@@ -0,0 +1,127 @@
+package views;
+
+import java.util.List;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.util.Duration;
+import model.Leaderboard;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: LeaderboardView
+ * DESCRIPTION:
+ * Shows the songs selected most today, in the last hour or in the last 24 hours. The list is read
+ * from the Jukebox's Leaderboard once a second while the view is showing, which only costs as much
+ * as the songs on the list.
+ **************************************************************************************************/
+
+public class LeaderboardView extends BorderPane {
+
+	private static final int TOP_SONGS = 10;
+
+	private Leaderboard leaderboard;
+	private ChoiceBox<String> windowChoice;
+	private ObservableList<String> topSongs;
+	private Timeline refresher;
+
+	/**********************************************************************************************
+	 * METHOD: LeaderboardView()
+	 * PURPOSE: Builds the window choice, the list of top songs and the back button.
+	 * @param leaderboard The Leaderboard of the Jukebox being shown.
+	 * @param backListener The EventHandler run when the back button is pressed.
+	 **********************************************************************************************/
+	public LeaderboardView(Leaderboard leaderboard, EventHandler<ActionEvent> backListener) {
+		this.leaderboard = leaderboard;
+		topSongs = FXCollections.observableArrayList();
+
+		windowChoice = new ChoiceBox<String>();
+		for(Leaderboard.Window window : Leaderboard.Window.values()) {
+			windowChoice.getItems().add(window.getLabel());
+		}
+		windowChoice.getSelectionModel().select(0);
+		windowChoice.getSelectionModel().selectedIndexProperty().addListener(new WindowListener());
+
+		ListView<String> topSongsView = new ListView<String>(topSongs);
+		topSongsView.setPrefSize(300, 260);
+		Button backButton = new Button("Back");
+		backButton.setOnAction(backListener);
+
+		GridPane leaderboardGrid = new GridPane();
+		leaderboardGrid.setAlignment(Pos.CENTER);
+		leaderboardGrid.setHgap(5); leaderboardGrid.setVgap(5);
+		leaderboardGrid.add(new Label("Top Songs:"), 0, 0);
+		leaderboardGrid.add(windowChoice, 1, 0);
+		leaderboardGrid.add(topSongsView, 0, 1, 2, 1);
+		leaderboardGrid.add(backButton, 0, 2);
+		this.setCenter(leaderboardGrid);
+
+		refresher = new Timeline(new KeyFrame(Duration.seconds(1), new RefreshHandler()));
+		refresher.setCycleCount(Timeline.INDEFINITE);
+	}//END LeaderboardView() constructor
+
+	/**********************************************************************************************
+	 * METHOD: setShowing()
+	 * PURPOSE: Starts refreshing the list when the view is shown and stops when it is hidden.
+	 * @param showing The boolean flag whether the view is on screen.
+	 **********************************************************************************************/
+	public void setShowing(boolean showing) {
+		if(showing) {
+			refresh();
+			refresher.play();
+		} else {
+			refresher.stop();
+		}
+	}//END setShowing()
+
+	/**********************************************************************************************
+	 * METHOD: refresh()
+	 * PURPOSE: Reads the top songs of the chosen window into the list.
+	 **********************************************************************************************/
+	private void refresh() {
+		int chosen = Math.max(0, windowChoice.getSelectionModel().getSelectedIndex());
+		List<Leaderboard.Entry> top = leaderboard.top(Leaderboard.Window.values()[chosen], TOP_SONGS);
+		String[] rows = new String[top.size()];
+		for(int i=0; i<rows.length; i++) {
+			Leaderboard.Entry entry = top.get(i);
+			rows[i] = (i + 1) + ". " + entry.title + " (" + entry.count + ")";
+		}
+		topSongs.setAll(rows);
+	}//END refresh()
+
+	/**********************************************************************************************
+	 * CLASS: RefreshHandler()
+	 * PURPOSE: Refreshes the list each time the timeline fires.
+	 **********************************************************************************************/
+	private class RefreshHandler implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent event) {
+			refresh();
+		}//END handle()
+	}//END RefreshHandler class
+
+	/**********************************************************************************************
+	 * CLASS: WindowListener()
+	 * PURPOSE: Shows the new window's top songs as soon as another window is chosen.
+	 **********************************************************************************************/
+	private class WindowListener implements ChangeListener<Number> {
+		@Override
+		public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+			refresh();
+		}//END changed()
+	}//END WindowListener class
+
+}//END LeaderboardView class
@@ -161,12 +161,13 @@ public class LoginView extends BorderPane {
 	}//END updateAccounts()
 	
 	/**********************************************************************************************
-	 * METHOD: resetCounts()
-	 * PURPOSE: On a new day, reset all User's song selection counts to 0.
+	 * METHOD: getAccountList()
+	 * PURPOSE: Returns the AllAccounts object holding every user account.
+	 * @return The AllAccounts of this login screen.
 	 **********************************************************************************************/
-	public static void resetCounts() {
-		accountList.resetCounts();
-	}//END resetCounts()
+	public static AllAccounts getAccountList() {
+		return accountList;
+	}//END getAccountList()
 	
 	/**********************************************************************************************
 	 * METHOD: writeFiles()
@@ -0,0 +1,95 @@
+package views;
+
+import java.util.List;
+import javafx.collections.ObservableListBase;
+import model.QueueEntry;
+import model.RingBuffer;
+
+/**************************************************************************************************
+ * @author Ashley Mains and Victor Gomes
+ *
+ * CLASS: SongQueueList
+ * DESCRIPTION:
+ * The ObservableList shown in the song queue ListView. It is kept in a RingBuffer and changed one
+ * entry at a time as the Jukebox queue reports changes, and the ListView only updates the rows
+ * that changed. Adding a song at the back or removing the song that finished costs the same for a
+ * queue of ten songs or ten thousand. A song a fair-share scheduler places in the middle, or a
+ * cancelled song, is not constant time: the RingBuffer shifts the shorter side of the queue, up
+ * to half of it. Each row is a QueueEntry, shown as its title, so a highlighted row can be
+ * cancelled by its id. It must only be changed on the JavaFX application thread.
+ **************************************************************************************************/
+
+public class SongQueueList extends ObservableListBase<QueueEntry> {
+
+	private RingBuffer<QueueEntry> entries;
+
+	/**********************************************************************************************
+	 * METHOD: SongQueueList()
+	 * PURPOSE: Constructs the list holding the entries already in the queue.
+	 * @param queued The List of QueueEntries, head first.
+	 **********************************************************************************************/
+	public SongQueueList(List<QueueEntry> queued) {
+		entries = new RingBuffer<QueueEntry>();
+		for(QueueEntry entry : queued) { entries.addLast(entry); }
+	}//END SongQueueList() constructor
+
+	/**********************************************************************************************
+	 * METHOD: get()
+	 * PURPOSE: Returns the entry at a position in the queue.
+	 * @param index The position in the queue.
+	 * @return The QueueEntry, shown as its song title.
+	 **********************************************************************************************/
+	@Override
+	public QueueEntry get(int index) {
+		return entries.get(index);
+	}//END get()
+
+	/**********************************************************************************************
+	 * METHOD: size()
+	 * PURPOSE: Returns the number of songs in the queue.
+	 * @return The queue length.
+	 **********************************************************************************************/
+	@Override
+	public int size() {
+		return entries.size();
+	}//END size()
+
+	/**********************************************************************************************
+	 * METHOD: addEntry()
+	 * PURPOSE: Inserts an entry and reports a single added entry.
+	 * @param index The position of the new entry.
+	 * @param entry The QueueEntry.
+	 **********************************************************************************************/
+	public void addEntry(int index, QueueEntry entry) {
+		beginChange();
+		entries.add(index, entry);
+		nextAdd(index, index + 1);
+		endChange();
+	}//END addEntry()
+
+	/**********************************************************************************************
+	 * METHOD: addEntries()
+	 * PURPOSE: Inserts several entries in a row and reports them as one added range.
+	 * @param index The position of the first new entry.
+	 * @param added The List of QueueEntries.
+	 **********************************************************************************************/
+	public void addEntries(int index, List<QueueEntry> added) {
+		beginChange();
+		for(int i=0; i<added.size(); i++) { entries.add(index + i, added.get(i)); }
+		nextAdd(index, index + added.size());
+		endChange();
+	}//END addEntries()
+
+	/**********************************************************************************************
+	 * METHOD: removeEntry()
+	 * PURPOSE: Removes an entry and reports a single removed entry.
+	 * @param index The position of the entry to remove.
+	 **********************************************************************************************/
+	public void removeEntry(int index) {
+		beginChange();
+		QueueEntry removed = entries.remove(index);
+		nextRemove(index, removed);
+		endChange();
+	}//END removeEntry()
+
+}//END SongQueueList class